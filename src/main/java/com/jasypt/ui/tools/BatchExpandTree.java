@@ -0,0 +1,36 @@
+package com.jasypt.ui.tools;
+
+import javax.swing.JTree;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.util.Enumeration;
+
+/**
+ * JTree that can expand many paths in a row cheaply. For every expansion the tree UI asks for
+ * the expanded descendants of the path, which JTree answers by scanning every path it has
+ * ever toggled, so expanding n nodes one by one costs O(n^2). Batched expansion works
+ * breadth-first from a collapsed tree, where a newly expanded path has no expanded
+ * descendants to restore, so that scan can be skipped.
+ */
+class BatchExpandTree extends JTree {
+	private boolean skipDescendants;
+
+	BatchExpandTree(TreeModel model) {
+		super(model);
+	}
+
+	// The caller guarantees that no descendant of the path is expanded
+	void expandCollapsedSubtree(TreePath path) {
+		skipDescendants = true;
+		try {
+			expandPath(path);
+		} finally {
+			skipDescendants = false;
+		}
+	}
+
+	@Override
+	public Enumeration<TreePath> getExpandedDescendants(TreePath parent) {
+		return skipDescendants ? null : super.getExpandedDescendants(parent);
+	}
+}
@@ -0,0 +1,106 @@
+package com.jasypt.ui.tools;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Dialog shared by the JSON tools for picking a CBOR, MessagePack or Smile document: a file
+ * (memory-mapped, not read into the heap) or a pasted Base64/hex blob, plus the format or
+ * auto-detection.
+ */
+final class BinaryJsonChooser {
+
+	// A binary document ready to decode; a null format means auto-detect
+	static final class Source {
+		final String name;
+		final ByteBuffer bytes;
+		final JsonBinaryDecoder.Format format;
+
+		Source(String name, ByteBuffer bytes, JsonBinaryDecoder.Format format) {
+			this.name = name;
+			this.bytes = bytes;
+			this.format = format;
+		}
+	}
+
+	private static final String AUTO = "Auto-detect";
+
+	private BinaryJsonChooser() {
+	}
+
+	/**
+	 * Shows the dialog and returns the chosen document, or null when cancelled. Errors
+	 * (unreadable file, malformed blob) are reported in a message dialog.
+	 */
+	static Source show(Component parent, String title) {
+		JTextArea blob = new JTextArea(8, 48);
+		blob.setLineWrap(true);
+		blob.setFont(new Font("Monospaced", Font.PLAIN, 12));
+		JComboBox<Object> format = new JComboBox<>();
+		format.addItem(AUTO);
+		for (JsonBinaryDecoder.Format f : JsonBinaryDecoder.Format.values()) format.addItem(f);
+
+		File[] chosen = new File[1];
+		JLabel fileLabel = new JLabel("No file chosen");
+		JButton fileBtn = new JButton("Choose File…");
+		fileBtn.addActionListener(e -> {
+			JFileChooser chooser = new JFileChooser();
+			chooser.setDialogTitle(title);
+			if (chooser.showOpenDialog(parent) == JFileChooser.APPROVE_OPTION) {
+				chosen[0] = chooser.getSelectedFile();
+				fileLabel.setText(String.format("%s (%,d bytes)", chosen[0].getName(), chosen[0].length()));
+				blob.setEnabled(false);
+			}
+		});
+
+		JPanel filePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+		filePanel.add(fileBtn);
+		filePanel.add(fileLabel);
+		JPanel formatPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+		formatPanel.add(new JLabel("Format:"));
+		formatPanel.add(format);
+
+		JPanel panel = new JPanel(new BorderLayout(0, 6));
+		JPanel north = new JPanel(new GridLayout(0, 1, 0, 4));
+		north.add(filePanel);
+		north.add(new JLabel("…or paste a Base64 or hex blob:"));
+		panel.add(north, BorderLayout.NORTH);
+		panel.add(new JScrollPane(blob), BorderLayout.CENTER);
+		panel.add(formatPanel, BorderLayout.SOUTH);
+
+		if (JOptionPane.showConfirmDialog(parent, panel, title, JOptionPane.OK_CANCEL_OPTION,
+				JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+			return null;
+		}
+		JsonBinaryDecoder.Format selected = format.getSelectedItem() instanceof JsonBinaryDecoder.Format
+			? (JsonBinaryDecoder.Format) format.getSelectedItem() : null;
+
+		try {
+			if (chosen[0] != null) {
+				return new Source(chosen[0].getName(), map(chosen[0].toPath()), selected);
+			}
+			if (blob.getText().trim().isEmpty()) return null;
+			byte[] bytes = JsonBinaryDecoder.parseBlob(blob.getText());
+			return new Source("pasted blob", ByteBuffer.wrap(bytes), selected);
+		} catch (IOException | IllegalArgumentException e) {
+			JOptionPane.showMessageDialog(parent, e.getMessage(), title, JOptionPane.ERROR_MESSAGE);
+			return null;
+		}
+	}
+
+	// Maps the whole file read-only; the decoder reads it in place
+	static ByteBuffer map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Binary documents larger than 2 GB are not supported");
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.jasypt.ui.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sequence alignment for the JSON diff's array modes: a Myers shortest-edit alignment of two
+ * arrays by element hash, and the longest increasing subsequence used to tell elements that
+ * kept their relative order from moved ones.
+ */
+final class JsonArrayAlignment {
+
+	private JsonArrayAlignment() {
+	}
+
+	/**
+	 * Aligns a with b by equal hashes (NONE never matches) and returns, for each element of a,
+	 * the index of its partner in b or -1. Matches are increasing, as in a longest common
+	 * subsequence. Common head and tail runs are matched first; if the rest needs more than
+	 * {@code maxEdits} inserts and deletes, its elements are only matched to equal elements at
+	 * the same offset, as an index-wise comparison would.
+	 */
+	static int[] align(long[] a, long[] b, int maxEdits) {
+		int[] match = new int[a.length];
+		Arrays.fill(match, -1);
+		int head = 0;
+		while (head < a.length && head < b.length && same(a[head], b[head])) {
+			match[head] = head;
+			head++;
+		}
+		int tailA = a.length;
+		int tailB = b.length;
+		while (tailA > head && tailB > head && same(a[tailA - 1], b[tailB - 1])) {
+			match[--tailA] = --tailB;
+		}
+		if (!myers(a, head, tailA, b, head, tailB, maxEdits, match)) {
+			for (int k = 0; head + k < tailA && head + k < tailB; k++) {
+				if (same(a[head + k], b[head + k])) match[head + k] = head + k;
+			}
+		}
+		return match;
+	}
+
+	/**
+	 * Greedy Myers alignment of a[aFrom, aTo) with b[bFrom, bTo). Each round's furthest-reaching
+	 * diagonals are kept (2d+1 ints for round d) so the path can be traced back afterwards.
+	 * Returns false, having matched nothing, when the edit budget runs out.
+	 */
+	private static boolean myers(long[] a, int aFrom, int aTo, long[] b, int bFrom, int bTo, int maxEdits, int[] match) {
+		int n = aTo - aFrom;
+		int m = bTo - bFrom;
+		if (n == 0 || m == 0) return true;
+		int max = Math.min(n + m, maxEdits);
+		int off = max + 1;
+		int[] v = new int[2 * max + 3];
+		List<int[]> trace = new ArrayList<>();
+		for (int d = 0; d <= max; d++) {
+			// Diagonals -(d-1)..d-1 as they stood before this round
+			trace.add(d == 0 ? new int[0] : Arrays.copyOfRange(v, off - d + 1, off + d));
+			for (int k = -d; k <= d; k += 2) {
+				int x = k == -d || (k != d && v[off + k - 1] < v[off + k + 1]) ? v[off + k + 1] : v[off + k - 1] + 1;
+				int y = x - k;
+				while (x < n && y < m && same(a[aFrom + x], b[bFrom + y])) {
+					x++;
+					y++;
+				}
+				v[off + k] = x;
+				if (x >= n && y >= m) {
+					backtrack(trace, d, x, y, aFrom, bFrom, match);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static void backtrack(List<int[]> trace, int d, int x, int y, int aFrom, int bFrom, int[] match) {
+		for (; d > 0; d--) {
+			int[] prev = trace.get(d);
+			int k = x - y;
+			int prevK = k == -d || (k != d && prev[k - 1 + d - 1] < prev[k + 1 + d - 1]) ? k + 1 : k - 1;
+			int prevX = prev[prevK + d - 1];
+			int prevY = prevX - prevK;
+			while (x > prevX && y > prevY) {
+				match[aFrom + --x] = bFrom + --y;
+			}
+			x = prevX;
+			y = prevY;
+		}
+		while (x > 0 && y > 0) {
+			match[aFrom + --x] = bFrom + --y;
+		}
+	}
+
+	/**
+	 * Marks the elements of a longest strictly increasing subsequence of seq, skipping entries
+	 * below 0. O(n log n), patience-sorting style.
+	 */
+	static boolean[] longestIncreasing(int[] seq) {
+		int n = seq.length;
+		int[] tails = new int[n];
+		int[] prev = new int[n];
+		int length = 0;
+		for (int i = 0; i < n; i++) {
+			if (seq[i] < 0) continue;
+			int lo = 0;
+			int hi = length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (seq[tails[mid]] < seq[i]) lo = mid + 1;
+				else hi = mid;
+			}
+			prev[i] = lo > 0 ? tails[lo - 1] : -1;
+			tails[lo] = i;
+			if (lo == length) length++;
+		}
+		boolean[] in = new boolean[n];
+		for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = prev[i]) {
+			in[i] = true;
+		}
+		return in;
+	}
+
+	private static boolean same(long x, long y) {
+		return x == y && x != JsonSubtreeHash.NONE;
+	}
+}
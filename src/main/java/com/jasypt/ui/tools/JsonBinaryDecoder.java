@@ -0,0 +1,749 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decoders for the binary JSON encodings our services exchange: CBOR (RFC 8949), MessagePack
+ * and Smile. Values are read straight from a ByteBuffer (usually a mapped file) into a Gson
+ * tree, without producing JSON text first. Strings are decoded from the buffer in place.
+ * <p>
+ * Binary-only values are mapped to JSON the way Jackson does: byte strings become Base64
+ * strings, NaN and infinities become the strings "NaN", "Infinity" and "-Infinity",
+ * non-string map keys use their JSON text and MessagePack timestamps become ISO-8601
+ * strings. Other MessagePack extensions become {"ext": type, "data": base64}.
+ */
+final class JsonBinaryDecoder {
+
+	enum Format {
+		CBOR("CBOR"), MESSAGEPACK("MessagePack"), SMILE("Smile");
+
+		private final String label;
+
+		Format(String label) {
+			this.label = label;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	private static final int MAX_DEPTH = 1000;
+	private static final int CHECK_EVERY = 1 << 16;
+
+	private JsonBinaryDecoder() {
+	}
+
+	/**
+	 * Decodes every top-level value in the buffer (CBOR sequences and MessagePack streams are
+	 * plain concatenations; Smile allows several root values too). With a null format, the
+	 * format is detected: a Smile header or a CBOR self-describe tag decides, otherwise the
+	 * input is decoded as CBOR and, failing that, as MessagePack.
+	 *
+	 * @throws JsonSyntaxException if the bytes are not valid in the format
+	 * @throws CancellationException once {@code cancelled} reports true
+	 */
+	static Decoded decode(ByteBuffer buffer, Format format, BooleanSupplier cancelled) {
+		if (format != null) {
+			return new Decoded(format, reader(format, buffer, cancelled).readAll());
+		}
+		Format sniffed = sniff(buffer);
+		if (sniffed != null) {
+			return new Decoded(sniffed, reader(sniffed, buffer, cancelled).readAll());
+		}
+		try {
+			return new Decoded(Format.CBOR, new CborReader(buffer, cancelled).readAll());
+		} catch (JsonSyntaxException cbor) {
+			try {
+				return new Decoded(Format.MESSAGEPACK, new MessagePackReader(buffer, cancelled).readAll());
+			} catch (JsonSyntaxException msgpack) {
+				throw new JsonSyntaxException("Not CBOR (" + cbor.getMessage() + ") or MessagePack ("
+					+ msgpack.getMessage() + ")");
+			}
+		}
+	}
+
+	/**
+	 * Format announced by the first bytes, or null when the bytes carry no signature.
+	 */
+	static Format sniff(ByteBuffer buffer) {
+		int p = buffer.position();
+		if (buffer.remaining() >= 3 && buffer.get(p) == ':' && buffer.get(p + 1) == ')' && buffer.get(p + 2) == '\n') {
+			return Format.SMILE;
+		}
+		if (buffer.remaining() >= 3 && (buffer.get(p) & 0xFF) == 0xD9 && (buffer.get(p + 1) & 0xFF) == 0xD9
+				&& (buffer.get(p + 2) & 0xFF) == 0xF7) {
+			return Format.CBOR;
+		}
+		return null;
+	}
+
+	/**
+	 * True when the bytes cannot be a JSON text: a binary signature, a NUL byte or a first
+	 * byte that no JSON document (after optional whitespace or BOM) starts with.
+	 */
+	static boolean looksBinary(ByteBuffer buffer) {
+		if (sniff(buffer) != null) return true;
+		int end = Math.min(buffer.limit(), buffer.position() + 4096);
+		boolean started = false;
+		for (int p = buffer.position(); p < end; p++) {
+			int b = buffer.get(p) & 0xFF;
+			if (b == 0) return true;
+			if (started || b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == 0xEF || b == 0xBB || b == 0xBF) {
+				continue;
+			}
+			if (b < 0x20 || b >= 0x80) return true;
+			started = true;
+		}
+		return false;
+	}
+
+	/**
+	 * Bytes of a pasted blob: hex (optionally 0x-prefixed, spaces and colons ignored) when it
+	 * only has hex digits, otherwise standard or URL-safe Base64.
+	 *
+	 * @throws IllegalArgumentException if the text is neither
+	 */
+	static byte[] parseBlob(String text) {
+		String s = text.trim();
+		if (s.startsWith("0x") || s.startsWith("0X")) s = s.substring(2);
+		String hex = s.replaceAll("[\\s:]", "");
+		if (!hex.isEmpty() && hex.length() % 2 == 0 && hex.matches("[0-9a-fA-F]+")) {
+			byte[] bytes = new byte[hex.length() / 2];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+			}
+			return bytes;
+		}
+		String base64 = text.replaceAll("\\s", "").replace('-', '+').replace('_', '/');
+		if (base64.isEmpty()) throw new IllegalArgumentException("No data");
+		try {
+			return Base64.getDecoder().decode(base64.replaceAll("=+$", "")
+				+ "===".substring(0, (4 - base64.replaceAll("=+$", "").length() % 4) % 4));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Neither hex nor Base64: " + e.getMessage());
+		}
+	}
+
+	// Top-level values of a binary document and the format they were read as
+	static final class Decoded {
+		final Format format;
+		final List<JsonElement> values;
+
+		Decoded(Format format, List<JsonElement> values) {
+			this.format = format;
+			this.values = values;
+		}
+	}
+
+	private static Reader reader(Format format, ByteBuffer buffer, BooleanSupplier cancelled) {
+		switch (format) {
+			case CBOR: return new CborReader(buffer, cancelled);
+			case MESSAGEPACK: return new MessagePackReader(buffer, cancelled);
+			default: return new SmileReader(buffer, cancelled);
+		}
+	}
+
+	// Absolute-index cursor over a buffer; the buffer's own position is never moved
+	private abstract static class Reader {
+		final ByteBuffer in;
+		final int end;
+		final BooleanSupplier cancelled;
+		int p;
+		int nextCheck;
+
+		Reader(ByteBuffer in, BooleanSupplier cancelled) {
+			this.in = in.duplicate().order(ByteOrder.BIG_ENDIAN);
+			this.p = in.position();
+			this.end = in.limit();
+			this.cancelled = cancelled;
+			this.nextCheck = p + CHECK_EVERY;
+		}
+
+		List<JsonElement> readAll() {
+			List<JsonElement> values = new ArrayList<>();
+			while (hasMore()) {
+				values.add(value(0));
+			}
+			if (values.isEmpty()) throw error("No value");
+			return values;
+		}
+
+		boolean hasMore() {
+			return p < end;
+		}
+
+		abstract JsonElement value(int depth);
+
+		int u8() {
+			if (p >= end) throw error("Unexpected end of data");
+			return in.get(p++) & 0xFF;
+		}
+
+		int u16() {
+			need(2);
+			int v = in.getShort(p) & 0xFFFF;
+			p += 2;
+			return v;
+		}
+
+		long u32() {
+			need(4);
+			long v = in.getInt(p) & 0xFFFFFFFFL;
+			p += 4;
+			return v;
+		}
+
+		long i64() {
+			need(8);
+			long v = in.getLong(p);
+			p += 8;
+			return v;
+		}
+
+		void need(long n) {
+			if (n < 0 || n > end - p) throw error("Unexpected end of data");
+		}
+
+		// Container lengths are checked against the bytes left so a corrupt header cannot allocate
+		int count(long n, int minBytesEach) {
+			if (n < 0 || n > (long) (end - p) / minBytesEach) throw error("Length " + n + " exceeds the data");
+			return (int) n;
+		}
+
+		String utf8(long length) {
+			need(length);
+			int n = (int) length;
+			String s;
+			if (in.hasArray()) {
+				s = new String(in.array(), in.arrayOffset() + p, n, StandardCharsets.UTF_8);
+			} else {
+				ByteBuffer slice = in.duplicate();
+				slice.limit(p + n).position(p);
+				s = StandardCharsets.UTF_8.decode(slice).toString();
+			}
+			p += n;
+			return s;
+		}
+
+		byte[] bytes(long length) {
+			need(length);
+			byte[] b = new byte[(int) length];
+			ByteBuffer slice = in.duplicate();
+			slice.position(p);
+			slice.get(b);
+			p += b.length;
+			return b;
+		}
+
+		void enter(int depth) {
+			if (depth > MAX_DEPTH) throw error("Nesting deeper than " + MAX_DEPTH);
+			if (p >= nextCheck) {
+				nextCheck = p + CHECK_EVERY;
+				if (cancelled.getAsBoolean()) throw new CancellationException();
+			}
+		}
+
+		JsonSyntaxException error(String message) {
+			return new JsonSyntaxException(message + " at byte " + (p - in.position()));
+		}
+	}
+
+	private static JsonElement number(double d) {
+		if (Double.isNaN(d)) return new JsonPrimitive("NaN");
+		if (Double.isInfinite(d)) return new JsonPrimitive(d > 0 ? "Infinity" : "-Infinity");
+		return new JsonPrimitive(d);
+	}
+
+	private static JsonElement unsigned(long v) {
+		return v >= 0 ? new JsonPrimitive(v) : new JsonPrimitive(new BigInteger(Long.toUnsignedString(v)));
+	}
+
+	private static JsonElement binary(byte[] bytes) {
+		return new JsonPrimitive(Base64.getEncoder().encodeToString(bytes));
+	}
+
+	// Map keys become member names: strings as-is, anything else as its JSON text
+	private static String key(JsonElement key) {
+		if (key.isJsonPrimitive()) return key.getAsString();
+		return key.isJsonNull() ? "null" : key.toString();
+	}
+
+	private static final class CborReader extends Reader {
+		private static final int BREAK = 0xFF;
+
+		CborReader(ByteBuffer in, BooleanSupplier cancelled) {
+			super(in, cancelled);
+		}
+
+		@Override
+		JsonElement value(int depth) {
+			enter(depth);
+			int initial = u8();
+			if (initial == BREAK) throw error("Unexpected break");
+			return value(initial, depth);
+		}
+
+		private JsonElement value(int initial, int depth) {
+			int major = initial >>> 5;
+			int info = initial & 0x1F;
+			switch (major) {
+				case 0:
+					return unsigned(argument(info));
+				case 1: {
+					long n = argument(info);
+					return n >= 0 ? new JsonPrimitive(-1 - n)
+						: new JsonPrimitive(BigInteger.ONE.negate().subtract(new BigInteger(Long.toUnsignedString(n))));
+				}
+				case 2:
+					return binary(info == 31 ? chunks(2) : bytes(argument(info)));
+				case 3:
+					return new JsonPrimitive(info == 31 ? new String(chunks(3), StandardCharsets.UTF_8) : utf8(argument(info)));
+				case 4: {
+					JsonArray array = new JsonArray();
+					if (info == 31) {
+						while (peek() != BREAK) array.add(value(depth + 1));
+						p++;
+					} else {
+						for (int i = count(argument(info), 1); i > 0; i--) array.add(value(depth + 1));
+					}
+					return array;
+				}
+				case 5: {
+					JsonObject object = new JsonObject();
+					if (info == 31) {
+						while (peek() != BREAK) object.add(key(value(depth + 1)), value(depth + 1));
+						p++;
+					} else {
+						for (int i = count(argument(info), 2); i > 0; i--) object.add(key(value(depth + 1)), value(depth + 1));
+					}
+					return object;
+				}
+				case 6: {
+					long tag = argument(info);
+					// Bignums (tags 2 and 3 on a byte string) and decimal fractions (tag 4); other tags are transparent
+					if ((tag == 2 || tag == 3) && peek() >>> 5 == 2) {
+						int string = u8() & 0x1F;
+						BigInteger n = new BigInteger(1, string == 31 ? chunks(2) : bytes(argument(string)));
+						return new JsonPrimitive(tag == 2 ? n : BigInteger.ONE.negate().subtract(n));
+					}
+					JsonElement content = value(depth + 1);
+					if (tag == 4 && content.isJsonArray() && content.getAsJsonArray().size() == 2) {
+						JsonArray fraction = content.getAsJsonArray();
+						if (fraction.get(0).isJsonPrimitive() && fraction.get(0).getAsJsonPrimitive().isNumber()
+								&& fraction.get(1).isJsonPrimitive() && fraction.get(1).getAsJsonPrimitive().isNumber()) {
+							try {
+								return new JsonPrimitive(fraction.get(1).getAsBigDecimal()
+									.scaleByPowerOfTen(fraction.get(0).getAsInt()));
+							} catch (ArithmeticException e) {
+								// Exponent out of range: keep the [exponent, mantissa] pair
+							}
+						}
+					}
+					return content;
+				}
+				default:
+					return simple(info);
+			}
+		}
+
+		private JsonElement simple(int info) {
+			switch (info) {
+				case 20: return new JsonPrimitive(false);
+				case 21: return new JsonPrimitive(true);
+				case 22:
+				case 23: return JsonNull.INSTANCE;
+				case 24: u8(); return JsonNull.INSTANCE;
+				case 25: return number(halfToFloat(u16()));
+				case 26: return number(Float.intBitsToFloat((int) u32()));
+				case 27: return number(Double.longBitsToDouble(i64()));
+				default:
+					if (info < 20) return JsonNull.INSTANCE;
+					throw error("Invalid simple value " + info);
+			}
+		}
+
+		private long argument(int info) {
+			if (info < 24) return info;
+			switch (info) {
+				case 24: return u8();
+				case 25: return u16();
+				case 26: return u32();
+				case 27: return i64();
+				default: throw error("Invalid additional information " + info);
+			}
+		}
+
+		// Concatenated definite-length chunks of an indefinite byte or text string
+		private byte[] chunks(int major) {
+			byte[] result = new byte[0];
+			while (peek() != BREAK) {
+				int initial = u8();
+				if (initial >>> 5 != major || (initial & 0x1F) == 31) throw error("Invalid string chunk");
+				byte[] chunk = bytes(argument(initial & 0x1F));
+				result = Arrays.copyOf(result, result.length + chunk.length);
+				System.arraycopy(chunk, 0, result, result.length - chunk.length, chunk.length);
+			}
+			p++;
+			return result;
+		}
+
+		private int peek() {
+			if (p >= end) throw error("Unexpected end of data");
+			return in.get(p) & 0xFF;
+		}
+
+		private static float halfToFloat(int half) {
+			int exponent = (half >>> 10) & 0x1F;
+			int mantissa = half & 0x3FF;
+			float value;
+			if (exponent == 0) {
+				value = mantissa * 0x1p-24f;
+			} else if (exponent == 31) {
+				value = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+			} else {
+				value = (mantissa + 1024) * (float) Math.pow(2, exponent - 25);
+			}
+			return (half & 0x8000) != 0 ? -value : value;
+		}
+	}
+
+	private static final class MessagePackReader extends Reader {
+		private static final int TIMESTAMP = -1;
+
+		MessagePackReader(ByteBuffer in, BooleanSupplier cancelled) {
+			super(in, cancelled);
+		}
+
+		@Override
+		JsonElement value(int depth) {
+			enter(depth);
+			int b = u8();
+			if (b <= 0x7F) return new JsonPrimitive(b);
+			if (b >= 0xE0) return new JsonPrimitive((byte) b);
+			if (b <= 0x8F) return map(b & 0x0F, depth);
+			if (b <= 0x9F) return array(b & 0x0F, depth);
+			if (b <= 0xBF) return new JsonPrimitive(utf8(b & 0x1F));
+			switch (b) {
+				case 0xC0: return JsonNull.INSTANCE;
+				case 0xC2: return new JsonPrimitive(false);
+				case 0xC3: return new JsonPrimitive(true);
+				case 0xC4: return binary(bytes(u8()));
+				case 0xC5: return binary(bytes(u16()));
+				case 0xC6: return binary(bytes(u32()));
+				case 0xC7: return ext(u8());
+				case 0xC8: return ext(u16());
+				case 0xC9: return ext(u32());
+				case 0xCA: return number(Float.intBitsToFloat((int) u32()));
+				case 0xCB: return number(Double.longBitsToDouble(i64()));
+				case 0xCC: return new JsonPrimitive(u8());
+				case 0xCD: return new JsonPrimitive(u16());
+				case 0xCE: return new JsonPrimitive(u32());
+				case 0xCF: return unsigned(i64());
+				case 0xD0: return new JsonPrimitive((byte) u8());
+				case 0xD1: return new JsonPrimitive((short) u16());
+				case 0xD2: return new JsonPrimitive((int) u32());
+				case 0xD3: return new JsonPrimitive(i64());
+				case 0xD4: return ext(1);
+				case 0xD5: return ext(2);
+				case 0xD6: return ext(4);
+				case 0xD7: return ext(8);
+				case 0xD8: return ext(16);
+				case 0xD9: return new JsonPrimitive(utf8(u8()));
+				case 0xDA: return new JsonPrimitive(utf8(u16()));
+				case 0xDB: return new JsonPrimitive(utf8(u32()));
+				case 0xDC: return array(u16(), depth);
+				case 0xDD: return array(u32(), depth);
+				case 0xDE: return map(u16(), depth);
+				case 0xDF: return map(u32(), depth);
+				default: throw error(String.format("Invalid type byte 0x%02X", b));
+			}
+		}
+
+		private JsonArray array(long n, int depth) {
+			JsonArray array = new JsonArray();
+			for (int i = count(n, 1); i > 0; i--) array.add(value(depth + 1));
+			return array;
+		}
+
+		private JsonObject map(long n, int depth) {
+			JsonObject object = new JsonObject();
+			for (int i = count(n, 2); i > 0; i--) object.add(key(value(depth + 1)), value(depth + 1));
+			return object;
+		}
+
+		private JsonElement ext(long length) {
+			int type = (byte) u8();
+			if (type == TIMESTAMP && (length == 4 || length == 8 || length == 12)) {
+				long seconds;
+				long nanos = 0;
+				if (length == 4) {
+					seconds = u32();
+				} else if (length == 8) {
+					long v = i64();
+					nanos = v >>> 34;
+					seconds = v & 0x3FFFFFFFFL;
+				} else {
+					nanos = u32();
+					seconds = i64();
+				}
+				return new JsonPrimitive(Instant.ofEpochSecond(seconds, nanos).toString());
+			}
+			JsonObject ext = new JsonObject();
+			ext.addProperty("ext", type);
+			ext.add("data", binary(bytes(length)));
+			return ext;
+		}
+	}
+
+	/**
+	 * Smile as specified by FasterXML (format version 0): a ":)\n" header, then tokens whose
+	 * meaning depends on whether a value or an object key is expected. Short names and short
+	 * string values may be back-referenced by index when the header enables sharing.
+	 */
+	private static final class SmileReader extends Reader {
+		private static final int END_STRING = 0xFC;
+		private static final int END_CONTENT = 0xFF;
+		private static final int MAX_SHARED = 1024;
+
+		private final String[] names;
+		private final String[] values;
+		private int nameCount;
+		private int valueCount;
+
+		SmileReader(ByteBuffer in, BooleanSupplier cancelled) {
+			super(in, cancelled);
+			if (u8() != ':' || u8() != ')' || u8() != '\n') throw error("Missing Smile header");
+			int flags = u8();
+			if (flags >>> 4 != 0) throw error("Unsupported Smile version " + (flags >>> 4));
+			names = (flags & 0x01) != 0 ? new String[MAX_SHARED] : null;
+			values = (flags & 0x02) != 0 ? new String[MAX_SHARED] : null;
+		}
+
+		// Root values may be separated by repeated headers or followed by an end marker
+		@Override
+		boolean hasMore() {
+			while (p < end) {
+				int b = in.get(p) & 0xFF;
+				if (b == END_CONTENT) {
+					p++;
+				} else if (b == ':' && end - p >= 4 && in.get(p + 1) == ')' && in.get(p + 2) == '\n') {
+					p += 4;
+					nameCount = 0;
+					valueCount = 0;
+				} else {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		JsonElement value(int depth) {
+			enter(depth);
+			int b = u8();
+			switch (b >>> 5) {
+				case 0:
+					if (b == 0) break;
+					return new JsonPrimitive(sharedValue(b - 1));
+				case 1:
+					return literalOrNumber(b, depth);
+				case 2:
+				case 3:
+					// Tiny (1-32) and short (33-64) ASCII
+					return new JsonPrimitive(sharedValue(utf8((b & 0x3F) + 1)));
+				case 4:
+				case 5:
+					// Tiny (2-33) and short (34-65) Unicode
+					return new JsonPrimitive(sharedValue(utf8((b & 0x3F) + 2)));
+				case 6: {
+					int zigzag = b & 0x1F;
+					return new JsonPrimitive((zigzag >>> 1) ^ -(zigzag & 1));
+				}
+				default:
+					return misc(b, depth);
+			}
+			throw error(String.format("Invalid token 0x%02X", b));
+		}
+
+		private JsonElement literalOrNumber(int b, int depth) {
+			switch (b) {
+				case 0x20: return new JsonPrimitive("");
+				case 0x21: return JsonNull.INSTANCE;
+				case 0x22: return new JsonPrimitive(false);
+				case 0x23: return new JsonPrimitive(true);
+				case 0x24: {
+					int zigzag = (int) vint();
+					return new JsonPrimitive((zigzag >>> 1) ^ -(zigzag & 1));
+				}
+				case 0x25: {
+					long zigzag = vint();
+					return new JsonPrimitive((zigzag >>> 1) ^ -(zigzag & 1));
+				}
+				case 0x26: return new JsonPrimitive(bigInteger());
+				case 0x28: return number(Float.intBitsToFloat((int) sevenBitLong(5)));
+				case 0x29: return number(Double.longBitsToDouble(sevenBitLong(10)));
+				case 0x2A: {
+					int zigzag = (int) vint();
+					int scale = (zigzag >>> 1) ^ -(zigzag & 1);
+					return new JsonPrimitive(new BigDecimal(bigInteger(), scale));
+				}
+				default: throw error(String.format("Invalid token 0x%02X", b));
+			}
+		}
+
+		private JsonElement misc(int b, int depth) {
+			if (b >= 0xEC && b <= 0xEF) {
+				return new JsonPrimitive(sharedValue(((b & 0x03) << 8) | u8()));
+			}
+			switch (b) {
+				case 0xE0:
+				case 0xE4:
+					return new JsonPrimitive(terminated());
+				case 0xE8:
+					return binary(sevenBitBytes(vint()));
+				case 0xFD:
+					return binary(bytes(vint()));
+				case 0xF8: {
+					JsonArray array = new JsonArray();
+					while (peek() != 0xF9) array.add(value(depth + 1));
+					p++;
+					return array;
+				}
+				case 0xFA: {
+					JsonObject object = new JsonObject();
+					while (peek() != 0xFB) {
+						String name = name();
+						object.add(name, value(depth + 1));
+					}
+					p++;
+					return object;
+				}
+				default: throw error(String.format("Invalid token 0x%02X", b));
+			}
+		}
+
+		private String name() {
+			int b = u8();
+			if (b == 0x20) return "";
+			if (b >= 0x30 && b <= 0x33) return sharedName(((b & 0x03) << 8) | u8());
+			if (b == 0x34) return seenName(terminated());
+			if (b >= 0x40 && b <= 0x7F) return sharedName(b & 0x3F);
+			if (b >= 0x80 && b <= 0xBF) return seenName(utf8((b & 0x3F) + 1));
+			if (b >= 0xC0 && b <= 0xF7) return seenName(utf8((b & 0x3F) + 2));
+			throw error(String.format("Invalid key token 0x%02X", b));
+		}
+
+		private String sharedName(int index) {
+			if (names == null || index >= nameCount) throw error("Unknown shared name " + index);
+			return names[index];
+		}
+
+		private String seenName(String name) {
+			if (names != null) {
+				if (nameCount == MAX_SHARED) nameCount = 0;
+				names[nameCount++] = name;
+			}
+			return name;
+		}
+
+		private String sharedValue(int index) {
+			if (values == null || index >= valueCount) throw error("Unknown shared value " + index);
+			return values[index];
+		}
+
+		// Tiny and short strings are shared when the header enables it; callers pass those only
+		private String sharedValue(String value) {
+			if (values != null) {
+				if (valueCount == MAX_SHARED) valueCount = 0;
+				values[valueCount++] = value;
+			}
+			return value;
+		}
+
+		// Long strings and names run up to a 0xFC marker, which UTF-8 never contains
+		private String terminated() {
+			int start = p;
+			while (peek() != END_STRING) p++;
+			int length = p - start;
+			p = start;
+			String s = utf8(length);
+			p++;
+			return s;
+		}
+
+		// Unsigned VInt: 7 bits per byte, the last byte has its high bit set and carries 6 bits
+		private long vint() {
+			long value = 0;
+			for (int i = 0; i < 10; i++) {
+				int b = u8();
+				if ((b & 0x80) != 0) return (value << 6) | (b & 0x3F);
+				value = (value << 7) | b;
+			}
+			throw error("VInt too long");
+		}
+
+		// Two's-complement magnitude in 7-bit encoding, preceded by its length in bytes
+		private BigInteger bigInteger() {
+			byte[] bytes = sevenBitBytes(vint());
+			if (bytes.length == 0) throw error("Empty big integer");
+			return new BigInteger(bytes);
+		}
+
+		private long sevenBitLong(int groups) {
+			long value = 0;
+			for (int i = 0; i < groups; i++) {
+				value = (value << 7) | (u8() & 0x7F);
+			}
+			return value;
+		}
+
+		// Raw bytes packed 7 bits per byte: 8 bytes per 7, then the remainder right-aligned
+		private byte[] sevenBitBytes(long length) {
+			int n = count(length, 1);
+			need(n + (n + 6) / 7);
+			byte[] out = new byte[n];
+			int o = 0;
+			for (; o + 7 <= n; o += 7) {
+				long chunk = sevenBitLong(8);
+				for (int i = 6; i >= 0; i--) {
+					out[o + 6 - i] = (byte) (chunk >>> (8 * i));
+				}
+			}
+			int left = n - o;
+			if (left > 0) {
+				int value = u8();
+				for (int i = 1; i < left; i++) {
+					value = (value << 7) | u8();
+					out[o++] = (byte) (value >> (7 - i));
+				}
+				value <<= left;
+				out[o] = (byte) (value + u8());
+			}
+			return out;
+		}
+
+		private int peek() {
+			if (p >= end) throw error("Unexpected end of data");
+			return in.get(p) & 0xFF;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.jasypt.ui.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass extractor for JSON blocks embedded in free-form text such as logs.
+ * String and escape state is tracked once, nested {..}/[..] pairs are matched with a stack,
+ * and only the outermost balanced spans are emitted, in text order. Runs in O(n) even when
+ * the text is full of unbalanced braces.
+ */
+final class JsonBlockScanner {
+
+	private JsonBlockScanner() {
+	}
+
+	/**
+	 * Returns the outermost balanced spans as {start, end} pairs (end exclusive), in text order.
+	 */
+	static List<int[]> outermostSpans(CharSequence text) {
+		int n = text.length();
+		int[] openPos = new int[64];
+		// Per stack entry the entry below it with the same bracket, and the top one of each kind,
+		// so a closer finds its opener without scanning past openers of the other kind
+		int[] belowSame = new int[64];
+		int topBrace = -1;
+		int topBracket = -1;
+		int depth = 0;
+		boolean inStr = false;
+		boolean esc = false;
+
+		// Completed spans; a newly closed span replaces every recorded span it contains
+		int[] starts = new int[64];
+		int[] ends = new int[64];
+		int count = 0;
+
+		for (int i = 0; i < n; i++) {
+			char ch = text.charAt(i);
+			if (inStr) {
+				if (esc) {
+					esc = false;
+				} else if (ch == '\\') {
+					esc = true;
+				} else if (ch == '"') {
+					inStr = false;
+				} else if (ch == '\n') {
+					// JSON strings cannot span lines: drop the open blocks instead of swallowing the rest of the log
+					inStr = false;
+					depth = 0;
+					topBrace = -1;
+					topBracket = -1;
+				}
+				continue;
+			}
+
+			if (ch == '{' || ch == '[') {
+				if (depth == openPos.length) {
+					openPos = Arrays.copyOf(openPos, depth * 2);
+					belowSame = Arrays.copyOf(belowSame, depth * 2);
+				}
+				openPos[depth] = i;
+				if (ch == '{') {
+					belowSame[depth] = topBrace;
+					topBrace = depth;
+				} else {
+					belowSame[depth] = topBracket;
+					topBracket = depth;
+				}
+				depth++;
+			} else if (ch == '}' || ch == ']') {
+				int match = ch == '}' ? topBrace : topBracket;
+				if (match < 0) continue; // stray closer
+
+				// Openers above the match never closed; they are abandoned. Each entry is
+				// dropped from the other kind's chain once, so this stays O(n) overall.
+				depth = match;
+				if (ch == '}') {
+					topBrace = belowSame[match];
+					while (topBracket >= match) topBracket = belowSame[topBracket];
+				} else {
+					topBracket = belowSame[match];
+					while (topBrace >= match) topBrace = belowSame[topBrace];
+				}
+				int start = openPos[match];
+				while (count > 0 && starts[count - 1] >= start) count--;
+				if (count == starts.length) {
+					starts = Arrays.copyOf(starts, count * 2);
+					ends = Arrays.copyOf(ends, count * 2);
+				}
+				starts[count] = start;
+				ends[count] = i + 1;
+				count++;
+			} else if (ch == '"' && depth > 0) {
+				inStr = true;
+			}
+		}
+
+		List<int[]> spans = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			spans.add(new int[]{starts[i], ends[i]});
+		}
+		return spans;
+	}
+
+	/**
+	 * Returns the text of each outermost span, dropping exact duplicates while preserving order.
+	 * Duplicates are detected by a content hash and confirmed with a region compare.
+	 */
+	static List<String> uniqueBlocks(String text) {
+		List<int[]> spans = outermostSpans(text);
+		List<String> blocks = new ArrayList<>(spans.size());
+		Map<Long, List<int[]>> seen = new HashMap<>();
+
+		for (int[] span : spans) {
+			int start = span[0];
+			int len = span[1] - start;
+			long key = hash(text, start, span[1]) * 31 + len;
+			List<int[]> sameHash = seen.computeIfAbsent(key, k -> new ArrayList<>(1));
+
+			boolean duplicate = false;
+			for (int[] other : sameHash) {
+				if (other[1] - other[0] == len && text.regionMatches(start, text, other[0], len)) {
+					duplicate = true;
+					break;
+				}
+			}
+			if (!duplicate) {
+				sameHash.add(span);
+				blocks.add(text.substring(start, span[1]));
+			}
+		}
+		return blocks;
+	}
+
+	// 64-bit FNV-1a over the UTF-16 code units of [start, end)
+	static long hash(CharSequence s, int start, int end) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = start; i < end; i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+}
@@ -0,0 +1,618 @@
+package com.jasypt.ui.tools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Structural diff of two JSON tapes for the JSON Diff tool. Objects are compared by key
+ * (removed, added, then common keys in sorted order), arrays as set by {@link ArrayMode}:
+ * by index, by an identity key, or by a shortest-edit alignment. Rows go into a
+ * {@link JsonDiffRows} store as they are found, so a caller can show them before the walk is
+ * over; a path is only added to the store once a row under it needs it. Branches whose
+ * subtree hashes match are skipped without being walked.
+ *
+ * With a pool set, the children of large containers are diffed in batches by fork/join tasks,
+ * each into a store of its own. Every store records where a forked batch's rows belong, and
+ * the stores are merged into the result in that order, so the rows are exactly those of the
+ * sequential walk.
+ */
+final class JsonDiffEngine {
+
+	interface Progress {
+		// Called every few thousand paths or rows from the diffing thread
+		void visited(long paths);
+	}
+
+	enum ArrayMode {
+		// Element i against element i
+		INDEX("By index"),
+		// Elements paired by the value of an identity member such as "id" (hash join); arrays
+		// without a usable key are aligned as with LCS
+		KEY("By key"),
+		// Myers shortest-edit alignment over element hashes; unaligned equal elements are moves
+		LCS("By LCS");
+
+		private final String label;
+
+		ArrayMode(String label) {
+			this.label = label;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	private static final int REPORT_EVERY = 4096;
+	// Inserts plus deletes the LCS alignment may find in one array before leaving the rest unaligned
+	private static final int MAX_EDITS = 2000;
+	// Identity members tried first when detecting an array's key
+	private static final String[] PREFERRED_KEYS = {"id", "_id", "uuid", "key", "name"};
+	private static final int MAX_KEY_CANDIDATES = 8;
+	// Tokens (both sides) a container must span before its children are split into tasks, and
+	// roughly the tokens one task is given
+	private static final int SPLIT_TOKENS = 1 << 14;
+	// Path index of a segment written as is
+	private static final int SELECTOR = -1;
+
+	private final JsonTape left;
+	private final JsonTape right;
+	private final JsonDiffRows rows;
+	private final BooleanSupplier cancelled;
+	private final Progress progress;
+	// Paths visited by all walkers of this diff; each adds its count in steps
+	private final LongAdder walked;
+	private long visited;
+	private int added;
+	// Subtree hashes of both tapes, for pruning and for aligning arrays
+	private long[] leftHashes;
+	private long[] rightHashes;
+	private boolean prune = true;
+	private ArrayMode arrayMode = ArrayMode.INDEX;
+	private String arrayKey;
+	private ForkJoinPool pool;
+
+	// Children waiting to be forked as one task, while a large container is walked
+	private Batch batch;
+	// Forked batches, in the order their rows belong among this walker's rows
+	private final List<Splice> splices = new ArrayList<>();
+
+	// Segments of the path being visited; an id is -1 until a row needs the path
+	private String[] stackKeys = new String[64];
+	private int[] stackIndices = new int[64];
+	private int[] stackIds = new int[64];
+
+	JsonDiffEngine(JsonTape left, JsonTape right, BooleanSupplier cancelled, Progress progress) {
+		this.left = left;
+		this.right = right;
+		this.rows = new JsonDiffRows(left, right);
+		this.cancelled = cancelled;
+		this.progress = progress;
+		this.walked = new LongAdder();
+		stackIds[0] = JsonDiffRows.ROOT;
+	}
+
+	// A walker for one task of a parallel diff, with its own store and path stack
+	private JsonDiffEngine(JsonDiffEngine parent) {
+		this.left = parent.left;
+		this.right = parent.right;
+		this.rows = new JsonDiffRows(left, right);
+		this.cancelled = parent.cancelled;
+		this.progress = parent.progress;
+		this.walked = parent.walked;
+		this.leftHashes = parent.leftHashes;
+		this.rightHashes = parent.rightHashes;
+		this.prune = parent.prune;
+		this.arrayMode = parent.arrayMode;
+		this.arrayKey = parent.arrayKey;
+		this.pool = parent.pool;
+		stackIds[0] = JsonDiffRows.ROOT;
+	}
+
+	// The store rows are added to; safe to read from another thread while the diff runs
+	JsonDiffRows rows() {
+		return rows;
+	}
+
+	/**
+	 * Diffs the two documents from their roots and returns the number of differences.
+	 *
+	 * @throws CancellationException once {@code cancelled} reports true
+	 */
+	int run() {
+		if (prune || arrayMode != ArrayMode.INDEX) {
+			if (pool != null) {
+				ForkJoinTask<long[]> leftTask = pool.submit(() -> left.hashes(cancelled));
+				rightHashes = right.hashes(cancelled);
+				leftHashes = leftTask.join();
+			} else {
+				leftHashes = left.hashes(cancelled);
+				rightHashes = right.hashes(cancelled);
+			}
+		}
+		if (pool == null) {
+			diff(left.root(), right.root(), 0);
+			walked.add(visited & (REPORT_EVERY - 1));
+		} else {
+			DiffTask root = new DiffTask(new JsonDiffEngine(this), null);
+			pool.invoke(root);
+			merge(root.walker, JsonDiffRows.ROOT);
+		}
+		return rows.size();
+	}
+
+	// Walks every common path instead of skipping equal subtrees; for comparisons in JsonBenchmarks
+	JsonDiffEngine withoutPruning() {
+		prune = false;
+		return this;
+	}
+
+	// How arrays are compared; with KEY, a null key is detected per array
+	JsonDiffEngine arrays(ArrayMode mode, String key) {
+		arrayMode = mode;
+		arrayKey = key;
+		return this;
+	}
+
+	// Splits the walk over this pool; the rows come out as without it
+	JsonDiffEngine parallel(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	long visited() {
+		return walked.sum();
+	}
+
+	private void diff(int a, int b, int depth) {
+		if ((++visited & (REPORT_EVERY - 1)) == 0) {
+			walked.add(REPORT_EVERY);
+			checkCancelled();
+			progress.visited(walked.sum());
+		}
+
+		// Equal hashes mean equal subtrees
+		if (equal(a, b)) {
+			return;
+		}
+
+		// Type change (object, array, null and primitive are distinct kinds)
+		if (kind(left.type(a)) != kind(right.type(b))) {
+			add(JsonDiffRows.TYPE, pathId(depth), a, b);
+			return;
+		}
+
+		if (left.type(a) == JsonTape.OBJECT) {
+			Map<String, Integer> aObj = members(left, a);
+			Map<String, Integer> bObj = members(right, b);
+
+			Set<String> removed = new TreeSet<>(aObj.keySet());
+			removed.removeAll(bObj.keySet());
+			for (String k : removed) {
+				add(JsonDiffRows.REMOVED, rows.addPath(pathId(depth), k, 0), aObj.get(k), -1);
+			}
+
+			Set<String> added = new TreeSet<>(bObj.keySet());
+			added.removeAll(aObj.keySet());
+			for (String k : added) {
+				add(JsonDiffRows.ADDED, rows.addPath(pathId(depth), k, 0), -1, bObj.get(k));
+			}
+
+			Set<String> common = new TreeSet<>(aObj.keySet());
+			common.retainAll(bObj.keySet());
+			boolean split = openBatch(a, b, depth);
+			for (String k : common) {
+				push(depth + 1, k, 0);
+				descend(aObj.get(k), bObj.get(k), depth + 1);
+			}
+			if (split) closeBatch();
+			return;
+		}
+
+		if (left.type(a) == JsonTape.ARRAY) {
+			boolean split = openBatch(a, b, depth);
+			diffArrays(a, b, depth);
+			if (split) closeBatch();
+			return;
+		}
+
+		if (!JsonTape.scalarEquals(left, a, right, b)) {
+			add(JsonDiffRows.CHANGED, pathId(depth), a, b);
+		}
+	}
+
+	private void diffArrays(int a, int b, int depth) {
+		if (arrayMode == ArrayMode.INDEX) {
+			int ai = left.firstChild(a);
+			int bi = right.firstChild(b);
+			for (int i = 0; ai >= 0 || bi >= 0; i++) {
+				if (ai < 0) {
+					add(JsonDiffRows.ADDED, rows.addPath(pathId(depth), null, i), -1, bi);
+				} else if (bi < 0) {
+					add(JsonDiffRows.REMOVED, rows.addPath(pathId(depth), null, i), ai, -1);
+				} else {
+					push(depth + 1, null, i);
+					descend(ai, bi, depth + 1);
+				}
+				if (ai >= 0) ai = left.nextChild(a, ai);
+				if (bi >= 0) bi = right.nextChild(b, bi);
+			}
+			return;
+		}
+		int[] leftItems = items(left, a);
+		int[] rightItems = items(right, b);
+		if (arrayMode == ArrayMode.KEY) {
+			String key = arrayKey != null ? arrayKey : detectKey(leftItems, rightItems);
+			if (key != null && diffByKey(leftItems, rightItems, key, depth)) return;
+		}
+		diffAligned(leftItems, rightItems, depth);
+	}
+
+	/**
+	 * Pairs elements by identity and reports the unpaired ones as removed or added. Paired
+	 * elements out of order against the longest run that kept its order are reported as moved,
+	 * and all pairs are diffed. Returns false, having added nothing, when the key is missing
+	 * from an element or repeats on one side.
+	 */
+	private boolean diffByKey(int[] leftItems, int[] rightItems, String key, int depth) {
+		String[] leftIds = ids(left, leftItems, key);
+		String[] rightIds = leftIds == null ? null : ids(right, rightItems, key);
+		if (rightIds == null) return false;
+		Map<String, Integer> rightIndex = new HashMap<>(rightItems.length * 2);
+		for (int j = 0; j < rightIds.length; j++) {
+			if (rightIndex.put(rightIds[j], j) != null) return false;
+		}
+		Set<String> seen = new HashSet<>(leftItems.length * 2);
+		int[] match = new int[leftItems.length];
+		boolean[] paired = new boolean[rightItems.length];
+		for (int i = 0; i < leftIds.length; i++) {
+			if (!seen.add(leftIds[i])) return false;
+			Integer j = rightIndex.get(leftIds[i]);
+			match[i] = j != null ? j : -1;
+			if (j != null) paired[j] = true;
+		}
+
+		boolean[] inOrder = JsonArrayAlignment.longestIncreasing(match);
+		for (int i = 0; i < leftItems.length; i++) {
+			String segment = "[" + key + "=" + leftIds[i].substring(1) + "]";
+			if (match[i] < 0) {
+				add(JsonDiffRows.REMOVED, rows.addSelectorPath(pathId(depth), segment), leftItems[i], -1);
+				continue;
+			}
+			if (!inOrder[i]) {
+				add(JsonDiffRows.MOVED, rows.addSelectorPath(pathId(depth), segment), i, match[i]);
+			}
+			push(depth + 1, segment, SELECTOR);
+			descend(leftItems[i], rightItems[match[i]], depth + 1);
+		}
+		for (int j = 0; j < rightItems.length; j++) {
+			if (!paired[j]) {
+				String segment = "[" + key + "=" + rightIds[j].substring(1) + "]";
+				add(JsonDiffRows.ADDED, rows.addSelectorPath(pathId(depth), segment), -1, rightItems[j]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Aligns the arrays by element hash. Between aligned (equal) elements, an element whose
+	 * exact copy was inserted elsewhere is a move; the other removed and inserted elements are
+	 * paired up in order and diffed, and the rest are removed or added.
+	 */
+	private void diffAligned(int[] leftItems, int[] rightItems, int depth) {
+		long[] leftHash = new long[leftItems.length];
+		for (int i = 0; i < leftItems.length; i++) leftHash[i] = leftHashes[leftItems[i]];
+		long[] rightHash = new long[rightItems.length];
+		for (int j = 0; j < rightItems.length; j++) rightHash[j] = rightHashes[rightItems[j]];
+		int[] match = JsonArrayAlignment.align(leftHash, rightHash, MAX_EDITS);
+
+		boolean[] aligned = new boolean[rightItems.length];
+		for (int j : match) {
+			if (j >= 0) aligned[j] = true;
+		}
+		// Moves: unaligned elements with an unaligned exact copy on the other side
+		Map<Long, ArrayDeque<Integer>> removedByHash = new HashMap<>();
+		for (int i = 0; i < leftItems.length; i++) {
+			if (match[i] < 0 && leftHash[i] != JsonSubtreeHash.NONE) {
+				removedByHash.computeIfAbsent(leftHash[i], h -> new ArrayDeque<>()).add(i);
+			}
+		}
+		int[] movedTo = new int[leftItems.length];
+		Arrays.fill(movedTo, -1);
+		boolean[] movedHere = new boolean[rightItems.length];
+		for (int j = 0; j < rightItems.length && !removedByHash.isEmpty(); j++) {
+			ArrayDeque<Integer> from = aligned[j] ? null : removedByHash.get(rightHash[j]);
+			if (from == null || from.isEmpty()) continue;
+			movedTo[from.poll()] = j;
+			movedHere[j] = true;
+		}
+
+		int i = 0;
+		int j = 0;
+		while (i < leftItems.length || j < rightItems.length) {
+			if (i < leftItems.length && match[i] >= 0 && match[i] == j) {
+				i++;
+				j++;
+				continue;
+			}
+			// A block of unaligned elements on both sides, up to the next aligned pair
+			int pendingLeft = i;
+			int pendingRight = j;
+			while (i < leftItems.length && match[i] < 0) i++;
+			while (j < rightItems.length && !aligned[j]) j++;
+			int r = pendingRight;
+			for (int l = pendingLeft; l < i; l++) {
+				if (movedTo[l] >= 0) {
+					add(JsonDiffRows.MOVED, rows.addPath(pathId(depth), null, l), l, movedTo[l]);
+					continue;
+				}
+				while (r < j && movedHere[r]) r++;
+				if (r < j) {
+					push(depth + 1, l == r ? null : "[" + l + "→" + r + "]", l == r ? l : SELECTOR);
+					descend(leftItems[l], rightItems[r], depth + 1);
+					r++;
+				} else {
+					add(JsonDiffRows.REMOVED, rows.addPath(pathId(depth), null, l), leftItems[l], -1);
+				}
+			}
+			for (; r < j; r++) {
+				if (!movedHere[r]) {
+					add(JsonDiffRows.ADDED, rows.addPath(pathId(depth), null, r), -1, rightItems[r]);
+				}
+			}
+		}
+	}
+
+	// Tape positions of an array's elements
+	private static int[] items(JsonTape tape, int array) {
+		int[] items = new int[tape.childCount(array)];
+		int n = 0;
+		for (int c = tape.firstChild(array); c >= 0; c = tape.nextChild(array, c)) items[n++] = c;
+		return items;
+	}
+
+	/**
+	 * The first candidate member that every element on both sides has as a scalar, with no
+	 * value repeated on either side: the preferred names, then the first element's members.
+	 */
+	private String detectKey(int[] leftItems, int[] rightItems) {
+		int first = leftItems.length > 0 ? leftItems[0] : rightItems.length > 0 ? rightItems[0] : -1;
+		JsonTape tape = leftItems.length > 0 ? left : right;
+		if (first < 0 || tape.type(first) != JsonTape.OBJECT) return null;
+		Set<String> candidates = new LinkedHashSet<>();
+		Map<String, Integer> members = members(tape, first);
+		for (String name : PREFERRED_KEYS) {
+			if (members.containsKey(name)) candidates.add(name);
+		}
+		for (int k = tape.firstChild(first); k >= 0 && candidates.size() < MAX_KEY_CANDIDATES; k = tape.nextChild(first, k)) {
+			candidates.add(tape.string(k));
+		}
+		for (String key : candidates) {
+			if (unique(ids(left, leftItems, key)) && unique(ids(right, rightItems, key))) return key;
+		}
+		return null;
+	}
+
+	/**
+	 * Identity of each element: the type and text of its scalar member {@code key}, or null
+	 * when an element is not an object or lacks such a member.
+	 */
+	private static String[] ids(JsonTape tape, int[] items, String key) {
+		String[] ids = new String[items.length];
+		for (int i = 0; i < items.length; i++) {
+			int item = items[i];
+			if (tape.type(item) != JsonTape.OBJECT) return null;
+			int value = -1;
+			for (int k = tape.firstChild(item); k >= 0; k = tape.nextChild(item, k)) {
+				if (tape.string(k).equals(key)) value = k + 1;
+			}
+			if (value < 0 || tape.isContainer(value)) return null;
+			ids[i] = tape.type(value) + tape.scalarText(value);
+		}
+		return ids;
+	}
+
+	private static boolean unique(String[] ids) {
+		if (ids == null) return false;
+		Set<String> seen = new HashSet<>(ids.length * 2);
+		for (String id : ids) {
+			if (!seen.add(id)) return false;
+		}
+		return true;
+	}
+
+	private void push(int depth, String key, int index) {
+		if (depth == stackIds.length) {
+			stackKeys = Arrays.copyOf(stackKeys, depth * 2);
+			stackIndices = Arrays.copyOf(stackIndices, depth * 2);
+			stackIds = Arrays.copyOf(stackIds, depth * 2);
+		}
+		stackKeys[depth] = key;
+		stackIndices[depth] = index;
+		stackIds[depth] = -1;
+	}
+
+	// Id of the path at depth, adding it and any missing ancestors to the store
+	private int pathId(int depth) {
+		int known = depth;
+		while (stackIds[known] < 0) known--;
+		for (int d = known + 1; d <= depth; d++) {
+			stackIds[d] = stackIndices[d] == SELECTOR
+				? rows.addSelectorPath(stackIds[d - 1], stackKeys[d])
+				: rows.addPath(stackIds[d - 1], stackKeys[d], stackIndices[d]);
+		}
+		return stackIds[depth];
+	}
+
+	private void add(byte kind, int path, int leftPos, int rightPos) {
+		// Children batched so far come before this row
+		if (batch != null && batch.count > 0) forkBatch();
+		rows.add(kind, path, leftPos, rightPos);
+		// Long runs of added or removed members visit no paths, so report here too
+		if ((++added & (REPORT_EVERY - 1)) == 0) {
+			checkCancelled();
+			progress.visited(walked.sum());
+		}
+	}
+
+	private boolean equal(int a, int b) {
+		return prune && leftHashes[a] == rightHashes[b] && leftHashes[a] != JsonSubtreeHash.NONE;
+	}
+
+	// Starts batching the children of a large container; false when they are walked here
+	private boolean openBatch(int a, int b, int depth) {
+		if (pool == null || batch != null || left.skip(a) - a + right.skip(b) - b < SPLIT_TOKENS) return false;
+		batch = new Batch(depth);
+		return true;
+	}
+
+	private void closeBatch() {
+		if (batch.count > 0) forkBatch();
+		batch = null;
+	}
+
+	// Diffs a child pair pushed at depth, now or as part of the open batch
+	private void descend(int a, int b, int depth) {
+		if (batch == null || equal(a, b)) {
+			diff(a, b, depth);
+			return;
+		}
+		batch.add(stackKeys[depth], stackIndices[depth], a, b, left.skip(a) - a + right.skip(b) - b);
+		if (batch.tokens >= SPLIT_TOKENS) forkBatch();
+	}
+
+	private void forkBatch() {
+		Batch full = batch;
+		batch = new Batch(full.depth);
+		DiffTask task = new DiffTask(new JsonDiffEngine(this), full);
+		task.fork();
+		splices.add(new Splice(rows.size(), pathId(full.depth), task));
+	}
+
+	/**
+	 * Copies a finished walker's rows into this diff's store with its root at path base,
+	 * each forked batch's rows (joined as they are reached) at the place it was forked.
+	 */
+	private void merge(JsonDiffEngine walker, int base) {
+		int[] pathMap = rows.copyPaths(walker.rows, base);
+		int from = 0;
+		for (int k = 0; k < walker.splices.size(); k++) {
+			Splice splice = walker.splices.get(k);
+			rows.copyRows(walker.rows, from, splice.row, pathMap);
+			checkCancelled();
+			splice.task.join();
+			merge(splice.task.walker, pathMap[splice.path]);
+			// Let the merged store go
+			walker.splices.set(k, null);
+			from = splice.row;
+		}
+		rows.copyRows(walker.rows, from, walker.rows.size(), pathMap);
+	}
+
+	private void checkCancelled() {
+		if (cancelled.getAsBoolean()) throw new CancellationException();
+	}
+
+	// Object members by name; a repeated key keeps its last value, as in Gson
+	private static Map<String, Integer> members(JsonTape tape, int obj) {
+		Map<String, Integer> members = new HashMap<>();
+		for (int k = tape.firstChild(obj); k >= 0; k = tape.nextChild(obj, k)) {
+			members.put(tape.string(k), k + 1);
+		}
+		return members;
+	}
+
+	// Child pairs of one container, each with the path segment it was pushed with
+	private static final class Batch {
+		final int depth;
+		int count;
+		long tokens;
+		String[] keys = new String[16];
+		int[] indices = new int[16];
+		int[] lefts = new int[16];
+		int[] rights = new int[16];
+
+		Batch(int depth) {
+			this.depth = depth;
+		}
+
+		void add(String key, int index, int a, int b, int span) {
+			if (count == keys.length) {
+				keys = Arrays.copyOf(keys, count * 2);
+				indices = Arrays.copyOf(indices, count * 2);
+				lefts = Arrays.copyOf(lefts, count * 2);
+				rights = Arrays.copyOf(rights, count * 2);
+			}
+			keys[count] = key;
+			indices[count] = index;
+			lefts[count] = a;
+			rights[count] = b;
+			count++;
+			tokens += span;
+		}
+	}
+
+	// A forked batch whose rows go before row number row of the forking walker, under path
+	private static final class Splice {
+		final int row;
+		final int path;
+		final DiffTask task;
+
+		Splice(int row, int path, DiffTask task) {
+			this.row = row;
+			this.path = path;
+			this.task = task;
+		}
+	}
+
+	// Walks a batch, or the whole document when batch is null, with a walker of its own
+	private static final class DiffTask extends RecursiveAction {
+		final JsonDiffEngine walker;
+		private final Batch batch;
+
+		DiffTask(JsonDiffEngine walker, Batch batch) {
+			this.walker = walker;
+			this.batch = batch;
+		}
+
+		@Override
+		protected void compute() {
+			// A task may visit fewer paths than REPORT_EVERY, so check and report per task too
+			walker.checkCancelled();
+			if (batch == null) {
+				walker.diff(walker.left.root(), walker.right.root(), 0);
+			} else {
+				for (int i = 0; i < batch.count; i++) {
+					walker.push(1, batch.keys[i], batch.indices[i]);
+					walker.diff(batch.lefts[i], batch.rights[i], 1);
+				}
+			}
+			walker.walked.add(walker.visited & (REPORT_EVERY - 1));
+			walker.progress.visited(walker.walked.sum());
+		}
+	}
+
+	private static int kind(char type) {
+		switch (type) {
+			case JsonTape.OBJECT: return 0;
+			case JsonTape.ARRAY: return 1;
+			case JsonTape.NULL: return 2;
+			default: return 3;
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package com.jasypt.ui.tools;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact store of JSON diff results: per row a change kind byte, a path id and the tape
+ * positions of the two values. Paths are kept as a table of (parent, segment) entries with
+ * interned keys, and both the path text and the shown values are only built for rows that
+ * are displayed. Rows are appended by the diffing thread while the EDT reads them.
+ */
+final class JsonDiffRows {
+
+	static final byte ADDED = 0;
+	static final byte REMOVED = 1;
+	static final byte CHANGED = 2;
+	static final byte TYPE = 3;
+	// An array element found at another index; the positions are the two indices
+	static final byte MOVED = 4;
+
+	private static final String[] CHANGE_NAMES = {"added", "removed", "changed", "type", "moved"};
+	private static final int VALUE_LIMIT = 160;
+
+	// Path id of the document root, "$"
+	static final int ROOT = 0;
+	private static final int SELECTOR = -1;
+
+	private final JsonTape left;
+	private final JsonTape right;
+
+	private byte[] kinds = new byte[1024];
+	private int[] rowPaths = new int[1024];
+	private int[] lefts = new int[1024];
+	private int[] rights = new int[1024];
+	private int size;
+
+	// Path table: a segment is an object key, an array index when the key is null, or with
+	// index SELECTOR a segment written as is (e.g. [id=42])
+	private int[] parents = new int[1024];
+	private String[] keys = new String[1024];
+	private int[] indices = new int[1024];
+	private String[] texts = new String[1024];
+	private int pathCount = 1;
+	private final Map<String, String> interned = new HashMap<>();
+
+	JsonDiffRows(JsonTape left, JsonTape right) {
+		this.left = left;
+		this.right = right;
+		texts[ROOT] = "$";
+	}
+
+	static String changeName(byte kind) {
+		return CHANGE_NAMES[kind];
+	}
+
+	// Adds the path parent.key, or parent[index] when key is null, and returns its id
+	synchronized int addPath(int parent, String key, int index) {
+		return appendPath(parent, key == null ? null : interned.computeIfAbsent(key, k -> k), index);
+	}
+
+	// Adds the path parent followed by segment, written as is, and returns its id
+	synchronized int addSelectorPath(int parent, String segment) {
+		return appendPath(parent, segment, SELECTOR);
+	}
+
+	private int appendPath(int parent, String key, int index) {
+		if (pathCount == parents.length) {
+			int n = pathCount * 2;
+			parents = Arrays.copyOf(parents, n);
+			keys = Arrays.copyOf(keys, n);
+			indices = Arrays.copyOf(indices, n);
+			texts = Arrays.copyOf(texts, n);
+		}
+		parents[pathCount] = parent;
+		keys[pathCount] = key;
+		indices[pathCount] = index;
+		return pathCount++;
+	}
+
+	// Adds a row; a position is -1 on the side where the value is absent
+	synchronized void add(byte kind, int path, int leftPos, int rightPos) {
+		if (size == kinds.length) {
+			int n = size * 2;
+			kinds = Arrays.copyOf(kinds, n);
+			rowPaths = Arrays.copyOf(rowPaths, n);
+			lefts = Arrays.copyOf(lefts, n);
+			rights = Arrays.copyOf(rights, n);
+		}
+		kinds[size] = kind;
+		rowPaths[size] = path;
+		lefts[size] = leftPos;
+		rights[size] = rightPos;
+		size++;
+	}
+
+	/**
+	 * Adds every path of part, a store of the same two tapes, with part's root standing for
+	 * path base here. Returns the new id of each of part's path ids.
+	 */
+	synchronized int[] copyPaths(JsonDiffRows part, int base) {
+		int[] map = new int[part.pathCount];
+		map[ROOT] = base;
+		for (int p = ROOT + 1; p < part.pathCount; p++) {
+			String key = part.keys[p];
+			if (key != null && part.indices[p] != SELECTOR) key = interned.computeIfAbsent(key, k -> k);
+			map[p] = appendPath(map[part.parents[p]], key, part.indices[p]);
+		}
+		return map;
+	}
+
+	// Adds part's rows from, inclusive, to to, exclusive, their paths mapped by copyPaths
+	synchronized void copyRows(JsonDiffRows part, int from, int to, int[] pathMap) {
+		for (int r = from; r < to; r++) {
+			add(part.kinds[r], pathMap[part.rowPaths[r]], part.lefts[r], part.rights[r]);
+		}
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	synchronized byte kind(int row) {
+		return kinds[row];
+	}
+
+	synchronized String path(int row) {
+		return pathText(rowPaths[row]);
+	}
+
+	synchronized String left(int row) {
+		return value(left, lefts[row], kinds[row]);
+	}
+
+	synchronized String right(int row) {
+		return value(right, rights[row], kinds[row]);
+	}
+
+	/**
+	 * The row's path as an RFC 6901 JSON Pointer ("" for the root), or null when the path has a
+	 * segment that is neither a key nor an index, as in keyed and aligned array diffs.
+	 */
+	synchronized String pointer(int row) {
+		StringBuilder sb = new StringBuilder();
+		return appendPointer(rowPaths[row], sb) ? sb.toString() : null;
+	}
+
+	private boolean appendPointer(int id, StringBuilder sb) {
+		if (id == ROOT) return true;
+		if (indices[id] == SELECTOR || !appendPointer(parents[id], sb)) return false;
+		sb.append('/');
+		if (keys[id] == null) {
+			sb.append(indices[id]);
+		} else {
+			for (int k = 0; k < keys[id].length(); k++) {
+				char c = keys[id].charAt(k);
+				if (c == '~') sb.append("~0");
+				else if (c == '/') sb.append("~1");
+				else sb.append(c);
+			}
+		}
+		return true;
+	}
+
+	// Index of the array element a row is about, or -1 when its last segment is not an index
+	synchronized int elementIndex(int row) {
+		int id = rowPaths[row];
+		return id != ROOT && keys[id] == null ? indices[id] : -1;
+	}
+
+	synchronized int parentPath(int row) {
+		return parents[rowPaths[row]];
+	}
+
+	// Appends a row's whole value on one side as compact JSON, unlike the shortened left()/right()
+	synchronized void writeValue(int row, boolean rightSide, StringBuilder out) {
+		if (rightSide) {
+			right.writeCompact(rights[row], out, Integer.MAX_VALUE);
+		} else {
+			left.writeCompact(lefts[row], out, Integer.MAX_VALUE);
+		}
+	}
+
+	// Built on first use and kept, so scrolling back over a row does not rebuild its path
+	private String pathText(int id) {
+		String text = texts[id];
+		if (text == null) {
+			String parent = pathText(parents[id]);
+			if (keys[id] == null) {
+				text = parent + "[" + indices[id] + "]";
+			} else {
+				text = indices[id] == SELECTOR ? parent + keys[id] : parent + "." + keys[id];
+			}
+			texts[id] = text;
+		}
+		return text;
+	}
+
+	private static String value(JsonTape tape, int pos, byte kind) {
+		if (pos < 0) return "";
+		if (kind == TYPE) return typeName(tape, pos);
+		if (kind == MOVED) return "[" + pos + "]";
+		StringBuilder sb = new StringBuilder();
+		tape.writeCompact(pos, sb, VALUE_LIMIT);
+		if (sb.length() > VALUE_LIMIT) {
+			return sb.substring(0, VALUE_LIMIT) + "…";
+		}
+		return sb.toString();
+	}
+
+	private static String typeName(JsonTape tape, int pos) {
+		switch (tape.type(pos)) {
+			case JsonTape.OBJECT: return "object";
+			case JsonTape.ARRAY: return "array";
+			case JsonTape.NULL: return "null";
+			case JsonTape.STRING: return "string";
+			case JsonTape.TRUE:
+			case JsonTape.FALSE: return "boolean";
+			case JsonTape.NUMBER: return "number";
+			default: return "unknown";
+		}
+	}
+}
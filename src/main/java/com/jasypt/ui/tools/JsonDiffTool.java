@@ -3,16 +3,21 @@ package com.jasypt.ui.tools;
 import com.google.gson.*;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * JSON Diff tool - exactly replicates Python JSONDiffTab behavior.
@@ -23,14 +28,28 @@ public class JsonDiffTool extends JPanel {
 	private JTextArea leftText;
 	private JTextArea rightText;
 	private JTable diffTable;
-	private DefaultTableModel tableModel;
+	private DiffTableModel tableModel;
 	private JLabel statusLabel;
+	private JButton cancelBtn;
+	private JComboBox<JsonDiffEngine.ArrayMode> arrayModeBox;
+	private JTextField arrayKeyField;
+	private DiffWorker diffWorker;
+	// The running file diff, patch export or patch application
+	private FileWorker<?> fileWorker;
+	// The running binary decode per text area
+	private final Map<JTextArea, BinaryWorker> binaryWorkers = new HashMap<>();
+	private final JsonParsingService parsing = JsonParsingService.shared();
 
 	// Colors matching Python
 	private static final Color ADDED_BG = new Color(234, 255, 234);    // #eaffea
 	private static final Color REMOVED_BG = new Color(255, 236, 236);  // #ffecec
 	private static final Color CHANGED_BG = new Color(255, 246, 213);  // #fff6d5
 	private static final Color TYPE_BG = new Color(230, 240, 255);     // #e6f0ff
+	private static final Color MOVED_BG = new Color(243, 232, 255);    // #f3e8ff
+	// Memory for out-of-order members in a file diff before they go to a spill file
+	private static final long FILE_DIFF_BUDGET = 64L << 20;
+	// Indexed by JsonDiffRows change kind
+	private static final Color[] CHANGE_BG = {ADDED_BG, REMOVED_BG, CHANGED_BG, TYPE_BG, MOVED_BG};
 
 	public JsonDiffTool() {
 		initializeUI();
@@ -50,6 +69,49 @@ public class JsonDiffTool extends JPanel {
 		diffBtn.addActionListener(e -> runDiff());
 		toolbar.add(diffBtn);
 
+		cancelBtn = new JButton("Cancel");
+		cancelBtn.setEnabled(false);
+		cancelBtn.addActionListener(e -> {
+			cancelDiff();
+			statusLabel.setText("Diff cancelled");
+		});
+		toolbar.add(cancelBtn);
+
+		toolbar.add(new JLabel("Arrays:"));
+		arrayModeBox = new JComboBox<>(JsonDiffEngine.ArrayMode.values());
+		arrayModeBox.setToolTipText("Compare array elements by position, by an identity key, or by longest common subsequence");
+		toolbar.add(arrayModeBox);
+		arrayKeyField = new JTextField(6);
+		arrayKeyField.setToolTipText("Identity key of array elements; leave empty to detect it");
+		arrayKeyField.setEnabled(false);
+		arrayModeBox.addActionListener(e -> arrayKeyField.setEnabled(arrayModeBox.getSelectedItem() == JsonDiffEngine.ArrayMode.KEY));
+		toolbar.add(arrayKeyField);
+
+		JButton leftBinaryBtn = new JButton("Left Binary…");
+		leftBinaryBtn.setToolTipText("Decode CBOR, MessagePack or Smile into the left side");
+		leftBinaryBtn.addActionListener(e -> loadBinary(leftText, "Left"));
+		toolbar.add(leftBinaryBtn);
+
+		JButton rightBinaryBtn = new JButton("Right Binary…");
+		rightBinaryBtn.setToolTipText("Decode CBOR, MessagePack or Smile into the right side");
+		rightBinaryBtn.addActionListener(e -> loadBinary(rightText, "Right"));
+		toolbar.add(rightBinaryBtn);
+
+		JButton filesBtn = new JButton("Diff Files…");
+		filesBtn.setToolTipText("Stream two JSON files of any size and write their differences to a JSON Lines file");
+		filesBtn.addActionListener(e -> diffFiles());
+		toolbar.add(filesBtn);
+
+		JButton exportPatchBtn = new JButton("Export Patch…");
+		exportPatchBtn.setToolTipText("Save a JSON Patch (RFC 6902) that turns the left JSON into the right");
+		exportPatchBtn.addActionListener(e -> exportPatch());
+		toolbar.add(exportPatchBtn);
+
+		JButton applyPatchBtn = new JButton("Apply Patch…");
+		applyPatchBtn.setToolTipText("Apply a JSON Patch file to a JSON file of any size and save the result");
+		applyPatchBtn.addActionListener(e -> applyPatch());
+		toolbar.add(applyPatchBtn);
+
 		statusLabel = new JLabel("Paste JSON on both sides and click Diff");
 		toolbar.add(Box.createHorizontalStrut(12));
 		toolbar.add(statusLabel);
@@ -87,13 +149,7 @@ public class JsonDiffTool extends JPanel {
 		jsonPane.setRightComponent(rightPanel);
 
 		// Results table
-		String[] columns = {"Path", "Change", "Left", "Right"};
-		tableModel = new DefaultTableModel(columns, 0) {
-			@Override
-			public boolean isCellEditable(int row, int column) {
-				return false;
-			}
-		};
+		tableModel = new DiffTableModel();
 		diffTable = new JTable(tableModel);
 		diffTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
 		diffTable.getColumnModel().getColumn(0).setPreferredWidth(300);
@@ -101,7 +157,7 @@ public class JsonDiffTool extends JPanel {
 		diffTable.getColumnModel().getColumn(2).setPreferredWidth(350);
 		diffTable.getColumnModel().getColumn(3).setPreferredWidth(350);
 
-		// Custom renderer for row colors
+		// Custom renderer for row colors, looked up by the row's change kind
 		diffTable.setDefaultRenderer(Object.class, new javax.swing.table.DefaultTableCellRenderer() {
 			@Override
 			public Component getTableCellRendererComponent(JTable table, Object value,
@@ -109,23 +165,7 @@ public class JsonDiffTool extends JPanel {
 				Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
 
 				if (!isSelected) {
-					String change = (String) tableModel.getValueAt(row, 1);
-					switch (change) {
-						case "added":
-							c.setBackground(ADDED_BG);
-							break;
-						case "removed":
-							c.setBackground(REMOVED_BG);
-							break;
-						case "changed":
-							c.setBackground(CHANGED_BG);
-							break;
-						case "type":
-							c.setBackground(TYPE_BG);
-							break;
-						default:
-							c.setBackground(Color.WHITE);
-					}
+					c.setBackground(CHANGE_BG[tableModel.kind(row)]);
 				}
 				return c;
 			}
@@ -144,13 +184,12 @@ public class JsonDiffTool extends JPanel {
 
 	private void formatBoth() {
 		List<String> errors = new ArrayList<>();
-		Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().serializeNulls().create();
 
 		// Format left
-		formatSide(leftText, "Left", gson, errors);
+		formatSide(leftText, "Left", errors);
 
 		// Format right
-		formatSide(rightText, "Right", gson, errors);
+		formatSide(rightText, "Right", errors);
 
 		if (!errors.isEmpty()) {
 			statusLabel.setText("Format errors: " + String.join(" | ", errors));
@@ -159,420 +198,530 @@ public class JsonDiffTool extends JPanel {
 		}
 	}
 
-	private void formatSide(JTextArea textArea, String which, Gson gson, List<String> errors) {
+	private void formatSide(JTextArea textArea, String which, List<String> errors) {
 		String raw = textArea.getText().trim();
 		if (raw.isEmpty()) return;
 
+		// Strict JSON is pretty-printed straight from the tape; anything else goes through extraction
+		JsonTape tape = parsing.tape(raw, () -> false);
+		if (tape != null) {
+			StringBuilder pretty = new StringBuilder(raw.length() + raw.length() / 2);
+			tape.writePretty(tape.root(), pretty);
+			textArea.setText(pretty.toString());
+			return;
+		}
+
 		try {
 			// Use extraction logic like JSON Viewer
-			ParseResult result = extractAndLoadJson(raw);
+			JsonParsingService.Result result = parsing.extract(raw, new ParseTask(raw.length(), null));
 			if (result.error != null || result.data == null) {
 				errors.add(which + ": " + result.error);
 				return;
 			}
-			String formatted = gson.toJson(result.data);
+			String formatted = JsonValueText.PRETTY.toJson(result.data);
 			textArea.setText(formatted);
 		} catch (Exception e) {
 			errors.add(which + ": " + e.getMessage());
 		}
 	}
 
+	// Decodes a binary document off the EDT and shows it as pretty JSON in the side's text area
+	private void loadBinary(JTextArea textArea, String which) {
+		BinaryJsonChooser.Source source = BinaryJsonChooser.show(this, which + " Binary JSON");
+		if (source == null) return;
+		BinaryWorker previous = binaryWorkers.get(textArea);
+		if (previous != null) previous.cancel(true);
+		BinaryWorker worker = new BinaryWorker(textArea, which, source);
+		binaryWorkers.put(textArea, worker);
+		statusLabel.setText(which + ": decoding " + source.name + "…");
+		worker.execute();
+	}
+
 	private void runDiff() {
-		// Clear previous results
-		tableModel.setRowCount(0);
+		cancelDiff();
+		tableModel.clear();
+		statusLabel.setText("Parsing…");
+		cancelBtn.setEnabled(true);
+		String key = arrayKeyField.getText().trim();
+		diffWorker = new DiffWorker(leftText.getText(), rightText.getText(),
+			(JsonDiffEngine.ArrayMode) arrayModeBox.getSelectedItem(), key.isEmpty() ? null : key);
+		diffWorker.execute();
+	}
 
-		// Parse left
-		JsonElement leftObj;
-		try {
-			leftObj = JsonParser.parseString(leftText.getText());
-		} catch (Exception e) {
-			JOptionPane.showMessageDialog(this, "Left JSON parse error: " + e.getMessage(),
-				"Left JSON Error", JOptionPane.ERROR_MESSAGE);
-			statusLabel.setText("Left JSON parse error");
-			return;
+	private void cancelDiff() {
+		if (diffWorker != null) {
+			diffWorker.cancel(true);
+			diffWorker = null;
+			cancelBtn.setEnabled(false);
 		}
-
-		// Parse right
-		JsonElement rightObj;
-		try {
-			rightObj = JsonParser.parseString(rightText.getText());
-		} catch (Exception e) {
-			JOptionPane.showMessageDialog(this, "Right JSON parse error: " + e.getMessage(),
-				"Right JSON Error", JOptionPane.ERROR_MESSAGE);
-			statusLabel.setText("Right JSON parse error");
-			return;
+		if (fileWorker != null) {
+			fileWorker.cancel(true);
+			fileWorker = null;
+			cancelBtn.setEnabled(false);
 		}
+	}
 
-		// Compute diff
-		List<DiffRow> diffs = new ArrayList<>();
-		diffRecursive(leftObj, rightObj, "$", diffs);
+	// Diffs two files without loading them; the rows go to a file rather than the table
+	private void diffFiles() {
+		Path left = chooseFile("Left JSON File");
+		if (left == null) return;
+		Path right = chooseFile("Right JSON File");
+		if (right == null) return;
+		JFileChooser chooser = new JFileChooser(left.toFile().getParentFile());
+		chooser.setDialogTitle("Save Differences As");
+		chooser.setSelectedFile(new File(left.getFileName() + ".diff.jsonl"));
+		if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+		Path target = chooser.getSelectedFile().toPath();
+		if (!distinct(target, "Diff Files", "the ones being compared", left, right)) return;
+
+		cancelDiff();
+		tableModel.clear();
+		statusLabel.setText("Diffing " + left.getFileName() + " and " + right.getFileName() + "…");
+		startFileWorker(new FileDiffWorker(left, right, target));
+	}
 
-		if (diffs.isEmpty()) {
-			statusLabel.setText("No differences");
+	// Writes the patch from the left text to the right one; arrays are compared by index
+	private void exportPatch() {
+		String leftRaw = leftText.getText();
+		String rightRaw = rightText.getText();
+		if (leftRaw.trim().isEmpty() || rightRaw.trim().isEmpty()) {
+			statusLabel.setText("Paste JSON on both sides to export a patch");
 			return;
 		}
+		JFileChooser chooser = new JFileChooser();
+		chooser.setDialogTitle("Save JSON Patch As");
+		chooser.setSelectedFile(new File("patch.json"));
+		if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+		cancelDiff();
+		statusLabel.setText("Writing patch…");
+		startFileWorker(new PatchExportWorker(leftRaw, rightRaw, chooser.getSelectedFile().toPath()));
+	}
 
-		// Populate table
-		for (DiffRow row : diffs) {
-			tableModel.addRow(new Object[]{row.path, row.change, row.left, row.right});
-		}
-
-		statusLabel.setText(diffs.size() + " difference(s)");
+	// Applies a patch file to a document file, streaming the document to a new file
+	private void applyPatch() {
+		Path document = chooseFile("JSON File to Patch");
+		if (document == null) return;
+		Path patch = chooseFile("JSON Patch File");
+		if (patch == null) return;
+		JFileChooser chooser = new JFileChooser(document.toFile().getParentFile());
+		chooser.setDialogTitle("Save Patched JSON As");
+		chooser.setSelectedFile(new File(document.getFileName() + ".patched.json"));
+		if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+		Path target = chooser.getSelectedFile().toPath();
+		if (!distinct(target, "Apply Patch", "the document and the patch", document, patch)) return;
+
+		cancelDiff();
+		statusLabel.setText("Patching " + document.getFileName() + "…");
+		startFileWorker(new PatchApplyWorker(document, patch, target));
 	}
 
-	private void diffRecursive(JsonElement a, JsonElement b, String path, List<DiffRow> out) {
-		// Type change
-		if (!a.getClass().equals(b.getClass())) {
-			out.add(new DiffRow("type", path, "type", getTypeName(a), getTypeName(b)));
-			return;
+	// False, after telling the user, when target is one of the input files
+	private boolean distinct(Path target, String title, String inputs, Path... sources) {
+		try {
+			if (Files.exists(target)) {
+				for (Path source : sources) {
+					if (Files.isSameFile(target, source)) {
+						JOptionPane.showMessageDialog(this, "Choose a different file than " + inputs + ".",
+							title, JOptionPane.WARNING_MESSAGE);
+						return false;
+					}
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(this, "Unable to check the output file: " + e.getMessage(),
+				title, JOptionPane.ERROR_MESSAGE);
+			return false;
 		}
+	}
 
-		// Object comparison
-		if (a.isJsonObject() && b.isJsonObject()) {
-			JsonObject aObj = a.getAsJsonObject();
-			JsonObject bObj = b.getAsJsonObject();
+	private void startFileWorker(FileWorker<?> worker) {
+		cancelBtn.setEnabled(true);
+		fileWorker = worker;
+		worker.execute();
+	}
 
-			Set<String> aKeys = aObj.keySet();
-			Set<String> bKeys = bObj.keySet();
+	private Path chooseFile(String title) {
+		JFileChooser chooser = new JFileChooser();
+		chooser.setDialogTitle(title);
+		return chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION ? chooser.getSelectedFile().toPath() : null;
+	}
 
-			// Removed keys
-			Set<String> removed = new TreeSet<>(aKeys);
-			removed.removeAll(bKeys);
-			for (String k : removed) {
-				String p = path + "." + k;
-				out.add(new DiffRow("removed", p, "removed", shortValue(aObj.get(k)), ""));
-			}
+	/**
+	 * Parses both sides and walks them off the EDT. Differences are added to a shared row
+	 * store and shown in bulk each time progress is published; a newer diff or Cancel stops
+	 * the walk at the next check.
+	 */
+	private class DiffWorker extends SwingWorker<Integer, Void> implements JsonDiffEngine.Progress {
+		private final String leftRaw;
+		private final String rightRaw;
+		private final JsonDiffEngine.ArrayMode arrayMode;
+		// Identity key for ArrayMode.KEY, or null to detect one per array
+		private final String arrayKey;
+		private volatile JsonDiffRows rows;
+		private volatile long visited;
+		// Side whose text failed to parse, and why
+		private String failedSide;
+		private String failure;
+
+		DiffWorker(String leftRaw, String rightRaw, JsonDiffEngine.ArrayMode arrayMode, String arrayKey) {
+			this.leftRaw = leftRaw;
+			this.rightRaw = rightRaw;
+			this.arrayMode = arrayMode;
+			this.arrayKey = arrayKey;
+		}
 
-			// Added keys
-			Set<String> added = new TreeSet<>(bKeys);
-			added.removeAll(aKeys);
-			for (String k : added) {
-				String p = path + "." + k;
-				out.add(new DiffRow("added", p, "added", "", shortValue(bObj.get(k))));
+		@Override
+		protected Integer doInBackground() {
+			JsonTape left = parse(leftRaw, "Left");
+			if (left == null) return null;
+			JsonTape right = parse(rightRaw, "Right");
+			if (right == null) return null;
+			JsonDiffEngine engine = new JsonDiffEngine(left, right, this::isCancelled, this)
+				.arrays(arrayMode, arrayKey);
+			// Same rows either way; large documents are split across the cores
+			if (Runtime.getRuntime().availableProcessors() > 1) {
+				engine.parallel(ForkJoinPool.commonPool());
 			}
+			rows = engine.rows();
+			return engine.run();
+		}
 
-			// Common keys
-			Set<String> common = new TreeSet<>(aKeys);
-			common.retainAll(bKeys);
-			for (String k : common) {
-				diffRecursive(aObj.get(k), bObj.get(k), path + "." + k, out);
+		private JsonTape parse(String text, String which) {
+			try {
+				return parsing.diffTape(text, this::isCancelled);
+			} catch (CancellationException e) {
+				throw e;
+			} catch (Exception e) {
+				failedSide = which;
+				failure = e.getMessage();
+				return null;
 			}
-			return;
 		}
 
-		// Array comparison (index-wise)
-		if (a.isJsonArray() && b.isJsonArray()) {
-			JsonArray aArr = a.getAsJsonArray();
-			JsonArray bArr = b.getAsJsonArray();
-
-			int maxLen = Math.max(aArr.size(), bArr.size());
-			for (int i = 0; i < maxLen; i++) {
-				String p = path + "[" + i + "]";
-				if (i >= aArr.size()) {
-					out.add(new DiffRow("added", p, "added", "", shortValue(bArr.get(i))));
-				} else if (i >= bArr.size()) {
-					out.add(new DiffRow("removed", p, "removed", shortValue(aArr.get(i)), ""));
-				} else {
-					diffRecursive(aArr.get(i), bArr.get(i), p, out);
-				}
-			}
-			return;
+		@Override
+		public void visited(long paths) {
+			visited = paths;
+			publish();
 		}
 
-		// Primitive comparison
-		if (!a.equals(b)) {
-			out.add(new DiffRow("changed", path, "changed", shortValue(a), shortValue(b)));
+		@Override
+		protected void process(List<Void> chunks) {
+			if (diffWorker != this || isCancelled()) {
+				return;
+			}
+			tableModel.show(rows);
+			statusLabel.setText(String.format("Diffing… %,d paths visited, %,d difference(s)",
+				visited, tableModel.getRowCount()));
 		}
-	}
 
-	private String shortValue(JsonElement value) {
-		return shortValue(value, 160);
+		@Override
+		protected void done() {
+			if (diffWorker != this || isCancelled()) {
+				return;
+			}
+			diffWorker = null;
+			cancelBtn.setEnabled(false);
+
+			int count;
+			try {
+				Integer result = get();
+				if (result == null) {
+					JOptionPane.showMessageDialog(JsonDiffTool.this, failedSide + " JSON parse error: " + failure,
+						failedSide + " JSON Error", JOptionPane.ERROR_MESSAGE);
+					statusLabel.setText(failedSide + " JSON parse error");
+					return;
+				}
+				count = result;
+			} catch (InterruptedException | CancellationException e) {
+				return;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				statusLabel.setText("Diff failed: " + cause);
+				return;
+			}
+			tableModel.show(rows);
+			statusLabel.setText(count == 0 ? "No differences" : count + " difference(s)");
+		}
 	}
 
-	private String shortValue(JsonElement value, int limit) {
-		String s;
-		if (value == null || value.isJsonNull()) {
-			s = "null";
-		} else {
-			Gson gson = new Gson();
-			s = gson.toJson(value);
+	// Decodes a binary document and renders it; several top-level values become one array
+	private class BinaryWorker extends SwingWorker<String, Void> {
+		private final JTextArea textArea;
+		private final String which;
+		private final BinaryJsonChooser.Source source;
+		private JsonBinaryDecoder.Decoded decoded;
+
+		BinaryWorker(JTextArea textArea, String which, BinaryJsonChooser.Source source) {
+			this.textArea = textArea;
+			this.which = which;
+			this.source = source;
 		}
 
-		if (s.length() > limit) {
-			return s.substring(0, limit) + "…";
+		@Override
+		protected String doInBackground() {
+			decoded = JsonBinaryDecoder.decode(source.bytes, source.format, this::isCancelled);
+			JsonElement value;
+			if (decoded.values.size() == 1) {
+				value = decoded.values.get(0);
+			} else {
+				JsonArray all = new JsonArray();
+				decoded.values.forEach(all::add);
+				value = all;
+			}
+			return JsonValueText.PRETTY.toJson(value);
 		}
-		return s;
-	}
 
-	private String getTypeName(JsonElement elem) {
-		if (elem.isJsonObject()) return "object";
-		if (elem.isJsonArray()) return "array";
-		if (elem.isJsonNull()) return "null";
-		if (elem.isJsonPrimitive()) {
-			JsonPrimitive p = elem.getAsJsonPrimitive();
-			if (p.isString()) return "string";
-			if (p.isBoolean()) return "boolean";
-			if (p.isNumber()) return "number";
-		}
-		return "unknown";
+		@Override
+		protected void done() {
+			if (binaryWorkers.get(textArea) != this || isCancelled()) {
+				return;
+			}
+			binaryWorkers.remove(textArea);
+
+			String text;
+			try {
+				text = get();
+			} catch (InterruptedException | CancellationException e) {
+				return;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				statusLabel.setText(which + ": unable to decode " + source.name);
+				JOptionPane.showMessageDialog(JsonDiffTool.this, "Unable to decode " + source.name + ": "
+					+ cause.getMessage(), which + " Binary JSON", JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+			textArea.setText(text);
+			textArea.setCaretPosition(0);
+			statusLabel.setText(which + ": decoded " + decoded.format + " from " + source.name
+				+ (decoded.values.size() > 1 ? " (" + decoded.values.size() + " values as one array)" : ""));
+		}
 	}
 
-	// JSON Extraction Logic (same as JSON Viewer)
-	private ParseResult extractAndLoadJson(String text) {
-		// First, try to parse the text directly with variants (handles escaped JSON)
-		VariantResult directResult = tryParseVariants(text.trim());
-		if (directResult.data != null) {
-			return new ParseResult(directResult.data, null);
+	/**
+	 * A job that writes one output file off the EDT, reporting progress as status text. A
+	 * failed or cancelled job deletes its partial output.
+	 */
+	private abstract class FileWorker<T> extends SwingWorker<T, String> {
+		final Path target;
+		private final String title;
+
+		FileWorker(Path target, String title) {
+			this.target = target;
+			this.title = title;
 		}
 
-		// Try to locate the first valid JSON object/array
-		String candidate = extractJsonBlock(text);
+		abstract T write() throws IOException;
 
-		// If no block found with original text, try with unescaped quotes
-		if (candidate == null) {
-			String unescaped = text.replace("\\\"", "\"");
-			if (!unescaped.equals(text)) {
-				candidate = extractJsonBlock(unescaped);
+		// Status text for a finished job
+		abstract String finished(T result);
+
+		@Override
+		protected T doInBackground() throws IOException {
+			try {
+				return write();
+			} catch (IOException | RuntimeException e) {
+				Files.deleteIfExists(target);
+				throw e;
 			}
 		}
 
-		// Fallback: if no block found, try unwrapping quoted string
-		if (candidate == null) {
-			String t = text.trim();
-			if ((t.startsWith("\"") && t.endsWith("\"")) || (t.startsWith("'") && t.endsWith("'"))) {
-				try {
-					JsonElement elem = JsonParser.parseString(t);
-					if (elem.isJsonPrimitive() && elem.getAsJsonPrimitive().isString()) {
-						String unquoted = elem.getAsString();
-						String innerBlock = extractJsonBlock(unquoted);
-						candidate = (innerBlock != null) ? innerBlock : unquoted;
-					}
-				} catch (Exception e) {
-					candidate = t;
-				}
-			} else {
-				return new ParseResult(null, "No JSON object/array found");
+		@Override
+		protected void process(List<String> chunks) {
+			if (fileWorker == this && !isCancelled()) {
+				statusLabel.setText(chunks.get(chunks.size() - 1));
 			}
 		}
 
-		VariantResult vr = tryParseVariants(candidate);
-		if (vr.data != null) {
-			return new ParseResult(vr.data, null);
-		}
+		@Override
+		protected void done() {
+			if (fileWorker != this || isCancelled()) {
+				return;
+			}
+			fileWorker = null;
+			cancelBtn.setEnabled(false);
 
-		return new ParseResult(null, "Unable to parse JSON from provided text");
+			T result;
+			try {
+				result = get();
+			} catch (InterruptedException | CancellationException e) {
+				return;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				statusLabel.setText(title + " failed: " + cause.getMessage());
+				JOptionPane.showMessageDialog(JsonDiffTool.this, cause.getMessage(), title, JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+			statusLabel.setText(finished(result));
+		}
 	}
 
-	private String extractJsonBlock(String text) {
-		String obj = scanForBalancedBlock(text, '{', '}');
-		String arr = scanForBalancedBlock(text, '[', ']');
+	// Streams two files through JsonStreamDiff, showing how much has been read
+	private class FileDiffWorker extends FileWorker<JsonStreamDiff.Result> {
+		private final Path left;
+		private final Path right;
+		private final long total;
 
-		if (obj == null && arr == null) return null;
-		if (obj == null) return arr;
-		if (arr == null) return obj;
+		FileDiffWorker(Path left, Path right, Path target) {
+			super(target, "Diff Files");
+			this.left = left;
+			this.right = right;
+			this.total = left.toFile().length() + right.toFile().length();
+		}
 
-		int oidx = text.indexOf(obj);
-		int aidx = text.indexOf(arr);
-		return (oidx >= 0 && (aidx < 0 || oidx < aidx)) ? obj : arr;
-	}
+		@Override
+		JsonStreamDiff.Result write() throws IOException {
+			return JsonStreamDiff.diff(left, right, target, FILE_DIFF_BUDGET, this::isCancelled,
+				(chars, rows) -> publish(String.format("Diffing files… %s of %s read, %,d difference(s)",
+					ParseTask.formatSize(chars), ParseTask.formatSize(total), rows)));
+		}
 
-	private String scanForBalancedBlock(String text, char openCh, char closeCh) {
-		int n = text.length();
-		for (int i = 0; i < n; i++) {
-			if (text.charAt(i) == openCh) {
-				Integer end = findMatching(text, i, openCh, closeCh);
-				if (end != null) {
-					return text.substring(i, end + 1);
-				}
-			}
+		@Override
+		String finished(JsonStreamDiff.Result result) {
+			return String.format("%,d difference(s) written to %s%s", result.rows, target.getFileName(),
+				result.spilledChars > 0 ? " (" + ParseTask.formatSize(result.spilledChars) + " spilled to disk)" : "");
 		}
-		return null;
 	}
 
-	private Integer findMatching(String s, int start, char openCh, char closeCh) {
-		int depth = 0;
-		boolean inStr = false;
-		boolean esc = false;
-
-		for (int i = start; i < s.length(); i++) {
-			char ch = s.charAt(i);
-			if (inStr) {
-				if (esc) {
-					esc = false;
-				} else if (ch == '\\') {
-					esc = true;
-				} else if (ch == '"') {
-					inStr = false;
-				}
-			} else {
-				if (ch == '"') {
-					inStr = true;
-				} else if (ch == openCh) {
-					depth++;
-				} else if (ch == closeCh) {
-					depth--;
-					if (depth == 0) {
-						return i;
-					}
-				}
-			}
+	// Diffs the two texts with arrays compared by index and writes the rows as a JSON Patch
+	private class PatchExportWorker extends FileWorker<Integer> {
+		private final String leftRaw;
+		private final String rightRaw;
+
+		PatchExportWorker(String leftRaw, String rightRaw, Path target) {
+			super(target, "Export Patch");
+			this.leftRaw = leftRaw;
+			this.rightRaw = rightRaw;
 		}
-		return null;
-	}
 
-	private VariantResult tryParseVariants(String base) {
-		Set<String> tried = new HashSet<>();
-		Queue<String> queue = new LinkedList<>();
-
-		queue.add(base);
-		tried.add(base);
-
-		String s = base;
-		for (int i = 0; i < 3; i++) {
-			String ts = s.trim();
-			if (ts.startsWith("\"") && ts.endsWith("\"")) {
-				try {
-					JsonElement elem = JsonParser.parseString(ts);
-					if (elem.isJsonPrimitive() && elem.getAsJsonPrimitive().isString()) {
-						s = elem.getAsString();
-						if (!tried.contains(s)) {
-							queue.add(s);
-							tried.add(s);
-						}
-					} else {
-						return new VariantResult(elem, null);
-					}
-				} catch (Exception e) {
-					break;
-				}
-			} else {
-				break;
+		@Override
+		Integer write() throws IOException {
+			JsonTape left = parse(leftRaw, "Left");
+			JsonTape right = parse(rightRaw, "Right");
+			JsonDiffEngine engine = new JsonDiffEngine(left, right, this::isCancelled,
+				paths -> publish(String.format("Diffing… %,d paths visited", paths)))
+				.arrays(JsonDiffEngine.ArrayMode.INDEX, null);
+			if (Runtime.getRuntime().availableProcessors() > 1) {
+				engine.parallel(ForkJoinPool.commonPool());
+			}
+			engine.run();
+			publish("Writing patch…");
+			try (Writer out = Files.newBufferedWriter(target)) {
+				return JsonPatch.write(engine.rows(), out);
 			}
 		}
 
-		while (!queue.isEmpty()) {
-			String cur = queue.poll();
-
+		private JsonTape parse(String text, String which) throws IOException {
 			try {
-				JsonElement data = JsonParser.parseString(cur);
-				return new VariantResult(data, null);
-			} catch (Exception e) {}
-
-			try {
-				String ue = decodeUnicodeEscape(cur);
-				if (!ue.equals(cur)) {
-					try {
-						JsonElement data = JsonParser.parseString(ue);
-						return new VariantResult(data, null);
-					} catch (Exception e) {
-						if (!tried.contains(ue)) {
-							queue.add(ue);
-							tried.add(ue);
-						}
-					}
-				}
-			} catch (Exception e) {}
-
-			String collapsed = cur.replace("\\\\", "\\");
-			if (!collapsed.equals(cur)) {
-				try {
-					JsonElement data = JsonParser.parseString(collapsed);
-					return new VariantResult(data, null);
-				} catch (Exception e) {
-					if (!tried.contains(collapsed)) {
-						queue.add(collapsed);
-						tried.add(collapsed);
-					}
-				}
+				return parsing.diffTape(text, this::isCancelled);
+			} catch (CancellationException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException(which + " JSON parse error: " + e.getMessage(), e);
 			}
+		}
 
-			String unq = cur.replace("\\\"", "\"");
-			if (!unq.equals(cur)) {
-				try {
-					JsonElement data = JsonParser.parseString(unq);
-					return new VariantResult(data, null);
-				} catch (Exception e) {
-					if (!tried.contains(unq)) {
-						queue.add(unq);
-						tried.add(unq);
-					}
-				}
-			}
+		@Override
+		String finished(Integer ops) {
+			return ops == 0 ? "No differences; wrote an empty patch to " + target.getFileName()
+				: String.format("%,d patch operation(s) written to %s", ops, target.getFileName());
+		}
+	}
 
-			String combo = cur.replace("\\\\", "\\").replace("\\\"", "\"");
-			if (!combo.equals(cur)) {
-				try {
-					JsonElement data = JsonParser.parseString(combo);
-					return new VariantResult(data, null);
-				} catch (Exception e) {
-					if (!tried.contains(combo)) {
-						queue.add(combo);
-						tried.add(combo);
-					}
-				}
+	// Streams a document through a patch into the target file, showing how much has been read
+	private class PatchApplyWorker extends FileWorker<Void> {
+		private final Path document;
+		private final Path patch;
+		private final long total;
+
+		PatchApplyWorker(Path document, Path patch, Path target) {
+			super(target, "Apply Patch");
+			this.document = document;
+			this.patch = patch;
+			this.total = document.toFile().length();
+		}
+
+		@Override
+		Void write() throws IOException {
+			JsonArray ops;
+			try (Reader in = Files.newBufferedReader(patch)) {
+				ops = JsonPatch.read(in);
+			} catch (IOException e) {
+				throw new IOException("Invalid patch: " + e.getMessage(), e);
 			}
+			try (Reader in = Files.newBufferedReader(document); Writer out = Files.newBufferedWriter(target)) {
+				JsonPatch.apply(in, ops, out, chars -> {
+					if (isCancelled()) throw new CancellationException();
+					publish(String.format("Patching… %s of %s read", ParseTask.formatSize(chars), ParseTask.formatSize(total)));
+				});
+			}
+			return null;
 		}
 
-		return new VariantResult(null, "Unable to parse");
+		@Override
+		String finished(Void result) {
+			return "Patched " + document.getFileName() + " into " + target.getFileName();
+		}
 	}
 
-	private String decodeUnicodeEscape(String s) {
-		StringBuilder sb = new StringBuilder();
-		int i = 0;
-		while (i < s.length()) {
-			if (i < s.length() - 5 && s.charAt(i) == '\\' && s.charAt(i+1) == 'u') {
-				try {
-					String hex = s.substring(i+2, i+6);
-					int code = Integer.parseInt(hex, 16);
-					sb.append((char) code);
-					i += 6;
-				} catch (Exception e) {
-					sb.append(s.charAt(i));
-					i++;
-				}
-			} else {
-				sb.append(s.charAt(i));
-				i++;
+	/**
+	 * Table over a JsonDiffRows store. The row count is the store's size as of the last
+	 * show() on the EDT, so rows the diffing thread adds in between appear in one event.
+	 */
+	private static final class DiffTableModel extends AbstractTableModel {
+		private static final String[] COLUMNS = {"Path", "Change", "Left", "Right"};
+		private JsonDiffRows rows;
+		private int count;
+
+		void show(JsonDiffRows store) {
+			if (store == null) return;
+			if (store != rows) {
+				clear();
+				rows = store;
+			}
+			int n = store.size();
+			if (n > count) {
+				int first = count;
+				count = n;
+				fireTableRowsInserted(first, n - 1);
 			}
 		}
-		return sb.toString();
-	}
 
-	// Helper classes
-	private static class ParseResult {
-		JsonElement data;
-		String error;
+		void clear() {
+			int size = count;
+			rows = null;
+			count = 0;
+			if (size > 0) fireTableRowsDeleted(0, size - 1);
+		}
 
-		ParseResult(JsonElement data, String error) {
-			this.data = data;
-			this.error = error;
+		byte kind(int row) {
+			return rows.kind(row);
 		}
-	}
 
-	private static class VariantResult {
-		JsonElement data;
-		String error;
+		@Override
+		public int getRowCount() {
+			return count;
+		}
 
-		VariantResult(JsonElement data, String error) {
-			this.data = data;
-			this.error = error;
+		@Override
+		public int getColumnCount() {
+			return COLUMNS.length;
 		}
-	}
 
-	// Helper class
-	private static class DiffRow {
-		String tag;
-		String path;
-		String change;
-		String left;
-		String right;
-
-		DiffRow(String tag, String path, String change, String left, String right) {
-			this.tag = tag;
-			this.path = path;
-			this.change = change;
-			this.left = left;
-			this.right = right;
+		@Override
+		public String getColumnName(int column) {
+			return COLUMNS[column];
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			switch (column) {
+				case 0: return rows.path(row);
+				case 1: return JsonDiffRows.changeName(rows.kind(row));
+				case 2: return rows.left(row);
+				default: return rows.right(row);
+			}
 		}
 	}
 }
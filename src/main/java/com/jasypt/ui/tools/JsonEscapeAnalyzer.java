@@ -0,0 +1,182 @@
+package com.jasypt.ui.tools;
+
+/**
+ * Detects how deeply a JSON payload has been escaped and quoted, then decodes it to its
+ * final form in a single pass. Each escaping level turns {@code "} into {@code \"} and
+ * {@code \} into {@code \\}, so at depth d a structural quote is preceded by 2^d - 1
+ * backslashes and every other backslash run is a multiple of 2^d (or, for an escape
+ * introduced at an inner level, a smaller power of two).
+ */
+final class JsonEscapeAnalyzer {
+
+	private JsonEscapeAnalyzer() {
+	}
+
+	/**
+	 * Returns the payload with every quoting and escaping level removed, or null when the
+	 * text does not follow a consistent escaping pattern (callers then fall back to trial parsing).
+	 */
+	static String decode(String text) {
+		String t = text.trim();
+		String decoded = decodeOnce(t);
+		if (decoded == null && t.indexOf('"') < 0 && containsUnicodeQuote(t)) {
+			// Quotes written as ": one unicode pass, then analyze the result
+			decoded = decodeOnce(decodeUnicodeEscape(t).trim());
+		}
+		return decoded;
+	}
+
+	private static String decodeOnce(String t) {
+		int lo = 0;
+		int hi = t.length();
+
+		// Wrapping quotes: "..." then \"...\" then \\\"...\\\" and so on
+		int wraps = 0;
+		if (hi - lo >= 2 && t.charAt(lo) == '"' && t.charAt(hi - 1) == '"') {
+			wraps = 1;
+			lo++;
+			hi--;
+			while (true) {
+				int run = (1 << wraps) - 1;
+				if (wraps >= 16 || hi - lo < 2 * (run + 1)
+						|| !isQuoteWithRun(t, lo, run) || !isQuoteWithRun(t, hi - run - 1, run)) {
+					break;
+				}
+				wraps++;
+				lo += run + 1;
+				hi -= run + 1;
+			}
+		}
+
+		// Escaping depth from the shortest backslash run in front of a quote
+		int minQuoteRun = Integer.MAX_VALUE;
+		for (int i = lo; i < hi; i++) {
+			if (t.charAt(i) == '"') {
+				int run = 0;
+				while (i - run - 1 >= lo && t.charAt(i - run - 1) == '\\') run++;
+				minQuoteRun = Math.min(minQuoteRun, run);
+				if (run == 0) break;
+			}
+		}
+		int depth;
+		if (minQuoteRun == Integer.MAX_VALUE) {
+			depth = wraps;
+		} else if (Integer.bitCount(minQuoteRun + 1) == 1) {
+			depth = Integer.numberOfTrailingZeros(minQuoteRun + 1);
+		} else {
+			return null;
+		}
+		if (depth < wraps || depth > 16) {
+			return null;
+		}
+		if (depth == 0) {
+			return t.substring(lo, hi);
+		}
+		return unescape(t, lo, hi, depth);
+	}
+
+	private static boolean isQuoteWithRun(String t, int pos, int run) {
+		for (int i = 0; i < run; i++) {
+			if (t.charAt(pos + i) != '\\') return false;
+		}
+		return t.charAt(pos + run) == '"';
+	}
+
+	// Removes `depth` escaping levels from t[lo, hi) in one pass
+	private static String unescape(String t, int lo, int hi, int depth) {
+		int unit = 1 << depth;
+		StringBuilder sb = new StringBuilder(hi - lo);
+		int i = lo;
+		while (i < hi) {
+			int run = 0;
+			while (i < hi && t.charAt(i) == '\\') {
+				run++;
+				i++;
+			}
+			if (i == hi) {
+				return null; // trailing backslashes
+			}
+			char c = t.charAt(i++);
+			if (c == '"') {
+				if (run < unit - 1 || (run - (unit - 1)) % unit != 0) return null;
+				appendBackslashes(sb, (run - (unit - 1)) / unit);
+				sb.append('"');
+				continue;
+			}
+			if (run == 0) {
+				sb.append(c);
+				continue;
+			}
+			appendBackslashes(sb, run / unit);
+			int rest = run % unit;
+			if (rest == 0) {
+				sb.append(c);
+				continue;
+			}
+			// An escape introduced at an inner level decodes to the character itself
+			if (Integer.bitCount(rest) != 1) return null;
+			char decoded;
+			switch (c) {
+				case 'n': decoded = '\n'; break;
+				case 't': decoded = '\t'; break;
+				case 'r': decoded = '\r'; break;
+				case 'b': decoded = '\b'; break;
+				case 'f': decoded = '\f'; break;
+				case '/': decoded = '/'; break;
+				case 'u':
+					if (i + 4 > hi) return null;
+					try {
+						decoded = (char) Integer.parseInt(t.substring(i, i + 4), 16);
+					} catch (NumberFormatException e) {
+						return null;
+					}
+					i += 4;
+					break;
+				default:
+					return null;
+			}
+			if (decoded == '"' || decoded == '\\') {
+				return null; // would need another structural pass
+			}
+			sb.append(decoded);
+		}
+		return sb.toString();
+	}
+
+	private static void appendBackslashes(StringBuilder sb, int n) {
+		for (int k = 0; k < n; k++) sb.append('\\');
+	}
+
+	private static boolean containsUnicodeQuote(String s) {
+		int from = 0;
+		while (true) {
+			int i = s.indexOf("\\u", from);
+			if (i < 0 || i + 6 > s.length()) return false;
+			if (s.regionMatches(true, i + 2, "0022", 0, 4)) return true;
+			from = i + 2;
+		}
+	}
+
+	// Simple unicode escape decoder - converts \\uXXXX sequences
+	static String decodeUnicodeEscape(String s) {
+		StringBuilder sb = new StringBuilder();
+		int i = 0;
+		while (i < s.length()) {
+			if (i < s.length() - 5 && s.charAt(i) == '\\' && s.charAt(i+1) == 'u') {
+				try {
+					String hex = s.substring(i+2, i+6);
+					int code = Integer.parseInt(hex, 16);
+					sb.append((char) code);
+					i += 6;
+				} catch (Exception e) {
+					sb.append(s.charAt(i));
+					i++;
+				}
+			} else {
+				sb.append(s.charAt(i));
+				i++;
+			}
+		}
+		return sb.toString();
+	}
+}
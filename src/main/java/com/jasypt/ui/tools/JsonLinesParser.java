@@ -0,0 +1,162 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Parser for newline-delimited JSON (JSON Lines). Lines are located in one pass and then
+ * parsed in parallel on the fork-join pool; records keep their original order and malformed
+ * lines are reported with their 1-based line numbers.
+ */
+final class JsonLinesParser {
+
+	interface Progress {
+		// Called from pool threads as lines are parsed
+		void parsed(int lines, int total);
+	}
+
+	static final class Result {
+		final List<JsonElement> records;
+		final List<Integer> errorLines;
+		final List<String> errors;
+
+		Result(List<JsonElement> records, List<Integer> errorLines, List<String> errors) {
+			this.records = records;
+			this.errorLines = errorLines;
+			this.errors = errors;
+		}
+	}
+
+	private static final int LINES_PER_TASK = 512;
+	private static final TypeAdapter<JsonElement> ELEMENT_ADAPTER = new Gson().getAdapter(JsonElement.class);
+
+	private JsonLinesParser() {
+	}
+
+	static Result parse(String text, BooleanSupplier cancelled, Progress progress) {
+		// Locate non-blank lines
+		int[] starts = new int[1024];
+		int[] ends = new int[1024];
+		int[] numbers = new int[1024];
+		int count = 0;
+		int lineNo = 0;
+		int pos = 0;
+		int n = text.length();
+		while (pos <= n) {
+			int nl = text.indexOf('\n', pos);
+			int end = nl < 0 ? n : nl;
+			lineNo++;
+			int s = pos;
+			int e = end;
+			while (s < e && Character.isWhitespace(text.charAt(s))) s++;
+			while (e > s && Character.isWhitespace(text.charAt(e - 1))) e--;
+			if (s < e) {
+				if (count == starts.length) {
+					starts = Arrays.copyOf(starts, count * 2);
+					ends = Arrays.copyOf(ends, count * 2);
+					numbers = Arrays.copyOf(numbers, count * 2);
+				}
+				starts[count] = s;
+				ends[count] = e;
+				numbers[count] = lineNo;
+				count++;
+			}
+			if (nl < 0) break;
+			pos = nl + 1;
+		}
+
+		JsonElement[] parsed = new JsonElement[count];
+		String[] failures = new String[count];
+		ForkJoinPool.commonPool().invoke(new ParseLines(text, starts, ends, parsed, failures, 0, count,
+			cancelled, progress, new AtomicInteger()));
+		if (cancelled.getAsBoolean()) {
+			throw new CancellationException();
+		}
+
+		List<JsonElement> records = new ArrayList<>(count);
+		List<Integer> errorLines = new ArrayList<>();
+		List<String> errors = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			if (parsed[i] != null) {
+				records.add(parsed[i]);
+			} else {
+				errorLines.add(numbers[i]);
+				errors.add(failures[i]);
+			}
+		}
+		return new Result(records, errorLines, errors);
+	}
+
+	// Strict parse of one line; throws on trailing data or lenient-only syntax
+	private static JsonElement parseLine(String line) throws IOException {
+		JsonReader reader = new JsonReader(new StringReader(line));
+		reader.setLenient(false);
+		JsonElement element = ELEMENT_ADAPTER.read(reader);
+		if (reader.peek() != JsonToken.END_DOCUMENT) {
+			throw new IOException("Unexpected data after value at " + reader.getPath());
+		}
+		return element;
+	}
+
+	private static final class ParseLines extends RecursiveAction {
+		private final String text;
+		private final int[] starts;
+		private final int[] ends;
+		private final JsonElement[] parsed;
+		private final String[] failures;
+		private final int lo;
+		private final int hi;
+		private final BooleanSupplier cancelled;
+		private final Progress progress;
+		private final AtomicInteger done;
+
+		ParseLines(String text, int[] starts, int[] ends, JsonElement[] parsed, String[] failures, int lo, int hi,
+				BooleanSupplier cancelled, Progress progress, AtomicInteger done) {
+			this.text = text;
+			this.starts = starts;
+			this.ends = ends;
+			this.parsed = parsed;
+			this.failures = failures;
+			this.lo = lo;
+			this.hi = hi;
+			this.cancelled = cancelled;
+			this.progress = progress;
+			this.done = done;
+		}
+
+		@Override
+		protected void compute() {
+			if (cancelled.getAsBoolean()) return;
+			if (hi - lo > LINES_PER_TASK) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new ParseLines(text, starts, ends, parsed, failures, lo, mid, cancelled, progress, done),
+					new ParseLines(text, starts, ends, parsed, failures, mid, hi, cancelled, progress, done));
+				return;
+			}
+			for (int i = lo; i < hi; i++) {
+				try {
+					parsed[i] = parseLine(text.substring(starts[i], ends[i]));
+				} catch (IOException | RuntimeException e) {
+					failures[i] = e.getMessage() != null ? e.getMessage() : e.toString();
+				}
+			}
+			int total = done.addAndGet(hi - lo);
+			if (progress != null) {
+				progress.parsed(total, parsed.length);
+			}
+		}
+	}
+}
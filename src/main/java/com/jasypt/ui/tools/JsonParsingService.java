@@ -0,0 +1,486 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * JSON parsing shared by the JSON tools: strict parsing to a {@link JsonTape}, the lenient
+ * extraction of JSON from pasted text (escaped, quoted or embedded in logs) and the
+ * multi-block scan. Results are kept in one LRU cache for the session, keyed by a 64-bit
+ * content hash plus the text's length, so a payload is parsed once whichever tool asks for
+ * it. Entries are weighed by their estimated heap footprint and evicted least recently used
+ * first once the total passes the budget.
+ * <p>
+ * Cached trees are shared between callers and must be treated as read-only. Cancelled
+ * parses are never cached.
+ */
+final class JsonParsingService {
+
+	// Lenient extraction's outcome: the value, or why none was found
+	static final class Result {
+		final JsonElement data;
+		final String error;
+
+		Result(JsonElement data, String error) {
+			this.data = data;
+			this.error = error;
+		}
+	}
+
+	private enum Kind { TAPE, EXTRACT, BLOCKS, DIFF_TAPE }
+
+	// Gson trees take about 12 bytes of heap per input char (see the heap case of JsonBenchmarks)
+	private static final long TREE_BYTES_PER_CHAR = 12;
+	private static final long ENTRY_OVERHEAD = 64;
+	private static final Object NOT_STRICT = new Object();
+	private static final int HASH_BLOCK = 8192;
+
+	private static final JsonParsingService SHARED =
+		new JsonParsingService(Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8));
+
+	private final long budget;
+	private final LinkedHashMap<Key, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private long weight;
+
+	JsonParsingService(long budget) {
+		this.budget = budget;
+	}
+
+	static JsonParsingService shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Strict (RFC 8259) parse of the exact text, or null if it is not strict JSON.
+	 *
+	 * @throws CancellationException once {@code cancelled} reports true
+	 */
+	JsonTape tape(String text, BooleanSupplier cancelled) {
+		Key key = new Key(Kind.TAPE, text);
+		Object cached = get(key);
+		if (cached != null) {
+			return cached == NOT_STRICT ? null : (JsonTape) cached;
+		}
+		JsonTape tape;
+		try {
+			tape = JsonTape.parse(text, cancelled);
+		} catch (JsonSyntaxException e) {
+			put(key, NOT_STRICT, ENTRY_OVERHEAD);
+			return null;
+		}
+		put(key, tape, tapeWeight(tape));
+		return tape;
+	}
+
+	/**
+	 * Finds and parses the JSON value in free-form text: as-is, unescaped or unquoted,
+	 * or the first balanced block. Surrounding whitespace is ignored.
+	 */
+	Result extract(String text, ParseTask task) {
+		String trimmed = text.trim();
+		Key key = new Key(Kind.EXTRACT, trimmed);
+		Object cached = get(key);
+		if (cached != null) {
+			task.cached = true;
+			return (Result) cached;
+		}
+		Result result = extractAndLoadJson(trimmed, task);
+		put(key, result, result.data != null ? treeWeight(trimmed) : ENTRY_OVERHEAD);
+		return result;
+	}
+
+	/**
+	 * Every top-level object and array in the text (e.g. a log), each parsed leniently,
+	 * in text order with exact duplicates removed.
+	 */
+	List<JsonElement> blocks(String text, ParseTask task) {
+		Key key = new Key(Kind.BLOCKS, text);
+		Object cached = get(key);
+		if (cached != null) {
+			task.cached = true;
+			return castList(cached);
+		}
+		List<JsonElement> blocks = Collections.unmodifiableList(extractAllJsonBlocks(text, task));
+		put(key, blocks, treeWeight(text));
+		return blocks;
+	}
+
+	/**
+	 * Tape for the JSON Diff: strict JSON as-is, anything Gson's lenient parser accepts
+	 * after normalizing it to strict JSON.
+	 *
+	 * @throws com.google.gson.JsonParseException if the text is not JSON even leniently
+	 * @throws java.util.concurrent.CancellationException once {@code cancelled} reports true
+	 */
+	JsonTape diffTape(String text, BooleanSupplier cancelled) {
+		JsonTape strict = tape(text, cancelled);
+		if (strict != null) return strict;
+		Key key = new Key(Kind.DIFF_TAPE, text);
+		Object cached = get(key);
+		if (cached != null) {
+			return (JsonTape) cached;
+		}
+		JsonElement lenient = JsonParser.parseString(text);
+		JsonTape tape = JsonTape.parse(JsonValueText.COMPACT.toJson(lenient));
+		put(key, tape, tapeWeight(tape));
+		return tape;
+	}
+
+	private synchronized Object get(Key key) {
+		Entry entry = cache.get(key);
+		return entry != null ? entry.value : null;
+	}
+
+	private synchronized void put(Key key, Object value, long entryWeight) {
+		if (entryWeight > budget) return;
+		Entry old = cache.put(key, new Entry(value, entryWeight));
+		if (old != null) weight -= old.weight;
+		weight += entryWeight;
+		Iterator<Entry> eldest = cache.values().iterator();
+		while (weight > budget && eldest.hasNext()) {
+			weight -= eldest.next().weight;
+			eldest.remove();
+		}
+	}
+
+	private static long tapeWeight(JsonTape tape) {
+		return ENTRY_OVERHEAD + 8L * tape.tokenCount() + 2L * tape.getSource().length();
+	}
+
+	private static long treeWeight(String text) {
+		return ENTRY_OVERHEAD + TREE_BYTES_PER_CHAR * text.length();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<JsonElement> castList(Object value) {
+		return (List<JsonElement>) value;
+	}
+
+	/**
+	 * 64-bit content hash: four chars are folded per multiply, then MurmurHash3's finalizer
+	 * mixes the result. Not cryptographic; together with the length it only has to keep
+	 * distinct payloads of one session apart. Chars are copied out in blocks rather than
+	 * read one charAt at a time.
+	 */
+	static long hash(String s) {
+		int n = s.length();
+		long h = n * 0x9E3779B97F4A7C15L;
+		char[] block = new char[Math.min(n, HASH_BLOCK)];
+		for (int from = 0; from < n; from += HASH_BLOCK) {
+			int count = Math.min(HASH_BLOCK, n - from);
+			s.getChars(from, from + count, block, 0);
+			int i = 0;
+			for (; i + 4 <= count; i += 4) {
+				long v = block[i] | (long) block[i + 1] << 16 | (long) block[i + 2] << 32 | (long) block[i + 3] << 48;
+				h = Long.rotateLeft(h ^ v * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL;
+			}
+			for (; i < count; i++) {
+				h = (h ^ block[i]) * 0x100000001B3L;
+			}
+		}
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+
+	private static final class Key {
+		final Kind kind;
+		final long hash;
+		final int length;
+
+		Key(Kind kind, String text) {
+			this.kind = kind;
+			this.hash = hash(text);
+			this.length = text.length();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key) o;
+			return kind == k.kind && hash == k.hash && length == k.length;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(kind, hash, length);
+		}
+	}
+
+	private static final class Entry {
+		final Object value;
+		final long weight;
+
+		Entry(Object value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	// Extracts all top-level balanced {..} and [..] blocks and attempts to parse each using the same variant strategy
+	private List<JsonElement> extractAllJsonBlocks(String text, ParseTask task) {
+		List<JsonElement> results = new ArrayList<>();
+
+		// One linear pass yields the outermost blocks in text order, exact duplicates removed
+		List<String> uniqueCandidates = JsonBlockScanner.uniqueBlocks(text);
+
+		for (String cand : uniqueCandidates) {
+			VariantResult vr = tryParseVariants(cand, task);
+			if (vr.data != null) {
+				results.add(vr.data);
+			}
+		}
+
+		// If none found, try looser strategy: tryParseVariants over entire text, then over lines
+		if (results.isEmpty()) {
+			VariantResult vr = tryParseVariants(text.trim(), task);
+			if (vr.data != null) results.add(vr.data);
+			if (results.isEmpty()) {
+				for (String line : text.split("\r?\n")) {
+					vr = tryParseVariants(line.trim(), task);
+					if (vr.data != null) results.add(vr.data);
+				}
+			}
+		}
+
+		return results;
+	}
+
+	private Result extractAndLoadJson(String text, ParseTask task) {
+		// First, try to parse the text directly with variants (handles escaped JSON)
+		VariantResult directResult = tryParseVariants(text.trim(), task);
+		if (directResult.data != null) {
+			return new Result(directResult.data, null);
+		}
+
+		// Try to locate the first valid JSON object/array
+		String candidate = extractJsonBlock(text);
+
+		// If no block found with original text, try with unescaped quotes
+		if (candidate == null) {
+			String unescaped = text.replace("\\\"", "\"");
+			if (!unescaped.equals(text)) {
+				candidate = extractJsonBlock(unescaped);
+			}
+		}
+
+		// Fallback: if no block found, try unwrapping quoted string
+		if (candidate == null) {
+			String t = text.trim();
+			if ((t.startsWith("\"") && t.endsWith("\"")) || (t.startsWith("'") && t.endsWith("'"))) {
+				JsonElement elem = tryParse(t, task);
+				if (elem == null) {
+					candidate = t;
+				} else if (elem.isJsonPrimitive() && elem.getAsJsonPrimitive().isString()) {
+					String unquoted = elem.getAsString();
+					String innerBlock = extractJsonBlock(unquoted);
+					candidate = (innerBlock != null) ? innerBlock : unquoted;
+				}
+			} else {
+				return new Result(null, "No JSON object/array found");
+			}
+		}
+
+		// Try parsing with variants
+		VariantResult vr = tryParseVariants(candidate, task);
+		if (vr.data != null) {
+			return new Result(vr.data, null);
+		}
+
+		return new Result(null, "Unable to parse JSON from provided text");
+	}
+
+	private String extractJsonBlock(String text) {
+		String obj = scanForBalancedBlock(text, '{', '}');
+		String arr = scanForBalancedBlock(text, '[', ']');
+
+		if (obj == null && arr == null) return null;
+		if (obj == null) return arr;
+		if (arr == null) return obj;
+
+		// Prefer earliest occurrence
+		int oidx = text.indexOf(obj);
+		int aidx = text.indexOf(arr);
+		return (oidx >= 0 && (aidx < 0 || oidx < aidx)) ? obj : arr;
+	}
+
+	private String scanForBalancedBlock(String text, char openCh, char closeCh) {
+		int n = text.length();
+		for (int i = 0; i < n; i++) {
+			if (text.charAt(i) == openCh) {
+				Integer end = findMatching(text, i, openCh, closeCh);
+				if (end != null) {
+					return text.substring(i, end + 1);
+				}
+			}
+		}
+		return null;
+	}
+
+	private Integer findMatching(String s, int start, char openCh, char closeCh) {
+		int depth = 0;
+		boolean inStr = false;
+		boolean esc = false;
+
+		for (int i = start; i < s.length(); i++) {
+			char ch = s.charAt(i);
+			if (inStr) {
+				if (esc) {
+					esc = false;
+				} else if (ch == '\\') {
+					esc = true;
+				} else if (ch == '"') {
+					inStr = false;
+				}
+			} else {
+				if (ch == '"') {
+					inStr = true;
+				} else if (ch == openCh) {
+					depth++;
+				} else if (ch == closeCh) {
+					depth--;
+					if (depth == 0) {
+						return i;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private VariantResult tryParseVariants(String base, ParseTask task) {
+		// Detect the escaping depth and quoting style in one pass and decode straight to the final form
+		String decoded = JsonEscapeAnalyzer.decode(base);
+		if (decoded != null) {
+			JsonElement data = tryParse(decoded, task);
+			if (data != null) {
+				return new VariantResult(data, null);
+			}
+		}
+
+		// Fallback: breadth-first search over string rewrites
+		Set<String> tried = new HashSet<>();
+		Queue<String> queue = new LinkedList<>();
+
+		queue.add(base);
+		tried.add(base);
+
+		// Try unwrapping quoted strings up to 3 levels
+		String s = base;
+		for (int i = 0; i < 3; i++) {
+			String ts = s.trim();
+			if (ts.startsWith("\"") && ts.endsWith("\"")) {
+				JsonElement elem = tryParse(ts, task);
+				if (elem == null) {
+					break;
+				}
+				if (elem.isJsonPrimitive() && elem.getAsJsonPrimitive().isString()) {
+					s = elem.getAsString();
+					if (!tried.contains(s)) {
+						queue.add(s);
+						tried.add(s);
+					}
+				} else {
+					return new VariantResult(elem, null);
+				}
+			} else {
+				break;
+			}
+		}
+
+		// Try various transformations
+		while (!queue.isEmpty()) {
+			String cur = queue.poll();
+
+			// Try direct parse, unless the analyzer already tried this exact text
+			JsonElement data = cur.equals(decoded) ? null : tryParse(cur, task);
+			if (data != null) {
+				return new VariantResult(data, null);
+			}
+
+			// Try unicode escape decoding, collapsing double backslashes, unescaping quotes,
+			// and the combined collapse + unescape
+			String[] variants = {
+				JsonEscapeAnalyzer.decodeUnicodeEscape(cur),
+				cur.replace("\\\\", "\\"),
+				cur.replace("\\\"", "\""),
+				cur.replace("\\\\", "\\").replace("\\\"", "\"")
+			};
+			for (String variant : variants) {
+				if (variant.equals(cur)) continue;
+				data = tryParse(variant, task);
+				if (data != null) {
+					return new VariantResult(data, null);
+				}
+				if (tried.add(variant)) {
+					queue.add(variant);
+				}
+			}
+		}
+
+		return new VariantResult(null, "Unable to parse");
+	}
+
+	private JsonElement tryParse(String s, ParseTask task) {
+		task.parseAttempts++;
+		try {
+			return JsonParser.parseReader(new ProgressReader(s, task));
+		} catch (CancellationException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static class VariantResult {
+		JsonElement data;
+		String error;
+
+		VariantResult(JsonElement data, String error) {
+			this.data = data;
+			this.error = error;
+		}
+	}
+
+	// Reader over a String that reports progress and aborts promptly on cancellation
+	private static final class ProgressReader extends Reader {
+		private final String s;
+		private final ParseTask task;
+		private int pos;
+
+		ProgressReader(String s, ParseTask task) {
+			this.s = s;
+			this.task = task;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) {
+			if (pos >= s.length()) return -1;
+			int n = Math.min(len, s.length() - pos);
+			s.getChars(pos, pos + n, cbuf, off);
+			pos += n;
+			task.charsRead(n);
+			return n;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,699 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON Patch (RFC 6902) for the JSON Diff tool: a diff's rows written out as a patch, and a
+ * patch applied to a document as it streams from a reader to a writer. The operations are
+ * sequential, so before the document is read each container's edits are worked out from the
+ * operations that reach it: members set, removed or edited by key, and for arrays a list of
+ * original element runs and new values. Untouched subtrees are copied token by token.
+ */
+final class JsonPatch {
+
+	private static final TypeAdapter<JsonElement> ELEMENT_ADAPTER = JsonValueText.COMPACT.getAdapter(JsonElement.class);
+
+	// End of the run of original array elements that takes all remaining ones
+	private static final int REST = Integer.MAX_VALUE;
+
+	private JsonPatch() {
+	}
+
+	/**
+	 * Writes the rows of a diff with arrays compared by index as a patch that turns the left
+	 * document into the right one, an operation at a time, and returns the operation count.
+	 * Trailing array elements are removed last one first, so each index names the element
+	 * it removes when the operations are applied in order.
+	 *
+	 * @throws IllegalArgumentException if the rows come from a keyed or aligned array diff
+	 */
+	static int write(JsonDiffRows rows, Writer out) throws IOException {
+		JsonWriter json = new JsonWriter(out);
+		json.setIndent("  ");
+		json.setHtmlSafe(false);
+		json.beginArray();
+		int n = rows.size();
+		int count = 0;
+		for (int row = 0; row < n; row++) {
+			byte kind = rows.kind(row);
+			if (kind == JsonDiffRows.REMOVED && rows.elementIndex(row) >= 0) {
+				int end = row + 1;
+				while (end < n && rows.kind(end) == JsonDiffRows.REMOVED && rows.elementIndex(end) >= 0
+						&& rows.parentPath(end) == rows.parentPath(row)) {
+					end++;
+				}
+				for (int r = end - 1; r >= row; r--) {
+					writeOp(json, "remove", pointer(rows, r), null);
+					count++;
+				}
+				row = end - 1;
+				continue;
+			}
+			String op = kind == JsonDiffRows.ADDED ? "add" : kind == JsonDiffRows.REMOVED ? "remove" : "replace";
+			StringBuilder value = null;
+			if (kind != JsonDiffRows.REMOVED) {
+				value = new StringBuilder();
+				rows.writeValue(row, true, value);
+			}
+			writeOp(json, op, pointer(rows, row), value);
+			count++;
+		}
+		json.endArray();
+		json.flush();
+		return count;
+	}
+
+	private static String pointer(JsonDiffRows rows, int row) {
+		String pointer = rows.kind(row) == JsonDiffRows.MOVED ? null : rows.pointer(row);
+		if (pointer == null) {
+			throw new IllegalArgumentException("Only a diff with arrays compared by index can be written as a patch");
+		}
+		return pointer;
+	}
+
+	private static void writeOp(JsonWriter json, String op, String path, CharSequence value) throws IOException {
+		json.beginObject();
+		json.name("op").value(op);
+		json.name("path").value(path);
+		if (value != null) json.name("value").jsonValue(value.toString());
+		json.endObject();
+	}
+
+	/**
+	 * Reads a patch file as strict JSON: a single array, with nothing after it.
+	 *
+	 * @throws IOException if the text is not strict JSON or not an array
+	 */
+	static JsonArray read(Reader patch) throws IOException {
+		JsonReader reader = new JsonReader(patch);
+		reader.setLenient(false);
+		JsonElement ops;
+		try {
+			ops = ELEMENT_ADAPTER.read(reader);
+		} catch (NumberFormatException e) {
+			// Gson's report of a bad unicode escape
+			throw new IOException("Malformed escape sequence at " + reader.getPath(), e);
+		}
+		if (reader.peek() != JsonToken.END_DOCUMENT) {
+			throw new IOException("Unexpected data after the patch at " + reader.getPath());
+		}
+		if (!ops.isJsonArray()) throw new IOException("A JSON Patch must be an array of operations");
+		return ops.getAsJsonArray();
+	}
+
+	/**
+	 * Applies the patch to the single JSON value read from {@code document} and writes the
+	 * result to {@code out} in Gson's two-space layout. add, remove and replace are applied in
+	 * one pass as the document streams through; a patch that also uses move, copy or test, or
+	 * that replaces the whole document, is applied to a tree of the document instead.
+	 *
+	 * @throws IllegalArgumentException when the patch is malformed or an operation does not
+	 *         fit the document; whatever was written by then should be discarded
+	 * @throws IOException on unreadable or invalid input
+	 */
+	static void apply(Reader document, JsonArray patch, Writer out, JsonStreamFormatter.Progress progress)
+			throws IOException {
+		List<Op> ops = parse(patch);
+		JsonReader reader = new JsonReader(new JsonStreamFormatter.CountingReader(document, progress));
+		reader.setLenient(false);
+		JsonWriter writer = new JsonWriter(out);
+		writer.setIndent("  ");
+		writer.setHtmlSafe(false);
+
+		if (ops.stream().allMatch(JsonPatch::streamable)) {
+			Node root = new Node();
+			for (Op op : ops) root.ops.add(new Pending(op, 0));
+			new Applier(reader, writer).value(root);
+		} else {
+			JsonElement tree = ELEMENT_ADAPTER.read(reader);
+			for (Op op : ops) tree = applyTree(tree, op, 0);
+			JsonValueText.PRETTY.toJson(tree, writer);
+		}
+		if (reader.peek() != JsonToken.END_DOCUMENT) {
+			throw new IOException("Unexpected data after value at " + reader.getPath());
+		}
+		writer.flush();
+	}
+
+	private static boolean streamable(Op op) {
+		return !op.path.isEmpty() && (op.op.equals("add") || op.op.equals("remove") || op.op.equals("replace"));
+	}
+
+	// One operation of the patch, numbered from 1 for error messages
+	private static final class Op {
+		final int number;
+		final String op;
+		final String pointer;
+		final List<String> path;
+		final List<String> from;
+		final JsonElement value;
+
+		Op(int number, String op, String pointer, List<String> path, List<String> from, JsonElement value) {
+			this.number = number;
+			this.op = op;
+			this.pointer = pointer;
+			this.path = path;
+			this.from = from;
+			this.value = value;
+		}
+
+		IllegalArgumentException fail(String problem) {
+			return new IllegalArgumentException("Patch operation " + number + " (" + op + " " + pointer + "): " + problem);
+		}
+	}
+
+	private static List<Op> parse(JsonArray patch) {
+		List<Op> ops = new ArrayList<>(patch.size());
+		for (int i = 0; i < patch.size(); i++) {
+			int number = i + 1;
+			if (!patch.get(i).isJsonObject()) {
+				throw new IllegalArgumentException("Patch operation " + number + " is not an object");
+			}
+			JsonObject o = patch.get(i).getAsJsonObject();
+			String op = member(o, "op", number);
+			String pointer = member(o, "path", number);
+			List<String> from = null;
+			JsonElement value = o.get("value");
+			switch (op) {
+				case "add":
+				case "replace":
+				case "test":
+					if (value == null) throw new IllegalArgumentException("Patch operation " + number + " has no value");
+					break;
+				case "move":
+				case "copy":
+					from = tokens(member(o, "from", number), number);
+					break;
+				case "remove":
+					break;
+				default:
+					throw new IllegalArgumentException("Patch operation " + number + " has unknown op \"" + op + "\"");
+			}
+			ops.add(new Op(number, op, pointer, tokens(pointer, number), from, value));
+		}
+		return ops;
+	}
+
+	private static String member(JsonObject o, String name, int number) {
+		JsonElement e = o.get(name);
+		if (e == null || !e.isJsonPrimitive() || !e.getAsJsonPrimitive().isString()) {
+			throw new IllegalArgumentException("Patch operation " + number + " has no \"" + name + "\" string");
+		}
+		return e.getAsString();
+	}
+
+	// RFC 6901 reference tokens of a pointer, unescaped
+	private static List<String> tokens(String pointer, int number) {
+		if (pointer.isEmpty()) return new ArrayList<>();
+		if (pointer.charAt(0) != '/') {
+			throw new IllegalArgumentException("Patch operation " + number + ": \"" + pointer + "\" is not a JSON Pointer");
+		}
+		List<String> tokens = new ArrayList<>(Arrays.asList(pointer.substring(1).split("/", -1)));
+		for (int i = 0; i < tokens.size(); i++) {
+			String t = tokens.get(i);
+			if (t.indexOf('~') >= 0) tokens.set(i, t.replace("~1", "/").replace("~0", "~"));
+		}
+		return tokens;
+	}
+
+	private static int index(Op op, String token, int size) {
+		if (!token.matches("0|[1-9][0-9]{0,8}")) throw op.fail("\"" + token + "\" is not an array index");
+		int index = Integer.parseInt(token);
+		if (index > size) throw op.fail("index " + index + " is out of bounds");
+		return index;
+	}
+
+	// ---- Tree operations, for new values and for patches that cannot be streamed
+
+	// Applies op, its path taken from segment at, to the tree and returns the tree's new root
+	private static JsonElement applyTree(JsonElement root, Op op, int at) {
+		List<String> path = op.path.subList(at, op.path.size());
+		switch (op.op) {
+			case "add":
+				return add(root, path, op.value.deepCopy(), op);
+			case "remove":
+				if (path.isEmpty()) throw op.fail("cannot remove the whole document");
+				remove(root, path, op);
+				return root;
+			case "replace":
+				if (path.isEmpty()) return op.value.deepCopy();
+				get(root, path, op);
+				remove(root, path, op);
+				return add(root, path, op.value.deepCopy(), op);
+			case "move": {
+				if (op.path.size() > op.from.size() && op.path.subList(0, op.from.size()).equals(op.from)) {
+					throw op.fail("cannot move a value into itself");
+				}
+				JsonElement value = get(root, op.from, op);
+				if (op.from.isEmpty()) return value;
+				remove(root, op.from, op);
+				return add(root, path, value, op);
+			}
+			case "copy":
+				return add(root, path, get(root, op.from, op).deepCopy(), op);
+			default:
+				if (!get(root, path, op).equals(op.value)) throw op.fail("test failed");
+				return root;
+		}
+	}
+
+	private static JsonElement get(JsonElement root, List<String> path, Op op) {
+		JsonElement e = root;
+		for (String token : path) {
+			if (e.isJsonObject()) {
+				e = e.getAsJsonObject().get(token);
+				if (e == null) throw op.fail("path not found");
+			} else if (e.isJsonArray()) {
+				JsonArray array = e.getAsJsonArray();
+				int index = token.equals("-") ? array.size() : index(op, token, array.size());
+				if (index == array.size()) throw op.fail("index " + index + " is out of bounds");
+				e = array.get(index);
+			} else {
+				throw op.fail("path not found");
+			}
+		}
+		return e;
+	}
+
+	private static JsonElement add(JsonElement root, List<String> path, JsonElement value, Op op) {
+		if (path.isEmpty()) return value;
+		JsonElement parent = get(root, path.subList(0, path.size() - 1), op);
+		String last = path.get(path.size() - 1);
+		if (parent.isJsonObject()) {
+			parent.getAsJsonObject().add(last, value);
+		} else if (parent.isJsonArray()) {
+			List<JsonElement> list = parent.getAsJsonArray().asList();
+			list.add(last.equals("-") ? list.size() : index(op, last, list.size()), value);
+		} else {
+			throw op.fail("path not found");
+		}
+		return root;
+	}
+
+	private static void remove(JsonElement root, List<String> path, Op op) {
+		JsonElement parent = get(root, path.subList(0, path.size() - 1), op);
+		String last = path.get(path.size() - 1);
+		if (parent.isJsonObject()) {
+			if (parent.getAsJsonObject().remove(last) == null) throw op.fail("path not found");
+		} else if (parent.isJsonArray()) {
+			JsonArray array = parent.getAsJsonArray();
+			int index = index(op, last, array.size());
+			if (index == array.size()) throw op.fail("index " + index + " is out of bounds");
+			array.remove(index);
+		} else {
+			throw op.fail("path not found");
+		}
+	}
+
+	// ---- Streaming application
+
+	// An operation on its way down, at segment at of its path
+	private static final class Pending {
+		final Op op;
+		final int at;
+
+		Pending(Op op, int at) {
+			this.op = op;
+			this.at = at;
+		}
+
+		String token() {
+			return op.path.get(at);
+		}
+
+		boolean last() {
+			return at == op.path.size() - 1;
+		}
+	}
+
+	// Operations that reach into one container of the document, in patch order
+	private static final class Node {
+		final List<Pending> ops = new ArrayList<>();
+	}
+
+	// What becomes of an object member
+	private static final class Member {
+		static final int ORIGINAL = 0;
+		static final int NEW = 1;
+		static final int REMOVED = 2;
+
+		int state = ORIGINAL;
+		JsonElement value;
+		// Edits to the original value, checked even if it is later replaced or removed
+		Node child;
+		// The first operation that needs the member to be in the document
+		Op requiredBy;
+		boolean seen;
+		boolean written;
+	}
+
+	// A run of original array elements [from, to), one original element with edits, or a new value
+	private static final class Piece {
+		final int from;
+		final int to;
+		final Node child;
+		JsonElement value;
+		// An original element replaced or removed after edits that must still fit it
+		boolean dropped;
+		// The operation the piece came from, blamed if the array is shorter than it assumes
+		final Op cause;
+
+		private Piece(int from, int to, Node child, JsonElement value, Op cause) {
+			this.from = from;
+			this.to = to;
+			this.child = child;
+			this.value = value;
+			this.cause = cause;
+		}
+
+		static Piece run(int from, int to, Op cause) {
+			return new Piece(from, to, null, null, cause);
+		}
+
+		static Piece element(int index, Op cause) {
+			return new Piece(index, index + 1, new Node(), null, cause);
+		}
+
+		static Piece fresh(JsonElement value, Op cause) {
+			return new Piece(-1, -1, null, value, cause);
+		}
+
+		boolean isRun() {
+			return child == null && value == null;
+		}
+
+		long size() {
+			return dropped ? 0 : isRun() ? (long) to - from : 1;
+		}
+	}
+
+	/**
+	 * The pieces of an array being planned, with a cursor between two of them: before holds
+	 * the pieces ahead of the cursor in order, after the others in reverse. An operation
+	 * moves the cursor to its index and edits there, so the operations on an array in index
+	 * order, as in exported patches, are planned in time linear in their number.
+	 */
+	private static final class PieceList {
+		private final List<Piece> before = new ArrayList<>();
+		private final List<Piece> after = new ArrayList<>();
+		// Values added with "-", which follow every original element
+		private final List<Piece> appended = new ArrayList<>();
+		// Array positions taken by the pieces before the cursor
+		private long pos;
+
+		PieceList() {
+			after.add(Piece.run(0, REST, null));
+		}
+
+		// Inserts a piece before position index, splitting a run if it falls inside one
+		void insert(int index, Piece piece) {
+			seek(index, true);
+			if (after.isEmpty()) throw piece.cause.fail("index " + index + " is out of bounds");
+			if (index > pos) {
+				Piece at = after.remove(after.size() - 1);
+				int original = at.from + (int) (index - pos);
+				after.add(Piece.run(original, at.to, piece.cause));
+				add(Piece.run(at.from, original, piece.cause));
+			}
+			add(piece);
+		}
+
+		// The single piece at position index, split out of a run if need be, left after the cursor
+		Piece split(int index, Op op) {
+			seek(index, false);
+			if (after.isEmpty()) throw op.fail("index " + index + " is out of bounds");
+			Piece at = after.get(after.size() - 1);
+			if (!at.isRun()) return at;
+			after.remove(after.size() - 1);
+			int original = at.from + (int) (index - pos);
+			if (at.to == REST || original + 1 < at.to) after.add(Piece.run(original + 1, at.to, op));
+			Piece element = Piece.element(original, op);
+			after.add(element);
+			if (original > at.from) add(Piece.run(at.from, original, op));
+			return element;
+		}
+
+		// Adds a piece just before the cursor
+		void add(Piece piece) {
+			before.add(piece);
+			pos += piece.size();
+		}
+
+		void append(Piece piece) {
+			appended.add(piece);
+		}
+
+		// Moves the cursor past the piece after it
+		void skip() {
+			add(after.remove(after.size() - 1));
+		}
+
+		// Removes the piece after the cursor
+		void remove() {
+			after.remove(after.size() - 1);
+		}
+
+		List<Piece> toList() {
+			List<Piece> pieces = new ArrayList<>(before.size() + after.size() + appended.size());
+			pieces.addAll(before);
+			for (int k = after.size() - 1; k >= 0; k--) pieces.add(after.get(k));
+			pieces.addAll(appended);
+			return pieces;
+		}
+
+		/**
+		 * Moves the cursor to just before the first piece that ends after position index or,
+		 * when inserting, starts at it. The pieces ahead of that one are a prefix of the list,
+		 * so the cursor only ever moves one way.
+		 */
+		private void seek(int index, boolean inserting) {
+			while (!before.isEmpty()) {
+				Piece p = before.get(before.size() - 1);
+				if (ahead(pos - p.size(), pos, index, inserting)) break;
+				before.remove(before.size() - 1);
+				after.add(p);
+				pos -= p.size();
+			}
+			while (!after.isEmpty()) {
+				Piece p = after.get(after.size() - 1);
+				if (!ahead(pos, pos + p.size(), index, inserting)) break;
+				after.remove(after.size() - 1);
+				before.add(p);
+				pos += p.size();
+			}
+		}
+
+		private static boolean ahead(long start, long end, int index, boolean inserting) {
+			return end <= index && !(inserting && start == index);
+		}
+	}
+
+	private static final class Applier {
+		private final JsonReader in;
+		private JsonWriter out;
+
+		Applier(JsonReader in, JsonWriter out) {
+			this.in = in;
+			this.out = out;
+		}
+
+		void value(Node node) throws IOException {
+			if (node == null || node.ops.isEmpty()) {
+				JsonStreamFormatter.copyValue(in, out);
+				return;
+			}
+			JsonToken token = in.peek();
+			if (token == JsonToken.BEGIN_OBJECT) {
+				object(plan(node));
+			} else if (token == JsonToken.BEGIN_ARRAY) {
+				List<Piece> pieces = planArray(node);
+				if (pieces != null) array(pieces);
+				else tree(node);
+			} else {
+				throw node.ops.get(0).op.fail("path not found");
+			}
+		}
+
+		// The members the operations touch, in the order first touched
+		private Map<String, Member> plan(Node node) {
+			Map<String, Member> members = new LinkedHashMap<>();
+			for (Pending p : node.ops) {
+				Op op = p.op;
+				Member m = members.computeIfAbsent(p.token(), k -> new Member());
+				if (p.last() && op.op.equals("add")) {
+					m.state = Member.NEW;
+					m.value = op.value.deepCopy();
+					continue;
+				}
+				if (m.state == Member.REMOVED) throw op.fail("path not found");
+				if (m.state == Member.ORIGINAL && m.requiredBy == null) m.requiredBy = op;
+				if (!p.last()) {
+					if (m.state == Member.NEW) {
+						m.value = applyTree(m.value, op, p.at + 1);
+					} else {
+						if (m.child == null) m.child = new Node();
+						m.child.ops.add(new Pending(op, p.at + 1));
+					}
+				} else if (op.op.equals("remove")) {
+					m.state = Member.REMOVED;
+					m.value = null;
+				} else {
+					m.state = Member.NEW;
+					m.value = op.value.deepCopy();
+				}
+			}
+			return members;
+		}
+
+		private void object(Map<String, Member> members) throws IOException {
+			in.beginObject();
+			out.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				Member m = members.get(name);
+				if (m == null) {
+					out.name(name);
+					JsonStreamFormatter.copyValue(in, out);
+					continue;
+				}
+				m.seen = true;
+				if (m.state == Member.ORIGINAL) {
+					out.name(name);
+					value(m.child);
+				} else {
+					// Edits made before the member was replaced must still fit the original
+					discard(m.child);
+					if (m.state == Member.NEW && !m.written) {
+						out.name(name);
+						JsonValueText.COMPACT.toJson(m.value, out);
+						m.written = true;
+					}
+				}
+			}
+			for (Map.Entry<String, Member> e : members.entrySet()) {
+				Member m = e.getValue();
+				if (!m.seen && m.requiredBy != null) throw m.requiredBy.fail("path not found");
+				if (m.state == Member.NEW && !m.written) {
+					out.name(e.getKey());
+					JsonValueText.COMPACT.toJson(m.value, out);
+				}
+			}
+			in.endObject();
+			out.endObject();
+		}
+
+		/**
+		 * The array as pieces in output order. It starts as one run of all original elements;
+		 * each operation splits off the element it is about, since the array's length is only
+		 * known once it has been read. Returns null if an index comes after an append, as what
+		 * it names then depends on that length.
+		 */
+		private List<Piece> planArray(Node node) {
+			PieceList pieces = new PieceList();
+			boolean appended = false;
+			for (Pending p : node.ops) {
+				Op op = p.op;
+				String token = p.token();
+				if (token.equals("-")) {
+					if (!p.last() || !op.op.equals("add")) throw op.fail("path not found");
+					pieces.append(Piece.fresh(op.value.deepCopy(), op));
+					appended = true;
+					continue;
+				}
+				if (appended) return null;
+				int index = index(op, token, REST - 1);
+				if (p.last() && op.op.equals("add")) {
+					pieces.insert(index, Piece.fresh(op.value.deepCopy(), op));
+					continue;
+				}
+				Piece piece = pieces.split(index, op);
+				if (!p.last()) {
+					if (piece.value != null) {
+						piece.value = applyTree(piece.value, op, p.at + 1);
+					} else {
+						piece.child.ops.add(new Pending(op, p.at + 1));
+					}
+				} else {
+					if (piece.child != null && !piece.child.ops.isEmpty()) {
+						piece.dropped = true;
+						pieces.skip();
+					} else {
+						pieces.remove();
+					}
+					if (op.op.equals("replace")) pieces.add(Piece.fresh(op.value.deepCopy(), op));
+				}
+			}
+			return pieces.toList();
+		}
+
+		// Original elements not in any piece were removed and are skipped
+		private void array(List<Piece> pieces) throws IOException {
+			in.beginArray();
+			out.beginArray();
+			int next = 0;
+			for (Piece piece : pieces) {
+				if (piece.value != null) {
+					JsonValueText.COMPACT.toJson(piece.value, out);
+					continue;
+				}
+				for (; next < piece.from; next++) {
+					if (!in.hasNext()) throw outOfBounds(piece);
+					in.skipValue();
+				}
+				if (piece.child != null) {
+					if (!in.hasNext()) throw outOfBounds(piece);
+					if (piece.dropped) discard(piece.child);
+					else value(piece.child);
+					next++;
+					continue;
+				}
+				for (; next < piece.to && in.hasNext(); next++) {
+					JsonStreamFormatter.copyValue(in, out);
+				}
+				if (piece.to != REST && next < piece.to) throw outOfBounds(piece);
+			}
+			in.endArray();
+			out.endArray();
+		}
+
+		// Reads the value into a tree and applies the edits there
+		private void tree(Node node) throws IOException {
+			JsonElement value = ELEMENT_ADAPTER.read(in);
+			for (Pending p : node.ops) value = applyTree(value, p.op, p.at);
+			JsonValueText.COMPACT.toJson(value, out);
+		}
+
+		// Reads a value through the edits, so they are checked, and throws the result away
+		private void discard(Node node) throws IOException {
+			if (node == null || node.ops.isEmpty()) {
+				in.skipValue();
+				return;
+			}
+			JsonWriter kept = out;
+			out = new JsonWriter(Writer.nullWriter());
+			try {
+				value(node);
+			} finally {
+				out = kept;
+			}
+		}
+
+		private static IllegalArgumentException outOfBounds(Piece piece) {
+			return piece.cause.fail("index out of bounds");
+		}
+	}
+}
@@ -0,0 +1,817 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * JSONPath compiled once into a chain of selector steps and evaluated against parsed
+ * {@link JsonElement}s. Supported syntax:
+ *
+ *   $  .name  ['name']  [0]  [-1]  [0,2]  [1:5:2]  *  [*]  ..name  ..*  [?(filter)]
+ *
+ * Filters combine @/$ paths, literals (numbers, 'strings', true, false, null) and the
+ * operators == != &lt; &lt;= &gt; &gt;= =~ /regex/i ! &amp;&amp; || with parentheses.
+ * A bare path in a filter tests for existence (and is false for a boolean false).
+ */
+final class JsonPathQuery {
+
+	interface Sink {
+		// Receives matches in selection order; return false to stop the evaluation
+		boolean accept(Match match);
+	}
+
+	/**
+	 * A selected value and how it was reached. Object member positions are only resolved
+	 * when the tree path is needed.
+	 */
+	static final class Match {
+		final Match parent;
+		final String name;
+		final int index;
+		final JsonElement value;
+
+		private Match(Match parent, String name, int index, JsonElement value) {
+			this.parent = parent;
+			this.name = name;
+			this.index = index;
+			this.value = value;
+		}
+
+		// A document root sitting at the given top-level position of the viewer tree
+		static Match root(JsonElement value, int topIndex) {
+			return new Match(null, null, topIndex, value);
+		}
+
+		Match member(String name, JsonElement value) {
+			return new Match(this, name, -1, value);
+		}
+
+		Match element(int index, JsonElement value) {
+			return new Match(this, null, index, value);
+		}
+
+		String path() {
+			List<Match> chain = new ArrayList<>();
+			for (Match m = this; m.parent != null; m = m.parent) chain.add(m);
+			StringBuilder sb = new StringBuilder("$");
+			for (int i = chain.size() - 1; i >= 0; i--) {
+				Match m = chain.get(i);
+				if (m.name == null) {
+					sb.append('[').append(m.index).append(']');
+				} else if (isPlainName(m.name)) {
+					sb.append('.').append(m.name);
+				} else {
+					sb.append("['").append(m.name.replace("\\", "\\\\").replace("'", "\\'")).append("']");
+				}
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Child indices from the viewer's model root down to this value.
+		 */
+		int[] pathIndices() {
+			int depth = 0;
+			for (Match m = this; m != null; m = m.parent) depth++;
+			int[] path = new int[depth];
+			for (Match m = this; m != null; m = m.parent) {
+				path[--depth] = m.indexInParent();
+			}
+			return path;
+		}
+
+		private int indexInParent() {
+			if (name == null) return index;
+			int i = 0;
+			for (String key : parent.value.getAsJsonObject().keySet()) {
+				if (key.equals(name)) return i;
+				i++;
+			}
+			return -1;
+		}
+	}
+
+	private static final int CACHE_SIZE = 64;
+	private static final int CHECK_EVERY = 4096;
+
+	// Compiled queries, least recently used evicted first
+	private static final Map<String, JsonPathQuery> CACHE = new LinkedHashMap<String, JsonPathQuery>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, JsonPathQuery> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private final String source;
+	private final Step[] steps;
+
+	private JsonPathQuery(String source, Step[] steps) {
+		this.source = source;
+		this.steps = steps;
+	}
+
+	/**
+	 * Returns the compiled form of the query, reusing a cached one when available.
+	 *
+	 * @throws IllegalArgumentException if the query is not valid JSONPath
+	 */
+	static JsonPathQuery compile(String query) {
+		String key = query.trim();
+		synchronized (CACHE) {
+			JsonPathQuery cached = CACHE.get(key);
+			if (cached != null) return cached;
+		}
+		JsonPathQuery compiled = new Compiler(key).compileQuery();
+		synchronized (CACHE) {
+			CACHE.put(key, compiled);
+		}
+		return compiled;
+	}
+
+	@Override
+	public String toString() {
+		return source;
+	}
+
+	/**
+	 * Evaluates the query against one document. Returns false if the sink stopped it early.
+	 *
+	 * @throws CancellationException once {@code cancelled} reports true
+	 */
+	boolean evaluate(Match root, BooleanSupplier cancelled, Sink sink) {
+		Evaluation ev = new Evaluation(root.value, cancelled, sink);
+		try {
+			ev.run(steps, 0, root);
+		} catch (Stop stop) {
+			return false;
+		}
+		return true;
+	}
+
+	// Thrown through the selector chain when the sink asks to stop
+	private static final class Stop extends RuntimeException {
+		Stop() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static final class Evaluation {
+		final JsonElement root;
+		final BooleanSupplier cancelled;
+		final Sink sink;
+		int visited;
+
+		Evaluation(JsonElement root, BooleanSupplier cancelled, Sink sink) {
+			this.root = root;
+			this.cancelled = cancelled;
+			this.sink = sink;
+		}
+
+		void run(Step[] steps, int i, Match m) {
+			if (i == steps.length) {
+				if (!sink.accept(m)) throw new Stop();
+				return;
+			}
+			steps[i].select(m, this, next -> run(steps, i + 1, next));
+		}
+
+		void visit() {
+			if (++visited % CHECK_EVERY == 0 && cancelled.getAsBoolean()) {
+				throw new CancellationException();
+			}
+		}
+	}
+
+	private interface Emit {
+		void emit(Match m);
+	}
+
+	private interface Step {
+		void select(Match m, Evaluation ev, Emit out);
+	}
+
+	private static final class ChildNames implements Step {
+		private final String[] names;
+
+		ChildNames(String[] names) {
+			this.names = names;
+		}
+
+		@Override
+		public void select(Match m, Evaluation ev, Emit out) {
+			if (!m.value.isJsonObject()) return;
+			JsonObject obj = m.value.getAsJsonObject();
+			for (String name : names) {
+				JsonElement child = obj.get(name);
+				if (child != null) {
+					ev.visit();
+					out.emit(m.member(name, child));
+				}
+			}
+		}
+	}
+
+	private static final class Wildcard implements Step {
+		@Override
+		public void select(Match m, Evaluation ev, Emit out) {
+			forEachChild(m, ev, out);
+		}
+	}
+
+	private static final class Indexes implements Step {
+		private final int[] indexes;
+
+		Indexes(int[] indexes) {
+			this.indexes = indexes;
+		}
+
+		@Override
+		public void select(Match m, Evaluation ev, Emit out) {
+			if (!m.value.isJsonArray()) return;
+			JsonArray arr = m.value.getAsJsonArray();
+			for (int index : indexes) {
+				int i = index < 0 ? arr.size() + index : index;
+				if (i >= 0 && i < arr.size()) {
+					ev.visit();
+					out.emit(m.element(i, arr.get(i)));
+				}
+			}
+		}
+	}
+
+	private static final class Slice implements Step {
+		private final Integer start;
+		private final Integer end;
+		private final int step;
+
+		Slice(Integer start, Integer end, int step) {
+			this.start = start;
+			this.end = end;
+			this.step = step;
+		}
+
+		@Override
+		public void select(Match m, Evaluation ev, Emit out) {
+			if (!m.value.isJsonArray()) return;
+			JsonArray arr = m.value.getAsJsonArray();
+			int n = arr.size();
+			if (step > 0) {
+				int from = clamp(start == null ? 0 : start, n);
+				int to = clamp(end == null ? n : end, n);
+				for (int i = from; i < to; i += step) {
+					ev.visit();
+					out.emit(m.element(i, arr.get(i)));
+				}
+			} else {
+				// Bounds run from -1 (before the first element) to n - 1, as in RFC 9535
+				int from = start == null ? n - 1 : clampDown(start, n);
+				int to = end == null ? -1 : clampDown(end, n);
+				for (int i = from; i > to; i += step) {
+					ev.visit();
+					out.emit(m.element(i, arr.get(i)));
+				}
+			}
+		}
+
+		private static int clamp(int i, int n) {
+			if (i < 0) i += n;
+			return Math.max(0, Math.min(i, n));
+		}
+
+		private static int clampDown(int i, int n) {
+			if (i < 0) i += n;
+			return Math.min(Math.max(i, -1), n - 1);
+		}
+	}
+
+	private static final class Filter implements Step {
+		private final Expr expr;
+
+		Filter(Expr expr) {
+			this.expr = expr;
+		}
+
+		@Override
+		public void select(Match m, Evaluation ev, Emit out) {
+			forEachChild(m, ev, child -> {
+				if (truthy(expr.eval(child.value, ev.root))) {
+					out.emit(child);
+				}
+			});
+		}
+	}
+
+	/**
+	 * ..step: applies the inner step to the node itself and to every descendant, in document
+	 * order. The walk keeps its own stack, so a deeply nested document cannot overflow the
+	 * thread's.
+	 */
+	private static final class Descendants implements Step {
+		private final Step inner;
+
+		Descendants(Step inner) {
+			this.inner = inner;
+		}
+
+		@Override
+		public void select(Match m, Evaluation ev, Emit out) {
+			ArrayDeque<Match> pending = new ArrayDeque<>();
+			List<Match> children = new ArrayList<>();
+			pending.push(m);
+			while (!pending.isEmpty()) {
+				Match next = pending.pop();
+				inner.select(next, ev, out);
+				forEachChild(next, ev, children::add);
+				for (int i = children.size() - 1; i >= 0; i--) pending.push(children.get(i));
+				children.clear();
+			}
+		}
+	}
+
+	private static void forEachChild(Match m, Evaluation ev, Emit out) {
+		if (m.value.isJsonObject()) {
+			for (Map.Entry<String, JsonElement> entry : m.value.getAsJsonObject().entrySet()) {
+				ev.visit();
+				out.emit(m.member(entry.getKey(), entry.getValue()));
+			}
+		} else if (m.value.isJsonArray()) {
+			JsonArray arr = m.value.getAsJsonArray();
+			for (int i = 0; i < arr.size(); i++) {
+				ev.visit();
+				out.emit(m.element(i, arr.get(i)));
+			}
+		}
+	}
+
+	// Filter expressions evaluate to a JSON value, or null when a path does not exist
+	private interface Expr {
+		JsonElement eval(JsonElement current, JsonElement root);
+	}
+
+	private static final JsonPrimitive TRUE = new JsonPrimitive(true);
+	private static final JsonPrimitive FALSE = new JsonPrimitive(false);
+
+	private static JsonPrimitive bool(boolean b) {
+		return b ? TRUE : FALSE;
+	}
+
+	private static boolean truthy(JsonElement v) {
+		if (v == null) return false;
+		return !(v.isJsonPrimitive() && v.getAsJsonPrimitive().isBoolean() && !v.getAsBoolean());
+	}
+
+	private static final class PathExpr implements Expr {
+		private final boolean fromRoot;
+		private final Object[] segments; // String member names and Integer array indexes
+
+		PathExpr(boolean fromRoot, Object[] segments) {
+			this.fromRoot = fromRoot;
+			this.segments = segments;
+		}
+
+		@Override
+		public JsonElement eval(JsonElement current, JsonElement root) {
+			JsonElement v = fromRoot ? root : current;
+			for (Object segment : segments) {
+				if (segment instanceof String) {
+					if (!v.isJsonObject()) return null;
+					v = v.getAsJsonObject().get((String) segment);
+				} else {
+					if (!v.isJsonArray()) return null;
+					JsonArray arr = v.getAsJsonArray();
+					int i = (Integer) segment;
+					if (i < 0) i += arr.size();
+					if (i < 0 || i >= arr.size()) return null;
+					v = arr.get(i);
+				}
+				if (v == null) return null;
+			}
+			return v;
+		}
+	}
+
+	private static final class Compare implements Expr {
+		private final String op;
+		private final Expr left;
+		private final Expr right;
+
+		Compare(String op, Expr left, Expr right) {
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public JsonElement eval(JsonElement current, JsonElement root) {
+			JsonElement a = left.eval(current, root);
+			JsonElement b = right.eval(current, root);
+			if (a == null || b == null) return FALSE;
+			switch (op) {
+				case "==": return bool(valueEquals(a, b));
+				case "!=": return bool(!valueEquals(a, b));
+				default:
+					Integer c = order(a, b);
+					if (c == null) return FALSE;
+					switch (op) {
+						case "<": return bool(c < 0);
+						case "<=": return bool(c <= 0);
+						case ">": return bool(c > 0);
+						default: return bool(c >= 0);
+					}
+			}
+		}
+
+		private static boolean valueEquals(JsonElement a, JsonElement b) {
+			Integer c = order(a, b);
+			return c != null ? c == 0 : a.equals(b);
+		}
+
+		// Numbers compare numerically and strings lexically; anything else is unordered
+		private static Integer order(JsonElement a, JsonElement b) {
+			if (!a.isJsonPrimitive() || !b.isJsonPrimitive()) return null;
+			JsonPrimitive pa = a.getAsJsonPrimitive();
+			JsonPrimitive pb = b.getAsJsonPrimitive();
+			if (pa.isNumber() && pb.isNumber()) {
+				try {
+					return pa.getAsBigDecimal().compareTo(pb.getAsBigDecimal());
+				} catch (NumberFormatException e) {
+					return Double.compare(pa.getAsDouble(), pb.getAsDouble());
+				}
+			}
+			if (pa.isString() && pb.isString()) {
+				return pa.getAsString().compareTo(pb.getAsString());
+			}
+			return null;
+		}
+	}
+
+	private static final class RegexMatch implements Expr {
+		private final Expr operand;
+		private final Pattern pattern;
+
+		RegexMatch(Expr operand, Pattern pattern) {
+			this.operand = operand;
+			this.pattern = pattern;
+		}
+
+		@Override
+		public JsonElement eval(JsonElement current, JsonElement root) {
+			JsonElement v = operand.eval(current, root);
+			if (v == null || !v.isJsonPrimitive() || !v.getAsJsonPrimitive().isString()) return FALSE;
+			return bool(pattern.matcher(v.getAsString()).find());
+		}
+	}
+
+	private static final class Logical implements Expr {
+		private final boolean and;
+		private final Expr left;
+		private final Expr right;
+
+		Logical(boolean and, Expr left, Expr right) {
+			this.and = and;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public JsonElement eval(JsonElement current, JsonElement root) {
+			boolean l = truthy(left.eval(current, root));
+			if (and ? !l : l) return bool(l);
+			return bool(truthy(right.eval(current, root)));
+		}
+	}
+
+	private static boolean isPlainName(String name) {
+		if (name.isEmpty()) return false;
+		for (int i = 0; i < name.length(); i++) {
+			if (!isNameChar(name.charAt(i))) return false;
+		}
+		return true;
+	}
+
+	private static boolean isNameChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '$';
+	}
+
+	// Recursive-descent compiler over the query text
+	private static final class Compiler {
+		private final String s;
+		private int pos;
+
+		Compiler(String s) {
+			this.s = s;
+		}
+
+		JsonPathQuery compileQuery() {
+			skipSpaces();
+			expect('$');
+			List<Step> steps = new ArrayList<>();
+			while (true) {
+				skipSpaces();
+				if (pos == s.length()) break;
+				if (s.startsWith("..", pos)) {
+					pos += 2;
+					Step inner;
+					if (peek() == '[') {
+						inner = bracket();
+					} else if (peek() == '*') {
+						pos++;
+						inner = new Wildcard();
+					} else {
+						inner = new ChildNames(new String[]{name()});
+					}
+					steps.add(new Descendants(inner));
+				} else if (peek() == '.') {
+					pos++;
+					if (peek() == '*') {
+						pos++;
+						steps.add(new Wildcard());
+					} else {
+						steps.add(new ChildNames(new String[]{name()}));
+					}
+				} else if (peek() == '[') {
+					steps.add(bracket());
+				} else {
+					throw error("Expected '.', '..' or '['");
+				}
+			}
+			return new JsonPathQuery(s, steps.toArray(new Step[0]));
+		}
+
+		private Step bracket() {
+			expect('[');
+			skipSpaces();
+			Step step;
+			if (peek() == '*') {
+				pos++;
+				step = new Wildcard();
+			} else if (peek() == '?') {
+				pos++;
+				skipSpaces();
+				expect('(');
+				Expr expr = or();
+				skipSpaces();
+				expect(')');
+				step = new Filter(expr);
+			} else if (peek() == '\'' || peek() == '"') {
+				List<String> names = new ArrayList<>();
+				do {
+					skipSpaces();
+					names.add(quoted());
+					skipSpaces();
+				} while (accept(','));
+				step = new ChildNames(names.toArray(new String[0]));
+			} else {
+				step = indexesOrSlice();
+			}
+			skipSpaces();
+			expect(']');
+			return step;
+		}
+
+		private Step indexesOrSlice() {
+			Integer first = optionalInt();
+			skipSpaces();
+			if (accept(':')) {
+				skipSpaces();
+				Integer end = optionalInt();
+				skipSpaces();
+				int step = 1;
+				if (accept(':')) {
+					skipSpaces();
+					Integer st = optionalInt();
+					if (st != null) step = st;
+				}
+				if (step == 0) throw error("Slice step cannot be 0");
+				return new Slice(first, end, step);
+			}
+			if (first == null) throw error("Expected index, slice, name, '*' or filter");
+			List<Integer> indexes = new ArrayList<>();
+			indexes.add(first);
+			while (accept(',')) {
+				skipSpaces();
+				Integer next = optionalInt();
+				if (next == null) throw error("Expected index");
+				indexes.add(next);
+				skipSpaces();
+			}
+			int[] arr = new int[indexes.size()];
+			for (int i = 0; i < arr.length; i++) arr[i] = indexes.get(i);
+			return new Indexes(arr);
+		}
+
+		// Filter grammar: or := and ('||' and)*, and := unary ('&&' unary)*
+		private Expr or() {
+			Expr left = and();
+			while (true) {
+				skipSpaces();
+				if (!s.startsWith("||", pos)) return left;
+				pos += 2;
+				left = new Logical(false, left, and());
+			}
+		}
+
+		private Expr and() {
+			Expr left = unary();
+			while (true) {
+				skipSpaces();
+				if (!s.startsWith("&&", pos)) return left;
+				pos += 2;
+				left = new Logical(true, left, unary());
+			}
+		}
+
+		private Expr unary() {
+			skipSpaces();
+			if (peek() == '!' && !s.startsWith("!=", pos)) {
+				pos++;
+				Expr inner = unary();
+				return (current, root) -> bool(!truthy(inner.eval(current, root)));
+			}
+			Expr left = operand();
+			skipSpaces();
+			if (s.startsWith("=~", pos)) {
+				pos += 2;
+				skipSpaces();
+				return new RegexMatch(left, regex());
+			}
+			for (String op : new String[]{"==", "!=", "<=", ">=", "<", ">"}) {
+				if (s.startsWith(op, pos)) {
+					pos += op.length();
+					return new Compare(op, left, operand());
+				}
+			}
+			return left;
+		}
+
+		private Expr operand() {
+			skipSpaces();
+			char c = peek();
+			if (c == '(') {
+				pos++;
+				Expr inner = or();
+				skipSpaces();
+				expect(')');
+				return inner;
+			}
+			if (c == '@' || c == '$') {
+				pos++;
+				return filterPath(c == '$');
+			}
+			if (c == '\'' || c == '"') {
+				JsonPrimitive literal = new JsonPrimitive(quoted());
+				return (current, root) -> literal;
+			}
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				int start = pos;
+				pos++;
+				while (pos < s.length() && "0123456789.eE+-".indexOf(s.charAt(pos)) >= 0) pos++;
+				try {
+					JsonPrimitive literal = new JsonPrimitive(new BigDecimal(s.substring(start, pos)));
+					return (current, root) -> literal;
+				} catch (NumberFormatException e) {
+					pos = start;
+					throw error("Invalid number");
+				}
+			}
+			for (String word : new String[]{"true", "false", "null"}) {
+				if (s.startsWith(word, pos)) {
+					pos += word.length();
+					JsonElement literal = word.equals("null") ? JsonNull.INSTANCE : bool(word.equals("true"));
+					return (current, root) -> literal;
+				}
+			}
+			throw error("Expected path, literal or '('");
+		}
+
+		// Singular paths only inside filters: .name, ['name'], [n]
+		private Expr filterPath(boolean fromRoot) {
+			List<Object> segments = new ArrayList<>();
+			while (true) {
+				if (peek() == '.' && !s.startsWith("..", pos)) {
+					pos++;
+					segments.add(name());
+				} else if (peek() == '[') {
+					pos++;
+					skipSpaces();
+					if (peek() == '\'' || peek() == '"') {
+						segments.add(quoted());
+					} else {
+						Integer index = optionalInt();
+						if (index == null) throw error("Expected name or index in filter path");
+						segments.add(index);
+					}
+					skipSpaces();
+					expect(']');
+				} else {
+					return new PathExpr(fromRoot, segments.toArray());
+				}
+			}
+		}
+
+		private Pattern regex() {
+			expect('/');
+			StringBuilder sb = new StringBuilder();
+			while (true) {
+				if (pos >= s.length()) throw error("Unterminated regex");
+				char c = s.charAt(pos++);
+				if (c == '/') break;
+				if (c == '\\' && pos < s.length() && s.charAt(pos) == '/') {
+					sb.append('/');
+					pos++;
+				} else {
+					sb.append(c);
+				}
+			}
+			int flags = 0;
+			while (pos < s.length() && Character.isLetter(s.charAt(pos))) {
+				char f = s.charAt(pos++);
+				if (f == 'i') flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+				else if (f == 's') flags |= Pattern.DOTALL;
+				else if (f == 'm') flags |= Pattern.MULTILINE;
+				else throw error("Unknown regex flag '" + f + "'");
+			}
+			try {
+				return Pattern.compile(sb.toString(), flags);
+			} catch (PatternSyntaxException e) {
+				throw error("Invalid regex: " + e.getDescription());
+			}
+		}
+
+		private String name() {
+			int start = pos;
+			while (pos < s.length() && isNameChar(s.charAt(pos))) pos++;
+			if (pos == start) throw error("Expected member name");
+			return s.substring(start, pos);
+		}
+
+		private String quoted() {
+			char q = peek();
+			if (q != '\'' && q != '"') throw error("Expected quoted name");
+			pos++;
+			StringBuilder sb = new StringBuilder();
+			while (true) {
+				if (pos >= s.length()) throw error("Unterminated string");
+				char c = s.charAt(pos++);
+				if (c == q) return sb.toString();
+				if (c == '\\' && pos < s.length()) {
+					c = s.charAt(pos++);
+				}
+				sb.append(c);
+			}
+		}
+
+		private Integer optionalInt() {
+			int start = pos;
+			if (peek() == '-') pos++;
+			while (pos < s.length() && Character.isDigit(s.charAt(pos))) pos++;
+			if (pos == start || (pos == start + 1 && s.charAt(start) == '-')) {
+				pos = start;
+				return null;
+			}
+			try {
+				return Integer.parseInt(s.substring(start, pos));
+			} catch (NumberFormatException e) {
+				pos = start;
+				throw error("Index out of range");
+			}
+		}
+
+		private char peek() {
+			return pos < s.length() ? s.charAt(pos) : '\0';
+		}
+
+		private boolean accept(char c) {
+			if (peek() == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			if (!accept(c)) throw error("Expected '" + c + "'");
+		}
+
+		private void skipSpaces() {
+			while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + (pos + 1));
+		}
+	}
+}
@@ -0,0 +1,461 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Column-wise copy of an array of records for the JSON Viewer's table mode. Columns are the
+ * keys seen in the first records; a column whose values are all integers or all booleans is
+ * stored in a primitive array, anything else keeps a reference to the value (a tape index or
+ * a Gson element) that is only formatted when its cell is shown. Decimal columns keep
+ * references too, so cells show the number as written and sort by its exact value.
+ */
+final class JsonRecordTable {
+
+	enum Kind { INTEGER, DECIMAL, BOOLEAN, TEXT }
+
+	interface Progress {
+		// Called every few thousand rows from the building thread; may throw CancellationException
+		void rows(int done, int total);
+	}
+
+	// Column 0 is the record's index in the array; record columns follow
+	static final int INDEX_COLUMN = 0;
+
+	static final int SAMPLE_RECORDS = 1000;
+	private static final int REPORT_EVERY = 1 << 14;
+
+	private final int rows;
+	private final String[] names;
+	private final Kind[] kinds;
+	private final Object[] values;
+	private final BitSet[] nulls;
+	private final BitSet[] missing;
+	private final JsonTape tape;
+
+	private JsonRecordTable(int rows, String[] names, Kind[] kinds, Object[] values, BitSet[] nulls,
+			BitSet[] missing, JsonTape tape) {
+		this.rows = rows;
+		this.names = names;
+		this.kinds = kinds;
+		this.values = values;
+		this.nulls = nulls;
+		this.missing = missing;
+		this.tape = tape;
+	}
+
+	/**
+	 * Builds the table for the array at tape index {@code array}.
+	 */
+	static JsonRecordTable of(JsonTape tape, int array, Progress progress) {
+		TapeRecords records = new TapeRecords(tape, array);
+		return build(records, progress, tape);
+	}
+
+	static JsonRecordTable of(JsonArray array, Progress progress) {
+		return build(new ElementRecords(array), progress, null);
+	}
+
+	int getRowCount() {
+		return rows;
+	}
+
+	// Record columns plus the index column
+	int getColumnCount() {
+		return names.length + 1;
+	}
+
+	String getColumnName(int column) {
+		return column == INDEX_COLUMN ? "#" : names[column - 1];
+	}
+
+	Kind getKind(int column) {
+		return column == INDEX_COLUMN ? Kind.INTEGER : kinds[column - 1];
+	}
+
+	/**
+	 * Display text of a cell: empty when the record lacks the key, "null" for JSON null, and a
+	 * short summary for nested objects and arrays.
+	 */
+	String text(int row, int column) {
+		if (column == INDEX_COLUMN) return Integer.toString(row);
+		int c = column - 1;
+		if (missing[c].get(row)) return "";
+		if (nulls[c].get(row)) return "null";
+		switch (kinds[c]) {
+			case INTEGER: return Long.toString(((long[]) values[c])[row]);
+			case BOOLEAN: return Boolean.toString(((boolean[]) values[c])[row]);
+			default: break;
+		}
+		if (tape != null) {
+			int pos = ((int[]) values[c])[row];
+			switch (tape.type(pos)) {
+				case JsonTape.OBJECT: return "{…} " + count(tape.childCount(pos), "key");
+				case JsonTape.ARRAY: return "[…] " + count(tape.childCount(pos), "item");
+				default: return tape.scalarText(pos);
+			}
+		}
+		JsonElement value = ((JsonElement[]) values[c])[row];
+		if (value.isJsonObject()) return "{…} " + count(value.getAsJsonObject().size(), "key");
+		if (value.isJsonArray()) return "[…] " + count(value.getAsJsonArray().size(), "item");
+		return JsonTreeModel.primitiveToString(value);
+	}
+
+	private static String count(int n, String unit) {
+		return String.format("%,d %s%s", n, unit, n == 1 ? "" : "s");
+	}
+
+	/**
+	 * Rows whose text in {@code column} (or in any column when it is negative) contains the
+	 * case-folded query, sorted by {@code sortColumn} (none when negative). Missing and null
+	 * cells sort after all values in either direction.
+	 */
+	int[] view(String foldedQuery, int column, int sortColumn, boolean ascending, BooleanSupplier cancelled) {
+		int[] order = new int[rows];
+		int n = 0;
+		for (int row = 0; row < rows; row++) {
+			if ((row & (REPORT_EVERY - 1)) == 0 && cancelled.getAsBoolean()) {
+				throw new CancellationException();
+			}
+			if (foldedQuery.isEmpty() || matches(row, foldedQuery, column)) {
+				order[n++] = row;
+			}
+		}
+		int[] view = Arrays.copyOf(order, n);
+		if (sortColumn >= 0) {
+			sort(view, comparator(sortColumn, ascending), cancelled);
+		}
+		return view;
+	}
+
+	private boolean matches(int row, String foldedQuery, int column) {
+		if (column >= 0) return text(row, column).toLowerCase().contains(foldedQuery);
+		for (int c = 0; c < getColumnCount(); c++) {
+			if (text(row, c).toLowerCase().contains(foldedQuery)) return true;
+		}
+		return false;
+	}
+
+	private interface RowComparator {
+		int compare(int a, int b);
+	}
+
+	private RowComparator comparator(int column, boolean ascending) {
+		int sign = ascending ? 1 : -1;
+		if (column == INDEX_COLUMN) return (a, b) -> sign * Integer.compare(a, b);
+		int c = column - 1;
+		BitSet absent = missing[c];
+		BitSet none = nulls[c];
+		RowComparator values;
+		switch (kinds[c]) {
+			case INTEGER: {
+				long[] v = (long[]) this.values[c];
+				values = (a, b) -> Long.compare(v[a], v[b]);
+				break;
+			}
+			case DECIMAL: {
+				// Parsed once per cell; doubles would tie values that differ past 17 digits
+				BigDecimal[] v = new BigDecimal[rows];
+				for (int row = 0; row < rows; row++) {
+					if (!absent.get(row) && !none.get(row)) v[row] = new BigDecimal(text(row, column));
+				}
+				values = (a, b) -> v[a].compareTo(v[b]);
+				break;
+			}
+			case BOOLEAN: {
+				boolean[] v = (boolean[]) this.values[c];
+				values = (a, b) -> Boolean.compare(v[a], v[b]);
+				break;
+			}
+			default: {
+				// Decode each cell once rather than on every comparison
+				String[] keys = new String[rows];
+				for (int row = 0; row < rows; row++) {
+					if (!absent.get(row) && !none.get(row)) keys[row] = text(row, column);
+				}
+				values = (a, b) -> keys[a].compareTo(keys[b]);
+				break;
+			}
+		}
+		RowComparator byValue = values;
+		return (a, b) -> {
+			int ra = absent.get(a) ? 2 : none.get(a) ? 1 : 0;
+			int rb = absent.get(b) ? 2 : none.get(b) ? 1 : 0;
+			if (ra != 0 || rb != 0) return ra != rb ? Integer.compare(ra, rb) : Integer.compare(a, b);
+			int cmp = sign * byValue.compare(a, b);
+			return cmp != 0 ? cmp : Integer.compare(a, b);
+		};
+	}
+
+	// Bottom-up merge sort of row numbers, checking for cancellation between passes
+	private static void sort(int[] rows, RowComparator cmp, BooleanSupplier cancelled) {
+		int[] src = rows;
+		int[] dst = new int[rows.length];
+		for (int width = 1; width < rows.length; width *= 2) {
+			if (cancelled.getAsBoolean()) throw new CancellationException();
+			for (int lo = 0; lo < rows.length; lo += 2 * width) {
+				int mid = Math.min(lo + width, rows.length);
+				int hi = Math.min(lo + 2 * width, rows.length);
+				int i = lo;
+				int j = mid;
+				for (int k = lo; k < hi; k++) {
+					dst[k] = i < mid && (j >= hi || cmp.compare(src[i], src[j]) <= 0) ? src[i++] : src[j++];
+				}
+			}
+			int[] t = src;
+			src = dst;
+			dst = t;
+		}
+		if (src != rows) System.arraycopy(src, 0, rows, 0, rows.length);
+	}
+
+	// Source-neutral access to the records, so tape and Gson arrays share the two passes below
+	private interface Records {
+		int size();
+
+		// Visits the members of one record; does nothing if it is not an object
+		void members(int row, MemberSink sink);
+	}
+
+	private interface MemberSink {
+		void member(String key, Cell cell);
+	}
+
+	// One value as the passes see it
+	private interface Cell {
+		Kind kind();
+
+		boolean isNull();
+
+		long longValue();
+
+		boolean booleanValue();
+	}
+
+	private static JsonRecordTable build(Records records, Progress progress, JsonTape tape) {
+		int rows = records.size();
+
+		// Columns: keys of the first records in first-seen order
+		Map<String, Integer> columns = new LinkedHashMap<>();
+		for (int row = 0; row < Math.min(rows, SAMPLE_RECORDS); row++) {
+			records.members(row, (key, cell) -> columns.putIfAbsent(key, columns.size()));
+		}
+		int width = columns.size();
+
+		// Pass 1: the narrowest kind that holds every value of each column
+		boolean[] integer = new boolean[width];
+		boolean[] decimal = new boolean[width];
+		boolean[] bool = new boolean[width];
+		boolean[] text = new boolean[width];
+		for (int row = 0; row < rows; row++) {
+			report(progress, row, rows * 2);
+			records.members(row, (key, cell) -> {
+				Integer c = columns.get(key);
+				if (c == null || cell.isNull()) return;
+				switch (cell.kind()) {
+					case INTEGER: integer[c] = true; break;
+					case DECIMAL: decimal[c] = true; break;
+					case BOOLEAN: bool[c] = true; break;
+					default: text[c] = true;
+				}
+			});
+		}
+		Kind[] kinds = new Kind[width];
+		Object[] values = new Object[width];
+		for (int c = 0; c < width; c++) {
+			boolean number = integer[c] || decimal[c];
+			if (text[c] || (number && bool[c]) || !(number || bool[c])) {
+				kinds[c] = Kind.TEXT;
+				values[c] = tape != null ? new int[rows] : new JsonElement[rows];
+			} else if (bool[c]) {
+				kinds[c] = Kind.BOOLEAN;
+				values[c] = new boolean[rows];
+			} else if (decimal[c]) {
+				kinds[c] = Kind.DECIMAL;
+				values[c] = tape != null ? new int[rows] : new JsonElement[rows];
+			} else {
+				kinds[c] = Kind.INTEGER;
+				values[c] = new long[rows];
+			}
+		}
+
+		// Pass 2: fill the columns; cells start out missing until their key is seen
+		BitSet[] nulls = new BitSet[width];
+		BitSet[] missing = new BitSet[width];
+		for (int c = 0; c < width; c++) {
+			nulls[c] = new BitSet(rows);
+			missing[c] = new BitSet(rows);
+			missing[c].set(0, rows);
+		}
+		for (int row = 0; row < rows; row++) {
+			report(progress, rows + row, rows * 2);
+			int r = row;
+			records.members(row, (key, cell) -> {
+				Integer c = columns.get(key);
+				if (c == null) return;
+				missing[c].clear(r);
+				if (cell.isNull()) {
+					nulls[c].set(r);
+					return;
+				}
+				switch (kinds[c]) {
+					case INTEGER: ((long[]) values[c])[r] = cell.longValue(); break;
+					case BOOLEAN: ((boolean[]) values[c])[r] = cell.booleanValue(); break;
+					default:
+						if (tape != null) {
+							((int[]) values[c])[r] = ((TapeRecords.TapeCell) cell).pos;
+						} else {
+							((JsonElement[]) values[c])[r] = ((ElementRecords.ElementCell) cell).value;
+						}
+				}
+			});
+		}
+		return new JsonRecordTable(rows, columns.keySet().toArray(new String[0]), kinds, values, nulls, missing, tape);
+	}
+
+	private static void report(Progress progress, int done, int total) {
+		if (progress != null && (done & (REPORT_EVERY - 1)) == 0) {
+			progress.rows(done, total);
+		}
+	}
+
+	// Integral literals that fit in a long are integers; every other number is a decimal
+	private static Kind numberKind(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '.' || c == 'e' || c == 'E') return Kind.DECIMAL;
+		}
+		return text.length() < 19 || parsesAsLong(text) ? Kind.INTEGER : Kind.DECIMAL;
+	}
+
+	private static boolean parsesAsLong(String text) {
+		try {
+			Long.parseLong(text);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private static final class TapeRecords implements Records {
+		private final JsonTape tape;
+		private final int[] starts;
+
+		TapeRecords(JsonTape tape, int array) {
+			this.tape = tape;
+			starts = new int[tape.childCount(array)];
+			int i = 0;
+			for (int c = tape.firstChild(array); c >= 0; c = tape.nextChild(array, c)) starts[i++] = c;
+		}
+
+		@Override
+		public int size() {
+			return starts.length;
+		}
+
+		@Override
+		public void members(int row, MemberSink sink) {
+			int record = starts[row];
+			if (tape.type(record) != JsonTape.OBJECT) return;
+			TapeCell cell = new TapeCell(tape);
+			for (int k = tape.firstChild(record); k >= 0; k = tape.nextChild(record, k)) {
+				cell.pos = k + 1;
+				sink.member(tape.string(k), cell);
+			}
+		}
+
+		static final class TapeCell implements Cell {
+			private final JsonTape tape;
+			int pos;
+
+			TapeCell(JsonTape tape) {
+				this.tape = tape;
+			}
+
+			@Override
+			public Kind kind() {
+				switch (tape.type(pos)) {
+					case JsonTape.NUMBER: return numberKind(tape.numberText(pos));
+					case JsonTape.TRUE:
+					case JsonTape.FALSE: return Kind.BOOLEAN;
+					default: return Kind.TEXT;
+				}
+			}
+
+			@Override
+			public boolean isNull() {
+				return tape.type(pos) == JsonTape.NULL;
+			}
+
+			@Override
+			public long longValue() {
+				return Long.parseLong(tape.numberText(pos));
+			}
+
+			@Override
+			public boolean booleanValue() {
+				return tape.type(pos) == JsonTape.TRUE;
+			}
+		}
+	}
+
+	private static final class ElementRecords implements Records {
+		private final JsonArray array;
+
+		ElementRecords(JsonArray array) {
+			this.array = array;
+		}
+
+		@Override
+		public int size() {
+			return array.size();
+		}
+
+		@Override
+		public void members(int row, MemberSink sink) {
+			JsonElement record = array.get(row);
+			if (!record.isJsonObject()) return;
+			ElementCell cell = new ElementCell();
+			for (Map.Entry<String, JsonElement> entry : record.getAsJsonObject().entrySet()) {
+				cell.value = entry.getValue();
+				sink.member(entry.getKey(), cell);
+			}
+		}
+
+		static final class ElementCell implements Cell {
+			JsonElement value;
+
+			@Override
+			public Kind kind() {
+				if (!value.isJsonPrimitive()) return Kind.TEXT;
+				JsonPrimitive p = value.getAsJsonPrimitive();
+				if (p.isBoolean()) return Kind.BOOLEAN;
+				if (p.isNumber()) return numberKind(p.getAsNumber().toString());
+				return Kind.TEXT;
+			}
+
+			@Override
+			public boolean isNull() {
+				return value.isJsonNull();
+			}
+
+			@Override
+			public long longValue() {
+				return Long.parseLong(value.getAsNumber().toString());
+			}
+
+			@Override
+			public boolean booleanValue() {
+				return value.getAsBoolean();
+			}
+		}
+	}
+}
@@ -0,0 +1,381 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Search index for the JSON Viewer, built once when a document is parsed. Every tree node
+ * gets an entry holding its case-folded label (key and value), its parent entry and its
+ * index under that parent. Labels are packed into one string so a query is a run of
+ * String.indexOf calls, and a match can be turned into a tree path without the Swing tree
+ * having materialized the node.
+ * <p>
+ * The same pass records subtree weights: each entry's serialized size (as written for tape
+ * documents, compact for Gson trees), the last entry of its subtree (so entries are numbered
+ * in preorder and a subtree is a contiguous range) and its depth.
+ */
+final class JsonSearchIndex {
+
+	interface Progress {
+		// Called every few thousand nodes from the indexing thread; may throw CancellationException
+		void indexed(int nodes);
+	}
+
+	private static final char SEPARATOR = '\0';
+	private static final int REPORT_EVERY = 1 << 14;
+
+	private final String text;
+	private final int[] offsets;
+	private final int[] parents;
+	private final int[] indexes;
+	private final long[] sizes;
+	private final int[] ends;
+	private final int[] depths;
+	private final int count;
+
+	private JsonSearchIndex(Builder b) {
+		this.text = b.sb.toString();
+		this.offsets = b.offsets;
+		this.parents = b.parents;
+		this.indexes = b.indexes;
+		this.sizes = b.sizes;
+		this.ends = b.ends;
+		this.depths = b.depths;
+		this.count = b.count;
+	}
+
+	/**
+	 * Indexes every node under an element-backed tree root, or returns null when the tree
+	 * is backed by something else (e.g. a memory-mapped file).
+	 */
+	static JsonSearchIndex of(JsonTreeNode root, Progress progress) {
+		Builder builder = new Builder(progress);
+		for (int i = 0; i < root.getChildCount(); i++) {
+			JsonTreeNode top = root.getChildAt(i);
+			if (top instanceof JsonTreeModel.ElementNode) {
+				JsonTreeModel.ElementNode node = (JsonTreeModel.ElementNode) top;
+				builder.addTop(node.key, node.getValue(), node.isTitled());
+			} else if (top instanceof JsonTreeModel.TapeNode) {
+				JsonTreeModel.TapeNode node = (JsonTreeModel.TapeNode) top;
+				builder.addTape(-1, i, node.key, node.tape, node.pos);
+			} else {
+				return null;
+			}
+		}
+		return builder.build();
+	}
+
+	int size() {
+		return count;
+	}
+
+	/**
+	 * Feeds every entry whose label contains the case-folded query to the sink, in document
+	 * order. Stops early when the sink returns false.
+	 */
+	void search(String foldedQuery, IntPredicate sink) {
+		if (foldedQuery.isEmpty()) return;
+		int from = 0;
+		while (true) {
+			int hit = text.indexOf(foldedQuery, from);
+			if (hit < 0) return;
+			int entry = Arrays.binarySearch(offsets, 0, count + 1, hit);
+			if (entry < 0) entry = -entry - 2;
+			if (!sink.test(entry)) return;
+			from = offsets[entry + 1];
+		}
+	}
+
+	// Serialized size of the entry's value in chars
+	long size(int entry) {
+		return sizes[entry];
+	}
+
+	// Number of nodes below the entry
+	int descendants(int entry) {
+		return ends[entry] - entry;
+	}
+
+	// Levels of nesting below the entry: 0 for a scalar, 1 for a container of scalars
+	int depth(int entry) {
+		return depths[entry];
+	}
+
+	boolean isContainer(int entry) {
+		return depths[entry] > 0;
+	}
+
+	/**
+	 * Containers with the highest metric, largest first.
+	 */
+	int[] largest(int limit, IntToLongFunction metric) {
+		PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, Comparator.comparingLong(metric::applyAsLong));
+		for (int e = 0; e < count; e++) {
+			if (depths[e] == 0) continue;
+			if (top.size() < limit) {
+				top.add(e);
+			} else if (metric.applyAsLong(e) > metric.applyAsLong(top.peek())) {
+				top.poll();
+				top.add(e);
+			}
+		}
+		int[] result = new int[top.size()];
+		for (int i = result.length - 1; i >= 0; i--) {
+			result[i] = top.poll();
+		}
+		return result;
+	}
+
+	/**
+	 * Entry of a node of the tree this index was built from, or -1 for the invisible root.
+	 * Entries are cached on the nodes, numbering all loaded siblings at once.
+	 */
+	int entryOf(JsonTreeNode node) {
+		if (node.indexedBy == this) return node.indexEntry;
+		JsonTreeNode parent = node.parent;
+		if (parent == null) return -1;
+		int e = parent.parent == null ? 0 : entryOf(parent) + 1;
+		for (int i = 0; i < parent.getChildCount() && e < count; i++) {
+			JsonTreeNode child = parent.getChildAt(i);
+			child.indexedBy = this;
+			child.indexEntry = e;
+			e = ends[e] + 1;
+		}
+		return node.indexedBy == this ? node.indexEntry : -1;
+	}
+
+	/**
+	 * Child indices from the model root down to the entry's node.
+	 */
+	int[] pathIndices(int entry) {
+		int depth = 0;
+		for (int e = entry; e >= 0; e = parents[e]) depth++;
+		int[] path = new int[depth];
+		for (int e = entry; e >= 0; e = parents[e]) path[--depth] = indexes[e];
+		return path;
+	}
+
+	// Mirrors the node layout of JsonTreeModel.ElementNode and TapeNode
+	private static final class Builder {
+		private final Progress progress;
+		private final StringBuilder sb = new StringBuilder();
+		private int[] offsets = new int[1024];
+		private int[] parents = new int[1024];
+		private int[] indexes = new int[1024];
+		private long[] sizes = new long[1024];
+		private int[] ends = new int[1024];
+		private int[] depths = new int[1024];
+		private int count;
+		private int topLevel;
+
+		Builder(Progress progress) {
+			this.progress = progress;
+		}
+
+		void addTop(String key, JsonElement value, boolean titled) {
+			add(-1, topLevel++, key, value, titled);
+		}
+
+		JsonSearchIndex build() {
+			ensureCapacity();
+			offsets[count] = sb.length();
+			return new JsonSearchIndex(this);
+		}
+
+		/**
+		 * Adds the value and everything below it in preorder. Containers wait on an explicit
+		 * stack until their children are in, so deep nesting cannot overflow the thread stack.
+		 */
+		private void add(int parent, int index, String key, JsonElement value, boolean titled) {
+			int id = addEntry(parent, index, JsonTreeModel.elementText(key, value, titled));
+			if (!value.isJsonObject() && !value.isJsonArray()) {
+				if (titled) {
+					int child = addEntry(id, 0, JsonTreeModel.elementText("value", value, false));
+					finish(child, scalarSize(value), 0);
+					finish(id, sizes[child], 0);
+				} else {
+					finish(id, scalarSize(value), 0);
+				}
+				return;
+			}
+			ArrayDeque<Frame> stack = new ArrayDeque<>();
+			stack.push(new Frame(id, value, 0));
+			while (!stack.isEmpty()) {
+				Frame frame = stack.peek();
+				if (frame.next < frame.count) {
+					String childKey;
+					JsonElement child;
+					if (frame.members != null) {
+						Map.Entry<String, JsonElement> member = frame.members.next();
+						childKey = member.getKey();
+						child = member.getValue();
+					} else {
+						childKey = "[" + frame.next + "]";
+						child = frame.array.get(frame.next);
+					}
+					long keySize = frame.members != null ? compactLength(childKey) + 1 : 0;
+					int childId = addEntry(frame.id, frame.next++, JsonTreeModel.elementText(childKey, child, false));
+					if (child.isJsonObject() || child.isJsonArray()) {
+						stack.push(new Frame(childId, child, keySize));
+					} else {
+						frame.size += keySize + scalarSize(child);
+						finish(childId, scalarSize(child), 0);
+					}
+				} else {
+					stack.pop();
+					finish(frame.id, frame.size + Math.max(0, frame.count - 1), frame.depth + 1);
+					Frame up = stack.peek();
+					if (up != null) {
+						up.size += frame.keySize + sizes[frame.id];
+						up.depth = Math.max(up.depth, depths[frame.id]);
+					}
+				}
+			}
+		}
+
+		private static long scalarSize(JsonElement value) {
+			if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+				return compactLength(value.getAsString());
+			}
+			return JsonTreeModel.primitiveToString(value).length();
+		}
+
+		// As add, for a value on a tape; sizes are the value's extent in the source
+		void addTape(int parent, int index, String key, JsonTape tape, int pos) {
+			int id = addEntry(parent, index, JsonTreeModel.tapeText(key, tape, pos));
+			if (!tape.isContainer(pos)) {
+				finish(id, tape.endPosition(pos) - tape.position(pos), 0);
+				return;
+			}
+			// Per open container: its entry, its tape position, the next child and its index
+			int[] ids = new int[16];
+			int[] containers = new int[16];
+			int[] next = new int[16];
+			int[] childIndex = new int[16];
+			int depth = 0;
+			ids[0] = id;
+			containers[0] = pos;
+			next[0] = tape.firstChild(pos);
+			depth++;
+			while (depth > 0) {
+				int top = depth - 1;
+				int container = containers[top];
+				int c = next[top];
+				if (c < 0) {
+					depth--;
+					int done = ids[top];
+					finish(done, tape.endPosition(container) - tape.position(container), depths[done] + 1);
+					if (depth > 0) depths[ids[depth - 1]] = Math.max(depths[ids[depth - 1]], depths[done]);
+					continue;
+				}
+				next[top] = tape.nextChild(container, c);
+				int i = childIndex[top]++;
+				boolean object = tape.type(container) == JsonTape.OBJECT;
+				int value = object ? c + 1 : c;
+				int child = addEntry(ids[top], i, JsonTreeModel.tapeText(object ? tape.string(c) : "[" + i + "]", tape, value));
+				if (!tape.isContainer(value)) {
+					finish(child, tape.endPosition(value) - tape.position(value), 0);
+					continue;
+				}
+				if (depth == ids.length) {
+					ids = Arrays.copyOf(ids, depth * 2);
+					containers = Arrays.copyOf(containers, depth * 2);
+					next = Arrays.copyOf(next, depth * 2);
+					childIndex = Arrays.copyOf(childIndex, depth * 2);
+				}
+				ids[depth] = child;
+				containers[depth] = value;
+				next[depth] = tape.firstChild(value);
+				childIndex[depth] = 0;
+				depth++;
+			}
+		}
+
+		private void finish(int id, long size, int depth) {
+			sizes[id] = size;
+			depths[id] = depth;
+			ends[id] = count - 1;
+		}
+
+		// A Gson container whose children are being added, with the totals of those added so far
+		private static final class Frame {
+			final int id;
+			// Member key, quotes and colon as written in the parent; 0 in an array
+			final long keySize;
+			final Iterator<Map.Entry<String, JsonElement>> members;
+			final JsonArray array;
+			final int count;
+			int next;
+			long size = 2;
+			int depth;
+
+			Frame(int id, JsonElement value, long keySize) {
+				this.id = id;
+				this.keySize = keySize;
+				if (value.isJsonObject()) {
+					JsonObject obj = value.getAsJsonObject();
+					members = obj.entrySet().iterator();
+					array = null;
+					count = obj.size();
+				} else {
+					members = null;
+					array = value.getAsJsonArray();
+					count = array.size();
+				}
+			}
+		}
+
+		// Length of a string as Gson writes it without HTML escaping, quotes included
+		private static long compactLength(String s) {
+			long length = s.length() + 2;
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c == '"' || c == '\\' || c == '\t' || c == '\b' || c == '\n' || c == '\r' || c == '\f') {
+					length++;
+				} else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+					length += 5;
+				}
+			}
+			return length;
+		}
+
+		private int addEntry(int parent, int index, String label) {
+			ensureCapacity();
+			offsets[count] = sb.length();
+			parents[count] = parent;
+			indexes[count] = index;
+			String folded = label.toLowerCase();
+			for (int i = 0; i < folded.length(); i++) {
+				char c = folded.charAt(i);
+				sb.append(c == SEPARATOR ? ' ' : c);
+			}
+			sb.append(SEPARATOR);
+			count++;
+			if (progress != null && count % REPORT_EVERY == 0) {
+				progress.indexed(count);
+			}
+			return count - 1;
+		}
+
+		private void ensureCapacity() {
+			if (count + 1 >= offsets.length) {
+				int capacity = offsets.length * 2;
+				offsets = Arrays.copyOf(offsets, capacity);
+				parents = Arrays.copyOf(parents, capacity);
+				indexes = Arrays.copyOf(indexes, capacity);
+				sizes = Arrays.copyOf(sizes, capacity);
+				ends = Arrays.copyOf(ends, capacity);
+				depths = Arrays.copyOf(depths, capacity);
+			}
+		}
+	}
+}
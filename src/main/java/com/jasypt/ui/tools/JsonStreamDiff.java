@@ -0,0 +1,472 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * File-to-file JSON diff for documents too large to parse whole. Both files are read with
+ * token readers in lockstep and each difference is written as one JSON Lines row as soon as
+ * it is found, so memory does not grow with the documents. Object members that come in the
+ * same order on both sides are compared as they are read; a member whose counterpart has not
+ * been reached yet is copied aside until it is, in memory up to a budget and in a temporary
+ * spill file beyond it. Arrays are compared by index, and members are reported in document
+ * order rather than sorted as in {@link JsonDiffEngine}.
+ */
+final class JsonStreamDiff {
+
+	interface Progress {
+		// Called every few thousand values from the diffing thread
+		void read(long chars, long rows);
+	}
+
+	static final class Result {
+		final long rows;
+		// Chars of out-of-order members that did not fit the memory budget
+		final long spilledChars;
+
+		Result(long rows, long spilledChars) {
+			this.rows = rows;
+			this.spilledChars = spilledChars;
+		}
+	}
+
+	private static final int REPORT_EVERY = 4096;
+	private static final int READ_BUFFER = 1 << 16;
+
+	private final BooleanSupplier cancelled;
+	private final Progress progress;
+	private final CountingReader leftIn;
+	private final CountingReader rightIn;
+	private final Writer sink;
+	private final JsonWriter out;
+	private final Spill spill;
+	private final StringBuilder path = new StringBuilder("$");
+	private long rows;
+	private long values;
+
+	private JsonStreamDiff(CountingReader leftIn, CountingReader rightIn, Writer sink, Spill spill,
+			BooleanSupplier cancelled, Progress progress) {
+		this.leftIn = leftIn;
+		this.rightIn = rightIn;
+		this.sink = sink;
+		this.spill = spill;
+		this.cancelled = cancelled;
+		this.progress = progress;
+		this.out = new JsonWriter(sink);
+		// One row per line: several top-level values, separated by the newlines written below
+		out.setLenient(true);
+		out.setHtmlSafe(false);
+	}
+
+	/**
+	 * Diffs the single strict JSON value in each file and writes the differences to
+	 * {@code target}, one {"path", "change", "left", "right"} object per line; the change names
+	 * are those of {@link JsonDiffRows}. Members read ahead of their counterpart are kept in
+	 * memory up to {@code memoryBudget} bytes, the rest in a spill file deleted afterwards.
+	 *
+	 * @throws IOException on unreadable or invalid input; the target is then incomplete
+	 * @throws CancellationException once {@code cancelled} reports true
+	 */
+	static Result diff(Path left, Path right, Path target, long memoryBudget, BooleanSupplier cancelled,
+			Progress progress) throws IOException {
+		try (CountingReader leftIn = new CountingReader(Files.newBufferedReader(left, StandardCharsets.UTF_8));
+				CountingReader rightIn = new CountingReader(Files.newBufferedReader(right, StandardCharsets.UTF_8));
+				Writer sink = Files.newBufferedWriter(target, StandardCharsets.UTF_8);
+				Spill spill = new Spill(memoryBudget / 2)) {
+			JsonStreamDiff diff = new JsonStreamDiff(leftIn, rightIn, sink, spill, cancelled, progress);
+			JsonReader l = new JsonReader(leftIn);
+			JsonReader r = new JsonReader(rightIn);
+			diff.diff(l, r);
+			if (l.peek() != JsonToken.END_DOCUMENT || r.peek() != JsonToken.END_DOCUMENT) {
+				throw new IOException("Unexpected data after the top-level value in the "
+					+ (l.peek() != JsonToken.END_DOCUMENT ? "left" : "right") + " file");
+			}
+			sink.flush();
+			return new Result(diff.rows, spill.spilledChars);
+		}
+	}
+
+	private void diff(JsonReader l, JsonReader r) throws IOException {
+		tick();
+		JsonToken a = l.peek();
+		JsonToken b = r.peek();
+		if (kind(a) != kind(b)) {
+			beginRow(JsonDiffRows.TYPE);
+			out.name("left");
+			copy(l, out);
+			out.name("right");
+			copy(r, out);
+			endRow();
+			return;
+		}
+		switch (a) {
+			case BEGIN_OBJECT:
+				diffObjects(l, r);
+				break;
+			case BEGIN_ARRAY:
+				diffArrays(l, r);
+				break;
+			case NULL:
+				l.nextNull();
+				r.nextNull();
+				break;
+			default: {
+				String x = scalar(l, a);
+				String y = scalar(r, b);
+				if (!scalarEquals(a, x, b, y)) {
+					beginRow(JsonDiffRows.CHANGED);
+					out.name("left");
+					writeScalar(a, x, out);
+					out.name("right");
+					writeScalar(b, y, out);
+					endRow();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Walks both objects' members in step. While the keys agree nothing is buffered; a key
+	 * seen on one side only so far is copied aside until the other side reaches it, or is
+	 * reported straight away once the other side has no members left to match it.
+	 */
+	private void diffObjects(JsonReader l, JsonReader r) throws IOException {
+		l.beginObject();
+		r.beginObject();
+		// Created on the first key out of step; most objects never need them
+		Map<String, Buffered> leftAside = null;
+		Map<String, Buffered> rightAside = null;
+		int mark = path.length();
+		while (l.hasNext() || r.hasNext()) {
+			String lk = l.hasNext() ? l.nextName() : null;
+			String rk = r.hasNext() ? r.nextName() : null;
+			if (lk != null && lk.equals(rk)) {
+				path.append('.').append(lk);
+				diff(l, r);
+				path.setLength(mark);
+				continue;
+			}
+			if (lk != null) {
+				Buffered other = rightAside == null ? null : rightAside.remove(lk);
+				path.append('.').append(lk);
+				if (other != null) {
+					try (JsonReader o = other.open()) {
+						diff(l, o);
+					}
+					spill.release(other);
+				} else if (rk == null) {
+					// Nothing left on the right to pair it with
+					single(JsonDiffRows.REMOVED, l);
+				} else {
+					if (leftAside == null) leftAside = new LinkedHashMap<>();
+					put(leftAside, lk, spill.copy(l, this));
+				}
+				path.setLength(mark);
+			}
+			if (rk != null) {
+				Buffered other = leftAside == null ? null : leftAside.remove(rk);
+				path.append('.').append(rk);
+				if (other != null) {
+					try (JsonReader o = other.open()) {
+						diff(o, r);
+					}
+					spill.release(other);
+				} else if (!l.hasNext()) {
+					single(JsonDiffRows.ADDED, r);
+				} else {
+					if (rightAside == null) rightAside = new LinkedHashMap<>();
+					put(rightAside, rk, spill.copy(r, this));
+				}
+				path.setLength(mark);
+			}
+		}
+		l.endObject();
+		r.endObject();
+		if (leftAside != null) flushAside(leftAside, JsonDiffRows.REMOVED, mark);
+		if (rightAside != null) flushAside(rightAside, JsonDiffRows.ADDED, mark);
+	}
+
+	// A repeated key keeps its last value, as in Gson
+	private void put(Map<String, Buffered> aside, String key, Buffered value) {
+		Buffered old = aside.put(key, value);
+		if (old != null) spill.release(old);
+	}
+
+	private void flushAside(Map<String, Buffered> aside, byte kind, int mark) throws IOException {
+		for (Map.Entry<String, Buffered> e : aside.entrySet()) {
+			path.append('.').append(e.getKey());
+			try (JsonReader o = e.getValue().open()) {
+				single(kind, o);
+			}
+			spill.release(e.getValue());
+			path.setLength(mark);
+		}
+	}
+
+	private void diffArrays(JsonReader l, JsonReader r) throws IOException {
+		l.beginArray();
+		r.beginArray();
+		int mark = path.length();
+		int i = 0;
+		for (; l.hasNext() && r.hasNext(); i++) {
+			path.append('[').append(i).append(']');
+			diff(l, r);
+			path.setLength(mark);
+		}
+		for (; l.hasNext(); i++) {
+			path.append('[').append(i).append(']');
+			single(JsonDiffRows.REMOVED, l);
+			path.setLength(mark);
+		}
+		for (; r.hasNext(); i++) {
+			path.append('[').append(i).append(']');
+			single(JsonDiffRows.ADDED, r);
+			path.setLength(mark);
+		}
+		l.endArray();
+		r.endArray();
+	}
+
+	// A value present on one side only, copied into the row from its reader
+	private void single(byte kind, JsonReader in) throws IOException {
+		beginRow(kind);
+		out.name(kind == JsonDiffRows.ADDED ? "right" : "left");
+		copy(in, out);
+		endRow();
+	}
+
+	private void beginRow(byte kind) throws IOException {
+		out.beginObject();
+		out.name("path").value(path.toString());
+		out.name("change").value(JsonDiffRows.changeName(kind));
+	}
+
+	private void endRow() throws IOException {
+		out.endObject();
+		out.flush();
+		sink.write('\n');
+		rows++;
+	}
+
+	// Copies the value at the reader's position, counting each token towards progress
+	void copy(JsonReader in, JsonWriter to) throws IOException {
+		JsonStreamFormatter.copyValue(in, to, this::tick);
+	}
+
+	private static void writeScalar(JsonToken token, String text, JsonWriter to) throws IOException {
+		if (token == JsonToken.STRING) {
+			to.value(text);
+		} else {
+			to.jsonValue(text);
+		}
+	}
+
+	private void tick() {
+		if ((++values & (REPORT_EVERY - 1)) == 0) {
+			if (cancelled.getAsBoolean()) throw new CancellationException();
+			progress.read(leftIn.chars + rightIn.chars, rows);
+		}
+	}
+
+	// The scalar's JSON text, except that a string is its decoded content
+	private static String scalar(JsonReader in, JsonToken token) throws IOException {
+		switch (token) {
+			case BOOLEAN:
+				return in.nextBoolean() ? "true" : "false";
+			case NULL:
+				in.nextNull();
+				return "null";
+			default:
+				return in.nextString();
+		}
+	}
+
+	// Strings by content, numbers by value, as JsonTape.scalarEquals
+	private static boolean scalarEquals(JsonToken a, String x, JsonToken b, String y) {
+		if (a != b) return false;
+		if (x.equals(y)) return true;
+		return a == JsonToken.NUMBER && new BigDecimal(x).compareTo(new BigDecimal(y)) == 0;
+	}
+
+	// Object, array, null and primitive are distinct kinds, as in JsonDiffEngine
+	private static int kind(JsonToken token) {
+		switch (token) {
+			case BEGIN_OBJECT: return 0;
+			case BEGIN_ARRAY: return 1;
+			case NULL: return 2;
+			default: return 3;
+		}
+	}
+
+	// A value copied aside as compact JSON: in memory when text is set, else a byte range of the spill file
+	private static final class Buffered {
+		final String text;
+		final Spill spill;
+		final long start;
+		final long end;
+
+		Buffered(String text) {
+			this.text = text;
+			this.spill = null;
+			this.start = 0;
+			this.end = 0;
+		}
+
+		Buffered(Spill spill, long start, long end) {
+			this.text = null;
+			this.spill = spill;
+			this.start = start;
+			this.end = end;
+		}
+
+		JsonReader open() {
+			return new JsonReader(text != null ? new StringReader(text) : spill.reader(start, end));
+		}
+	}
+
+	/**
+	 * Where out-of-order values are copied: strings while the chars held stay within the
+	 * budget, then an append-only temporary file created on first use. Space in the file is
+	 * not reused; the file is deleted on close.
+	 */
+	private static final class Spill implements AutoCloseable {
+		private final long budgetChars;
+		private long heldChars;
+		private long spilledChars;
+		private Path file;
+		private FileChannel channel;
+		private Writer fileWriter;
+
+		Spill(long budgetChars) {
+			this.budgetChars = budgetChars;
+		}
+
+		Buffered copy(JsonReader in, JsonStreamDiff diff) throws IOException {
+			SpillWriter w = new SpillWriter();
+			JsonWriter json = new JsonWriter(w);
+			json.setHtmlSafe(false);
+			diff.copy(in, json);
+			json.flush();
+			if (w.start < 0) {
+				heldChars += w.memory.length();
+				return new Buffered(w.memory.toString());
+			}
+			fileWriter.flush();
+			return new Buffered(this, w.start, channel.position());
+		}
+
+		void release(Buffered value) {
+			if (value.text != null) heldChars -= value.text.length();
+		}
+
+		Reader reader(long start, long end) {
+			return new BufferedReader(new InputStreamReader(new InputStream() {
+				private long pos = start;
+
+				@Override
+				public int read() throws IOException {
+					byte[] one = new byte[1];
+					return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					if (pos >= end) return -1;
+					int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - pos)), pos);
+					if (n > 0) pos += n;
+					return n;
+				}
+			}, StandardCharsets.UTF_8), READ_BUFFER);
+		}
+
+		private Writer fileWriter() throws IOException {
+			if (channel == null) {
+				file = Files.createTempFile("json-diff-", ".spill");
+				channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				fileWriter = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), READ_BUFFER);
+			}
+			return fileWriter;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (channel != null) {
+				channel.close();
+				Files.deleteIfExists(file);
+			}
+		}
+
+		// Collects a value in memory and moves it to the spill file once the budget would be exceeded
+		private final class SpillWriter extends Writer {
+			final StringBuilder memory = new StringBuilder();
+			// Byte offset of the value in the spill file, or -1 while it is in memory
+			long start = -1;
+
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				if (start < 0 && heldChars + memory.length() + len > budgetChars) {
+					Writer w = fileWriter();
+					w.flush();
+					start = channel.position();
+					w.append(memory);
+					spilledChars += memory.length();
+					memory.setLength(0);
+					memory.trimToSize();
+				}
+				if (start < 0) {
+					memory.append(cbuf, off, len);
+				} else {
+					fileWriter.write(cbuf, off, len);
+					spilledChars += len;
+				}
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		}
+	}
+
+	// Counts chars handed to the JsonReader, for progress
+	private static final class CountingReader extends FilterReader {
+		long chars;
+
+		CountingReader(Reader in) {
+			super(in);
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			int n = super.read(cbuf, off, len);
+			if (n > 0) chars += n;
+			return n;
+		}
+	}
+}
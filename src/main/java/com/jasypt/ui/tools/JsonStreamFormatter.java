@@ -0,0 +1,125 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Token-level pretty-printer: copies one JSON value from a reader to a writer in Gson's
+ * two-space layout without building a tree, so memory stays flat however large the input.
+ * Numbers are copied as written; strings are re-escaped the way Gson writes them.
+ */
+final class JsonStreamFormatter {
+
+	interface Progress {
+		// Called every megabyte of input from the formatting thread; may throw CancellationException
+		void formatted(long charsRead);
+	}
+
+	private static final long REPORT_EVERY_CHARS = 1 << 20;
+
+	private JsonStreamFormatter() {
+	}
+
+	/**
+	 * Formats the single strict JSON value in the input. Throws IOException (usually a
+	 * MalformedJsonException) on invalid input or trailing data; whatever was written to
+	 * the output by then should be discarded.
+	 */
+	static void format(Reader in, Writer out, Progress progress) throws IOException {
+		JsonReader reader = new JsonReader(new CountingReader(in, progress));
+		reader.setLenient(false);
+		JsonWriter writer = new JsonWriter(out);
+		writer.setIndent("  ");
+		writer.setHtmlSafe(false);
+
+		copyValue(reader, writer);
+		if (reader.peek() != JsonToken.END_DOCUMENT) {
+			throw new IOException("Unexpected data after value at " + reader.getPath());
+		}
+		writer.flush();
+	}
+
+	static void copyValue(JsonReader reader, JsonWriter writer) throws IOException {
+		copyValue(reader, writer, () -> { });
+	}
+
+	// Copies the value at the reader's position token by token, numbers as written,
+	// running perToken before each token; it may throw to stop the copy
+	static void copyValue(JsonReader reader, JsonWriter writer, Runnable perToken) throws IOException {
+		int depth = 0;
+		do {
+			perToken.run();
+			JsonToken token = reader.peek();
+			switch (token) {
+				case BEGIN_OBJECT:
+					reader.beginObject();
+					writer.beginObject();
+					depth++;
+					break;
+				case END_OBJECT:
+					reader.endObject();
+					writer.endObject();
+					depth--;
+					break;
+				case BEGIN_ARRAY:
+					reader.beginArray();
+					writer.beginArray();
+					depth++;
+					break;
+				case END_ARRAY:
+					reader.endArray();
+					writer.endArray();
+					depth--;
+					break;
+				case NAME:
+					writer.name(reader.nextName());
+					break;
+				case STRING:
+					writer.value(reader.nextString());
+					break;
+				case NUMBER:
+					writer.jsonValue(reader.nextString());
+					break;
+				case BOOLEAN:
+					writer.value(reader.nextBoolean());
+					break;
+				case NULL:
+					reader.nextNull();
+					writer.nullValue();
+					break;
+				default:
+					throw new IOException("Unexpected " + token + " at " + reader.getPath());
+			}
+		} while (depth > 0);
+	}
+
+	// Counts characters handed to the JsonReader and reports them to the progress callback
+	static final class CountingReader extends FilterReader {
+		private final Progress progress;
+		private long charsRead;
+		private long nextReport = REPORT_EVERY_CHARS;
+
+		CountingReader(Reader in, Progress progress) {
+			super(in);
+			this.progress = progress;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			int n = super.read(cbuf, off, len);
+			if (n > 0) {
+				charsRead += n;
+				if (progress != null && charsRead >= nextReport) {
+					nextReport = charsRead + REPORT_EVERY_CHARS;
+					progress.formatted(charsRead);
+				}
+			}
+			return n;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package com.jasypt.ui.tools;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Structural (Merkle) hashes of every value on a JsonTape, used by the JSON diff to skip
+ * identical branches. An object's hash does not depend on member order; an array's does.
+ * Values that hash alike are equal in the diff's sense (strings by content, numbers by
+ * value), up to 64-bit collisions; equal values written differently (1e2 and 100) may hash
+ * apart, which only costs the diff a descent.
+ */
+final class JsonSubtreeHash {
+
+	// Hash of an object with a repeated key, and of anything containing one: never matched,
+	// since which duplicate wins depends on member order
+	static final long NONE = 0;
+
+	private static final int CHECK_EVERY = 1 << 16;
+	private static final long STRING_SEED = 0x2545F4914F6CDD1DL;
+	private static final long NUMBER_SEED = 0x9E3779B97F4A7C15L;
+	private static final long OBJECT_SEED = 0xC2B2AE3D27D4EB4FL;
+	private static final long ARRAY_SEED = 0x165667B19E3779F9L;
+
+	private final JsonTape tape;
+	private final String source;
+	// Open-addressing set of key hashes, reused for each object to spot repeated keys
+	private long[] keySet = new long[16];
+
+	private JsonSubtreeHash(JsonTape tape) {
+		this.tape = tape;
+		this.source = tape.getSource();
+	}
+
+	/**
+	 * Hashes indexed by tape position: one per value, and for object members one per key.
+	 * Works from the end of the tape backwards, so children are hashed before their container.
+	 *
+	 * @throws CancellationException once {@code cancelled} reports true
+	 */
+	static long[] compute(JsonTape tape, BooleanSupplier cancelled) {
+		return new JsonSubtreeHash(tape).compute(cancelled);
+	}
+
+	private long[] compute(BooleanSupplier cancelled) {
+		int n = tape.tokenCount();
+		long[] hashes = new long[n];
+		for (int i = n - 1; i >= 0; i--) {
+			if ((i & (CHECK_EVERY - 1)) == 0 && cancelled.getAsBoolean()) {
+				throw new CancellationException();
+			}
+			switch (tape.type(i)) {
+				case JsonTape.OBJECT:
+					hashes[i] = object(i, hashes);
+					break;
+				case JsonTape.ARRAY:
+					hashes[i] = array(i, hashes);
+					break;
+				case JsonTape.STRING:
+					hashes[i] = string(i);
+					break;
+				case JsonTape.NUMBER:
+					hashes[i] = nonZero(fmix(NUMBER_SEED ^ chars(canonicalNumber(tape.numberText(i)))));
+					break;
+				case JsonTape.TRUE:
+				case JsonTape.FALSE:
+				case JsonTape.NULL:
+					hashes[i] = nonZero(fmix(tape.type(i) * NUMBER_SEED));
+					break;
+				default:
+					// Closing brackets carry no value
+			}
+		}
+		return hashes;
+	}
+
+	// Members are summed, so any order gives the same hash
+	private long object(int i, long[] hashes) {
+		int count = tape.childCount(i);
+		clearKeys(count);
+		long sum = 0;
+		for (int k = tape.firstChild(i); k >= 0; k = tape.nextChild(i, k)) {
+			long key = hashes[k];
+			long value = hashes[k + 1];
+			if (value == NONE || !addKey(key)) return NONE;
+			sum += fmix(key * 31 + value);
+		}
+		return nonZero(fmix(OBJECT_SEED ^ sum ^ count));
+	}
+
+	private long array(int i, long[] hashes) {
+		long h = ARRAY_SEED;
+		for (int c = tape.firstChild(i); c >= 0; c = tape.nextChild(i, c)) {
+			if (hashes[c] == NONE) return NONE;
+			h = Long.rotateLeft(h ^ hashes[c], 27) * 0x4CF5AD432745937FL;
+		}
+		return nonZero(fmix(h));
+	}
+
+	// Hashes the decoded content; strings without escapes are read straight from the source
+	private long string(int i) {
+		int start = tape.position(i) + 1;
+		int end = start;
+		while (true) {
+			char c = source.charAt(end);
+			if (c == '"') break;
+			if (c == '\\') return nonZero(fmix(STRING_SEED ^ chars(tape.string(i))));
+			end++;
+		}
+		return nonZero(fmix(STRING_SEED ^ chars(source, start, end)));
+	}
+
+	/**
+	 * A spelling of the number such that equal spellings mean equal values: integers as
+	 * written, plain decimals without trailing fraction zeros, exponents through BigDecimal.
+	 */
+	private static String canonicalNumber(String text) {
+		int dot = -1;
+		for (int k = 0; k < text.length(); k++) {
+			char c = text.charAt(k);
+			if (c == 'e' || c == 'E') return new BigDecimal(text).stripTrailingZeros().toString();
+			if (c == '.') dot = k;
+		}
+		if (dot < 0) return text;
+		int end = text.length();
+		while (text.charAt(end - 1) == '0') end--;
+		if (end == dot + 1) end = dot;
+		return end == text.length() ? text : text.substring(0, end);
+	}
+
+	private static long chars(CharSequence s) {
+		return chars(s, 0, s.length());
+	}
+
+	private static long chars(CharSequence s, int start, int end) {
+		long h = (end - start) * 0x9E3779B97F4A7C15L;
+		for (int k = start; k < end; k++) {
+			h = (h ^ s.charAt(k)) * 0x100000001B3L;
+		}
+		return h;
+	}
+
+	private void clearKeys(int count) {
+		int capacity = Integer.highestOneBit(Math.max(16, count * 2)) << 1;
+		if (keySet.length < capacity || keySet.length > 4 * capacity && keySet.length > 1024) {
+			keySet = new long[capacity];
+		} else {
+			Arrays.fill(keySet, 0L);
+		}
+	}
+
+	// False when the key is already in the set; key hashes are never 0, which marks a free slot
+	private boolean addKey(long key) {
+		int mask = keySet.length - 1;
+		for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+			if (keySet[slot] == 0) {
+				keySet[slot] = key;
+				return true;
+			}
+			if (keySet[slot] == key) return false;
+		}
+	}
+
+	private static long nonZero(long h) {
+		return h == NONE ? 1 : h;
+	}
+
+	private static long fmix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,710 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.internal.LazilyParsedNumber;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Compact, read-only JSON document in the style of simdjson's tape. Every token is one long:
+ * the top byte holds its type and the remaining 56 bits a payload. Scalars store their
+ * offset in the source text, so strings and numbers are only decoded when read. An opening
+ * bracket stores the tape index of its closing bracket and its child count; the closing
+ * bracket stores its container's number in closing order, which indexes a table of both
+ * brackets' source offsets. Object members are a key string followed by the value. A
+ * document costs 8 bytes per token and 8 per container plus the source string, against
+ * several objects per value for a Gson tree.
+ */
+final class JsonTape {
+
+	static final char OBJECT = '{';
+	static final char OBJECT_END = '}';
+	static final char ARRAY = '[';
+	static final char ARRAY_END = ']';
+	static final char STRING = '"';
+	static final char NUMBER = '0';
+	static final char TRUE = 't';
+	static final char FALSE = 'f';
+	static final char NULL = 'n';
+
+	private static final long PAYLOAD_MASK = (1L << 56) - 1;
+	private static final int MAX_COUNT = (1 << 24) - 1;
+	private static final int CHECK_EVERY = 1 << 16;
+
+	private final String source;
+	private final long[] tape;
+	private final int size;
+	// Source offsets of each container's opening and closing bracket, by closing order
+	private final int[] brackets;
+	// Subtree hashes, computed on first use by the diff
+	private volatile long[] hashes;
+
+	private JsonTape(String source, long[] tape, int size, int[] brackets) {
+		this.source = source;
+		this.tape = tape;
+		this.size = size;
+		this.brackets = brackets;
+	}
+
+	/**
+	 * Parses one strict JSON value (RFC 8259) surrounded by optional whitespace.
+	 *
+	 * @throws JsonSyntaxException if the text is not strict JSON
+	 */
+	static JsonTape parse(String text) {
+		return parse(text, () -> false);
+	}
+
+	/**
+	 * @throws CancellationException once {@code cancelled} reports true
+	 */
+	static JsonTape parse(String text, BooleanSupplier cancelled) {
+		return new Parser(text, cancelled).parse();
+	}
+
+	/**
+	 * Structural hash of every value, indexed by tape position (see JsonSubtreeHash). Computed
+	 * once per tape and kept, so diffing against the same document again skips the pass.
+	 *
+	 * @throws CancellationException once {@code cancelled} reports true
+	 */
+	long[] hashes(BooleanSupplier cancelled) {
+		long[] h = hashes;
+		if (h == null) {
+			h = JsonSubtreeHash.compute(this, cancelled);
+			hashes = h;
+		}
+		return h;
+	}
+
+	// Tape index of the document's value
+	int root() {
+		return 0;
+	}
+
+	int tokenCount() {
+		return size;
+	}
+
+	String getSource() {
+		return source;
+	}
+
+	char type(int i) {
+		return (char) (tape[i] >>> 56);
+	}
+
+	boolean isContainer(int i) {
+		char t = type(i);
+		return t == OBJECT || t == ARRAY;
+	}
+
+	// Members of an object or elements of an array
+	int childCount(int i) {
+		int count = (int) ((tape[i] >>> 32) & MAX_COUNT);
+		if (count < MAX_COUNT) return count;
+		count = 0;
+		for (int c = firstChild(i); c >= 0; c = nextChild(i, c)) count++;
+		return count;
+	}
+
+	/**
+	 * Tape index of the first child value (for objects, the first key), or -1 when empty.
+	 */
+	int firstChild(int i) {
+		return i + 1 == closeIndex(i) ? -1 : i + 1;
+	}
+
+	/**
+	 * Tape index of the child after {@code child} inside container {@code i}, or -1. For objects
+	 * {@code child} and the result are key positions; the value sits right after its key.
+	 */
+	int nextChild(int i, int child) {
+		int next = type(i) == OBJECT ? skip(child + 1) : skip(child);
+		return next == closeIndex(i) ? -1 : next;
+	}
+
+	// Index just past the value starting at i
+	int skip(int i) {
+		return isContainer(i) ? closeIndex(i) + 1 : i + 1;
+	}
+
+	private int closeIndex(int i) {
+		return (int) tape[i];
+	}
+
+	private int offset(int i) {
+		return (int) (tape[i] & PAYLOAD_MASK);
+	}
+
+	// Source offset of token i
+	int position(int i) {
+		char t = type(i);
+		if (t == OBJECT || t == ARRAY) return brackets[2 * offset(closeIndex(i))];
+		if (t == OBJECT_END || t == ARRAY_END) return brackets[2 * offset(i) + 1];
+		return offset(i);
+	}
+
+	// Source offset just past the value starting at i
+	int endPosition(int i) {
+		return isContainer(i) ? brackets[2 * offset(closeIndex(i)) + 1] + 1 : scalarEnd(i);
+	}
+
+	private int scalarEnd(int i) {
+		int start = offset(i);
+		switch (type(i)) {
+			case STRING: {
+				int end = start + 1;
+				while (true) {
+					char c = source.charAt(end++);
+					if (c == '"') return end;
+					if (c == '\\') end++;
+				}
+			}
+			case NUMBER: {
+				int end = start + 1;
+				while (end < source.length() && isNumberChar(source.charAt(end))) end++;
+				return end;
+			}
+			case FALSE:
+				return start + 5;
+			default:
+				return start + 4;
+		}
+	}
+
+	/**
+	 * Tape index of the innermost container whose brackets strictly enclose the source range
+	 * [start, end), or -1 if even the document value does not.
+	 */
+	int enclosingContainer(int start, int end) {
+		int i = root();
+		if (!isContainer(i) || position(i) >= start || end > position(closeIndex(i))) return -1;
+		int[] members = new int[16];
+		while (true) {
+			// Member starts (keys for objects) are in source order: find the last one before the edit's end
+			int count = 0;
+			for (int c = firstChild(i); c >= 0; c = nextChild(i, c)) {
+				if (count == members.length) members = Arrays.copyOf(members, count * 2);
+				members[count++] = c;
+			}
+			int lo = 0;
+			int hi = count - 1;
+			int found = -1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				if (position(members[mid]) < end) {
+					found = mid;
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			if (found < 0) return i;
+			int v = type(i) == OBJECT ? members[found] + 1 : members[found];
+			// Go down only if the edit stays inside the value's brackets
+			if (!isContainer(v) || position(v) >= start || end >= endPosition(v)) return i;
+			i = v;
+		}
+	}
+
+	/**
+	 * Re-parses the container at i after an edit that stayed strictly inside its brackets and
+	 * shifted the rest of the text by {@code delta} chars. Tokens outside the container are
+	 * copied with adjusted offsets and indices; the result reads from {@code text}.
+	 *
+	 * @throws JsonSyntaxException if the edited container is no longer valid JSON
+	 */
+	JsonTape replace(int i, String text, int delta) {
+		int close = closeIndex(i);
+		int start = position(i);
+		JsonTape part = parse(text.substring(start, position(close) + 1 + delta));
+		if (part.type(0) != type(i)) {
+			throw new JsonSyntaxException("Edited value is no longer a " + (type(i) == OBJECT ? "object" : "array"));
+		}
+		int shift = part.size - (close - i + 1);
+		long[] out = new long[size + shift];
+		// Containers are numbered in closing order: those closed before i keep their numbers,
+		// the replaced one and those inside it make way for the part's
+		int before = 0;
+		for (int k = 0; k < i; k++) {
+			long w = tape[k];
+			char t = type(k);
+			if (t == OBJECT_END || t == ARRAY_END) before++;
+			// Containers opened before i and still open around it end after the replaced range
+			out[k] = (t == OBJECT || t == ARRAY) && closeIndex(k) > close ? w + shift : w;
+		}
+		int partContainers = part.brackets.length / 2;
+		int renumber = partContainers - (offset(close) + 1 - before);
+		for (int k = 0; k < part.size; k++) {
+			long w = part.tape[k];
+			char t = part.type(k);
+			if (t == OBJECT || t == ARRAY) {
+				out[i + k] = w + i;
+			} else if (t == OBJECT_END || t == ARRAY_END) {
+				out[i + k] = w + before;
+			} else {
+				out[i + k] = w + start;
+			}
+		}
+		for (int k = close + 1; k < size; k++) {
+			long w = tape[k];
+			char t = type(k);
+			if (t == OBJECT || t == ARRAY) {
+				out[k + shift] = w + shift;
+			} else if (t == OBJECT_END || t == ARRAY_END) {
+				out[k + shift] = w + renumber;
+			} else {
+				out[k + shift] = w + delta;
+			}
+		}
+		int[] offsets = new int[brackets.length + 2 * renumber];
+		System.arraycopy(brackets, 0, offsets, 0, 2 * before);
+		for (int k = 0; k < part.brackets.length; k++) {
+			offsets[2 * before + k] = part.brackets[k] + start;
+		}
+		for (int k = 2 * (offset(close) + 1); k < brackets.length; k += 2) {
+			// A later container either encloses the edit, opening before it, or follows it
+			int open = brackets[k];
+			offsets[k + 2 * renumber] = open < start ? open : open + delta;
+			offsets[k + 1 + 2 * renumber] = brackets[k + 1] + delta;
+		}
+		return new JsonTape(text, out, size + shift, offsets);
+	}
+
+	String string(int i) {
+		int start = offset(i) + 1;
+		int end = start;
+		while (true) {
+			char c = source.charAt(end);
+			if (c == '"') return source.substring(start, end);
+			if (c == '\\') break;
+			end++;
+		}
+		StringBuilder sb = new StringBuilder(end - start + 16).append(source, start, end);
+		int pos = end;
+		while (true) {
+			char c = source.charAt(pos++);
+			if (c == '"') return sb.toString();
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			char e = source.charAt(pos++);
+			switch (e) {
+				case 'b': sb.append('\b'); break;
+				case 'f': sb.append('\f'); break;
+				case 'n': sb.append('\n'); break;
+				case 'r': sb.append('\r'); break;
+				case 't': sb.append('\t'); break;
+				case 'u':
+					sb.append((char) Integer.parseInt(source.substring(pos, pos + 4), 16));
+					pos += 4;
+					break;
+				default: sb.append(e);
+			}
+		}
+	}
+
+	String numberText(int i) {
+		int start = offset(i);
+		int end = start + 1;
+		while (end < source.length() && isNumberChar(source.charAt(end))) end++;
+		return source.substring(start, end);
+	}
+
+	// Text shown for a scalar, matching JsonTreeModel.primitiveToString
+	String scalarText(int i) {
+		switch (type(i)) {
+			case STRING: return string(i);
+			case NUMBER: return numberText(i);
+			case TRUE: return "true";
+			case FALSE: return "false";
+			default: return "null";
+		}
+	}
+
+	// Appends the source text of a scalar token, quotes and escapes included
+	private void appendRaw(int i, StringBuilder out) {
+		appendRaw(i, out, Integer.MAX_VALUE);
+	}
+
+	// As appendRaw, but a string stops after about max chars without scanning the rest of it
+	private void appendRaw(int i, StringBuilder out, int max) {
+		if (type(i) != STRING) {
+			out.append(scalarText(i));
+			return;
+		}
+		int start = offset(i);
+		int end = start + 1;
+		while (end - start < max) {
+			char c = source.charAt(end++);
+			if (c == '"') break;
+			if (c == '\\') end++;
+		}
+		out.append(source, start, end);
+	}
+
+	/**
+	 * Scalar equality with Gson's meaning (numbers by value, strings by content); containers
+	 * and mismatched types are never equal here.
+	 */
+	static boolean scalarEquals(JsonTape a, int i, JsonTape b, int j) {
+		char t = a.type(i);
+		if (t != b.type(j)) return false;
+		switch (t) {
+			case STRING:
+				return a.string(i).equals(b.string(j));
+			case NUMBER:
+				String x = a.numberText(i);
+				String y = b.numberText(j);
+				return x.equals(y) || new BigDecimal(x).compareTo(new BigDecimal(y)) == 0;
+			case TRUE:
+			case FALSE:
+			case NULL:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Materializes the value at i as a Gson tree.
+	 */
+	JsonElement toElement(int i) {
+		switch (type(i)) {
+			case OBJECT: {
+				JsonObject obj = new JsonObject();
+				for (int k = firstChild(i); k >= 0; k = nextChild(i, k)) {
+					obj.add(string(k), toElement(k + 1));
+				}
+				return obj;
+			}
+			case ARRAY: {
+				JsonArray arr = new JsonArray(childCount(i));
+				for (int c = firstChild(i); c >= 0; c = nextChild(i, c)) {
+					arr.add(toElement(c));
+				}
+				return arr;
+			}
+			case STRING: return new JsonPrimitive(string(i));
+			case NUMBER: return new JsonPrimitive(new LazilyParsedNumber(numberText(i)));
+			case TRUE: return new JsonPrimitive(true);
+			case FALSE: return new JsonPrimitive(false);
+			default: return JsonNull.INSTANCE;
+		}
+	}
+
+	/**
+	 * Writes the value at i with two-space indentation, the layout of Gson's pretty printer.
+	 * Strings and numbers are copied from the source as written.
+	 */
+	void writePretty(int i, StringBuilder out) {
+		writePretty(i, out, 0);
+	}
+
+	private void writePretty(int i, StringBuilder out, int indent) {
+		char t = type(i);
+		if (t != OBJECT && t != ARRAY) {
+			appendRaw(i, out);
+			return;
+		}
+		int first = firstChild(i);
+		if (first < 0) {
+			out.append(t == OBJECT ? "{}" : "[]");
+			return;
+		}
+		out.append(t).append('\n');
+		for (int c = first; c >= 0; ) {
+			indent(out, indent + 1);
+			if (t == OBJECT) {
+				appendRaw(c, out);
+				out.append(": ");
+				writePretty(c + 1, out, indent + 1);
+			} else {
+				writePretty(c, out, indent + 1);
+			}
+			c = nextChild(i, c);
+			out.append(c >= 0 ? ",\n" : "\n");
+		}
+		indent(out, indent);
+		out.append(t == OBJECT ? OBJECT_END : ARRAY_END);
+	}
+
+	private static void indent(StringBuilder out, int level) {
+		for (int k = 0; k < level; k++) out.append("  ");
+	}
+
+	/**
+	 * Writes the value at i without whitespace, stopping once the output passes {@code limit} chars;
+	 * the cost depends on the limit, not on the size of the value.
+	 */
+	void writeCompact(int i, StringBuilder out, int limit) {
+		if (out.length() > limit) return;
+		char t = type(i);
+		if (t != OBJECT && t != ARRAY) {
+			appendRaw(i, out, room(out, limit));
+			return;
+		}
+		out.append(t);
+		for (int c = firstChild(i); c >= 0 && out.length() <= limit; ) {
+			if (t == OBJECT) {
+				appendRaw(c, out, room(out, limit));
+				out.append(':');
+				writeCompact(c + 1, out, limit);
+			} else {
+				writeCompact(c, out, limit);
+			}
+			c = nextChild(i, c);
+			if (c >= 0) out.append(',');
+		}
+		out.append(t == OBJECT ? OBJECT_END : ARRAY_END);
+	}
+
+	// Chars a string may still take up to one past the limit, without overflowing for Integer.MAX_VALUE
+	private static int room(StringBuilder out, int limit) {
+		return (int) Math.min(Integer.MAX_VALUE, (long) limit + 1 - out.length());
+	}
+
+	private static boolean isNumberChar(char c) {
+		return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+	}
+
+	private static long word(char type, long payload) {
+		return ((long) type << 56) | payload;
+	}
+
+	// Single-pass validating parser with an explicit container stack
+	private static final class Parser {
+		private final String s;
+		private final BooleanSupplier cancelled;
+		private long[] tape;
+		private int size;
+		private int pos;
+
+		private int[] open = new int[32];
+		private int[] openAt = new int[32];
+		private int[] counts = new int[32];
+		private int depth;
+		private int[] brackets = new int[64];
+		private int containers;
+
+		Parser(String s, BooleanSupplier cancelled) {
+			this.s = s;
+			this.cancelled = cancelled;
+			this.tape = new long[Math.max(16, s.length() / 6)];
+		}
+
+		JsonTape parse() {
+			if (!s.isEmpty() && s.charAt(0) == '\uFEFF') pos = 1;
+			skipWhitespace();
+			boolean expectValue = true;
+			while (true) {
+				if (expectValue) {
+					expectValue = value();
+					if (expectValue) continue;
+				}
+				// A value just ended: close containers or move to the next member
+				if (depth == 0) break;
+				counts[depth - 1]++;
+				skipWhitespace();
+				boolean inObject = (char) (tape[open[depth - 1]] >>> 56) == OBJECT;
+				char c = peek();
+				if (c == ',') {
+					pos++;
+					skipWhitespace();
+					if (inObject) key();
+					expectValue = true;
+				} else if (c == (inObject ? OBJECT_END : ARRAY_END)) {
+					pos++;
+					close();
+				} else {
+					throw error(inObject ? "Expected ',' or '}'" : "Expected ',' or ']'");
+				}
+			}
+			skipWhitespace();
+			if (pos < s.length()) throw error("Unexpected data after value");
+			return new JsonTape(s, Arrays.copyOf(tape, size), size, Arrays.copyOf(brackets, 2 * containers));
+		}
+
+		// Parses one value; returns true when it opened a non-empty container whose first child comes next
+		private boolean value() {
+			if ((size & (CHECK_EVERY - 1)) == 0 && cancelled.getAsBoolean()) {
+				throw new CancellationException();
+			}
+			char c = peek();
+			switch (c) {
+				case '{':
+				case '[': {
+					char end = c == '{' ? OBJECT_END : ARRAY_END;
+					push(c);
+					pos++;
+					skipWhitespace();
+					if (peek() == end) {
+						pos++;
+						close();
+						return false;
+					}
+					if (c == '{') key();
+					return true;
+				}
+				case '"':
+					string();
+					return false;
+				case 't':
+					literal("true", TRUE);
+					return false;
+				case 'f':
+					literal("false", FALSE);
+					return false;
+				case 'n':
+					literal("null", NULL);
+					return false;
+				default:
+					if (c == '-' || (c >= '0' && c <= '9')) {
+						number();
+						return false;
+					}
+					throw error(pos >= s.length() ? "Unexpected end of input" : "Unexpected character '" + c + "'");
+			}
+		}
+
+		private void key() {
+			if (peek() != '"') throw error("Expected member name");
+			string();
+			skipWhitespace();
+			if (peek() != ':') throw error("Expected ':'");
+			pos++;
+			skipWhitespace();
+		}
+
+		private void push(char type) {
+			if (depth == open.length) {
+				open = Arrays.copyOf(open, depth * 2);
+				openAt = Arrays.copyOf(openAt, depth * 2);
+				counts = Arrays.copyOf(counts, depth * 2);
+			}
+			open[depth] = size;
+			openAt[depth] = pos;
+			counts[depth] = 0;
+			depth++;
+			append(word(type, 0));
+		}
+
+		// Called with pos just past the closing bracket
+		private void close() {
+			depth--;
+			int openIndex = open[depth];
+			char type = (char) (tape[openIndex] >>> 56);
+			int closeIndex = size;
+			if (2 * containers == brackets.length) {
+				brackets = Arrays.copyOf(brackets, brackets.length * 2);
+			}
+			brackets[2 * containers] = openAt[depth];
+			brackets[2 * containers + 1] = pos - 1;
+			append(word(type == OBJECT ? OBJECT_END : ARRAY_END, containers++));
+			long count = Math.min(counts[depth], MAX_COUNT);
+			tape[openIndex] = word(type, (count << 32) | closeIndex);
+		}
+
+		private void string() {
+			int start = pos;
+			pos++;
+			while (true) {
+				if (pos >= s.length()) throw error("Unterminated string");
+				char c = s.charAt(pos++);
+				if (c == '"') break;
+				if (c == '\\') {
+					if (pos >= s.length()) throw error("Unterminated string");
+					char e = s.charAt(pos++);
+					if (e == 'u') {
+						if (pos + 4 > s.length()) throw error("Invalid unicode escape");
+						for (int k = 0; k < 4; k++) {
+							if (Character.digit(s.charAt(pos + k), 16) < 0) throw error("Invalid unicode escape");
+						}
+						pos += 4;
+					} else if ("\"\\/bfnrt".indexOf(e) < 0) {
+						pos--;
+						throw error("Invalid escape '\\" + e + "'");
+					}
+				} else if (c < 0x20) {
+					pos--;
+					throw error("Unescaped control character in string");
+				}
+			}
+			append(word(STRING, start));
+		}
+
+		private void number() {
+			int start = pos;
+			if (peek() == '-') pos++;
+			if (peek() == '0') {
+				pos++;
+			} else if (!digits()) {
+				throw error("Invalid number");
+			}
+			if (peek() == '.') {
+				pos++;
+				if (!digits()) throw error("Invalid number");
+			}
+			if (peek() == 'e' || peek() == 'E') {
+				pos++;
+				if (peek() == '+' || peek() == '-') pos++;
+				if (!digits()) throw error("Invalid number");
+			}
+			append(word(NUMBER, start));
+		}
+
+		private boolean digits() {
+			int start = pos;
+			while (pos < s.length() && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') pos++;
+			return pos > start;
+		}
+
+		private void literal(String word, char type) {
+			if (!s.startsWith(word, pos)) throw error("Unexpected character '" + s.charAt(pos) + "'");
+			append(word(type, pos));
+			pos += word.length();
+		}
+
+		private void append(long word) {
+			if (size == tape.length) {
+				tape = Arrays.copyOf(tape, size + (size >> 1) + 16);
+			}
+			tape[size++] = word;
+		}
+
+		private char peek() {
+			return pos < s.length() ? s.charAt(pos) : '\0';
+		}
+
+		private void skipWhitespace() {
+			while (pos < s.length()) {
+				char c = s.charAt(pos);
+				if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+				pos++;
+			}
+		}
+
+		private JsonSyntaxException error(String message) {
+			int line = 1;
+			int column = 1;
+			for (int i = 0; i < pos && i < s.length(); i++) {
+				if (s.charAt(i) == '\n') {
+					line++;
+					column = 1;
+				} else {
+					column++;
+				}
+			}
+			return new JsonSyntaxException(message + " at line " + line + " column " + column);
+		}
+	}
+}
@@ -0,0 +1,359 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tree model for the JSON Viewer backed directly by the parsed JsonElement graph.
+ * Child nodes and their labels are only created when a path is expanded, so memory and
+ * time-to-first-paint depend on what is visible rather than on document size.
+ */
+class JsonTreeModel implements TreeModel {
+
+	private final EventListenerList listeners = new EventListenerList();
+	private JsonTreeNode root = new RootNode(new JsonTreeNode.Factory[0]);
+
+	JsonTreeNode getRootNode() {
+		return root;
+	}
+
+	void setRootNode(JsonTreeNode root) {
+		this.root = root;
+		fireStructureChanged(new TreePath(root));
+	}
+
+	// A document parsed from a single JSON value, shown under a "root" node
+	static JsonTreeNode single(JsonElement data) {
+		return wrap((parent, index) -> new ElementNode(parent, index, "root", data, false));
+	}
+
+	// A document held as a compact tape; keys and values are decoded only for nodes that are shown
+	static JsonTreeNode tape(JsonTape tape) {
+		return wrap((parent, index) -> new TapeNode(parent, index, "root", tape, tape.root()));
+	}
+
+	// An invisible root over a single top-level node
+	static JsonTreeNode wrap(JsonTreeNode.Factory top) {
+		return new RootNode(new JsonTreeNode.Factory[]{top});
+	}
+
+	// Several independent values (e.g. blocks extracted from logs), each under a titled node
+	static JsonTreeNode multiple(List<JsonElement> items) {
+		JsonTreeNode.Factory[] factories = new JsonTreeNode.Factory[items.size()];
+		for (int i = 0; i < factories.length; i++) {
+			JsonElement el = items.get(i);
+			String title = (el.isJsonObject() ? "Object" : el.isJsonArray() ? "Array" : "Value") + " #" + (i + 1);
+			factories[i] = (parent, index) -> new ElementNode(parent, index, title, el, true);
+		}
+		return new RootNode(factories);
+	}
+
+	// JSON Lines records under "Record #n" nodes, followed by a group listing malformed lines
+	static JsonTreeNode records(List<JsonElement> records, JsonObject malformed) {
+		int extra = malformed != null && malformed.size() > 0 ? 1 : 0;
+		JsonTreeNode.Factory[] factories = new JsonTreeNode.Factory[records.size() + extra];
+		for (int i = 0; i < records.size(); i++) {
+			JsonElement el = records.get(i);
+			String title = "Record #" + (i + 1);
+			factories[i] = (parent, index) -> new ElementNode(parent, index, title, el, true);
+		}
+		if (extra > 0) {
+			String title = "Malformed lines (" + malformed.size() + ")";
+			factories[records.size()] = (parent, index) -> new ElementNode(parent, index, title, malformed, true);
+		}
+		return new RootNode(factories);
+	}
+
+	// Label of an element-backed node; long values are cut to a preview
+	static String elementLabel(String key, JsonElement value, boolean titled) {
+		if (titled || !value.isJsonPrimitive()) return elementText(key, value, titled);
+		return key + " : " + JsonValueText.preview(primitiveToString(value));
+	}
+
+	// Full text of an element-backed node's label, as searched by JsonSearchIndex
+	static String elementText(String key, JsonElement value, boolean titled) {
+		if (titled) return key;
+		if (value.isJsonObject()) return key + " : {...}";
+		if (value.isJsonArray()) return key + " : [ … ]";
+		return key + " : " + primitiveToString(value);
+	}
+
+	// Same labels as elementLabel, read from the tape; only a long string's first chars are decoded
+	static String tapeLabel(String key, JsonTape tape, int pos) {
+		if (tape.isContainer(pos)) return tapeText(key, tape, pos);
+		if (tape.type(pos) != JsonTape.STRING) return key + " : " + JsonValueText.preview(tape.scalarText(pos));
+		int start = tape.position(pos);
+		String prefix = JsonValueText.unescapePrefix(tape.getSource(), start, JsonValueText.PREVIEW_CHARS + 1);
+		return key + " : " + JsonValueText.preview(prefix, tape.endPosition(pos) - start - 2);
+	}
+
+	// Same text as elementText, read from the tape
+	static String tapeText(String key, JsonTape tape, int pos) {
+		char type = tape.type(pos);
+		if (type == JsonTape.OBJECT) return key + " : {...}";
+		if (type == JsonTape.ARRAY) return key + " : [ … ]";
+		return key + " : " + tape.scalarText(pos);
+	}
+
+	static String primitiveToString(JsonElement v) {
+		if (v.isJsonNull()) return "null";
+		if (v.isJsonPrimitive()) {
+			JsonPrimitive p = v.getAsJsonPrimitive();
+			if (p.isString()) return p.getAsString();
+			if (p.isBoolean()) return String.valueOf(p.getAsBoolean());
+			if (p.isNumber()) return p.getAsNumber().toString();
+		}
+		return v.toString();
+	}
+
+	/**
+	 * Loaded tape node for the value at tape index {@code pos}, or null when the branch
+	 * holding it has not been loaded.
+	 */
+	static TapeNode findLoaded(JsonTreeNode root, int pos) {
+		JsonTreeNode node = root;
+		while (node.isLoaded()) {
+			JsonTreeNode next = null;
+			for (int i = 0; i < node.getChildCount(); i++) {
+				JsonTreeNode child = node.getChildAt(i);
+				if (!(child instanceof TapeNode)) return null;
+				TapeNode t = (TapeNode) child;
+				if (t.pos == pos) return t;
+				if (t.pos < pos && pos < t.tape.skip(t.pos)) {
+					next = child;
+					break;
+				}
+			}
+			if (next == null) return null;
+			node = next;
+		}
+		return null;
+	}
+
+	/**
+	 * Points every loaded tape node at a tape in which the value at {@code at} (closing at
+	 * {@code end}) was replaced. Nodes after it move by {@code shift}; the replaced node keeps
+	 * its identity but reloads its children.
+	 */
+	static void retarget(JsonTreeNode root, JsonTape tape, int at, int end, int shift) {
+		ArrayDeque<JsonTreeNode> pending = new ArrayDeque<>();
+		pending.push(root);
+		while (!pending.isEmpty()) {
+			JsonTreeNode node = pending.pop();
+			if (node instanceof TapeNode) {
+				TapeNode t = (TapeNode) node;
+				if (t.pos > end) t.pos += shift;
+				t.tape = tape;
+				if (t.pos == at) {
+					t.unload();
+					continue;
+				}
+			}
+			if (!node.isLoaded()) continue;
+			for (int i = 0; i < node.getChildCount(); i++) {
+				pending.push(node.getChildAt(i));
+			}
+		}
+	}
+
+	// Builds the tree path for a node by walking its parent links
+	static TreePath pathTo(JsonTreeNode node) {
+		int depth = 0;
+		for (JsonTreeNode n = node; n != null; n = n.parent) depth++;
+		Object[] nodes = new Object[depth];
+		for (JsonTreeNode n = node; n != null; n = n.parent) nodes[--depth] = n;
+		return new TreePath(nodes);
+	}
+
+	@Override
+	public Object getRoot() {
+		return root;
+	}
+
+	@Override
+	public Object getChild(Object parent, int index) {
+		return ((JsonTreeNode) parent).getChildAt(index);
+	}
+
+	@Override
+	public int getChildCount(Object parent) {
+		return ((JsonTreeNode) parent).getChildCount();
+	}
+
+	@Override
+	public boolean isLeaf(Object node) {
+		return ((JsonTreeNode) node).getChildCount() == 0;
+	}
+
+	@Override
+	public void valueForPathChanged(TreePath path, Object newValue) {
+		// The viewer is read-only
+	}
+
+	@Override
+	public int getIndexOfChild(Object parent, Object child) {
+		if (!(child instanceof JsonTreeNode)) return -1;
+		JsonTreeNode c = (JsonTreeNode) child;
+		return c.parent == parent ? c.index : -1;
+	}
+
+	@Override
+	public void addTreeModelListener(TreeModelListener l) {
+		listeners.add(TreeModelListener.class, l);
+	}
+
+	@Override
+	public void removeTreeModelListener(TreeModelListener l) {
+		listeners.remove(TreeModelListener.class, l);
+	}
+
+	void fireStructureChanged(TreePath path) {
+		TreeModelEvent event = new TreeModelEvent(this, path);
+		for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+			l.treeStructureChanged(event);
+		}
+	}
+
+	// Invisible root holding the top-level nodes
+	private static final class RootNode extends JsonTreeNode {
+		private final Factory[] factories;
+
+		RootNode(Factory[] factories) {
+			super(null, 0, "root");
+			this.factories = factories;
+		}
+
+		@Override
+		int getChildCount() {
+			return factories.length;
+		}
+
+		@Override
+		protected JsonTreeNode[] loadChildren() {
+			JsonTreeNode[] children = new JsonTreeNode[factories.length];
+			for (int i = 0; i < children.length; i++) {
+				children[i] = factories[i].create(this, i);
+			}
+			return children;
+		}
+
+		@Override
+		JsonElement getValue() {
+			return null;
+		}
+
+		@Override
+		protected String buildLabel() {
+			return key;
+		}
+	}
+
+	// Node wrapping one value of the Gson tree
+	static final class ElementNode extends JsonTreeNode {
+		private final JsonElement value;
+		private final boolean titled;
+
+		ElementNode(JsonTreeNode parent, int index, String key, JsonElement value, boolean titled) {
+			super(parent, index, key);
+			this.value = value;
+			this.titled = titled;
+		}
+
+		@Override
+		int getChildCount() {
+			if (value.isJsonObject()) return value.getAsJsonObject().size();
+			if (value.isJsonArray()) return value.getAsJsonArray().size();
+			// A titled primitive shows its value as a single child, like the old block layout
+			return titled ? 1 : 0;
+		}
+
+		@Override
+		protected JsonTreeNode[] loadChildren() {
+			if (value.isJsonObject()) {
+				JsonObject obj = value.getAsJsonObject();
+				JsonTreeNode[] children = new JsonTreeNode[obj.size()];
+				int i = 0;
+				for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
+					children[i] = new ElementNode(this, i, entry.getKey(), entry.getValue(), false);
+					i++;
+				}
+				return children;
+			}
+			if (value.isJsonArray()) {
+				JsonArray arr = value.getAsJsonArray();
+				JsonTreeNode[] children = new JsonTreeNode[arr.size()];
+				for (int i = 0; i < children.length; i++) {
+					children[i] = new ElementNode(this, i, "[" + i + "]", arr.get(i), false);
+				}
+				return children;
+			}
+			return new JsonTreeNode[]{new ElementNode(this, 0, "value", value, false)};
+		}
+
+		@Override
+		JsonElement getValue() {
+			return value;
+		}
+
+		boolean isTitled() {
+			return titled;
+		}
+
+		@Override
+		protected String buildLabel() {
+			return elementLabel(key, value, titled);
+		}
+	}
+
+	// Node over one value of a JsonTape; retarget moves it onto an edited tape in place
+	static final class TapeNode extends JsonTreeNode {
+		JsonTape tape;
+		int pos;
+
+		TapeNode(JsonTreeNode parent, int index, String key, JsonTape tape, int pos) {
+			super(parent, index, key);
+			this.tape = tape;
+			this.pos = pos;
+		}
+
+		@Override
+		int getChildCount() {
+			return tape.isContainer(pos) ? tape.childCount(pos) : 0;
+		}
+
+		@Override
+		protected JsonTreeNode[] loadChildren() {
+			JsonTreeNode[] children = new JsonTreeNode[getChildCount()];
+			boolean object = tape.type(pos) == JsonTape.OBJECT;
+			int i = 0;
+			for (int c = tape.firstChild(pos); c >= 0; c = tape.nextChild(pos, c)) {
+				children[i] = object
+					? new TapeNode(this, i, tape.string(c), tape, c + 1)
+					: new TapeNode(this, i, "[" + i + "]", tape, c);
+				i++;
+			}
+			return children;
+		}
+
+		// Materializes this subtree as Gson objects
+		@Override
+		JsonElement getValue() {
+			return tape.toElement(pos);
+		}
+
+		@Override
+		protected String buildLabel() {
+			return tapeLabel(key, tape, pos);
+		}
+	}
+}
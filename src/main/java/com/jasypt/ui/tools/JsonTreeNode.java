@@ -0,0 +1,67 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Node of the JSON Viewer tree. Children and the display label are created on first
+ * access and then cached, so unexpanded branches cost nothing beyond their backing data.
+ */
+abstract class JsonTreeNode {
+
+	// Creates a child node on demand
+	interface Factory {
+		JsonTreeNode create(JsonTreeNode parent, int index);
+	}
+
+	final JsonTreeNode parent;
+	final int index;
+	final String key;
+
+	// Entry of this node in the search index that last numbered it (see JsonSearchIndex.entryOf)
+	Object indexedBy;
+	int indexEntry;
+
+	private JsonTreeNode[] children;
+	private String label;
+
+	JsonTreeNode(JsonTreeNode parent, int index, String key) {
+		this.parent = parent;
+		this.index = index;
+		this.key = key;
+	}
+
+	// Must be cheap: answered from the backing data without creating children
+	abstract int getChildCount();
+
+	protected abstract JsonTreeNode[] loadChildren();
+
+	// The value to copy for this node, or null for synthetic nodes
+	abstract JsonElement getValue();
+
+	protected abstract String buildLabel();
+
+	JsonTreeNode getChildAt(int i) {
+		if (children == null) {
+			children = loadChildren();
+		}
+		return children[i];
+	}
+
+	boolean isLoaded() {
+		return children != null;
+	}
+
+	// Drops the cached children and label so they are rebuilt from changed backing data
+	void unload() {
+		children = null;
+		label = null;
+	}
+
+	@Override
+	public String toString() {
+		if (label == null) {
+			label = buildLabel();
+		}
+		return label;
+	}
+}
@@ -0,0 +1,163 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Text of JSON values for display: short previews for tree labels, streaming decode of
+ * string values too large to hold as one label, and the serializers the JSON tools share.
+ */
+final class JsonValueText {
+
+	// Longest value shown in a tree label; longer values are cut and followed by their size
+	static final int PREVIEW_CHARS = 160;
+
+	private static final int WRITE_CHUNK = 8192;
+
+	// Shared serializers for Gson trees; Gson instances are thread-safe, so one of each is enough
+	static final Gson PRETTY = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().serializeNulls().create();
+	static final Gson COMPACT = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+
+	private JsonValueText() {
+	}
+
+	static String preview(String text) {
+		return preview(text, text.length());
+	}
+
+	/**
+	 * The text itself when short enough, otherwise its first {@link #PREVIEW_CHARS} chars
+	 * followed by "…" and {@code size}, the full value's size in chars.
+	 */
+	static String preview(String text, long size) {
+		if (text.length() <= PREVIEW_CHARS) return text;
+		int cut = PREVIEW_CHARS;
+		if (Character.isHighSurrogate(text.charAt(cut - 1))) cut--;
+		return text.substring(0, cut) + "… (" + ParseTask.formatSize(size) + ")";
+	}
+
+	/**
+	 * Decodes at most {@code maxChars} chars of the JSON string literal starting with the
+	 * quote at {@code from}. Stops early at the closing quote or where the text ends, so the
+	 * text may be a prefix of the literal.
+	 */
+	static String unescapePrefix(CharSequence text, int from, int maxChars) {
+		StringBuilder sb = new StringBuilder(Math.min(maxChars, 256));
+		int pos = from + 1;
+		int end = text.length();
+		while (sb.length() < maxChars && pos < end) {
+			char c = text.charAt(pos++);
+			if (c == '"') break;
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			if (pos >= end) break;
+			char e = text.charAt(pos++);
+			if (e == 'u') {
+				if (pos + 4 > end) break;
+				int code = parseHex(text, pos);
+				if (code < 0) break;
+				sb.append((char) code);
+				pos += 4;
+			} else {
+				sb.append(escaped(e));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Streams the decoded content of the JSON string literal read from {@code quoted} (opening
+	 * quote first) to {@code out}, a chunk at a time.
+	 */
+	static void unescape(Reader quoted, Writer out) throws IOException {
+		Reader in = quoted.markSupported() ? quoted : new java.io.BufferedReader(quoted, WRITE_CHUNK);
+		if (in.read() != '"') throw new IOException("Not a JSON string");
+		StringBuilder chunk = new StringBuilder(WRITE_CHUNK);
+		char[] hex = new char[4];
+		while (true) {
+			int c = in.read();
+			if (c < 0) throw new IOException("Unterminated JSON string");
+			if (c == '"') break;
+			if (c == '\\') {
+				int e = in.read();
+				if (e < 0) throw new IOException("Unterminated JSON string");
+				if (e == 'u') {
+					for (int i = 0; i < 4; i++) {
+						int h = in.read();
+						if (h < 0) throw new IOException("Unterminated JSON string");
+						hex[i] = (char) h;
+					}
+					int code = parseHex(new String(hex), 0);
+					if (code < 0) throw new IOException("Invalid \\u escape");
+					chunk.append((char) code);
+				} else {
+					chunk.append(escaped((char) e));
+				}
+			} else {
+				chunk.append((char) c);
+			}
+			if (chunk.length() >= WRITE_CHUNK) {
+				out.append(chunk);
+				chunk.setLength(0);
+			}
+		}
+		out.append(chunk);
+	}
+
+	// Reads the chars of text between start and end without copying them
+	static Reader reader(CharSequence text, int start, int end) {
+		return new Reader() {
+			private int pos = start;
+
+			@Override
+			public int read(char[] buf, int off, int len) {
+				if (pos >= end) return -1;
+				int n = Math.min(len, end - pos);
+				for (int k = 0; k < n; k++) buf[off + k] = text.charAt(pos++);
+				return n;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	// Up to max chars from the start of in, fewer only when it ends first
+	static String readPrefix(Reader in, int max) throws IOException {
+		char[] buf = new char[max];
+		int n = 0;
+		while (n < max) {
+			int r = in.read(buf, n, max - n);
+			if (r < 0) break;
+			n += r;
+		}
+		return new String(buf, 0, n);
+	}
+
+	private static char escaped(char e) {
+		switch (e) {
+			case 'b': return '\b';
+			case 'f': return '\f';
+			case 'n': return '\n';
+			case 'r': return '\r';
+			case 't': return '\t';
+			default: return e;
+		}
+	}
+
+	private static int parseHex(CharSequence text, int at) {
+		int code = 0;
+		for (int i = at; i < at + 4; i++) {
+			int digit = Character.digit(text.charAt(i), 16);
+			if (digit < 0) return -1;
+			code = code << 4 | digit;
+		}
+		return code;
+	}
+}
@@ -3,8 +3,17 @@ package com.jasypt.ui.tools;
 import com.google.gson.*;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+import javax.swing.text.Segment;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
+import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.TreePath;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
@@ -13,14 +22,21 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Enumeration;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * JSON Viewer tool - exactly replicates Python JSONViewerFrame behavior.
@@ -28,21 +44,94 @@ import java.util.Set;
  */
 public class JsonViewerTool extends JPanel {
 
-	private JTree tree;
-	private DefaultTreeModel treeModel;
+	private BatchExpandTree tree;
+	private JsonTreeModel treeModel;
 	private JTextArea textArea;
 	private JTextField searchField;
 	private JLabel statusLabel;
+	private final JsonParsingService parsing = JsonParsingService.shared();
+	private DocumentListener textListener;
 	private Timer parseTimer;
-	private Map<DefaultMutableTreeNode, Object> nodeValueMap;
-
-	// Search state
+	private SwingWorker<?, ?> parseWorker;
+	private FormatWorker formatWorker;
+
+	// True while the tree was built by an AUTO parse of the text as it stands; formatting keeps it current
+	private boolean treeCurrent;
+
+	// Incremental re-parse: the tape behind the tree while its offsets match the text, and the
+	// range edited since (in current text coordinates, with the net length change)
+	private static final int INCREMENTAL_LIMIT = 2 * 1024 * 1024;
+	private JsonTape textTape;
+	private int editStart = -1;
+	private int editEnd;
+	private int editDelta;
+	private SwingWorker<?, ?> reindexWorker;
+
+	// Files above this size are memory-mapped and never loaded into the text pane
+	private static final long TEXT_PANE_LIMIT = 32L * 1024 * 1024;
+	private static final long COPY_LIMIT = 64L * 1024 * 1024;
+
+	// Open-file mode: the text pane is bypassed and the tree reads from a mapped file
+	private boolean fileMode;
+	private MappedJsonFile mappedFile;
+	private JButton closeFileBtn;
+
+	// Binary mode: the tree holds a decoded CBOR, MessagePack or Smile document and the text pane a summary
+	private String binaryName;
+
+	// Search state; element-backed trees are searched through the index, mapped files by walking loaded nodes
+	private JsonSearchIndex searchIndex;
+	private SearchWorker searchWorker;
 	private String lastSearch = "";
 	private List<TreePath> lastFoundPaths = new ArrayList<>();
+	private final List<Integer> foundEntries = new ArrayList<>();
 	private int lastFoundIndex = -1;
 
-	// For zebra striping
-	private int rowIndex = 0;
+	// Batched expansion: paths are expanded breadth-first a time slice at a time, up to a budget
+	// of rows revealed, each expanded container counting for all of its children
+	private static final int EXPAND_ROW_BUDGET = 50_000;
+	private static final long EXPAND_SLICE_NANOS = 15_000_000L;
+	private Timer expandTimer;
+	private final ArrayDeque<TreePath> expandQueue = new ArrayDeque<>();
+	private int expandMaxLevel;
+	private int expandedRows;
+	private JSpinner levelSpinner;
+
+	// JSONPath query state
+	private static final int QUERY_RESULT_LIMIT = 100_000;
+	private JTextField queryField;
+	private JButton queryCancelBtn;
+	private JPanel resultsPanel;
+	private JLabel resultsLabel;
+	private JList<JsonPathQuery.Match> resultsList;
+	private QueryResultsModel resultsModel;
+	private QueryWorker queryWorker;
+
+	// Subtree weights: size, node count and depth per container, taken from the search index
+	private static final int LARGEST_LIMIT = 200;
+	private JToggleButton weightsToggle;
+	private JComboBox<String> heatMetric;
+	private JDialog largestDialog;
+
+	// Table mode: an array of records shown column-wise in place of the tree
+	private JPanel treeCards;
+	private JTable recordTable;
+	private RecordTableModel recordModel;
+	private JLabel tableLabel;
+	private JTextField tableFilter;
+	private JComboBox<String> tableFilterColumn;
+	private TreePath tablePath;
+	private SwingWorker<?, ?> tableWorker;
+	private int tableSortColumn = -1;
+	private boolean tableAscending = true;
+
+	// Value detail: one value streamed into fixed-width rows, so a huge string never becomes one label
+	private static final long DETAIL_LIMIT = 32L * 1024 * 1024;
+	private static final int DETAIL_ROW_CHARS = 160;
+	private JDialog valueDialog;
+	private JLabel valueLabel;
+	private ValueRowsModel valueRows;
+	private ValueWorker valueWorker;
 
 	public JsonViewerTool() {
 		initializeUI();
@@ -79,26 +168,88 @@ public class JsonViewerTool extends JPanel {
 		expandAllBtn.addActionListener(e -> expandAll());
 		searchRow.add(expandAllBtn);
 
+		levelSpinner = new JSpinner(new SpinnerNumberModel(2, 1, 99, 1));
+		levelSpinner.setToolTipText("Depth for Expand to Level");
+		searchRow.add(levelSpinner);
+		JButton expandLevelBtn = new JButton("Expand to Level");
+		expandLevelBtn.addActionListener(e -> expandToLevel((Integer) levelSpinner.getValue()));
+		searchRow.add(expandLevelBtn);
+
 		JButton collapseAllBtn = new JButton("Collapse All");
 		collapseAllBtn.addActionListener(e -> collapseAll());
 		searchRow.add(collapseAllBtn);
 
-		leftPanel.add(searchRow, BorderLayout.NORTH);
+		// JSONPath query row
+		JPanel queryRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+		queryRow.add(new JLabel("JSONPath:"));
+		queryField = new JTextField(20);
+		queryField.setToolTipText("e.g. $.items[?(@.price > 100)].name or $..id");
+		queryField.addActionListener(e -> runQuery());
+		queryRow.add(queryField);
+		JButton queryRunBtn = new JButton("Run");
+		queryRunBtn.addActionListener(e -> runQuery());
+		queryRow.add(queryRunBtn);
+		queryCancelBtn = new JButton("Cancel");
+		queryCancelBtn.setEnabled(false);
+		queryCancelBtn.addActionListener(e -> {
+			cancelQuery();
+			setStatus("Query cancelled");
+		});
+		queryRow.add(queryCancelBtn);
+
+		weightsToggle = new JToggleButton("Weights");
+		weightsToggle.setToolTipText("Show size, node count and depth on container rows, shaded by weight");
+		weightsToggle.addActionListener(e -> tree.setCellRenderer(new WeightRenderer()));
+		queryRow.add(weightsToggle);
+		heatMetric = new JComboBox<>(new String[]{"Size", "Nodes", "Depth"});
+		heatMetric.setToolTipText("Metric for shading and for Largest");
+		heatMetric.addActionListener(e -> tree.repaint());
+		queryRow.add(heatMetric);
+		JButton largestBtn = new JButton("Largest…");
+		largestBtn.setToolTipText("List the heaviest subtrees");
+		largestBtn.addActionListener(e -> showLargestSubtrees());
+		queryRow.add(largestBtn);
+
+		JPanel toolRows = new JPanel(new GridLayout(2, 1, 0, 4));
+		toolRows.add(searchRow);
+		toolRows.add(queryRow);
+		leftPanel.add(toolRows, BorderLayout.NORTH);
 
 		// Tree
-		DefaultMutableTreeNode root = new DefaultMutableTreeNode("root");
-		treeModel = new DefaultTreeModel(root);
-		tree = new JTree(treeModel);
+		treeModel = new JsonTreeModel();
+		tree = new BatchExpandTree(treeModel);
 		tree.setShowsRootHandles(true);
 		tree.setRootVisible(false);
+		// A fixed row height spares the layout cache from re-measuring row positions on every expansion.
+		// Large-model mode is left off: its cache re-counts expanded siblings on each expansion.
+		int rowHeight = tree.getCellRenderer()
+			.getTreeCellRendererComponent(tree, "Xg", false, false, true, 0, false).getPreferredSize().height;
+		tree.setRowHeight(Math.max(rowHeight, 16));
+		tree.setCellRenderer(new WeightRenderer());
 
 		// Tree popup menu
 		JPopupMenu treeMenu = new JPopupMenu();
 		JMenuItem copyItem = new JMenuItem("Copy Value");
 		copyItem.addActionListener(e -> copySelectedValue());
 		treeMenu.add(copyItem);
+		JMenuItem showValueItem = new JMenuItem("Show Value…");
+		showValueItem.addActionListener(e -> showSelectedValue());
+		treeMenu.add(showValueItem);
+		JMenuItem tableItem = new JMenuItem("Show as Table");
+		tableItem.addActionListener(e -> showAsTable());
+		treeMenu.add(tableItem);
 
 		tree.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				// Containers expand on double-click; leaves open in the value detail
+				if (e.getClickCount() != 2 || !SwingUtilities.isLeftMouseButton(e)) return;
+				TreePath path = tree.getPathForLocation(e.getX(), e.getY());
+				if (path != null && treeModel.isLeaf(path.getLastPathComponent())) {
+					showSelectedValue();
+				}
+			}
+
 			@Override
 			public void mousePressed(MouseEvent e) {
 				if (e.isPopupTrigger()) {
@@ -134,7 +285,104 @@ public class JsonViewerTool extends JPanel {
 		});
 
 		JScrollPane treeScroll = new JScrollPane(tree);
-		leftPanel.add(treeScroll, BorderLayout.CENTER);
+
+		// Query results: a flat list, each entry linked to its tree node
+		resultsModel = new QueryResultsModel();
+		resultsList = new JList<>(resultsModel);
+		resultsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		resultsList.setFixedCellHeight(tree.getFontMetrics(tree.getFont()).getHeight() + 2);
+		resultsList.setCellRenderer(new DefaultListCellRenderer() {
+			@Override
+			public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+					boolean isSelected, boolean cellHasFocus) {
+				return super.getListCellRendererComponent(list, describeMatch((JsonPathQuery.Match) value),
+					index, isSelected, cellHasFocus);
+			}
+		});
+		resultsList.addListSelectionListener(e -> {
+			if (!e.getValueIsAdjusting() && resultsList.getSelectedValue() != null) {
+				showQueryMatch(resultsList.getSelectedValue());
+			}
+		});
+
+		resultsPanel = new JPanel(new BorderLayout(0, 4));
+		JPanel resultsHeader = new JPanel(new BorderLayout());
+		resultsLabel = new JLabel("Query results");
+		resultsHeader.add(resultsLabel, BorderLayout.WEST);
+		JButton closeResultsBtn = new JButton("Close");
+		closeResultsBtn.addActionListener(e -> {
+			cancelQuery();
+			resultsPanel.setVisible(false);
+		});
+		resultsHeader.add(closeResultsBtn, BorderLayout.EAST);
+		resultsPanel.add(resultsHeader, BorderLayout.NORTH);
+		resultsPanel.add(new JScrollPane(resultsList), BorderLayout.CENTER);
+		resultsPanel.setVisible(false);
+
+		// Table mode card: filter bar over a virtual table
+		recordModel = new RecordTableModel();
+		recordTable = new JTable(recordModel);
+		recordTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+		recordTable.setFillsViewportHeight(true);
+		recordTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+			@Override
+			public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+					boolean hasFocus, int row, int column) {
+				super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+				JsonRecordTable.Kind kind = recordModel.getKind(table.convertColumnIndexToModel(column));
+				setHorizontalAlignment(kind == JsonRecordTable.Kind.INTEGER || kind == JsonRecordTable.Kind.DECIMAL
+					? RIGHT : LEFT);
+				return this;
+			}
+		});
+		recordTable.getTableHeader().addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				int column = recordTable.convertColumnIndexToModel(recordTable.columnAtPoint(e.getPoint()));
+				if (column < 0) return;
+				tableAscending = column != tableSortColumn || !tableAscending;
+				tableSortColumn = column;
+				updateTableView();
+			}
+		});
+		recordTable.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				int row = recordTable.getSelectedRow();
+				if (e.getClickCount() == 2 && row >= 0) {
+					showRecordInTree(recordModel.recordAt(row));
+				}
+			}
+		});
+
+		JPanel tableBar = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+		tableLabel = new JLabel();
+		tableBar.add(tableLabel);
+		tableBar.add(new JLabel("Filter:"));
+		tableFilter = new JTextField(14);
+		tableFilter.addActionListener(e -> updateTableView());
+		tableBar.add(tableFilter);
+		tableFilterColumn = new JComboBox<>();
+		tableFilterColumn.addActionListener(e -> {
+			if (!tableFilter.getText().trim().isEmpty()) updateTableView();
+		});
+		tableBar.add(tableFilterColumn);
+		JButton backBtn = new JButton("Back to Tree");
+		backBtn.addActionListener(e -> closeTable());
+		tableBar.add(backBtn);
+
+		JPanel tableCard = new JPanel(new BorderLayout(0, 4));
+		tableCard.add(tableBar, BorderLayout.NORTH);
+		tableCard.add(new JScrollPane(recordTable), BorderLayout.CENTER);
+
+		treeCards = new JPanel(new CardLayout());
+		treeCards.add(treeScroll, "tree");
+		treeCards.add(tableCard, "table");
+
+		JSplitPane treeSplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT, treeCards, resultsPanel);
+		treeSplit.setResizeWeight(0.7);
+		treeSplit.setBorder(null);
+		leftPanel.add(treeSplit, BorderLayout.CENTER);
 
 		// Right panel: text area
 		JPanel rightPanel = new JPanel(new BorderLayout(6, 6));
@@ -145,11 +393,29 @@ public class JsonViewerTool extends JPanel {
 		JButton formatBtn = new JButton("Format JSON");
 		formatBtn.addActionListener(e -> formatJson());
 
-		// Right-aligned actions: Complex JSON + Format JSON
+		// Right-aligned actions: Open File + Complex JSON + JSON Lines + Format JSON
 		JPanel rightActions = new JPanel(new FlowLayout(FlowLayout.RIGHT, 6, 0));
+		JButton openBtn = new JButton("Open File…");
+		openBtn.addActionListener(e -> openFile());
+		rightActions.add(openBtn);
+		JButton binaryBtn = new JButton("Binary…");
+		binaryBtn.setToolTipText("Decode CBOR, MessagePack or Smile from a file or a Base64/hex blob");
+		binaryBtn.addActionListener(e -> {
+			BinaryJsonChooser.Source source = BinaryJsonChooser.show(this, "Open Binary JSON");
+			if (source != null) openBinary(source);
+		});
+		rightActions.add(binaryBtn);
+		closeFileBtn = new JButton("Close File");
+		closeFileBtn.addActionListener(e -> closeFile());
+		closeFileBtn.setVisible(false);
+		rightActions.add(closeFileBtn);
 		JButton complexBtn = new JButton("Complex JSON");
 		complexBtn.addActionListener(e -> parseComplexJson());
 		rightActions.add(complexBtn);
+		JButton linesBtn = new JButton("JSON Lines");
+		linesBtn.setToolTipText("Parse newline-delimited JSON, one record per line");
+		linesBtn.addActionListener(e -> parseJsonLines());
+		rightActions.add(linesBtn);
 		rightActions.add(formatBtn);
 		rightHeader.add(rightActions, BorderLayout.EAST);
 		rightPanel.add(rightHeader, BorderLayout.NORTH);
@@ -160,11 +426,12 @@ public class JsonViewerTool extends JPanel {
 		textArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
 
 		// Add document listener for auto-parse with debouncing
-		textArea.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
-			public void insertUpdate(javax.swing.event.DocumentEvent e) { scheduleParse(); }
-			public void removeUpdate(javax.swing.event.DocumentEvent e) { scheduleParse(); }
-			public void changedUpdate(javax.swing.event.DocumentEvent e) { scheduleParse(); }
-		});
+		textListener = new DocumentListener() {
+			public void insertUpdate(DocumentEvent e) { noteEdit(e.getOffset(), e.getLength(), true); scheduleParse(); }
+			public void removeUpdate(DocumentEvent e) { noteEdit(e.getOffset(), e.getLength(), false); scheduleParse(); }
+			public void changedUpdate(DocumentEvent e) { scheduleParse(); }
+		};
+		textArea.getDocument().addDocumentListener(textListener);
 
 		JScrollPane textScroll = new JScrollPane(textArea);
 		rightPanel.add(textScroll, BorderLayout.CENTER);
@@ -181,12 +448,18 @@ public class JsonViewerTool extends JPanel {
 		));
 		add(statusLabel, BorderLayout.SOUTH);
 
-		nodeValueMap = new HashMap<>();
 		parseTimer = new Timer(400, e -> parseAndRender());
 		parseTimer.setRepeats(false);
+
+		expandTimer = new Timer(0, e -> expandBatch());
 	}
 
 	private void scheduleParse() {
+		if (fileMode || binaryName != null) return;
+		// A newer keystroke makes any parse or format still in flight obsolete
+		cancelParse();
+		cancelFormat();
+		treeCurrent = false;
 		if (parseTimer.isRunning()) {
 			parseTimer.restart();
 		} else {
@@ -195,480 +468,409 @@ public class JsonViewerTool extends JPanel {
 	}
 
 	private void parseAndRender() {
-		String raw = textArea.getText().trim();
-		if (raw.isEmpty()) {
+		String text = textArea.getText();
+		if (text.trim().isEmpty()) {
+			cancelParse();
 			setStatus("Paste text to parse JSON…");
 			clearTree();
 			return;
 		}
+		if (reparseEdit(text)) return;
 
-		ParseResult result = extractAndLoadJson(raw);
-		if (result.error != null) {
-			setStatus("Parse failed: " + result.error);
-			clearTree();
-			return;
-		}
-
-		setStatus("Parsed JSON successfully");
-		populateTree(result.data);
+		startParse(new ParseWorker(text, ParseMode.AUTO));
 	}
 
-	// Parse multiple JSON blocks from free-form text (e.g., logs) and render
-	private void parseComplexJson() {
-		String raw = textArea.getText();
-		if (raw == null || raw.trim().isEmpty()) {
-			JOptionPane.showMessageDialog(this, "Paste text first.", "Complex JSON", JOptionPane.WARNING_MESSAGE);
-			return;
+	// Widens the tracked edit range to cover one document change
+	private void noteEdit(int offset, int length, boolean insert) {
+		if (editStart < 0) {
+			editStart = offset;
+			editEnd = offset;
+			editDelta = 0;
 		}
-
-		List<JsonElement> blocks = extractAllJsonBlocks(raw);
-		if (blocks.isEmpty()) {
-			JOptionPane.showMessageDialog(this, "No JSON objects/arrays found in text.", "Complex JSON", JOptionPane.INFORMATION_MESSAGE);
-			return;
+		editStart = Math.min(editStart, offset);
+		if (insert) {
+			editEnd = offset <= editEnd ? editEnd + length : offset + length;
+			editDelta += length;
+		} else {
+			editEnd = Math.max(offset, editEnd - length);
+			editDelta -= length;
 		}
-
-		populateTreeMultiple(blocks);
-		setStatus("Parsed " + blocks.size() + " JSON block(s)");
 	}
 
-	// Extracts all top-level balanced {..} and [..] blocks and attempts to parse each using the same variant strategy
-	private List<JsonElement> extractAllJsonBlocks(String text) {
-		List<JsonElement> results = new ArrayList<>();
-		List<String> candidates = new ArrayList<>();
-
-		// Scan for object and array blocks separately to keep ordering by first occurrence
-		List<int[]> spans = new ArrayList<>();
-		spans.addAll(scanAllBalancedBlocks(text, '{', '}'));
-		spans.addAll(scanAllBalancedBlocks(text, '[', ']'));
-
-		// Sort spans by start index to preserve text order
-		spans.sort((a, b) -> Integer.compare(a[0], b[0]));
-
-		// Filter out spans that are completely inside a previously accepted span (keep outermost only)
-		List<int[]> filtered = new ArrayList<>();
-		int lastStart = -1, lastEnd = -1;
-		for (int[] span : spans) {
-			int start = span[0];
-			int end = span[1];
-			if (lastStart <= start && end <= lastEnd) {
-				// contained within previous, skip
-				continue;
-			}
-			filtered.add(span);
-			lastStart = start;
-			lastEnd = end;
+	/**
+	 * Re-parses only the innermost container around the edits since the last parse and
+	 * splices it into the tape and the loaded tree, so nodes outside it keep their expansion
+	 * and selection. Returns false when a full parse is needed instead.
+	 */
+	private boolean reparseEdit(String text) {
+		JsonTape tape = textTape;
+		textTape = null;
+		if (tape == null || editStart < 0) return false;
+		long t0 = System.nanoTime();
+		int at = tape.enclosingContainer(editStart, editEnd - editDelta);
+		editStart = -1;
+		if (at < 0 || tape.endPosition(at) - tape.position(at) + editDelta > INCREMENTAL_LIMIT) return false;
+
+		JsonTape updated;
+		try {
+			updated = tape.replace(at, text, editDelta);
+		} catch (JsonSyntaxException e) {
+			return false;
 		}
 
-		for (int[] span : filtered) {
-			int start = span[0];
-			int end = span[1];
-			if (start >= 0 && end > start && end <= text.length()) {
-				candidates.add(text.substring(start, end));
+		JsonTreeNode root = treeModel.getRootNode();
+		JsonTreeModel.TapeNode node = JsonTreeModel.findLoaded(root, at);
+		TreePath containerPath = node != null ? JsonTreeModel.pathTo(node) : null;
+		List<int[]> expanded = new ArrayList<>();
+		List<int[]> selected = new ArrayList<>();
+		if (containerPath != null) {
+			Enumeration<TreePath> paths = tree.getExpandedDescendants(containerPath);
+			while (paths != null && paths.hasMoreElements()) {
+				addRelativePath(containerPath, paths.nextElement(), expanded);
 			}
-		}
-
-		// Deduplicate exact duplicates while preserving order
-		Set<String> seen = new HashSet<>();
-		List<String> uniqueCandidates = new ArrayList<>();
-		for (String c : candidates) {
-			if (seen.add(c)) uniqueCandidates.add(c);
-		}
-
-		for (String cand : uniqueCandidates) {
-			VariantResult vr = tryParseVariants(cand);
-			if (vr.data != null) {
-				results.add(vr.data);
+			TreePath[] selection = tree.getSelectionPaths();
+			if (selection != null) {
+				for (TreePath path : selection) addRelativePath(containerPath, path, selected);
 			}
 		}
 
-		// If none found, try looser strategy: tryParseVariants over entire text, then over lines
-		if (results.isEmpty()) {
-			VariantResult vr = tryParseVariants(text.trim());
-			if (vr.data != null) results.add(vr.data);
-			if (results.isEmpty()) {
-				for (String line : text.split("\r?\n")) {
-					vr = tryParseVariants(line.trim());
-					if (vr.data != null) results.add(vr.data);
-				}
+		stopExpand();
+		resetSearch();
+		cancelQuery();
+		cancelReindex();
+		closeTable();
+		int end = tape.skip(at) - 1;
+		JsonTreeModel.retarget(root, updated, at, end, updated.tokenCount() - tape.tokenCount());
+		if (containerPath != null) {
+			treeModel.fireStructureChanged(containerPath);
+			for (int[] rel : expanded) {
+				TreePath path = resolveRelativePath(containerPath, rel);
+				if (path != null) tree.expandPath(path);
+			}
+			for (int[] rel : selected) {
+				TreePath path = resolveRelativePath(containerPath, rel);
+				if (path != null) tree.addSelectionPath(path);
 			}
 		}
 
-		return results;
+		textTape = updated;
+		treeCurrent = true;
+		searchIndex = null;
+		reindexWorker = new ReindexWorker(root);
+		reindexWorker.execute();
+		setStatus(String.format("Re-parsed %,d of %,d tokens after edit (%d ms)",
+			updated.skip(at) - at, updated.tokenCount(), (System.nanoTime() - t0) / 1_000_000));
+		return true;
 	}
 
-	private List<int[]> scanAllBalancedBlocks(String text, char openCh, char closeCh) {
-		List<int[]> spans = new ArrayList<>();
-		int n = text.length();
-		for (int i = 0; i < n; i++) {
-			if (text.charAt(i) == openCh) {
-				Integer end = findMatching(text, i, openCh, closeCh);
-				if (end != null) {
-					spans.add(new int[]{i, end + 1});
-					// Skip ahead to avoid nested duplicates starting at same region
-					i = end;
-				}
-			}
+	// Child indices from base down to path, if path lies strictly below base
+	private static void addRelativePath(TreePath base, TreePath path, List<int[]> out) {
+		int depth = base.getPathCount();
+		if (path.getPathCount() <= depth || !base.isDescendant(path)) return;
+		int[] rel = new int[path.getPathCount() - depth];
+		for (int i = 0; i < rel.length; i++) {
+			rel[i] = ((JsonTreeNode) path.getPathComponent(depth + i)).index;
 		}
-		return spans;
+		out.add(rel);
 	}
 
-	private void populateTreeMultiple(List<JsonElement> items) {
-		clearTree();
-		rowIndex = 0;
-		DefaultMutableTreeNode root = (DefaultMutableTreeNode) treeModel.getRoot();
-
-		for (int i = 0; i < items.size(); i++) {
-			JsonElement el = items.get(i);
-			String label = (el.isJsonObject() ? "Object" : el.isJsonArray() ? "Array" : "Value") + " #" + (i + 1);
-			DefaultMutableTreeNode node = new DefaultMutableTreeNode(label);
-			root.add(node);
-			nodeValueMap.put(node, el);
-			rowIndex++;
-
-			// Insert children under this node
-			if (el.isJsonObject()) {
-				JsonObject obj = el.getAsJsonObject();
-				for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
-					insertNode(node, entry.getKey(), entry.getValue());
-				}
-			} else if (el.isJsonArray()) {
-				JsonArray arr = el.getAsJsonArray();
-				for (int j = 0; j < arr.size(); j++) {
-					insertNode(node, "[" + j + "]", arr.get(j));
-				}
-			} else {
-				insertNode(node, "value", el);
-			}
-		}
-
-		treeModel.reload();
-
-		// Expand first-level nodes
-		for (int i = 0; i < root.getChildCount(); i++) {
-			tree.expandPath(new TreePath(new Object[]{root, root.getChildAt(i)}));
+	private static TreePath resolveRelativePath(TreePath base, int[] rel) {
+		TreePath path = base;
+		JsonTreeNode node = (JsonTreeNode) base.getLastPathComponent();
+		for (int index : rel) {
+			if (index >= node.getChildCount()) return null;
+			node = node.getChildAt(index);
+			path = path.pathByAddingChild(node);
 		}
+		return path;
 	}
 
-	private ParseResult extractAndLoadJson(String text) {
-		// First, try to parse the text directly with variants (handles escaped JSON)
-		VariantResult directResult = tryParseVariants(text.trim());
-		if (directResult.data != null) {
-			return new ParseResult(directResult.data, null);
+	private void cancelReindex() {
+		if (reindexWorker != null) {
+			reindexWorker.cancel(true);
+			reindexWorker = null;
 		}
+	}
 
-		// Try to locate the first valid JSON object/array
-		String candidate = extractJsonBlock(text);
-
-		// If no block found with original text, try with unescaped quotes
-		if (candidate == null) {
-			String unescaped = text.replace("\\\"", "\"");
-			if (!unescaped.equals(text)) {
-				candidate = extractJsonBlock(unescaped);
-			}
+	// Parse multiple JSON blocks from free-form text (e.g., logs) and render
+	private void parseComplexJson() {
+		if (fileMode) {
+			JOptionPane.showMessageDialog(this, "Complex JSON is not available for memory-mapped files.",
+				"Complex JSON", JOptionPane.INFORMATION_MESSAGE);
+			return;
 		}
-
-		// Fallback: if no block found, try unwrapping quoted string
-		if (candidate == null) {
-			String t = text.trim();
-			if ((t.startsWith("\"") && t.endsWith("\"")) || (t.startsWith("'") && t.endsWith("'"))) {
-				try {
-					JsonElement elem = JsonParser.parseString(t);
-					if (elem.isJsonPrimitive() && elem.getAsJsonPrimitive().isString()) {
-						String unquoted = elem.getAsString();
-						String innerBlock = extractJsonBlock(unquoted);
-						candidate = (innerBlock != null) ? innerBlock : unquoted;
-					}
-				} catch (Exception e) {
-					candidate = t;
-				}
-			} else {
-				return new ParseResult(null, "No JSON object/array found");
-			}
+		if (binaryName != null) {
+			JOptionPane.showMessageDialog(this, "Complex JSON is not available for binary documents.",
+				"Complex JSON", JOptionPane.INFORMATION_MESSAGE);
+			return;
 		}
-
-		// Try parsing with variants
-		VariantResult vr = tryParseVariants(candidate);
-		if (vr.data != null) {
-			return new ParseResult(vr.data, null);
+		String raw = textArea.getText();
+		if (raw == null || raw.trim().isEmpty()) {
+			JOptionPane.showMessageDialog(this, "Paste text first.", "Complex JSON", JOptionPane.WARNING_MESSAGE);
+			return;
 		}
 
-		return new ParseResult(null, "Unable to parse JSON from provided text");
+		parseTimer.stop();
+		startParse(new ParseWorker(raw, ParseMode.COMPLEX));
 	}
 
-	private String extractJsonBlock(String text) {
-		String obj = scanForBalancedBlock(text, '{', '}');
-		String arr = scanForBalancedBlock(text, '[', ']');
-
-		if (obj == null && arr == null) return null;
-		if (obj == null) return arr;
-		if (arr == null) return obj;
+	// Parse newline-delimited JSON records in parallel, keeping their order
+	private void parseJsonLines() {
+		if (fileMode) {
+			JOptionPane.showMessageDialog(this, "JSON Lines is not available for memory-mapped files.",
+				"JSON Lines", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		if (binaryName != null) {
+			JOptionPane.showMessageDialog(this, "JSON Lines is not available for binary documents.",
+				"JSON Lines", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		String raw = textArea.getText();
+		if (raw == null || raw.trim().isEmpty()) {
+			JOptionPane.showMessageDialog(this, "Paste text first.", "JSON Lines", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
 
-		// Prefer earliest occurrence
-		int oidx = text.indexOf(obj);
-		int aidx = text.indexOf(arr);
-		return (oidx >= 0 && (aidx < 0 || oidx < aidx)) ? obj : arr;
+		parseTimer.stop();
+		startParse(new ParseWorker(raw, ParseMode.LINES));
 	}
 
-	private String scanForBalancedBlock(String text, char openCh, char closeCh) {
-		int n = text.length();
-		for (int i = 0; i < n; i++) {
-			if (text.charAt(i) == openCh) {
-				Integer end = findMatching(text, i, openCh, closeCh);
-				if (end != null) {
-					return text.substring(i, end + 1);
-				}
-			}
-		}
-		return null;
+	private void startParse(SwingWorker<?, ?> worker) {
+		cancelParse();
+		parseWorker = worker;
+		setStatus("Parsing…");
+		worker.execute();
 	}
 
-	private Integer findMatching(String s, int start, char openCh, char closeCh) {
-		int depth = 0;
-		boolean inStr = false;
-		boolean esc = false;
-
-		for (int i = start; i < s.length(); i++) {
-			char ch = s.charAt(i);
-			if (inStr) {
-				if (esc) {
-					esc = false;
-				} else if (ch == '\\') {
-					esc = true;
-				} else if (ch == '"') {
-					inStr = false;
-				}
-			} else {
-				if (ch == '"') {
-					inStr = true;
-				} else if (ch == openCh) {
-					depth++;
-				} else if (ch == closeCh) {
-					depth--;
-					if (depth == 0) {
-						return i;
-					}
-				}
-			}
+	private void cancelParse() {
+		if (parseWorker != null) {
+			parseWorker.cancel(true);
+			parseWorker = null;
 		}
-		return null;
 	}
 
-	private VariantResult tryParseVariants(String base) {
-		Set<String> tried = new HashSet<>();
-		Queue<String> queue = new LinkedList<>();
-
-		queue.add(base);
-		tried.add(base);
-
-		// Try unwrapping quoted strings up to 3 levels
-		String s = base;
-		for (int i = 0; i < 3; i++) {
-			String ts = s.trim();
-			if (ts.startsWith("\"") && ts.endsWith("\"")) {
-				try {
-					JsonElement elem = JsonParser.parseString(ts);
-					if (elem.isJsonPrimitive() && elem.getAsJsonPrimitive().isString()) {
-						s = elem.getAsString();
-						if (!tried.contains(s)) {
-							queue.add(s);
-							tried.add(s);
-						}
-					} else {
-						return new VariantResult(elem, null);
-					}
-				} catch (Exception e) {
-					break;
-				}
-			} else {
-				break;
+	private void openFile() {
+		JFileChooser chooser = new JFileChooser();
+		chooser.setDialogTitle("Open JSON File");
+		if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+		File file = chooser.getSelectedFile();
+
+		try {
+			if (isBinaryFile(file)) {
+				openBinary(new BinaryJsonChooser.Source(file.getName(), BinaryJsonChooser.map(file.toPath()),
+					binaryFormat(file)));
+				return;
 			}
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(this, "Unable to read file: " + e.getMessage(),
+				"Open File", JOptionPane.ERROR_MESSAGE);
+			return;
 		}
 
-		// Try various transformations
-		while (!queue.isEmpty()) {
-			String cur = queue.poll();
-
-			// Try direct parse
-			try {
-				JsonElement data = JsonParser.parseString(cur);
-				return new VariantResult(data, null);
-			} catch (Exception e) {}
-
-			// Try unicode escape decoding
+		closeFile();
+		cancelFormat();
+		if (file.length() <= TEXT_PANE_LIMIT) {
 			try {
-				String ue = decodeUnicodeEscape(cur);
-				if (!ue.equals(cur)) {
-					try {
-						JsonElement data = JsonParser.parseString(ue);
-						return new VariantResult(data, null);
-					} catch (Exception e) {
-						if (!tried.contains(ue)) {
-							queue.add(ue);
-							tried.add(ue);
-						}
-					}
-				}
-			} catch (Exception e) {}
-
-			// Try collapsing double backslashes
-			String collapsed = cur.replace("\\\\", "\\");
-			if (!collapsed.equals(cur)) {
-				try {
-					JsonElement data = JsonParser.parseString(collapsed);
-					return new VariantResult(data, null);
-				} catch (Exception e) {
-					if (!tried.contains(collapsed)) {
-						queue.add(collapsed);
-						tried.add(collapsed);
-					}
-				}
-			}
-
-			// Try unescaping quotes
-			String unq = cur.replace("\\\"", "\"");
-			if (!unq.equals(cur)) {
-				try {
-					JsonElement data = JsonParser.parseString(unq);
-					return new VariantResult(data, null);
-				} catch (Exception e) {
-					if (!tried.contains(unq)) {
-						queue.add(unq);
-						tried.add(unq);
-					}
-				}
-			}
-
-			// Try combined: collapse + unescape
-			String combo = cur.replace("\\\\", "\\").replace("\\\"", "\"");
-			if (!combo.equals(cur)) {
-				try {
-					JsonElement data = JsonParser.parseString(combo);
-					return new VariantResult(data, null);
-				} catch (Exception e) {
-					if (!tried.contains(combo)) {
-						queue.add(combo);
-						tried.add(combo);
-					}
-				}
+				textArea.setText(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+				textArea.setCaretPosition(0);
+			} catch (IOException e) {
+				JOptionPane.showMessageDialog(this, "Unable to read file: " + e.getMessage(),
+					"Open File", JOptionPane.ERROR_MESSAGE);
 			}
+			return;
 		}
 
-		return new VariantResult(null, "Unable to parse");
+		// Large file: skip the text pane entirely and index the mapped bytes
+		parseTimer.stop();
+		fileMode = true;
+		textArea.setText("Opened " + file.getName() + " (" + ParseTask.formatSize(file.length()) + ")\n\n"
+			+ "The text view is disabled for files larger than " + ParseTask.formatSize(TEXT_PANE_LIMIT)
+			+ ".\nUse Close File to return to paste mode.");
+		textArea.setEditable(false);
+		closeFileBtn.setVisible(true);
+		clearTree();
+		startParse(new IndexWorker(file.toPath()));
 	}
 
-	private String decodeUnicodeEscape(String s) {
-		// Simple unicode escape decoder - converts \\uXXXX sequences
-		StringBuilder sb = new StringBuilder();
-		int i = 0;
-		while (i < s.length()) {
-			if (i < s.length() - 5 && s.charAt(i) == '\\' && s.charAt(i+1) == 'u') {
-				try {
-					String hex = s.substring(i+2, i+6);
-					int code = Integer.parseInt(hex, 16);
-					sb.append((char) code);
-					i += 6;
-				} catch (Exception e) {
-					sb.append(s.charAt(i));
-					i++;
-				}
-			} else {
-				sb.append(s.charAt(i));
-				i++;
-			}
-		}
-		return sb.toString();
+	// Decodes a binary document straight into the tree; the text pane is bypassed as for mapped files
+	private void openBinary(BinaryJsonChooser.Source source) {
+		closeFile();
+		cancelFormat();
+		parseTimer.stop();
+		binaryName = source.name;
+		textArea.setText("Opened " + source.name + " (" + String.format("%,d", source.bytes.remaining())
+			+ " bytes of " + (source.format != null ? source.format : "binary JSON") + ")\n\n"
+			+ "The tree shows the decoded document; search, Copy Value and JSONPath work as for text.\n"
+			+ "Use Close File to return to paste mode.");
+		textArea.setEditable(false);
+		closeFileBtn.setVisible(true);
+		clearTree();
+		startParse(new BinaryWorker(source));
 	}
 
-	private void clearTree() {
-		DefaultMutableTreeNode root = (DefaultMutableTreeNode) treeModel.getRoot();
-		root.removeAllChildren();
-		treeModel.reload();
-		nodeValueMap.clear();
+	// Binary by extension, by signature or because the start of the file cannot be JSON text
+	private static boolean isBinaryFile(File file) throws IOException {
+		if (binaryFormat(file) != null) return true;
+		byte[] head = new byte[4096];
+		int n;
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			n = in.readNBytes(head, 0, head.length);
+		}
+		return JsonBinaryDecoder.looksBinary(ByteBuffer.wrap(head, 0, n));
 	}
 
-	private void populateTree(JsonElement data) {
-		clearTree();
-		rowIndex = 0;
-		DefaultMutableTreeNode root = (DefaultMutableTreeNode) treeModel.getRoot();
-		insertNode(root, "root", data);
-		treeModel.reload();
-
-		// Expand first level
-		if (root.getChildCount() > 0) {
-			tree.expandPath(new TreePath(new Object[]{root, root.getChildAt(0)}));
-		}
+	// The format a binary extension names, or null to auto-detect; a MessagePack file must not be tried as CBOR
+	private static JsonBinaryDecoder.Format binaryFormat(File file) {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".cbor")) return JsonBinaryDecoder.Format.CBOR;
+		if (name.endsWith(".msgpack") || name.endsWith(".mpk")) return JsonBinaryDecoder.Format.MESSAGEPACK;
+		if (name.endsWith(".smile") || name.endsWith(".sml")) return JsonBinaryDecoder.Format.SMILE;
+		return null;
 	}
 
-	private void insertNode(DefaultMutableTreeNode parent, String key, JsonElement value) {
-		if (value.isJsonObject()) {
-			DefaultMutableTreeNode node = new DefaultMutableTreeNode(key + " : {...}");
-			parent.add(node);
-			nodeValueMap.put(node, value);
-			rowIndex++;
+	private void closeFile() {
+		if (!fileMode && binaryName == null) return;
+		cancelParse();
+		cancelFormat();
+		mappedFile = null;
+		fileMode = false;
+		binaryName = null;
+		closeFileBtn.setVisible(false);
+		closeValue();
+		textArea.setEditable(true);
+		textArea.setText("");
+	}
 
-			JsonObject obj = value.getAsJsonObject();
-			for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
-				insertNode(node, entry.getKey(), entry.getValue());
-			}
-		} else if (value.isJsonArray()) {
-			DefaultMutableTreeNode node = new DefaultMutableTreeNode(key + " : [ … ]");
-			parent.add(node);
-			nodeValueMap.put(node, value);
-			rowIndex++;
+	private void clearTree() {
+		installTree(JsonTreeModel.multiple(new ArrayList<>()), null);
+	}
 
-			JsonArray arr = value.getAsJsonArray();
-			for (int i = 0; i < arr.size(); i++) {
-				insertNode(node, "[" + i + "]", arr.get(i));
-			}
-		} else {
-			String disp = primitiveToString(value);
-			DefaultMutableTreeNode node = new DefaultMutableTreeNode(key + " : " + disp);
-			parent.add(node);
-			nodeValueMap.put(node, value);
-			rowIndex++;
+	// Swaps in a tree model root (and its search index, if any) prepared off the EDT; only called on the EDT
+	private void installTree(JsonTreeNode root, JsonSearchIndex index) {
+		stopExpand();
+		cancelReindex();
+		treeModel.setRootNode(root);
+		treeCurrent = false;
+		textTape = null;
+		editStart = -1;
+		searchIndex = index;
+		resetSearch();
+		cancelQuery();
+		resultsModel.clear();
+		resultsPanel.setVisible(false);
+		if (largestDialog != null) {
+			largestDialog.dispose();
+			largestDialog = null;
 		}
+		closeTable();
+		closeValue();
+		refreshWeights();
 	}
 
-	private String primitiveToString(JsonElement v) {
-		if (v.isJsonNull()) return "null";
-		if (v.isJsonPrimitive()) {
-			JsonPrimitive p = v.getAsJsonPrimitive();
-			if (p.isString()) return p.getAsString();
-			if (p.isBoolean()) return String.valueOf(p.getAsBoolean());
-			if (p.isNumber()) return p.getAsNumber().toString();
+	private void resetSearch() {
+		if (searchWorker != null) {
+			searchWorker.cancel(true);
+			searchWorker = null;
 		}
-		return v.toString();
+		lastSearch = "";
+		lastFoundPaths = new ArrayList<>();
+		foundEntries.clear();
+		lastFoundIndex = -1;
 	}
 
+	// Streams the formatted text into a fresh document (or, for a mapped file, into a file of the user's choice)
 	private void formatJson() {
-		String raw = textArea.getText().trim();
-		if (raw.isEmpty()) {
+		if (fileMode) {
+			formatMappedFile();
+			return;
+		}
+		if (binaryName != null) {
+			JOptionPane.showMessageDialog(this, "The tree shows the decoded document; use Copy Value to copy it as JSON.",
+				"Format JSON", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		if (isBlank(textArea.getDocument())) {
 			JOptionPane.showMessageDialog(this, "The provided JSON is invalid or empty.",
 				"Format JSON", JOptionPane.ERROR_MESSAGE);
 			return;
 		}
 
-		ParseResult result = extractAndLoadJson(raw);
-		if (result.error != null || result.data == null) {
-			JOptionPane.showMessageDialog(this,
-				"The provided JSON is invalid.\n\n" +
-				"Tip: If you have escaped JSON like {\\\"key\\\":\\\"value\\\"}, " +
-				"it should now be auto-converted to valid JSON.",
+		cancelFormat();
+		formatWorker = new FormatWorker(textArea.getDocument(), null, treeCurrent && parseWorker == null);
+		setStatus("Formatting…");
+		formatWorker.execute();
+	}
+
+	private void formatMappedFile() {
+		JFileChooser chooser = new JFileChooser(mappedFile.getPath().toFile().getParentFile());
+		chooser.setDialogTitle("Save Formatted JSON");
+		chooser.setSelectedFile(new File(mappedFile.getPath().getFileName() + ".formatted.json"));
+		if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+		Path target = chooser.getSelectedFile().toPath();
+		try {
+			if (Files.exists(target) && Files.isSameFile(target, mappedFile.getPath())) {
+				JOptionPane.showMessageDialog(this, "Choose a different file than the one being viewed.",
+					"Format JSON", JOptionPane.WARNING_MESSAGE);
+				return;
+			}
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(this, "Unable to write file: " + e.getMessage(),
 				"Format JSON", JOptionPane.ERROR_MESSAGE);
 			return;
 		}
 
-		Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-		String pretty = gson.toJson(result.data);
-		textArea.setText(pretty);
-		setStatus("Formatted JSON");
-		populateTree(result.data);
+		cancelFormat();
+		formatWorker = new FormatWorker(null, target, false);
+		setStatus("Formatting…");
+		formatWorker.execute();
+	}
+
+	private void cancelFormat() {
+		if (formatWorker != null) {
+			formatWorker.cancel(true);
+			formatWorker = null;
+		}
+	}
+
+	// Replaces the text pane's document without firing edits, keeping the auto-parse listener attached
+	private void swapDocument(Document doc) {
+		textArea.getDocument().removeDocumentListener(textListener);
+		textArea.setDocument(doc);
+		// The tape's offsets refer to the old text
+		textTape = null;
+		editStart = -1;
+		doc.addDocumentListener(textListener);
+		textArea.setCaretPosition(0);
+	}
+
+	private static boolean isBlank(Document doc) {
+		Segment seg = new Segment();
+		seg.setPartialReturn(true);
+		int pos = 0;
+		try {
+			while (pos < doc.getLength()) {
+				doc.getText(pos, doc.getLength() - pos, seg);
+				for (int i = 0; i < seg.count; i++) {
+					if (!Character.isWhitespace(seg.array[seg.offset + i])) return false;
+				}
+				pos += seg.count;
+			}
+		} catch (BadLocationException e) {
+			return true;
+		}
+		return true;
 	}
 
 	private void findNext() {
 		String query = searchField.getText().trim().toLowerCase();
 		if (query.isEmpty()) return;
 
+		if (searchIndex != null) {
+			findNextIndexed(query);
+			return;
+		}
+
 		// Build list of matching paths if query changed
 		if (!query.equals(lastSearch)) {
 			lastSearch = query;
@@ -688,123 +890,1574 @@ public class JsonViewerTool extends JPanel {
 		setStatus("Match " + (lastFoundIndex + 1) + "/" + lastFoundPaths.size());
 	}
 
-	private List<TreePath> collectMatches(String query) {
-		List<TreePath> matches = new ArrayList<>();
-		DefaultMutableTreeNode root = (DefaultMutableTreeNode) treeModel.getRoot();
+	// Matches stream in from a SearchWorker; the first one is selected as soon as it arrives
+	private void findNextIndexed(String query) {
+		if (!query.equals(lastSearch)) {
+			resetSearch();
+			lastSearch = query;
+			searchWorker = new SearchWorker(searchIndex, query);
+			searchWorker.execute();
+			setStatus("Searching…");
+			return;
+		}
 
-		for (int i = 0; i < root.getChildCount(); i++) {
-			collectMatchesRecursive((DefaultMutableTreeNode) root.getChildAt(i),
-				new TreePath(new Object[]{root, root.getChildAt(i)}), query, matches);
+		if (foundEntries.isEmpty()) {
+			setStatus(searchWorker != null ? "Searching…" : "No matches");
+			return;
 		}
 
-		return matches;
+		lastFoundIndex = (lastFoundIndex + 1) % foundEntries.size();
+		showFoundEntry();
 	}
 
-	private void collectMatchesRecursive(DefaultMutableTreeNode node, TreePath path,
-			String query, List<TreePath> matches) {
-		String text = node.getUserObject().toString().toLowerCase();
-		if (text.contains(query)) {
-			matches.add(path);
-		}
+	private void showFoundEntry() {
+		TreePath path = indexedPath(searchIndex, foundEntries.get(lastFoundIndex));
+		tree.setSelectionPath(path);
+		tree.scrollPathToVisible(path);
+		showMatchStatus();
+	}
 
-		for (int i = 0; i < node.getChildCount(); i++) {
-			DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(i);
-			collectMatchesRecursive(child, path.pathByAddingChild(child), query, matches);
+	// Tree path of a search index entry, loading the nodes along it
+	private TreePath indexedPath(JsonSearchIndex index, int entry) {
+		int[] indices = index.pathIndices(entry);
+		Object[] nodes = new Object[indices.length + 1];
+		JsonTreeNode node = treeModel.getRootNode();
+		nodes[0] = node;
+		for (int i = 0; i < indices.length; i++) {
+			node = node.getChildAt(indices[i]);
+			nodes[i + 1] = node;
 		}
+		return new TreePath(nodes);
 	}
 
-	private void expandAll() {
-		DefaultMutableTreeNode root = (DefaultMutableTreeNode) treeModel.getRoot();
-		for (int i = 0; i < root.getChildCount(); i++) {
-			expandRecursive(new TreePath(new Object[]{root, root.getChildAt(i)}), true);
+	// Value of the metric chosen for shading and for the Largest list
+	private long weight(JsonSearchIndex index, int entry) {
+		switch (heatMetric.getSelectedIndex()) {
+			case 1: return index.descendants(entry);
+			case 2: return index.depth(entry);
+			default: return index.size(entry);
 		}
-		setStatus("Expanded all");
 	}
 
-	private void collapseAll() {
-		DefaultMutableTreeNode root = (DefaultMutableTreeNode) treeModel.getRoot();
-		for (int i = 0; i < root.getChildCount(); i++) {
-			expandRecursive(new TreePath(new Object[]{root, root.getChildAt(i)}), false);
+	// A fresh renderer makes the tree re-measure its rows, whose labels grow once weights are known
+	private void refreshWeights() {
+		if (weightsToggle.isSelected()) {
+			tree.setCellRenderer(new WeightRenderer());
 		}
-		setStatus("Collapsed all");
 	}
 
-	private void expandRecursive(TreePath path, boolean expand) {
-		DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
+	private void showLargestSubtrees() {
+		JsonSearchIndex index = searchIndex;
+		if (index == null) {
+			String message = fileMode ? "Subtree weights are not available for memory-mapped files."
+				: reindexWorker != null ? "The document is still being indexed; try again in a moment."
+				: "Parse a JSON document first.";
+			JOptionPane.showMessageDialog(this, message, "Largest Subtrees", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
 
-		// When collapsing, collapse children first, then parent
-		// When expanding, expand parent first, then children
-		if (!expand) {
-			for (int i = 0; i < node.getChildCount(); i++) {
-				expandRecursive(path.pathByAddingChild(node.getChildAt(i)), expand);
+		int[] entries = index.largest(LARGEST_LIMIT, e -> weight(index, e));
+		LargestModel model = new LargestModel(index, entries);
+		JTable table = new JTable(model);
+		table.setAutoCreateRowSorter(true);
+		table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		table.getColumnModel().getColumn(0).setPreferredWidth(320);
+		table.setDefaultRenderer(Long.class, new DefaultTableCellRenderer() {
+			@Override
+			protected void setValue(Object value) {
+				setHorizontalAlignment(RIGHT);
+				setText(ParseTask.formatSize((Long) value));
+			}
+		});
+		table.getSelectionModel().addListSelectionListener(e -> {
+			int row = table.getSelectedRow();
+			if (e.getValueIsAdjusting() || row < 0) return;
+			if (index != searchIndex) {
+				setStatus("The document has changed; reopen Largest Subtrees");
+				return;
 			}
+			TreePath path = indexedPath(index, entries[table.convertRowIndexToModel(row)]);
+			tree.setSelectionPath(path);
+			tree.scrollPathToVisible(path);
+		});
+
+		if (largestDialog != null) largestDialog.dispose();
+		largestDialog = new JDialog(SwingUtilities.getWindowAncestor(this),
+			"Largest Subtrees by " + heatMetric.getSelectedItem(), Dialog.ModalityType.MODELESS);
+		largestDialog.add(new JScrollPane(table));
+		largestDialog.setSize(640, 420);
+		largestDialog.setLocationRelativeTo(this);
+		largestDialog.setVisible(true);
+	}
+
+	private void showMatchStatus() {
+		String status = String.format("Match %,d/%,d", lastFoundIndex + 1, foundEntries.size());
+		setStatus(searchWorker != null ? status + " (searching…)" : status);
+	}
+
+	private List<TreePath> collectMatches(String query) {
+		List<TreePath> matches = new ArrayList<>();
+		JsonTreeNode root = treeModel.getRootNode();
+
+		for (int i = 0; i < root.getChildCount(); i++) {
+			JsonTreeNode child = root.getChildAt(i);
+			collectMatchesRecursive(child, new TreePath(new Object[]{root, child}), query, matches);
 		}
 
-		if (expand) {
-			tree.expandPath(path);
-		} else {
-			tree.collapsePath(path);
+		return matches;
+	}
+
+	private void collectMatchesRecursive(JsonTreeNode node, TreePath path, String query, List<TreePath> matches) {
+		String text = node.toString().toLowerCase();
+		if (text.contains(query)) {
+			matches.add(path);
 		}
 
-		if (expand) {
-			for (int i = 0; i < node.getChildCount(); i++) {
-				expandRecursive(path.pathByAddingChild(node.getChildAt(i)), expand);
-			}
+		// Mapped files are only searched where they have already been decoded
+		if (fileMode && !node.isLoaded()) return;
+
+		for (int i = 0; i < node.getChildCount(); i++) {
+			JsonTreeNode child = node.getChildAt(i);
+			collectMatchesRecursive(child, path.pathByAddingChild(child), query, matches);
 		}
 	}
 
-	private void copySelectedValue() {
-		TreePath path = tree.getSelectionPath();
-		if (path == null) return;
+	// Compiles the query (or reuses the cached compilation) and evaluates it off the EDT
+	private void runQuery() {
+		String query = queryField.getText().trim();
+		if (query.isEmpty()) return;
+		if (fileMode) {
+			JOptionPane.showMessageDialog(this, "JSONPath queries are not available for memory-mapped files.",
+				"JSONPath", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
 
-		DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
-		Object value = nodeValueMap.get(node);
+		JsonPathQuery compiled;
+		try {
+			compiled = JsonPathQuery.compile(query);
+		} catch (IllegalArgumentException e) {
+			setStatus("Invalid JSONPath: " + e.getMessage());
+			return;
+		}
 
-		String text;
-		if (value == null) {
-			text = node.getUserObject().toString();
-		} else if (value instanceof JsonObject || value instanceof JsonArray) {
-			Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-			text = gson.toJson(value);
-		} else if (value instanceof JsonPrimitive) {
-			JsonPrimitive p = (JsonPrimitive) value;
-			if (p.isString()) {
-				text = p.getAsString();
-			} else {
-				text = p.toString();
-			}
-		} else {
-			text = value.toString();
+		List<JsonTreeNode> documents = new ArrayList<>();
+		JsonTreeNode root = treeModel.getRootNode();
+		for (int i = 0; i < root.getChildCount(); i++) {
+			documents.add(root.getChildAt(i));
+		}
+		if (documents.isEmpty()) {
+			setStatus("Nothing to query; paste JSON first");
+			return;
 		}
 
-		StringSelection selection = new StringSelection(text);
-		Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-		clipboard.setContents(selection, null);
-		setStatus("Copied value to clipboard");
+		cancelQuery();
+		resultsModel.clear();
+		resultsLabel.setText("Query results: running…");
+		if (!resultsPanel.isVisible()) {
+			resultsPanel.setVisible(true);
+			((JSplitPane) resultsPanel.getParent()).setDividerLocation(0.65);
+		}
+		queryCancelBtn.setEnabled(true);
+		setStatus("Running " + compiled + "…");
+		queryWorker = new QueryWorker(compiled, documents);
+		queryWorker.execute();
 	}
 
-	private void setStatus(String msg) {
-		statusLabel.setText(msg);
+	private void cancelQuery() {
+		if (queryWorker != null) {
+			queryWorker.cancel(true);
+			queryWorker = null;
+			resultsLabel.setText(String.format("Query results: %,d (cancelled)", resultsModel.getSize()));
+		}
+		queryCancelBtn.setEnabled(false);
 	}
 
-	// Helper classes
-	private static class ParseResult {
-		JsonElement data;
-		String error;
-
-		ParseResult(JsonElement data, String error) {
-			this.data = data;
-			this.error = error;
+	private void showQueryMatch(JsonPathQuery.Match match) {
+		int[] indices = match.pathIndices();
+		Object[] nodes = new Object[indices.length + 1];
+		JsonTreeNode node = treeModel.getRootNode();
+		nodes[0] = node;
+		for (int i = 0; i < indices.length; i++) {
+			if (indices[i] < 0 || indices[i] >= node.getChildCount()) return;
+			node = node.getChildAt(indices[i]);
+			nodes[i + 1] = node;
 		}
+		TreePath path = new TreePath(nodes);
+		tree.setSelectionPath(path);
+		tree.scrollPathToVisible(path);
 	}
 
-	private static class VariantResult {
-		JsonElement data;
-		String error;
+	// One list row: path = value, with containers summarized and long values cut short
+	private String describeMatch(JsonPathQuery.Match match) {
+		String path = match.path();
+		int documents = treeModel.getRootNode().getChildCount();
+		if (documents > 1) {
+			JsonPathQuery.Match top = match;
+			while (top.parent != null) top = top.parent;
+			path = "#" + (top.index + 1) + " " + path;
+		}
+		JsonElement value = match.value;
+		String text;
+		if (value.isJsonObject()) {
+			text = String.format("{...} (%,d keys)", value.getAsJsonObject().size());
+		} else if (value.isJsonArray()) {
+			text = String.format("[ … ] (%,d items)", value.getAsJsonArray().size());
+		} else {
+			text = JsonTreeModel.primitiveToString(value);
+			if (text.length() > 200) text = text.substring(0, 200) + "…";
+		}
+		return path + " = " + text;
+	}
+
+	private void expandAll() {
+		if (fileMode) {
+			setStatus("Expand All is disabled for memory-mapped files; use Expand to Level");
+			return;
+		}
+		expandToLevel(Integer.MAX_VALUE);
+	}
+
+	// Level 1 shows the children of the top-level nodes; expansion stops before EXPAND_ROW_BUDGET rows
+	private void expandToLevel(int level) {
+		stopExpand();
+		// Start from a fully collapsed tree, which batched expansion relies on
+		JsonTreeNode root = treeModel.getRootNode();
+		treeModel.fireStructureChanged(new TreePath(root));
+		for (int i = 0; i < root.getChildCount(); i++) {
+			expandQueue.add(new TreePath(new Object[]{root, root.getChildAt(i)}));
+		}
+		expandMaxLevel = level;
+		expandedRows = 0;
+		expandTimer.start();
+	}
+
+	private void expandBatch() {
+		long deadline = System.nanoTime() + EXPAND_SLICE_NANOS;
+		while (!expandQueue.isEmpty()) {
+			TreePath path = expandQueue.peek();
+			JsonTreeNode node = (JsonTreeNode) path.getLastPathComponent();
+			int children = node.getChildCount();
+			// A container that would go past the budget stays collapsed, and so does the rest
+			if (expandedRows + (long) children > EXPAND_ROW_BUDGET) break;
+			expandQueue.poll();
+			if (children == 0) continue;
+			tree.expandCollapsedSubtree(path);
+			expandedRows += children;
+			if (path.getPathCount() - 1 < expandMaxLevel) {
+				for (int i = 0; i < node.getChildCount(); i++) {
+					JsonTreeNode child = node.getChildAt(i);
+					if (child.getChildCount() > 0) {
+						expandQueue.add(path.pathByAddingChild(child));
+					}
+				}
+			}
+			if (System.nanoTime() > deadline) {
+				setStatus(String.format("Expanding… %,d rows shown", expandedRows));
+				return;
+			}
+		}
+
+		boolean truncated = !expandQueue.isEmpty();
+		stopExpand();
+		if (truncated) {
+			setStatus(String.format("Expanded %,d rows (stopped at the limit of %,d)", expandedRows, EXPAND_ROW_BUDGET));
+		} else if (expandMaxLevel == Integer.MAX_VALUE) {
+			setStatus("Expanded all");
+		} else {
+			setStatus(String.format("Expanded to level %d (%,d rows)", expandMaxLevel, expandedRows));
+		}
+	}
+
+	private void stopExpand() {
+		expandTimer.stop();
+		expandQueue.clear();
+	}
+
+	private void collapseAll() {
+		stopExpand();
+		// A structure change resets the tree to collapsed in one step instead of collapsing row by row
+		treeModel.fireStructureChanged(new TreePath(treeModel.getRootNode()));
+		setStatus("Collapsed all");
+	}
+
+	// Opens the selected array of records in table mode, building the columns off the EDT
+	private void showAsTable() {
+		TreePath path = tree.getSelectionPath();
+		if (path == null) return;
+		JsonTreeNode node = (JsonTreeNode) path.getLastPathComponent();
+		TableWorker worker;
+		if (node instanceof JsonTreeModel.TapeNode
+				&& ((JsonTreeModel.TapeNode) node).tape.type(((JsonTreeModel.TapeNode) node).pos) == JsonTape.ARRAY) {
+			JsonTreeModel.TapeNode tapeNode = (JsonTreeModel.TapeNode) node;
+			worker = new TableWorker(path, progress -> JsonRecordTable.of(tapeNode.tape, tapeNode.pos, progress));
+		} else if (node instanceof JsonTreeModel.ElementNode && node.getValue().isJsonArray()) {
+			JsonArray array = node.getValue().getAsJsonArray();
+			worker = new TableWorker(path, progress -> JsonRecordTable.of(array, progress));
+		} else {
+			JOptionPane.showMessageDialog(this, "Select an array (ideally of objects) to show it as a table.",
+				"Show as Table", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		cancelTableWorker();
+		tableWorker = worker;
+		setStatus("Building table…");
+		worker.execute();
+	}
+
+	// Recomputes the filtered, sorted row order off the EDT
+	private void updateTableView() {
+		JsonRecordTable table = recordModel.table;
+		if (table == null) return;
+		cancelTableWorker();
+		String query = tableFilter.getText().trim().toLowerCase();
+		int column = tableFilterColumn.getSelectedIndex() - 1;
+		tableWorker = new TableViewWorker(table, query, column, tableSortColumn, tableAscending);
+		tableLabel.setText(describeTable(table, -1) + " (updating…)");
+		tableWorker.execute();
+	}
+
+	private String describeTable(JsonRecordTable table, int shown) {
+		String rows = shown < 0 || shown == table.getRowCount()
+			? String.format("%,d rows", table.getRowCount())
+			: String.format("%,d of %,d rows", shown, table.getRowCount());
+		return rows + String.format(" × %,d columns", table.getColumnCount() - 1);
+	}
+
+	private void showRecordInTree(int record) {
+		TreePath arrayPath = tablePath;
+		if (arrayPath == null) return;
+		JsonTreeNode array = (JsonTreeNode) arrayPath.getLastPathComponent();
+		closeTable();
+		if (record >= array.getChildCount()) return;
+		TreePath path = arrayPath.pathByAddingChild(array.getChildAt(record));
+		tree.setSelectionPath(path);
+		tree.scrollPathToVisible(path);
+	}
+
+	private void closeTable() {
+		cancelTableWorker();
+		recordModel.setTable(null);
+		tablePath = null;
+		((CardLayout) treeCards.getLayout()).show(treeCards, "tree");
+	}
+
+	private void cancelTableWorker() {
+		if (tableWorker != null) {
+			tableWorker.cancel(true);
+			tableWorker = null;
+		}
+	}
+
+	private void copySelectedValue() {
+		TreePath path = tree.getSelectionPath();
+		if (path == null) return;
+
+		JsonTreeNode node = (JsonTreeNode) path.getLastPathComponent();
+
+		String text;
+		if (node instanceof MappedJsonFile.MappedNode && ((MappedJsonFile.MappedNode) node).isContainer()) {
+			// Copy the source bytes as-is instead of decoding and re-serializing them
+			MappedJsonFile.MappedNode mapped = (MappedJsonFile.MappedNode) node;
+			if (mapped.length() > COPY_LIMIT) {
+				setStatus("Value is too large to copy (" + ParseTask.formatSize(mapped.length()) + ")");
+				return;
+			}
+			text = mapped.sourceText();
+		} else {
+			text = valueText(node);
+		}
+
+		StringSelection selection = new StringSelection(text);
+		Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+		clipboard.setContents(selection, null);
+		setStatus("Copied value to clipboard");
+	}
+
+	private String valueText(JsonTreeNode node) {
+		if (node instanceof JsonTreeModel.TapeNode) {
+			JsonTreeModel.TapeNode tapeNode = (JsonTreeModel.TapeNode) node;
+			if (tapeNode.tape.isContainer(tapeNode.pos)) {
+				StringBuilder sb = new StringBuilder();
+				tapeNode.tape.writePretty(tapeNode.pos, sb);
+				return sb.toString();
+			}
+			return tapeNode.tape.scalarText(tapeNode.pos);
+		}
+		JsonElement value = node.getValue();
+		if (value == null) {
+			return node.toString();
+		} else if (value instanceof JsonObject || value instanceof JsonArray) {
+			return JsonValueText.PRETTY.toJson(value);
+		} else if (value instanceof JsonPrimitive) {
+			JsonPrimitive p = (JsonPrimitive) value;
+			return p.isString() ? p.getAsString() : p.toString();
+		}
+		return value.toString();
+	}
+
+	// Opens the selected node's full value in the detail dialog, streaming it in off the EDT
+	private void showSelectedValue() {
+		TreePath path = tree.getSelectionPath();
+		if (path == null) return;
+		JsonTreeNode node = (JsonTreeNode) path.getLastPathComponent();
+
+		if (valueDialog == null) createValueDialog();
+		cancelValueWorker();
+		valueRows.clear();
+		valueDialog.setTitle("Value of " + node.key);
+		valueLabel.setText("Loading…");
+		valueWorker = new ValueWorker(node);
+		valueWorker.execute();
+		valueDialog.setVisible(true);
+	}
+
+	private void createValueDialog() {
+		valueRows = new ValueRowsModel();
+		JList<String> list = new JList<>(valueRows);
+		list.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+		// A prototype row fixes every cell's size, so rows are never measured one by one
+		list.setPrototypeCellValue("W".repeat(DETAIL_ROW_CHARS));
+
+		valueLabel = new JLabel(" ");
+		JButton copyAllBtn = new JButton("Copy All");
+		copyAllBtn.addActionListener(e -> {
+			Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(valueRows.text()), null);
+			setStatus("Copied " + ParseTask.formatSize(valueRows.chars()) + " to clipboard");
+		});
+		JButton closeBtn = new JButton("Close");
+		closeBtn.addActionListener(e -> closeValue());
+
+		JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 6, 0));
+		buttons.add(copyAllBtn);
+		buttons.add(closeBtn);
+		JPanel south = new JPanel(new BorderLayout(6, 0));
+		south.setBorder(new EmptyBorder(6, 6, 6, 6));
+		south.add(valueLabel, BorderLayout.CENTER);
+		south.add(buttons, BorderLayout.EAST);
+
+		valueDialog = new JDialog(SwingUtilities.getWindowAncestor(this), "Value", Dialog.ModalityType.MODELESS);
+		valueDialog.add(new JScrollPane(list), BorderLayout.CENTER);
+		valueDialog.add(south, BorderLayout.SOUTH);
+		valueDialog.addWindowListener(new java.awt.event.WindowAdapter() {
+			@Override
+			public void windowClosing(java.awt.event.WindowEvent e) {
+				cancelValueWorker();
+			}
+		});
+		valueDialog.setSize(720, 480);
+		valueDialog.setLocationRelativeTo(this);
+	}
+
+	private void closeValue() {
+		cancelValueWorker();
+		if (valueDialog != null) {
+			valueDialog.setVisible(false);
+			valueRows.clear();
+		}
+	}
+
+	private void cancelValueWorker() {
+		if (valueWorker != null) {
+			valueWorker.cancel(true);
+			valueWorker = null;
+		}
+	}
+
+	private void setStatus(String msg) {
+		statusLabel.setText(msg);
+	}
+
+	/**
+	 * Parses the pasted text and builds the tree nodes off the EDT. Only the finished
+	 * tree is handed back to the EDT; a newer parse cancels this one.
+	 */
+	private class ParseWorker extends SwingWorker<TreeBuild, String> implements ParseTask.Listener {
+		private final String raw;
+		private final ParseMode mode;
+
+		ParseWorker(String raw, ParseMode mode) {
+			this.raw = raw;
+			this.mode = mode;
+		}
+
+		@Override
+		protected TreeBuild doInBackground() {
+			TreeBuild build = buildTree();
+			if (build.root != null) {
+				build.index = JsonSearchIndex.of(build.root, nodes -> {
+					if (isCancelled()) throw new CancellationException();
+					publish(String.format("Indexing… %,d nodes", nodes));
+				});
+			}
+			return build;
+		}
+
+		private TreeBuild buildTree() {
+			ParseTask task = new ParseTask(raw.length(), this);
+
+			if (mode == ParseMode.LINES) {
+				JsonLinesParser.Result lines = JsonLinesParser.parse(raw, this::isCancelled,
+					(done, total) -> publish(String.format("Parsing JSON Lines… %,d of %,d lines", done, total)));
+				JsonObject malformed = new JsonObject();
+				for (int i = 0; i < lines.errorLines.size(); i++) {
+					malformed.addProperty("line " + lines.errorLines.get(i), lines.errors.get(i));
+				}
+				String status = String.format("Parsed %,d record(s)", lines.records.size());
+				if (!lines.errorLines.isEmpty()) {
+					status += String.format("; %,d malformed line(s), first at line %d",
+						lines.errorLines.size(), lines.errorLines.get(0));
+				}
+				if (lines.records.isEmpty() && lines.errorLines.isEmpty()) {
+					return new TreeBuild(null, "No JSON records found");
+				}
+				return new TreeBuild(JsonTreeModel.records(lines.records, malformed), status);
+			}
+
+			if (mode == ParseMode.COMPLEX) {
+				List<JsonElement> blocks = parsing.blocks(raw, task);
+				if (blocks.isEmpty()) {
+					return new TreeBuild(null, null);
+				}
+				return new TreeBuild(JsonTreeModel.multiple(blocks),
+					"Parsed " + blocks.size() + " JSON block(s)" + task.describeAttempts());
+			}
+
+			// A strict object or array goes straight to the compact tape. Anything else takes the
+			// lenient Gson path, including a top-level string, which may be escaped or quoted JSON
+			JsonTape tape = parsing.tape(raw, this::isCancelled);
+			char rootType = tape != null ? tape.type(tape.root()) : 0;
+			if (rootType == JsonTape.OBJECT || rootType == JsonTape.ARRAY) {
+				TreeBuild build = new TreeBuild(JsonTreeModel.tape(tape),
+					String.format("Parsed JSON successfully (%,d tokens)", tape.tokenCount()));
+				build.tape = tape;
+				return build;
+			}
+
+			JsonParsingService.Result result = parsing.extract(raw, task);
+			if (result.error != null) {
+				return new TreeBuild(null, "Parse failed: " + result.error + task.describeAttempts());
+			}
+			return new TreeBuild(JsonTreeModel.single(result.data), "Parsed JSON successfully" + task.describeAttempts());
+		}
+
+		@Override
+		public void progress(ParseTask task) {
+			publish(task.describe());
+		}
+
+		@Override
+		protected void process(List<String> chunks) {
+			if (parseWorker == this && !isCancelled()) {
+				setStatus(chunks.get(chunks.size() - 1));
+			}
+		}
+
+		@Override
+		protected void done() {
+			if (parseWorker != this || isCancelled()) {
+				return;
+			}
+			parseWorker = null;
+
+			TreeBuild build;
+			try {
+				build = get();
+			} catch (InterruptedException | CancellationException e) {
+				return;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				setStatus("Parse failed: " + cause);
+				clearTree();
+				return;
+			}
+
+			if (build.root == null) {
+				clearTree();
+				if (mode == ParseMode.COMPLEX) {
+					setStatus("No JSON objects/arrays found in text");
+					JOptionPane.showMessageDialog(JsonViewerTool.this, "No JSON objects/arrays found in text.",
+						"Complex JSON", JOptionPane.INFORMATION_MESSAGE);
+				} else {
+					setStatus(build.status);
+				}
+				return;
+			}
+
+			installTree(build.root, build.index);
+			treeCurrent = mode == ParseMode.AUTO;
+			textTape = build.tape;
+			setStatus(build.status);
+
+			// Expand first-level nodes
+			JsonTreeNode root = build.root;
+			int expand = mode == ParseMode.COMPLEX ? root.getChildCount() : Math.min(1, root.getChildCount());
+			for (int i = 0; i < expand; i++) {
+				tree.expandPath(new TreePath(new Object[]{root, root.getChildAt(i)}));
+			}
+		}
+	}
+
+	// Decodes a binary document into a Gson tree and indexes it off the EDT
+	private class BinaryWorker extends SwingWorker<TreeBuild, String> {
+		private final BinaryJsonChooser.Source source;
+
+		BinaryWorker(BinaryJsonChooser.Source source) {
+			this.source = source;
+		}
+
+		@Override
+		protected TreeBuild doInBackground() {
+			publish("Decoding " + source.name + "…");
+			JsonBinaryDecoder.Decoded decoded = JsonBinaryDecoder.decode(source.bytes, source.format, this::isCancelled);
+			JsonTreeNode root = decoded.values.size() == 1
+				? JsonTreeModel.single(decoded.values.get(0)) : JsonTreeModel.multiple(decoded.values);
+			TreeBuild build = new TreeBuild(root, String.format("Decoded %s from %s (%,d bytes, %,d value(s))",
+				decoded.format, source.name, source.bytes.remaining(), decoded.values.size()));
+			build.index = JsonSearchIndex.of(root, nodes -> {
+				if (isCancelled()) throw new CancellationException();
+				publish(String.format("Indexing… %,d nodes", nodes));
+			});
+			return build;
+		}
+
+		@Override
+		protected void process(List<String> chunks) {
+			if (parseWorker == this && !isCancelled()) {
+				setStatus(chunks.get(chunks.size() - 1));
+			}
+		}
+
+		@Override
+		protected void done() {
+			if (parseWorker != this || isCancelled()) {
+				return;
+			}
+			parseWorker = null;
+
+			TreeBuild build;
+			try {
+				build = get();
+			} catch (InterruptedException | CancellationException e) {
+				return;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				setStatus("Unable to decode " + source.name + ": " + cause.getMessage());
+				return;
+			}
+
+			installTree(build.root, build.index);
+			setStatus(build.status);
+			JsonTreeNode root = build.root;
+			int expand = Math.min(root.getChildCount(), 1);
+			for (int i = 0; i < expand; i++) {
+				tree.expandPath(new TreePath(new Object[]{root, root.getChildAt(i)}));
+			}
+		}
+	}
+
+	// Memory-maps a large file, builds its structural index and validates it off the EDT
+	private class IndexWorker extends SwingWorker<MappedJsonFile, String> {
+		private final Path path;
+		private long nextReport;
+		private boolean validating;
+
+		IndexWorker(Path path) {
+			this.path = path;
+		}
+
+		@Override
+		protected MappedJsonFile doInBackground() throws IOException {
+			return MappedJsonFile.open(path, (validating, bytes, total, containers) -> {
+				if (isCancelled()) throw new CancellationException();
+				if (validating != this.validating) {
+					this.validating = validating;
+					nextReport = 0;
+				}
+				if (bytes >= nextReport) {
+					nextReport = bytes + (64L << 20);
+					publish((validating ? "Validating… " : "Indexing… ") + ParseTask.formatSize(bytes) + " of "
+						+ ParseTask.formatSize(total) + ", " + String.format("%,d", containers) + " objects/arrays");
+				}
+			});
+		}
+
+		@Override
+		protected void process(List<String> chunks) {
+			if (parseWorker == this && !isCancelled()) {
+				setStatus(chunks.get(chunks.size() - 1));
+			}
+		}
+
+		@Override
+		protected void done() {
+			if (parseWorker != this || isCancelled()) {
+				return;
+			}
+			parseWorker = null;
+
+			MappedJsonFile file;
+			try {
+				file = get();
+			} catch (InterruptedException | CancellationException e) {
+				return;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				setStatus("Unable to index file: " + cause.getMessage());
+				return;
+			}
+
+			JsonTreeNode root = file.createRoot();
+			if (root == null) {
+				setStatus("No JSON value found in " + path.getFileName());
+				return;
+			}
+			mappedFile = file;
+			installTree(root, null);
+			tree.expandPath(new TreePath(new Object[]{root, root.getChildAt(0)}));
+			setStatus("Opened " + path.getFileName() + " (" + ParseTask.formatSize(file.getSize()) + ", "
+				+ String.format("%,d", file.getContainerCount()) + " objects/arrays indexed)");
+		}
+	}
+
+	/**
+	 * Pretty-prints off the EDT. Pasted text is read from its document under the read lock and
+	 * written a chunk at a time into a new document that replaces it when done; a mapped file
+	 * is streamed to the target file. Text the strict formatter rejects goes through the
+	 * lenient extraction path instead.
+	 */
+	private class FormatWorker extends SwingWorker<Document, String> {
+		private final Document source;
+		private final Path target;
+		private final boolean keepTree;
+
+		FormatWorker(Document source, Path target, boolean keepTree) {
+			this.source = source;
+			this.target = target;
+			this.keepTree = keepTree;
+		}
+
+		@Override
+		protected Document doInBackground() throws IOException {
+			JsonStreamFormatter.Progress progress = chars -> {
+				if (isCancelled()) throw new CancellationException();
+				publish("Formatting… " + ParseTask.formatSize(chars) + " read");
+			};
+
+			if (target != null) {
+				try (Reader in = Files.newBufferedReader(mappedFile.getPath(), StandardCharsets.UTF_8);
+						Writer out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+					JsonStreamFormatter.format(in, out, progress);
+				} catch (IOException | RuntimeException e) {
+					Files.deleteIfExists(target);
+					throw e;
+				}
+				return null;
+			}
+
+			PlainDocument doc = new PlainDocument();
+			try (Writer out = new DocumentWriter(doc)) {
+				JsonStreamFormatter.format(new DocumentReader(source), out, progress);
+				return doc;
+			} catch (IOException e) {
+				if (isCancelled()) throw new CancellationException();
+			}
+
+			// Not strict JSON: extract (and unescape) it the way the parser does, then print the tree
+			String raw = DocumentReader.readAll(source).trim();
+			JsonParsingService.Result result = parsing.extract(raw, new ParseTask(raw.length(), null));
+			if (result.error != null || result.data == null) {
+				return null;
+			}
+			doc = new PlainDocument();
+			try (Writer out = new DocumentWriter(doc)) {
+				JsonValueText.PRETTY.toJson(result.data, out);
+			}
+			return doc;
+		}
+
+		@Override
+		protected void process(List<String> chunks) {
+			if (formatWorker == this && !isCancelled()) {
+				setStatus(chunks.get(chunks.size() - 1));
+			}
+		}
+
+		@Override
+		protected void done() {
+			if (formatWorker != this || isCancelled()) {
+				return;
+			}
+			formatWorker = null;
+
+			Document doc;
+			try {
+				doc = get();
+			} catch (InterruptedException | CancellationException e) {
+				return;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				setStatus("Format failed: " + cause.getMessage());
+				JOptionPane.showMessageDialog(JsonViewerTool.this, "Unable to format JSON: " + cause.getMessage(),
+					"Format JSON", JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+
+			if (target != null) {
+				setStatus("Formatted JSON written to " + target.getFileName());
+				return;
+			}
+			if (doc == null) {
+				setStatus("Format failed: invalid JSON");
+				JOptionPane.showMessageDialog(JsonViewerTool.this,
+					"The provided JSON is invalid.\n\n" +
+					"Tip: If you have escaped JSON like {\\\"key\\\":\\\"value\\\"}, " +
+					"it should now be auto-converted to valid JSON.",
+					"Format JSON", JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+
+			swapDocument(doc);
+			if (keepTree) {
+				// Formatting only moves whitespace, so the tree (and its index) still matches the text
+				treeCurrent = true;
+				setStatus("Formatted JSON");
+			} else {
+				parseTimer.stop();
+				parseAndRender();
+			}
+		}
+	}
+
+	// Rebuilds the search index after an incremental re-parse; until then search walks the tree
+	private class ReindexWorker extends SwingWorker<JsonSearchIndex, Void> {
+		private final JsonTreeNode root;
+
+		ReindexWorker(JsonTreeNode root) {
+			this.root = root;
+		}
+
+		@Override
+		protected JsonSearchIndex doInBackground() {
+			return JsonSearchIndex.of(root, nodes -> {
+				if (isCancelled()) throw new CancellationException();
+			});
+		}
+
+		@Override
+		protected void done() {
+			if (reindexWorker != this || isCancelled()) {
+				return;
+			}
+			reindexWorker = null;
+			try {
+				searchIndex = get();
+				resetSearch();
+				refreshWeights();
+			} catch (InterruptedException | CancellationException | ExecutionException e) {
+				// Search keeps walking the tree
+			}
+		}
+	}
+
+	// Evaluates a compiled JSONPath query against each top-level document, streaming matches to the list
+	private class QueryWorker extends SwingWorker<Boolean, JsonPathQuery.Match> {
+		private final JsonPathQuery query;
+		private final List<JsonTreeNode> documents;
+
+		QueryWorker(JsonPathQuery query, List<JsonTreeNode> documents) {
+			this.query = query;
+			this.documents = documents;
+		}
+
+		@Override
+		protected Boolean doInBackground() {
+			int[] found = {0};
+			for (int i = 0; i < documents.size(); i++) {
+				// Tape-backed documents are materialized here, off the EDT
+				JsonElement document = documents.get(i).getValue();
+				boolean complete = query.evaluate(JsonPathQuery.Match.root(document, i), this::isCancelled, match -> {
+					publish(match);
+					return ++found[0] < QUERY_RESULT_LIMIT;
+				});
+				if (!complete) return false;
+			}
+			return true;
+		}
+
+		@Override
+		protected void process(List<JsonPathQuery.Match> chunks) {
+			if (queryWorker != this || isCancelled()) {
+				return;
+			}
+			resultsModel.addAll(chunks);
+			resultsLabel.setText(String.format("Query results: %,d so far…", resultsModel.getSize()));
+		}
+
+		@Override
+		protected void done() {
+			if (queryWorker != this || isCancelled()) {
+				return;
+			}
+			queryWorker = null;
+			queryCancelBtn.setEnabled(false);
+
+			boolean complete;
+			try {
+				complete = get();
+			} catch (InterruptedException | CancellationException e) {
+				return;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				resultsLabel.setText("Query results");
+				setStatus("Query failed: " + cause);
+				return;
+			}
+
+			int n = resultsModel.getSize();
+			String summary = complete ? String.format("%,d", n) : String.format("first %,d", n);
+			resultsLabel.setText("Query results: " + summary);
+			setStatus(n == 0 ? "Query matched nothing" : "Query matched " + summary + " value(s)");
+			if (n > 0) {
+				resultsList.setSelectedIndex(0);
+			}
+		}
+	}
+
+	/**
+	 * Writes one value to the detail rows: strings decoded from their source a chunk at a time,
+	 * containers pretty-printed by the streaming formatter. Stops at DETAIL_LIMIT chars.
+	 */
+	private class ValueWorker extends SwingWorker<Boolean, String> {
+		private final JsonTreeNode node;
+
+		ValueWorker(JsonTreeNode node) {
+			this.node = node;
+		}
+
+		@Override
+		protected Boolean doInBackground() throws IOException {
+			RowWriter out = new RowWriter();
+			try {
+				write(out);
+			} catch (IOException | JsonIOException e) {
+				if (!out.full) throw e;
+				return false;
+			}
+			out.close();
+			return true;
+		}
+
+		private void write(Writer out) throws IOException {
+			if (node instanceof JsonTreeModel.TapeNode) {
+				JsonTape tape = ((JsonTreeModel.TapeNode) node).tape;
+				int pos = ((JsonTreeModel.TapeNode) node).pos;
+				Reader in = JsonValueText.reader(tape.getSource(), tape.position(pos), tape.endPosition(pos));
+				if (tape.isContainer(pos)) {
+					JsonStreamFormatter.format(in, out, null);
+				} else if (tape.type(pos) == JsonTape.STRING) {
+					JsonValueText.unescape(in, out);
+				} else {
+					out.write(tape.scalarText(pos));
+				}
+				return;
+			}
+			if (node instanceof MappedJsonFile.MappedNode) {
+				MappedJsonFile.MappedNode mapped = (MappedJsonFile.MappedNode) node;
+				if (mapped.isContainer() || mapped.isString()) {
+					try (Reader in = mapped.reader()) {
+						if (mapped.isContainer()) {
+							JsonStreamFormatter.format(in, out, null);
+						} else {
+							JsonValueText.unescape(in, out);
+						}
+					}
+					return;
+				}
+			}
+			JsonElement value = node.getValue();
+			if (value != null && (value.isJsonObject() || value.isJsonArray())) {
+				JsonValueText.PRETTY.toJson(value, out);
+			} else {
+				out.write(valueText(node));
+			}
+		}
+
+		@Override
+		protected void process(List<String> rows) {
+			if (valueWorker != this || isCancelled()) {
+				return;
+			}
+			valueRows.addAll(rows);
+			valueLabel.setText("Loading… " + ParseTask.formatSize(valueRows.chars()));
+		}
+
+		@Override
+		protected void done() {
+			if (valueWorker != this || isCancelled()) {
+				return;
+			}
+			valueWorker = null;
+
+			boolean complete;
+			try {
+				complete = get();
+			} catch (InterruptedException | CancellationException e) {
+				return;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				valueLabel.setText("Could not read the value: " + cause.getMessage());
+				return;
+			}
+			String size = ParseTask.formatSize(valueRows.chars());
+			valueLabel.setText(complete ? size : "First " + size + " shown");
+		}
+
+		// Splits the written text into rows at line breaks and every DETAIL_ROW_CHARS chars
+		private final class RowWriter extends Writer {
+			private final StringBuilder row = new StringBuilder(DETAIL_ROW_CHARS + 1);
+			private long written;
+			private boolean full;
+
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				if (isCancelled()) throw new CancellationException();
+				for (int k = off; k < off + len; k++) {
+					if (written++ >= DETAIL_LIMIT) {
+						full = true;
+						throw new IOException("Value is larger than " + ParseTask.formatSize(DETAIL_LIMIT));
+					}
+					char c = cbuf[k];
+					if (row.length() == DETAIL_ROW_CHARS && c != '\n') emit();
+					row.append(c);
+					if (c == '\n') emit();
+				}
+			}
+
+			private void emit() {
+				publish(row.toString());
+				row.setLength(0);
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+				if (row.length() > 0) emit();
+			}
+		}
+	}
+
+	// Rows of the value detail; a row ending in a line break keeps it, so the text can be copied back whole
+	private static final class ValueRowsModel extends AbstractListModel<String> {
+		private final List<String> rows = new ArrayList<>();
+		private long chars;
+
+		void addAll(List<String> more) {
+			int first = rows.size();
+			rows.addAll(more);
+			for (String row : more) chars += row.length();
+			fireIntervalAdded(this, first, rows.size() - 1);
+		}
+
+		void clear() {
+			int size = rows.size();
+			chars = 0;
+			if (size == 0) return;
+			rows.clear();
+			fireIntervalRemoved(this, 0, size - 1);
+		}
+
+		long chars() {
+			return chars;
+		}
+
+		String text() {
+			StringBuilder sb = new StringBuilder((int) chars);
+			for (String row : rows) sb.append(row);
+			return sb.toString();
+		}
+
+		@Override
+		public int getSize() {
+			return rows.size();
+		}
+
+		@Override
+		public String getElementAt(int index) {
+			String row = rows.get(index);
+			return row.endsWith("\n") ? row.substring(0, row.length() - 1) : row;
+		}
+	}
+
+	// List model over the streamed matches; JList only renders the visible rows
+	private static final class QueryResultsModel extends AbstractListModel<JsonPathQuery.Match> {
+		private final List<JsonPathQuery.Match> matches = new ArrayList<>();
+
+		void addAll(List<JsonPathQuery.Match> more) {
+			int first = matches.size();
+			matches.addAll(more);
+			fireIntervalAdded(this, first, matches.size() - 1);
+		}
+
+		void clear() {
+			int size = matches.size();
+			if (size == 0) return;
+			matches.clear();
+			fireIntervalRemoved(this, 0, size - 1);
+		}
+
+		@Override
+		public int getSize() {
+			return matches.size();
+		}
+
+		@Override
+		public JsonPathQuery.Match getElementAt(int index) {
+			return matches.get(index);
+		}
+	}
+
+	// Streams index hits for one query to the EDT in document order
+	private class SearchWorker extends SwingWorker<Integer, Integer> {
+		private final JsonSearchIndex index;
+		private final String query;
+
+		SearchWorker(JsonSearchIndex index, String query) {
+			this.index = index;
+			this.query = query;
+		}
+
+		@Override
+		protected Integer doInBackground() {
+			int[] hits = {0};
+			index.search(query, entry -> {
+				if (isCancelled()) return false;
+				publish(entry);
+				hits[0]++;
+				return true;
+			});
+			return hits[0];
+		}
+
+		@Override
+		protected void process(List<Integer> chunks) {
+			if (searchWorker != this || isCancelled()) {
+				return;
+			}
+			boolean first = foundEntries.isEmpty();
+			foundEntries.addAll(chunks);
+			if (first) {
+				lastFoundIndex = 0;
+				showFoundEntry();
+			} else {
+				showMatchStatus();
+			}
+		}
+
+		@Override
+		protected void done() {
+			if (searchWorker != this || isCancelled()) {
+				return;
+			}
+			searchWorker = null;
+			if (foundEntries.isEmpty()) {
+				setStatus("No matches");
+			} else {
+				showMatchStatus();
+			}
+		}
+	}
+
+	/**
+	 * Tree renderer that, while Weights is on, appends each container's size, node count and
+	 * depth and shades the row by its share of the document's weight.
+	 */
+	private class WeightRenderer extends DefaultTreeCellRenderer {
+		private final Color plain = getBackgroundNonSelectionColor();
+		private JsonSearchIndex scaledFor;
+		private int scaledMetric = -1;
+		private long scale;
+
+		@Override
+		public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean expanded,
+				boolean leaf, int row, boolean hasFocus) {
+			super.getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, hasFocus);
+			setBackgroundNonSelectionColor(plain);
+			if (!weightsToggle.isSelected() || !(value instanceof JsonTreeNode)) return this;
+			JsonTreeNode node = (JsonTreeNode) value;
+
+			String stats = null;
+			double heat = 0;
+			JsonSearchIndex index = searchIndex;
+			if (index != null) {
+				int e = index.entryOf(node);
+				if (e >= 0 && index.isContainer(e)) {
+					stats = String.format("%s · %,d nodes · depth %d",
+						ParseTask.formatSize(index.size(e)), index.descendants(e), index.depth(e));
+					heat = weight(index, e) / (double) scale(index);
+				}
+			} else if (node instanceof MappedJsonFile.MappedNode && ((MappedJsonFile.MappedNode) node).isContainer()) {
+				// Mapped files have no index; their containers still know their byte length
+				long length = ((MappedJsonFile.MappedNode) node).length();
+				stats = ParseTask.formatSize(length);
+				heat = length / (double) Math.max(1, mappedFile.getSize());
+			}
+			if (stats != null) {
+				setText(getText() + "   " + stats);
+				if (!sel) setBackgroundNonSelectionColor(heatColor(heat));
+			}
+			return this;
+		}
+
+		// The heaviest top-level value sets the scale; every metric grows towards the root
+		private long scale(JsonSearchIndex index) {
+			int metric = heatMetric.getSelectedIndex();
+			if (scaledFor != index || scaledMetric != metric) {
+				int[] top = index.largest(1, e -> weight(index, e));
+				scale = top.length > 0 ? Math.max(1, weight(index, top[0])) : 1;
+				scaledFor = index;
+				scaledMetric = metric;
+			}
+			return scale;
+		}
+
+		private Color heatColor(double heat) {
+			Color base = plain != null ? plain : Color.WHITE;
+			double t = Math.sqrt(Math.min(1, Math.max(0, heat))) * 0.75;
+			return new Color(
+				(int) (base.getRed() + (255 - base.getRed()) * t),
+				(int) (base.getGreen() + (140 - base.getGreen()) * t),
+				(int) (base.getBlue() + (90 - base.getBlue()) * t));
+		}
+	}
+
+	private interface TableSource {
+		JsonRecordTable build(JsonRecordTable.Progress progress);
+	}
+
+	// Builds the columns of a table off the EDT and switches to table mode when done
+	private class TableWorker extends SwingWorker<JsonRecordTable, String> {
+		private final TreePath path;
+		private final TableSource source;
+
+		TableWorker(TreePath path, TableSource source) {
+			this.path = path;
+			this.source = source;
+		}
+
+		@Override
+		protected JsonRecordTable doInBackground() {
+			return source.build((done, total) -> {
+				if (isCancelled()) throw new CancellationException();
+				publish(String.format("Building table… %d%%", total == 0 ? 100 : (int) (done * 100L / total)));
+			});
+		}
+
+		@Override
+		protected void process(List<String> chunks) {
+			if (tableWorker == this && !isCancelled()) {
+				setStatus(chunks.get(chunks.size() - 1));
+			}
+		}
+
+		@Override
+		protected void done() {
+			if (tableWorker != this || isCancelled()) {
+				return;
+			}
+			tableWorker = null;
+			JsonRecordTable table;
+			try {
+				table = get();
+			} catch (InterruptedException | CancellationException e) {
+				return;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				setStatus("Unable to build table: " + cause);
+				return;
+			}
+
+			tablePath = path;
+			tableSortColumn = -1;
+			tableAscending = true;
+			tableFilter.setText("");
+			DefaultComboBoxModel<String> columns = new DefaultComboBoxModel<>();
+			columns.addElement("All columns");
+			for (int c = 0; c < table.getColumnCount(); c++) columns.addElement(table.getColumnName(c));
+			tableFilterColumn.setModel(columns);
+			recordModel.setTable(table);
+			for (int c = 0; c < table.getColumnCount(); c++) {
+				recordTable.getColumnModel().getColumn(c).setPreferredWidth(c == JsonRecordTable.INDEX_COLUMN ? 70 : 140);
+			}
+			tableLabel.setText(describeTable(table, -1));
+			((CardLayout) treeCards.getLayout()).show(treeCards, "table");
+			String status = "Showing " + ((JsonTreeNode) path.getLastPathComponent()).key + " as a table";
+			if (table.getRowCount() > JsonRecordTable.SAMPLE_RECORDS) {
+				status += String.format(" (columns from the first %,d records)", JsonRecordTable.SAMPLE_RECORDS);
+			}
+			setStatus(status);
+		}
+	}
+
+	// Filters and sorts the table rows off the EDT
+	private class TableViewWorker extends SwingWorker<int[], Void> {
+		private final JsonRecordTable table;
+		private final String query;
+		private final int column;
+		private final int sortColumn;
+		private final boolean ascending;
+
+		TableViewWorker(JsonRecordTable table, String query, int column, int sortColumn, boolean ascending) {
+			this.table = table;
+			this.query = query;
+			this.column = column;
+			this.sortColumn = sortColumn;
+			this.ascending = ascending;
+		}
+
+		@Override
+		protected int[] doInBackground() {
+			return table.view(query, column, sortColumn, ascending, this::isCancelled);
+		}
+
+		@Override
+		protected void done() {
+			if (tableWorker != this || isCancelled() || recordModel.table != table) {
+				return;
+			}
+			tableWorker = null;
+			try {
+				recordModel.setView(get(), sortColumn, ascending);
+				// Only the header labels change, so the columns and their widths stay as they are
+				TableColumnModel columns = recordTable.getColumnModel();
+				for (int c = 0; c < columns.getColumnCount(); c++) {
+					TableColumn col = columns.getColumn(c);
+					col.setHeaderValue(recordModel.getColumnName(col.getModelIndex()));
+				}
+				recordTable.getTableHeader().repaint();
+				tableLabel.setText(describeTable(table, recordModel.getRowCount()));
+			} catch (InterruptedException | CancellationException e) {
+				// Superseded
+			} catch (ExecutionException e) {
+				tableLabel.setText(describeTable(table, -1));
+				setStatus("Unable to sort or filter: " + e.getCause());
+			}
+		}
+	}
+
+	// Virtual table over a JsonRecordTable: only the cells JTable paints are formatted
+	private static class RecordTableModel extends AbstractTableModel {
+		private JsonRecordTable table;
+		private int[] view;
+		private int sortColumn = -1;
+		private boolean ascending;
+
+		void setTable(JsonRecordTable table) {
+			this.table = table;
+			this.view = null;
+			this.sortColumn = -1;
+			fireTableStructureChanged();
+		}
+
+		void setView(int[] view, int sortColumn, boolean ascending) {
+			this.view = view;
+			this.sortColumn = sortColumn;
+			this.ascending = ascending;
+			fireTableDataChanged();
+		}
+
+		// Index in the array of the record shown at a table row
+		int recordAt(int row) {
+			return view != null ? view[row] : row;
+		}
+
+		JsonRecordTable.Kind getKind(int column) {
+			return table != null ? table.getKind(column) : JsonRecordTable.Kind.TEXT;
+		}
+
+		@Override
+		public int getRowCount() {
+			if (table == null) return 0;
+			return view != null ? view.length : table.getRowCount();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return table != null ? table.getColumnCount() : 0;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			String name = table.getColumnName(column);
+			return column == sortColumn ? name + (ascending ? " ▲" : " ▼") : name;
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			return table.text(recordAt(row), column);
+		}
+	}
+
+	// Rows of the Largest Subtrees table: path, size, node count and depth of each listed entry
+	private class LargestModel extends AbstractTableModel {
+		private final JsonSearchIndex index;
+		private final int[] entries;
+		private final String[] paths;
+
+		LargestModel(JsonSearchIndex index, int[] entries) {
+			this.index = index;
+			this.entries = entries;
+			this.paths = new String[entries.length];
+			for (int i = 0; i < entries.length; i++) {
+				StringBuilder sb = new StringBuilder();
+				Object[] nodes = indexedPath(index, entries[i]).getPath();
+				for (int k = 1; k < nodes.length; k++) {
+					String key = ((JsonTreeNode) nodes[k]).key;
+					if (k > 1 && !key.startsWith("[")) sb.append('.');
+					sb.append(key);
+				}
+				paths[i] = sb.toString();
+			}
+		}
+
+		@Override
+		public int getRowCount() {
+			return entries.length;
+		}
+
+		@Override
+		public int getColumnCount() {
+			return 4;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return new String[]{"Path", "Size", "Nodes", "Depth"}[column];
+		}
+
+		@Override
+		public Class<?> getColumnClass(int column) {
+			return column == 0 ? String.class : column == 1 ? Long.class : Integer.class;
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			int e = entries[row];
+			switch (column) {
+				case 0: return paths[row];
+				case 1: return index.size(e);
+				case 2: return index.descendants(e);
+				default: return index.depth(e);
+			}
+		}
+	}
+
+	// Helper classes
+	private enum ParseMode { AUTO, COMPLEX, LINES }
+
+	private static class TreeBuild {
+		JsonTreeNode root;
+		String status;
+		JsonSearchIndex index;
+		JsonTape tape;
+
+		TreeBuild(JsonTreeNode root, String status) {
+			this.root = root;
+			this.status = status;
+		}
+	}
+
+	// Reads a document a segment at a time under its read lock, without copying it into one String
+	private static final class DocumentReader extends Reader {
+		private final Document doc;
+		private final Segment seg = new Segment();
+		private int pos;
+
+		DocumentReader(Document doc) {
+			this.doc = doc;
+			seg.setPartialReturn(true);
+		}
+
+		static String readAll(Document doc) throws IOException {
+			StringBuilder sb = new StringBuilder(doc.getLength());
+			char[] buf = new char[8192];
+			try (Reader in = new DocumentReader(doc)) {
+				for (int n; (n = in.read(buf, 0, buf.length)) > 0; ) {
+					sb.append(buf, 0, n);
+				}
+			}
+			return sb.toString();
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new CancellationException();
+			}
+			int[] n = {-1};
+			BadLocationException[] failure = {null};
+			doc.render(() -> {
+				int remaining = doc.getLength() - pos;
+				if (remaining <= 0) return;
+				try {
+					doc.getText(pos, Math.min(len, remaining), seg);
+					System.arraycopy(seg.array, seg.offset, cbuf, off, seg.count);
+					n[0] = seg.count;
+				} catch (BadLocationException e) {
+					failure[0] = e;
+				}
+			});
+			if (failure[0] != null) {
+				throw new IOException("Text changed while reading", failure[0]);
+			}
+			if (n[0] > 0) pos += n[0];
+			return n[0];
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	// Appends to a document in large chunks so each insert is one edit
+	private static final class DocumentWriter extends Writer {
+		private static final int CHUNK = 1 << 16;
+
+		private final Document doc;
+		private final StringBuilder buffer = new StringBuilder(CHUNK);
+
+		DocumentWriter(Document doc) {
+			this.doc = doc;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			buffer.append(cbuf, off, len);
+			if (buffer.length() >= CHUNK) flush();
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			buffer.append(str, off, off + len);
+			if (buffer.length() >= CHUNK) flush();
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (buffer.length() == 0) return;
+			try {
+				doc.insertString(doc.getLength(), buffer.toString(), null);
+			} catch (BadLocationException e) {
+				throw new IOException(e);
+			}
+			buffer.setLength(0);
+		}
 
-		VariantResult(JsonElement data, String error) {
-			this.data = data;
-			this.error = error;
+		@Override
+		public void close() throws IOException {
+			flush();
 		}
 	}
 }
@@ -0,0 +1,420 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.LongConsumer;
+
+/**
+ * Memory-mapped JSON file for the JSON Viewer's "Open File" mode. One streaming pass
+ * records the offsets of every object/array; subtrees are decoded from the mapping only
+ * when they are expanded, so multi-gigabyte files never become a Java String or Gson tree.
+ */
+final class MappedJsonFile {
+
+	interface Progress {
+		// Called periodically from the opening thread, first while indexing and then while
+		// validating; may throw CancellationException
+		void scanned(boolean validating, long bytes, long total, int containers);
+	}
+
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+	private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int SCAN_BLOCK = 1 << 16;
+
+	private final Path path;
+	private final long size;
+	private final MappedByteBuffer[] chunks;
+
+	// Structural index, one entry per object/array in document order
+	private int containerCount;
+	private long[] starts = new long[1024];
+	private long[] ends = new long[1024];
+	private int[] childCounts = new int[1024];
+	private long rootStart = -1;
+	private long rootEnd = -1;
+
+	private MappedJsonFile(Path path, long size, MappedByteBuffer[] chunks) {
+		this.path = path;
+		this.size = size;
+		this.chunks = chunks;
+	}
+
+	static MappedJsonFile open(Path path, Progress progress) throws IOException {
+		MappedJsonFile file;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+			for (int i = 0; i < chunks.length; i++) {
+				long offset = (long) i << CHUNK_BITS;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK_SIZE, size - offset));
+			}
+			file = new MappedJsonFile(path, size, chunks);
+		}
+		file.buildIndex(progress);
+		file.validate(progress);
+		return file;
+	}
+
+	Path getPath() {
+		return path;
+	}
+
+	long getSize() {
+		return size;
+	}
+
+	int getContainerCount() {
+		return containerCount;
+	}
+
+	// The top-level value as a tree root, or null if the file holds no JSON value
+	JsonTreeNode createRoot() {
+		if (rootStart < 0) return null;
+		return JsonTreeModel.wrap((parent, index) -> new MappedNode(parent, 0, "root", rootStart, rootEnd));
+	}
+
+	private void buildIndex(Progress progress) throws IOException {
+		int[] stack = new int[64];
+		int depth = 0;
+		boolean inStr = false;
+		boolean esc = false;
+		boolean inScalar = false;
+		byte[] block = new byte[SCAN_BLOCK];
+		long bom = size >= 3 && get(0) == (byte) 0xEF && get(1) == (byte) 0xBB && get(2) == (byte) 0xBF ? 3 : 0;
+
+		for (long base = 0; base < size; base += SCAN_BLOCK) {
+			int n = (int) Math.min(SCAN_BLOCK, size - base);
+			read(base, block, 0, n);
+
+			for (int i = 0; i < n; i++) {
+				byte b = block[i];
+				long pos = base + i;
+				if (pos < bom) continue;
+				if (inStr) {
+					if (esc) {
+						esc = false;
+					} else if (b == '\\') {
+						esc = true;
+					} else if (b == '"') {
+						inStr = false;
+						if (depth == 0) rootEnd = pos + 1;
+					}
+					continue;
+				}
+				if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+					if (inScalar && depth == 0) inScalar = false;
+					continue;
+				}
+				if (depth > 0 && b != '}' && b != ']' && b != ',' && childCounts[stack[depth - 1]] == 0) {
+					childCounts[stack[depth - 1]] = 1;
+				}
+				switch (b) {
+					case '{':
+					case '[': {
+						if (depth == 0 && rootStart >= 0) {
+							throw new IOException("Unexpected data after the top-level value at offset " + pos);
+						}
+						int id = addContainer(pos);
+						if (depth == 0) rootStart = pos;
+						if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+						stack[depth++] = id;
+						break;
+					}
+					case '}':
+					case ']': {
+						if (depth == 0) {
+							throw new IOException("Unbalanced '" + (char) b + "' at offset " + pos);
+						}
+						int id = stack[--depth];
+						ends[id] = pos + 1;
+						if (depth == 0) rootEnd = pos + 1;
+						break;
+					}
+					case ',':
+						if (depth > 0) childCounts[stack[depth - 1]]++;
+						break;
+					case '"':
+						if (depth == 0) startScalar(pos);
+						inStr = true;
+						break;
+					default:
+						if (depth == 0 && !inScalar) {
+							startScalar(pos);
+							inScalar = true;
+						}
+						if (depth == 0) rootEnd = pos + 1;
+				}
+			}
+
+			if (progress != null) {
+				progress.scanned(false, base + n, size, containerCount);
+			}
+		}
+
+		if (depth != 0 || inStr) {
+			throw new IOException("Unexpected end of file: " + depth + " unclosed object(s)/array(s)");
+		}
+	}
+
+	/**
+	 * Reads the value once more with a strict JsonReader. The index pass only tracks brackets
+	 * and strings, and nodes decode their keys and scalars on the EDT, so malformed content
+	 * has to be turned away here.
+	 */
+	private void validate(Progress progress) throws IOException {
+		if (rootStart < 0) return;
+		JsonReader in = new JsonReader(reader(rootStart, size, pos -> {
+			if (progress != null) progress.scanned(true, pos, size, containerCount);
+		}));
+		in.setLenient(false);
+		try {
+			JsonStreamFormatter.copyValue(in, new JsonWriter(Writer.nullWriter()));
+		} catch (NumberFormatException e) {
+			// Gson's report of a bad unicode escape
+			throw new IOException("Malformed escape sequence at " + in.getPath(), e);
+		}
+		if (in.peek() != JsonToken.END_DOCUMENT) {
+			throw new IOException("Unexpected data after the top-level value at " + in.getPath());
+		}
+	}
+
+	private void startScalar(long pos) throws IOException {
+		if (rootStart >= 0) {
+			throw new IOException("Unexpected data after the top-level value at offset " + pos);
+		}
+		rootStart = pos;
+	}
+
+	private int addContainer(long start) {
+		if (containerCount == starts.length) {
+			int capacity = starts.length * 2;
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			childCounts = Arrays.copyOf(childCounts, capacity);
+		}
+		starts[containerCount] = start;
+		return containerCount++;
+	}
+
+	// Containers are recorded in document order, so their start offsets are sorted
+	private int containerAt(long start) {
+		int id = Arrays.binarySearch(starts, 0, containerCount, start);
+		return id >= 0 ? id : -1;
+	}
+
+	byte get(long pos) {
+		return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & CHUNK_MASK));
+	}
+
+	private void read(long pos, byte[] dst, int dstOff, int len) {
+		int done = 0;
+		while (done < len) {
+			ByteBuffer chunk = chunks[(int) ((pos + done) >>> CHUNK_BITS)].duplicate();
+			int inChunk = (int) ((pos + done) & CHUNK_MASK);
+			int n = Math.min(len - done, chunk.limit() - inChunk);
+			chunk.position(inChunk);
+			chunk.get(dst, dstOff + done, n);
+			done += n;
+		}
+	}
+
+	// Decodes [start, end) as UTF-8; only used for keys, scalars and explicitly copied subtrees
+	String text(long start, long end) {
+		long len = end - start;
+		if (len > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("Value too large to decode: " + len + " bytes");
+		}
+		byte[] bytes = new byte[(int) len];
+		read(start, bytes, 0, bytes.length);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	JsonElement parse(long start, long end) {
+		return JsonParser.parseReader(reader(start, end));
+	}
+
+	Reader reader(long start, long end) {
+		return reader(start, end, null);
+	}
+
+	// As above, passing the offset reached to read after each block
+	private Reader reader(long start, long end, LongConsumer read) {
+		return new InputStreamReader(new InputStream() {
+			private long pos = start;
+
+			@Override
+			public int read() {
+				return pos < end ? get(pos++) & 0xFF : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if (pos >= end) return -1;
+				if (Thread.currentThread().isInterrupted()) throw new CancellationException();
+				int n = (int) Math.min(len, end - pos);
+				MappedJsonFile.this.read(pos, b, off, n);
+				pos += n;
+				if (read != null) read.accept(pos);
+				return n;
+			}
+		}, StandardCharsets.UTF_8);
+	}
+
+	private long skipWhitespace(long pos, long end) {
+		while (pos < end) {
+			byte b = get(pos);
+			if (b != ' ' && b != '\n' && b != '\r' && b != '\t') break;
+			pos++;
+		}
+		return pos;
+	}
+
+	// End (exclusive) of the string starting at the quote at pos
+	private long stringEnd(long pos, long end) {
+		boolean esc = false;
+		for (long i = pos + 1; i < end; i++) {
+			byte b = get(i);
+			if (esc) {
+				esc = false;
+			} else if (b == '\\') {
+				esc = true;
+			} else if (b == '"') {
+				return i + 1;
+			}
+		}
+		return end;
+	}
+
+	// End (exclusive) of the value starting at pos, jumping over nested containers via the index
+	private long valueEnd(long pos, long end) {
+		byte b = get(pos);
+		if (b == '{' || b == '[') {
+			return ends[containerAt(pos)];
+		}
+		if (b == '"') {
+			return stringEnd(pos, end);
+		}
+		long i = pos;
+		while (i < end) {
+			byte c = get(i);
+			if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') break;
+			i++;
+		}
+		return i;
+	}
+
+	// Node over a byte range of the mapping; children are located by scanning one level of the range
+	final class MappedNode extends JsonTreeNode {
+		private final long start;
+		private final long end;
+		private final int container;
+		private JsonElement scalar;
+
+		MappedNode(JsonTreeNode parent, int index, String key, long start, long end) {
+			super(parent, index, key);
+			this.start = start;
+			this.end = end;
+			byte b = get(start);
+			this.container = (b == '{' || b == '[') ? containerAt(start) : -1;
+		}
+
+		long length() {
+			return end - start;
+		}
+
+		boolean isContainer() {
+			return container >= 0;
+		}
+
+		String sourceText() {
+			return text(start, end);
+		}
+
+		boolean isString() {
+			return get(start) == '"';
+		}
+
+		// The source of this value, decoded as it is read
+		Reader reader() {
+			return MappedJsonFile.this.reader(start, end);
+		}
+
+		@Override
+		int getChildCount() {
+			return container >= 0 ? childCounts[container] : 0;
+		}
+
+		@Override
+		protected JsonTreeNode[] loadChildren() {
+			JsonTreeNode[] children = new JsonTreeNode[getChildCount()];
+			boolean object = get(start) == '{';
+			long pos = start + 1;
+			long limit = end - 1;
+			for (int i = 0; i < children.length; i++) {
+				pos = skipWhitespace(pos, limit);
+				String childKey;
+				if (object) {
+					long keyEnd = stringEnd(pos, limit);
+					childKey = JsonParser.parseString(text(pos, keyEnd)).getAsString();
+					pos = skipWhitespace(keyEnd, limit);
+					pos = skipWhitespace(pos + 1, limit); // ':'
+				} else {
+					childKey = "[" + i + "]";
+				}
+				long valueEnd = valueEnd(pos, limit);
+				children[i] = new MappedNode(this, i, childKey, pos, valueEnd);
+				pos = skipWhitespace(valueEnd, limit) + 1; // ','
+			}
+			return children;
+		}
+
+		@Override
+		JsonElement getValue() {
+			if (container < 0) return scalar();
+			return parse(start, end);
+		}
+
+		private JsonElement scalar() {
+			if (scalar == null) {
+				scalar = JsonParser.parseString(text(start, end));
+			}
+			return scalar;
+		}
+
+		@Override
+		protected String buildLabel() {
+			if (container >= 0) {
+				return key + (get(start) == '{' ? " : {...}" : " : [ … ]");
+			}
+			long size = end - start - 2;
+			if (!isString() || size <= JsonValueText.PREVIEW_CHARS) {
+				return key + " : " + JsonValueText.preview(JsonTreeModel.primitiveToString(scalar()));
+			}
+			// A long string: decode only enough of it for the preview (an escape is at most 6 chars)
+			try (Reader in = reader()) {
+				String head = JsonValueText.readPrefix(in, 6 * (JsonValueText.PREVIEW_CHARS + 1) + 1);
+				String prefix = JsonValueText.unescapePrefix(head, 0, JsonValueText.PREVIEW_CHARS + 1);
+				return key + " : " + JsonValueText.preview(prefix, size);
+			} catch (IOException e) {
+				return key + " : " + e.getMessage();
+			}
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.jasypt.ui.tools;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Tracks characters consumed and parse attempts for one input; throws once the parse is
+ * cancelled (the worker thread is interrupted).
+ */
+final class ParseTask {
+
+	interface Listener {
+		void progress(ParseTask task);
+	}
+
+	private static final long REPORT_EVERY_CHARS = 1 << 20;
+
+	private final long inputLength;
+	private final Listener listener;
+	private long charsConsumed;
+	int parseAttempts;
+	// Set when the result came from JsonParsingService's cache and nothing was parsed
+	boolean cached;
+	private long nextCharReport = REPORT_EVERY_CHARS;
+
+	ParseTask(long inputLength, Listener listener) {
+		this.inputLength = inputLength;
+		this.listener = listener;
+	}
+
+	void charsRead(int n) {
+		checkCancelled();
+		charsConsumed += n;
+		if (listener != null && charsConsumed >= nextCharReport) {
+			nextCharReport = charsConsumed + REPORT_EVERY_CHARS;
+			listener.progress(this);
+		}
+	}
+
+	void checkCancelled() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException();
+		}
+	}
+
+	String describe() {
+		StringBuilder sb = new StringBuilder("Parsing… ");
+		sb.append(formatSize(charsConsumed)).append(" read");
+		if (inputLength > 0) {
+			sb.append(" (input ").append(formatSize(inputLength)).append(')');
+		}
+		return sb.toString();
+	}
+
+	String describeAttempts() {
+		if (cached) return " (cached)";
+		return " (" + parseAttempts + (parseAttempts == 1 ? " parse attempt)" : " parse attempts)");
+	}
+
+	static String formatSize(long chars) {
+		if (chars < 1024) return chars + " B";
+		if (chars < 1024 * 1024) return String.format("%.1f KB", chars / 1024.0);
+		if (chars < 1024L * 1024 * 1024) return String.format("%.1f MB", chars / (1024.0 * 1024.0));
+		return String.format("%.2f GB", chars / (1024.0 * 1024.0 * 1024.0));
+	}
+}
@@ -0,0 +1,123 @@
+package com.jasypt.ui.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonArrayAlignmentTest {
+
+	@Test
+	void alignMatchesALongestCommonSubsequence() {
+		Random random = new Random(3);
+		for (int run = 0; run < 5000; run++) {
+			long[] a = randomHashes(random, random.nextInt(12));
+			long[] b = randomHashes(random, random.nextInt(12));
+			int[] match = JsonArrayAlignment.align(a, b, 1000);
+
+			int matched = 0;
+			int last = -1;
+			for (int i = 0; i < a.length; i++) {
+				if (match[i] < 0) continue;
+				assertTrue(match[i] > last, "matches must keep their order");
+				assertEquals(a[i], b[match[i]]);
+				last = match[i];
+				matched++;
+			}
+			assertEquals(lcsLength(a, b), matched);
+		}
+	}
+
+	@Test
+	void longestIncreasingSkipsUnmatchedEntries() {
+		Random random = new Random(5);
+		for (int run = 0; run < 5000; run++) {
+			int[] seq = new int[random.nextInt(12)];
+			for (int i = 0; i < seq.length; i++) seq[i] = random.nextInt(5) == 0 ? -1 : random.nextInt(100);
+			boolean[] chosen = JsonArrayAlignment.longestIncreasing(seq);
+
+			int length = 0;
+			int previous = -1;
+			for (int i = 0; i < seq.length; i++) {
+				if (!chosen[i]) continue;
+				assertTrue(seq[i] > previous);
+				previous = seq[i];
+				length++;
+			}
+			assertEquals(lisLength(seq), length);
+		}
+	}
+
+	@Test
+	void headInsertIsOneRowByKeyAndByLcs() {
+		StringBuilder left = new StringBuilder("[");
+		StringBuilder right = new StringBuilder("[{\"id\":-1,\"n\":\"new\"}");
+		for (int i = 0; i < 1000; i++) {
+			if (i > 0) left.append(',');
+			right.append(',');
+			String record = "{\"id\":" + i + ",\"n\":\"x" + i + "\"}";
+			left.append(record);
+			right.append(record);
+		}
+		JsonTape l = JsonTape.parse(left.append(']').toString());
+		JsonTape r = JsonTape.parse(right.append(']').toString());
+
+		assertEquals(List.of("$[id=-1] added"), rows(l, r, JsonDiffEngine.ArrayMode.KEY, null));
+		assertEquals(List.of("$[0] added"), rows(l, r, JsonDiffEngine.ArrayMode.LCS, null));
+		assertEquals(2001, rows(l, r, JsonDiffEngine.ArrayMode.INDEX, null).size());
+	}
+
+	@Test
+	void keyedRecordsReportChangesMovesAndRemovals() {
+		JsonTape l = JsonTape.parse("{\"items\":[{\"id\":1,\"v\":\"a\"},{\"id\":2,\"v\":\"b\"},"
+			+ "{\"id\":3,\"v\":\"c\"},{\"id\":4,\"v\":\"d\"}]}");
+		JsonTape r = JsonTape.parse("{\"items\":[{\"id\":0,\"v\":\"z\"},{\"id\":3,\"v\":\"c\"},"
+			+ "{\"id\":1,\"v\":\"a\"},{\"id\":2,\"v\":\"B\"}]}");
+
+		assertEquals(List.of("$.items[id=2].v changed", "$.items[id=3] moved", "$.items[id=4] removed",
+			"$.items[id=0] added"), rows(l, r, JsonDiffEngine.ArrayMode.KEY, null));
+	}
+
+	private static List<String> rows(JsonTape left, JsonTape right, JsonDiffEngine.ArrayMode mode, String key) {
+		JsonDiffEngine engine = new JsonDiffEngine(left, right, () -> false, paths -> { }).arrays(mode, key);
+		engine.run();
+		JsonDiffRows rows = engine.rows();
+		List<String> out = new ArrayList<>();
+		for (int i = 0; i < rows.size(); i++) out.add(rows.path(i) + " " + JsonDiffRows.changeName(rows.kind(i)));
+		return out;
+	}
+
+	private static long[] randomHashes(Random random, int n) {
+		long[] hashes = new long[n];
+		for (int i = 0; i < n; i++) hashes[i] = 1 + random.nextInt(4);
+		return hashes;
+	}
+
+	private static int lcsLength(long[] a, long[] b) {
+		int[][] dp = new int[a.length + 1][b.length + 1];
+		for (int i = a.length - 1; i >= 0; i--) {
+			for (int j = b.length - 1; j >= 0; j--) {
+				dp[i][j] = a[i] == b[j] ? dp[i + 1][j + 1] + 1 : Math.max(dp[i + 1][j], dp[i][j + 1]);
+			}
+		}
+		return dp[0][0];
+	}
+
+	private static int lisLength(int[] seq) {
+		int[] best = new int[seq.length];
+		int longest = 0;
+		for (int i = 0; i < seq.length; i++) {
+			if (seq[i] < 0) continue;
+			best[i] = 1;
+			for (int j = 0; j < i; j++) {
+				if (seq[j] >= 0 && seq[j] < seq[i]) best[i] = Math.max(best[i], best[j] + 1);
+			}
+			longest = Math.max(longest, best[i]);
+		}
+		return longest;
+	}
+}
@@ -0,0 +1,287 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command-line benchmarks for the JSON tools; they live with the tests so they stay out of the
+ * jar. Run after {@code mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt}
+ * with e.g. {@code java -cp target/classes:target/test-classes:$(cat target/cp.txt)
+ * com.jasypt.ui.tools.JsonBenchmarks blocks}
+ *
+ * blocks [MB]  - single-pass block extraction over mixed log text (default 100 MB)
+ * heap [MB]    - retained heap of a Gson tree versus a JsonTape for one document (default 50 MB)
+ * diff [MB...] - diff of two documents with 1% of records changed, walking every path versus
+ *                skipping equal subtrees by hash (default 10 and 100 MB; give 100 MB -Xmx3g)
+ * parallel [MB] - the same diff walked sequentially and on fork/join pools of 1, 2, 4, ... up
+ *                to the core count, with the speedup of each (default 50 MB)
+ * patch [MB]   - JSON Patch export from a diff and its streaming application, both ways between
+ *                documents with 1% of records changed and 1% more records, checking that the
+ *                patched document diffs equal to the target (default 50 MB)
+ */
+public final class JsonBenchmarks {
+
+	private JsonBenchmarks() {
+	}
+
+	public static void main(String[] args) {
+		String which = args.length > 0 ? args[0] : "blocks";
+		switch (which) {
+			case "blocks":
+				benchBlocks(args.length > 1 ? Integer.parseInt(args[1]) : 100);
+				break;
+			case "heap":
+				benchHeap(args.length > 1 ? Integer.parseInt(args[1]) : 50);
+				break;
+			case "diff":
+				if (args.length > 1) {
+					for (int i = 1; i < args.length; i++) benchDiff(Integer.parseInt(args[i]));
+				} else {
+					benchDiff(10);
+					benchDiff(100);
+				}
+				break;
+			case "parallel":
+				benchParallelDiff(args.length > 1 ? Integer.parseInt(args[1]) : 50);
+				break;
+			case "patch":
+				benchPatch(args.length > 1 ? Integer.parseInt(args[1]) : 50);
+				break;
+			default:
+				System.err.println("Unknown benchmark: " + which);
+				System.exit(1);
+		}
+	}
+
+	private static void benchBlocks(int megabytes) {
+		String text = mixedLogText(megabytes * 1024L * 1024L, new Random(42));
+		System.out.printf("blocks: %,d chars of mixed log text%n", text.length());
+
+		for (int run = 1; run <= 5; run++) {
+			long t0 = System.nanoTime();
+			List<int[]> spans = JsonBlockScanner.outermostSpans(text);
+			long t1 = System.nanoTime();
+			List<String> unique = JsonBlockScanner.uniqueBlocks(text);
+			long t2 = System.nanoTime();
+			System.out.printf("  run %d: scan %,d ms (%,d spans, %.0f MB/s), scan+dedup %,d ms (%,d unique)%n",
+				run, (t1 - t0) / 1_000_000, spans.size(), text.length() / 1048576.0 / ((t1 - t0) / 1e9),
+				(t2 - t1) / 1_000_000, unique.size());
+		}
+	}
+
+	private static void benchHeap(int megabytes) {
+		String text = recordsDocument(megabytes * 1024L * 1024L, new Random(42));
+		long sourceBytes = usedHeap();
+		System.out.printf("heap: %,d chars of JSON%n", text.length());
+
+		long t0 = System.nanoTime();
+		JsonElement tree = JsonParser.parseString(text);
+		long t1 = System.nanoTime();
+		long gsonBytes = usedHeap() - sourceBytes;
+		System.out.printf("  gson tree: %,d ms, %,.1f MB retained (%.1fx source chars)%n",
+			(t1 - t0) / 1_000_000, gsonBytes / 1048576.0, gsonBytes / (double) text.length());
+		tree = null;
+
+		long before = usedHeap();
+		t0 = System.nanoTime();
+		JsonTape tape = JsonTape.parse(text);
+		t1 = System.nanoTime();
+		long tapeBytes = usedHeap() - before;
+		System.out.printf("  tape:      %,d ms, %,.1f MB retained (%.1fx source chars), %,d tokens%n",
+			(t1 - t0) / 1_000_000, tapeBytes / 1048576.0, tapeBytes / (double) text.length(), tape.tokenCount());
+		System.out.println("  (both figures exclude the source string, which the tape keeps referencing)");
+	}
+
+	private static void benchDiff(int megabytes) {
+		long chars = megabytes * 1024L * 1024L;
+		JsonTape left = JsonTape.parse(recordsDocument(chars, new Random(42), 0));
+		JsonTape right = JsonTape.parse(recordsDocument(chars, new Random(42), 100));
+		System.out.printf("diff: %,d + %,d tokens, 1 record in 100 changed%n", left.tokenCount(), right.tokenCount());
+
+		for (int run = 1; run <= 3; run++) {
+			long t0 = System.nanoTime();
+			JsonDiffEngine full = new JsonDiffEngine(left, right, () -> false, p -> { }).withoutPruning();
+			int fullRows = full.run();
+			long t1 = System.nanoTime();
+			// The first pruned run also hashes both tapes; later runs reuse the memoized hashes
+			JsonDiffEngine pruned = new JsonDiffEngine(left, right, () -> false, p -> { });
+			int prunedRows = pruned.run();
+			long t2 = System.nanoTime();
+			System.out.printf("  run %d: full walk %,d ms (%,d paths, %,d rows), pruned %,d ms (%,d paths, %,d rows)%n",
+				run, (t1 - t0) / 1_000_000, full.visited(), fullRows,
+				(t2 - t1) / 1_000_000, pruned.visited(), prunedRows);
+		}
+	}
+
+	private static void benchParallelDiff(int megabytes) {
+		long chars = megabytes * 1024L * 1024L;
+		JsonTape left = JsonTape.parse(recordsDocument(chars, new Random(42), 0));
+		JsonTape right = JsonTape.parse(recordsDocument(chars, new Random(42), 100));
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.printf("parallel diff: %,d + %,d tokens, 1 record in 100 changed, %d cores%n",
+			left.tokenCount(), right.tokenCount(), cores);
+		// Hash both tapes up front so every run below times the walk alone
+		left.hashes(() -> false);
+		right.hashes(() -> false);
+
+		// 0 stands for the sequential walk
+		List<Integer> threadCounts = new ArrayList<>();
+		threadCounts.add(0);
+		for (int threads = 1; threads < cores; threads *= 2) threadCounts.add(threads);
+		threadCounts.add(cores);
+
+		long fullBase = 0;
+		long prunedBase = 0;
+		for (int threads : threadCounts) {
+			ForkJoinPool pool = threads == 0 ? null : new ForkJoinPool(threads);
+			long full = Long.MAX_VALUE;
+			long pruned = Long.MAX_VALUE;
+			int rows = 0;
+			for (int run = 0; run < 3; run++) {
+				long t0 = System.nanoTime();
+				JsonDiffEngine walk = new JsonDiffEngine(left, right, () -> false, p -> { }).withoutPruning();
+				rows = (pool == null ? walk : walk.parallel(pool)).run();
+				long t1 = System.nanoTime();
+				JsonDiffEngine skip = new JsonDiffEngine(left, right, () -> false, p -> { });
+				(pool == null ? skip : skip.parallel(pool)).run();
+				long t2 = System.nanoTime();
+				full = Math.min(full, t1 - t0);
+				pruned = Math.min(pruned, t2 - t1);
+			}
+			if (pool == null) {
+				fullBase = full;
+				prunedBase = pruned;
+				System.out.printf("  sequential:   full walk %,d ms, pruned %,d ms (%,d rows)%n",
+					full / 1_000_000, pruned / 1_000_000, rows);
+			} else {
+				pool.shutdown();
+				System.out.printf("  %2d threads:   full walk %,d ms (%.2fx), pruned %,d ms (%.2fx)%n", threads,
+					full / 1_000_000, fullBase / (double) full, pruned / 1_000_000, prunedBase / (double) pruned);
+			}
+		}
+	}
+
+	private static void benchPatch(int megabytes) {
+		long chars = megabytes * 1024L * 1024L;
+		String shorter = recordsDocument(chars, new Random(42), 0);
+		String longer = recordsDocument(chars + chars / 100, new Random(42), 100);
+		System.out.printf("patch: %,d and %,d chars, 1 record in 100 changed%n", shorter.length(), longer.length());
+		roundTrip("  grow  ", shorter, longer);
+		roundTrip("  shrink", longer, shorter);
+	}
+
+	private static void roundTrip(String label, String source, String target) {
+		JsonTape left = JsonTape.parse(source);
+		JsonTape right = JsonTape.parse(target);
+		for (int run = 1; run <= 3; run++) {
+			try {
+				long t0 = System.nanoTime();
+				JsonDiffEngine diff = new JsonDiffEngine(left, right, () -> false, p -> { });
+				diff.run();
+				long t1 = System.nanoTime();
+				StringWriter patchText = new StringWriter();
+				int ops = JsonPatch.write(diff.rows(), patchText);
+				long t2 = System.nanoTime();
+				JsonArray patch = JsonParser.parseString(patchText.toString()).getAsJsonArray();
+				long t3 = System.nanoTime();
+				StringWriter patched = new StringWriter(target.length() * 2);
+				JsonPatch.apply(new StringReader(source), patch, patched, null);
+				long t4 = System.nanoTime();
+				int remaining = new JsonDiffEngine(JsonTape.parse(patched.toString()), right, () -> false, p -> { }).run();
+				System.out.printf("%s run %d: diff %,d ms, export %,d ms (%,d ops, %,d chars), apply %,d ms (%.0f MB/s), %s%n",
+					label, run, (t1 - t0) / 1_000_000, (t2 - t1) / 1_000_000, ops, patchText.getBuffer().length(),
+					(t4 - t3) / 1_000_000, source.length() / 1048576.0 / ((t4 - t3) / 1e9),
+					remaining == 0 ? "round trip equal" : remaining + " difference(s) left");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	// Heap in use after the collector has settled
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	// One JSON array of API-style records with nested objects, arrays, numbers and strings
+	static String recordsDocument(long chars, Random rnd) {
+		return recordsDocument(chars, rnd, 0);
+	}
+
+	// As above; with changeEvery > 0, every changeEvery-th record has its "active" flag flipped
+	static String recordsDocument(long chars, Random rnd, int changeEvery) {
+		StringBuilder sb = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, chars + 1024));
+		sb.append('[');
+		for (long id = 0; sb.length() < chars; id++) {
+			if (id > 0) sb.append(',');
+			sb.append("{\"id\":").append(id)
+				.append(",\"name\":\"user-").append(rnd.nextInt(100000)).append('"')
+				.append(",\"active\":").append(rnd.nextBoolean() ^ (changeEvery > 0 && id % changeEvery == 0))
+				.append(",\"score\":").append(rnd.nextInt(100000) / 100.0)
+				.append(",\"address\":{\"city\":\"City ").append(rnd.nextInt(500))
+				.append("\",\"zip\":\"").append(10000 + rnd.nextInt(90000)).append("\"}")
+				.append(",\"tags\":[");
+			int tags = rnd.nextInt(4);
+			for (int t = 0; t < tags; t++) {
+				if (t > 0) sb.append(',');
+				sb.append("\"tag").append(rnd.nextInt(50)).append('"');
+			}
+			sb.append("],\"manager\":null}");
+		}
+		return sb.append(']').toString();
+	}
+
+	// Log lines mixing JSON payloads, repeated payloads, stray braces and unterminated blocks
+	static String mixedLogText(long chars, Random rnd) {
+		StringBuilder sb = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, chars + 256));
+		long line = 0;
+		while (sb.length() < chars) {
+			sb.append("2024-05-01T12:00:").append(line % 60).append(" INFO [worker-").append(line % 16).append("] ");
+			switch (rnd.nextInt(6)) {
+				case 0:
+				case 1:
+					sb.append("response {\"id\":").append(line).append(",\"ok\":true,\"items\":[");
+					int items = rnd.nextInt(8);
+					for (int i = 0; i < items; i++) {
+						if (i > 0) sb.append(',');
+						sb.append("{\"sku\":\"A-").append(rnd.nextInt(1000)).append("\",\"price\":")
+							.append(rnd.nextInt(10000) / 100.0).append(",\"tags\":[\"x\",\"{y}\"]}");
+					}
+					sb.append("]} took ").append(rnd.nextInt(500)).append("ms");
+					break;
+				case 2:
+					sb.append("heartbeat {\"status\":\"up\"}");
+					break;
+				case 3:
+					sb.append("template {user} rendered with { unclosed and [partial");
+					break;
+				case 4:
+					sb.append("payload [1,2,3] then {\"truncated\":\"value");
+					break;
+				default:
+					sb.append("closing ]]}} without openers");
+			}
+			sb.append('\n');
+			line++;
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,135 @@
+package com.jasypt.ui.tools;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonDiffEngineTest {
+
+	private static ForkJoinPool pool;
+
+	@BeforeAll
+	static void startPool() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterAll
+	static void stopPool() {
+		pool.shutdown();
+	}
+
+	@Test
+	void parallelRowsEqualSequentialRows() {
+		for (int seed = 0; seed < 6; seed++) {
+			Random random = new Random(seed);
+			StringBuilder doc = new StringBuilder("[");
+			for (int i = 0; i < 120; i++) {
+				if (i > 0) doc.append(',');
+				value(doc, random, 1);
+			}
+			String left = doc.append(']').toString();
+			String right = mutate(left, random);
+			if (seed % 3 == 0) right = "[{\"id\":-1}," + right.substring(1);
+			JsonTape l = JsonTape.parse(left);
+			JsonTape r = JsonTape.parse(right);
+			assertTrue(l.tokenCount() > 2 << 14, "the document must be large enough to be split");
+
+			for (JsonDiffEngine.ArrayMode mode : JsonDiffEngine.ArrayMode.values()) {
+				for (boolean prune : new boolean[]{true, false}) {
+					JsonDiffEngine sequential = new JsonDiffEngine(l, r, () -> false, paths -> { }).arrays(mode, null);
+					JsonDiffEngine parallel = new JsonDiffEngine(l, r, () -> false, paths -> { }).arrays(mode, null)
+						.parallel(pool);
+					if (!prune) {
+						sequential.withoutPruning();
+						parallel.withoutPruning();
+					}
+					String what = "seed " + seed + ", " + mode + (prune ? "" : " without pruning");
+					assertEquals(rows(sequential), rows(parallel), what);
+					assertEquals(sequential.visited(), parallel.visited(), what);
+				}
+			}
+		}
+	}
+
+	@Test
+	void equalDocumentsHaveNoRowsInParallel() {
+		StringBuilder doc = new StringBuilder("{");
+		Random random = new Random(11);
+		for (int i = 0; i < 100; i++) {
+			if (i > 0) doc.append(',');
+			doc.append("\"k").append(i).append("\":");
+			value(doc, random, 1);
+		}
+		String text = doc.append('}').toString();
+		JsonDiffEngine engine = new JsonDiffEngine(JsonTape.parse(text), JsonTape.parse(text), () -> false,
+			paths -> { }).parallel(pool);
+		assertEquals(0, engine.run());
+	}
+
+	private static List<String> rows(JsonDiffEngine engine) {
+		engine.run();
+		JsonDiffRows rows = engine.rows();
+		List<String> out = new ArrayList<>(rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			out.add(rows.kind(i) + " " + rows.path(i) + " " + rows.left(i) + " " + rows.right(i));
+		}
+		return out;
+	}
+
+	// Bumps about one digit in 200, so numbers change while the structure stays
+	private static String mutate(String text, Random random) {
+		char[] chars = text.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			if (Character.isDigit(chars[i]) && random.nextInt(200) == 0) chars[i] = (char) ('1' + random.nextInt(9));
+		}
+		return new String(chars);
+	}
+
+	private static void value(StringBuilder sb, Random random, int depth) {
+		int kind = random.nextInt(10);
+		if (depth > 3 || kind < 4) {
+			switch (random.nextInt(4)) {
+				case 0:
+					sb.append(random.nextInt(1000));
+					break;
+				case 1:
+					sb.append("\"s").append(random.nextInt(50)).append('"');
+					break;
+				case 2:
+					sb.append(random.nextBoolean());
+					break;
+				default:
+					sb.append("null");
+			}
+		} else if (kind < 7) {
+			sb.append('{');
+			int n = random.nextInt(20);
+			for (int i = 0; i < n; i++) {
+				if (i > 0) sb.append(',');
+				sb.append("\"k").append(i).append("\":");
+				value(sb, random, depth + 1);
+			}
+			sb.append('}');
+		} else {
+			sb.append('[');
+			int n = random.nextInt(30);
+			for (int i = 0; i < n; i++) {
+				if (i > 0) sb.append(',');
+				if (random.nextInt(3) == 0) {
+					sb.append("{\"id\":").append(i).append(",\"v\":").append(random.nextInt(3)).append('}');
+				} else {
+					value(sb, random, depth + 1);
+				}
+			}
+			sb.append(']');
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonPatchTest {
+
+	private static final String[] KEYS = {"k0", "a/b", "~1", "", "k~/"};
+
+	@Test
+	void exportedPatchesTurnLeftIntoRight() throws IOException {
+		for (int seed = 0; seed < 5000; seed++) {
+			Random random = new Random(seed);
+			JsonElement left = generate(random, 0);
+			JsonElement right = mutate(left, random);
+			JsonArray patch = export(left, right);
+			assertEquals(right, apply(left, patch), "seed " + seed + ": " + patch);
+		}
+	}
+
+	@Test
+	void keysAreEscapedInPointers() throws IOException {
+		JsonElement left = JsonParser.parseString("{\"a/b\":1,\"~1\":2,\"m~0/\":{\"~\":[1]}}");
+		JsonElement right = JsonParser.parseString("{\"a/b\":2,\"~1\":3,\"m~0/\":{\"~\":[1,2]}}");
+		JsonArray patch = export(left, right);
+
+		assertEquals(List.of("replace /a~1b", "add /m~00~1/~0/1", "replace /~01"), ops(patch));
+		assertEquals(right, apply(left, patch));
+	}
+
+	@Test
+	void trailingElementsAreRemovedLastOneFirst() throws IOException {
+		JsonElement left = JsonParser.parseString("{\"a\":[1,2,3,4,5],\"b\":[1]}");
+		JsonElement right = JsonParser.parseString("{\"a\":[1,9],\"b\":[1,2,3]}");
+		JsonArray patch = export(left, right);
+
+		assertEquals(List.of("replace /a/1", "remove /a/4", "remove /a/3", "remove /a/2", "add /b/1", "add /b/2"),
+			ops(patch));
+		assertEquals(right, apply(left, patch));
+	}
+
+	@Test
+	void appendsGoAfterTheOriginalElements() throws IOException {
+		JsonArray patch = JsonParser.parseString("[{\"op\":\"add\",\"path\":\"/-\",\"value\":3},"
+			+ "{\"op\":\"add\",\"path\":\"/-\",\"value\":4},{\"op\":\"replace\",\"path\":\"/x\",\"value\":0}]")
+			.getAsJsonArray();
+		assertThrows(IllegalArgumentException.class, () -> apply(JsonParser.parseString("[1,2]"), patch));
+
+		patch.remove(2);
+		assertEquals(JsonParser.parseString("[1,2,3,4]"), apply(JsonParser.parseString("[1,2]"), patch));
+	}
+
+	@Test
+	void indexesBeyondTheArrayFail() {
+		assertFails("index out of bounds", "[1,2]", "[{\"op\":\"remove\",\"path\":\"/2\"}]");
+		assertFails("index out of bounds", "[1,2]", "[{\"op\":\"replace\",\"path\":\"/5\",\"value\":0}]");
+		assertFails("index out of bounds", "[1]", "[{\"op\":\"add\",\"path\":\"/2\",\"value\":0}]");
+		assertFails("index out of bounds", "{\"a\":[[1]]}", "[{\"op\":\"remove\",\"path\":\"/a/0/1\"}]");
+		// The first removal leaves one element, so the second index is past the end
+		assertFails("Patch operation 2", "[1,2]",
+			"[{\"op\":\"remove\",\"path\":\"/0\"},{\"op\":\"remove\",\"path\":\"/1\"}]");
+	}
+
+	@Test
+	void missingPathsFail() {
+		assertFails("path not found", "{\"x\":1}", "[{\"op\":\"remove\",\"path\":\"/a\"}]");
+		assertFails("path not found", "{\"x\":1}", "[{\"op\":\"replace\",\"path\":\"/a\",\"value\":0}]");
+		assertFails("path not found", "{\"x\":1}", "[{\"op\":\"add\",\"path\":\"/a/b\",\"value\":0}]");
+		assertFails("path not found", "{\"x\":1}", "[{\"op\":\"remove\",\"path\":\"/x/y\"}]");
+		assertFails("path not found", "{\"x\":{}}",
+			"[{\"op\":\"remove\",\"path\":\"/x\"},{\"op\":\"remove\",\"path\":\"/x\"}]");
+		assertFails("not an array index", "[1]", "[{\"op\":\"remove\",\"path\":\"/01\"}]");
+	}
+
+	@Test
+	void patchFilesAreReadStrictly() throws IOException {
+		assertEquals(1, JsonPatch.read(new StringReader("[{\"op\":\"remove\",\"path\":\"/a\"}]\n")).size());
+		for (String lenient : new String[]{"[{'op':'remove','path':'/a'}]", "[{op:\"remove\",path:\"/a\"}]",
+				"[] []", "[1,]", "// ops\n[]", "{\"op\":\"remove\",\"path\":\"/a\"}", "", "[\"\\u12\"]"}) {
+			assertThrows(IOException.class, () -> JsonPatch.read(new StringReader(lenient)), lenient);
+		}
+	}
+
+	// Before array edits were planned with a cursor, these took about ten seconds
+	@Test
+	@Timeout(10)
+	void scatteredEditsToALargeArrayStream() throws IOException {
+		int n = 400_000;
+		JsonArray left = new JsonArray();
+		JsonArray right = new JsonArray();
+		for (int i = 0; i < n; i++) {
+			left.add("v" + i);
+			if (i < n - 40_000) right.add(i % 10 == 0 ? new JsonPrimitive(i) : new JsonPrimitive("v" + i));
+		}
+		JsonArray patch = new JsonArray();
+		for (int i = 0; i < n - 40_000; i += 10) patch.add(op("replace", "/" + i, new JsonPrimitive(i)));
+		for (int i = n - 1; i >= n - 40_000; i--) patch.add(op("remove", "/" + i, null));
+
+		assertEquals(right, apply(left, patch));
+	}
+
+	private static JsonArray export(JsonElement left, JsonElement right) throws IOException {
+		JsonDiffEngine engine = new JsonDiffEngine(JsonTape.parse(left.toString()), JsonTape.parse(right.toString()),
+			() -> false, paths -> { }).arrays(JsonDiffEngine.ArrayMode.INDEX, null);
+		engine.run();
+		StringWriter out = new StringWriter();
+		int count = JsonPatch.write(engine.rows(), out);
+		JsonArray patch = JsonParser.parseString(out.toString()).getAsJsonArray();
+		assertEquals(count, patch.size());
+		return patch;
+	}
+
+	private static JsonElement apply(JsonElement document, JsonArray patch) throws IOException {
+		StringWriter out = new StringWriter();
+		JsonPatch.apply(new StringReader(document.toString()), patch, out, chars -> { });
+		return JsonParser.parseString(out.toString());
+	}
+
+	private static void assertFails(String message, String document, String patch) {
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+			() -> apply(JsonParser.parseString(document), JsonParser.parseString(patch).getAsJsonArray()));
+		assertTrue(e.getMessage().contains(message), e.getMessage());
+	}
+
+	private static List<String> ops(JsonArray patch) {
+		List<String> ops = new ArrayList<>();
+		for (JsonElement op : patch) {
+			ops.add(op.getAsJsonObject().get("op").getAsString() + " " + op.getAsJsonObject().get("path").getAsString());
+		}
+		return ops;
+	}
+
+	private static JsonObject op(String kind, String path, JsonElement value) {
+		JsonObject op = new JsonObject();
+		op.addProperty("op", kind);
+		op.addProperty("path", path);
+		if (value != null) op.add("value", value);
+		return op;
+	}
+
+	private static JsonElement generate(Random random, int depth) {
+		switch (random.nextInt(depth > 3 ? 3 : 6)) {
+			case 0:
+				return new JsonPrimitive(random.nextInt(4));
+			case 1:
+				return new JsonPrimitive(random.nextInt(3) == 0 ? "a/b~c" : "s" + random.nextInt(3));
+			case 2:
+				return JsonNull.INSTANCE;
+			case 3:
+			case 4: {
+				JsonArray array = new JsonArray();
+				int n = random.nextInt(5);
+				for (int i = 0; i < n; i++) array.add(generate(random, depth + 1));
+				return array;
+			}
+			default: {
+				JsonObject object = new JsonObject();
+				int n = random.nextInt(5);
+				for (int i = 0; i < n; i++) object.add(KEYS[random.nextInt(KEYS.length)], generate(random, depth + 1));
+				return object;
+			}
+		}
+	}
+
+	// Drops, replaces and edits elements and members, and adds new ones at the end
+	private static JsonElement mutate(JsonElement value, Random random) {
+		if (random.nextInt(6) == 0) return generate(random, 2);
+		if (value.isJsonArray()) {
+			JsonArray array = new JsonArray();
+			for (JsonElement element : value.getAsJsonArray()) {
+				if (random.nextInt(6) != 0) array.add(mutate(element, random));
+			}
+			if (random.nextInt(3) == 0) array.add(generate(random, 2));
+			return array;
+		}
+		if (value.isJsonObject()) {
+			JsonObject object = new JsonObject();
+			for (Map.Entry<String, JsonElement> member : value.getAsJsonObject().entrySet()) {
+				if (random.nextInt(6) != 0) object.add(member.getKey(), mutate(member.getValue(), random));
+			}
+			if (random.nextInt(3) == 0) object.add("n" + random.nextInt(3), generate(random, 2));
+			return object;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,98 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonPathQueryTest {
+
+	@Test
+	void negativeStepsRunDownToTheFirstElement() {
+		JsonElement abc = JsonParser.parseString("[\"a\",\"b\",\"c\"]");
+		assertEquals(List.of("\"b\"", "\"a\""), select("$[1:-4:-1]", abc));
+		assertEquals(List.of(), select("$[-5::-1]", abc));
+		assertEquals(List.of("\"c\"", "\"b\"", "\"a\""), select("$[::-1]", abc));
+		assertEquals(List.of("\"c\"", "\"a\""), select("$[5::-2]", abc));
+	}
+
+	@Test
+	void slicesMatchPythonSlicing() {
+		for (int n = 0; n <= 4; n++) {
+			JsonArray array = new JsonArray();
+			for (int i = 0; i < n; i++) array.add(i);
+			for (Integer start : bounds()) {
+				for (Integer end : bounds()) {
+					for (int step : new int[]{-3, -2, -1, 1, 2, 3}) {
+						String query = "$[" + (start == null ? "" : start) + ":" + (end == null ? "" : end) + ":" + step + "]";
+						assertEquals(pythonSlice(n, start, end, step), select(query, array), query + " on " + array);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void descendantsOfADeepDocumentDoNotOverflow() {
+		int depth = 200_000;
+		JsonObject leaf = new JsonObject();
+		leaf.addProperty("x", 1);
+		JsonElement document = leaf;
+		for (int i = 0; i < depth; i++) {
+			JsonArray array = new JsonArray();
+			array.add(document);
+			document = array;
+		}
+
+		List<JsonPathQuery.Match> matches = new ArrayList<>();
+		JsonPathQuery.compile("$..x").evaluate(JsonPathQuery.Match.root(document, 0), () -> false, matches::add);
+		assertEquals(1, matches.size());
+		assertEquals("$" + "[0]".repeat(depth) + ".x", matches.get(0).path());
+		assertEquals(depth + 2, matches.get(0).pathIndices().length);
+	}
+
+	@Test
+	void descendantsComeInDocumentOrder() {
+		JsonElement document = JsonParser.parseString("{\"a\":{\"x\":1,\"b\":[{\"x\":2}]},\"x\":3,\"c\":[{\"x\":4},5]}");
+		assertEquals(List.of("3", "1", "2", "4"), select("$..x", document));
+		assertEquals(List.of("{\"x\":2}", "{\"x\":4}"), select("$..[0]", document));
+	}
+
+	private static List<Integer> bounds() {
+		List<Integer> bounds = new ArrayList<>();
+		bounds.add(null);
+		for (int i = -6; i <= 6; i++) bounds.add(i);
+		return bounds;
+	}
+
+	// The elements of range(n)[start:end:step], as Python's slice.indices computes them
+	private static List<String> pythonSlice(int n, Integer start, Integer end, int step) {
+		int lower = step < 0 ? -1 : 0;
+		int upper = step < 0 ? n - 1 : n;
+		int from = start == null ? (step < 0 ? upper : lower) : bound(start, n, lower, upper);
+		int to = end == null ? (step < 0 ? lower : upper) : bound(end, n, lower, upper);
+		List<String> out = new ArrayList<>();
+		for (int i = from; step > 0 ? i < to : i > to; i += step) out.add(String.valueOf(i));
+		return out;
+	}
+
+	private static int bound(int i, int n, int lower, int upper) {
+		if (i < 0) i += n;
+		return Math.min(Math.max(i, lower), upper);
+	}
+
+	private static List<String> select(String query, JsonElement document) {
+		List<String> values = new ArrayList<>();
+		JsonPathQuery.compile(query).evaluate(JsonPathQuery.Match.root(document, 0), () -> false, match -> {
+			values.add(match.value.toString());
+			return true;
+		});
+		return values;
+	}
+}
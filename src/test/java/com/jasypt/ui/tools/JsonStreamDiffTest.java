@@ -0,0 +1,149 @@
+package com.jasypt.ui.tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonStreamDiffTest {
+
+	// JsonDiffRows shows this many chars of a value, then an ellipsis
+	private static final int PREVIEW = 160;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void rowsMatchTheTapeDiffWithATinyBudget() throws IOException {
+		boolean spilled = false;
+		for (int seed = 0; seed < 1500; seed++) {
+			Random random = new Random(seed);
+			JsonElement left = generate(random, 0);
+			JsonElement right = mutate(left, random);
+			// 40 bytes spill almost every reordered member; 1 MB keeps them all in memory
+			JsonStreamDiff.Result result = diff(left.toString(), right.toString(), seed % 2 == 0 ? 40 : 1 << 20);
+			spilled |= result.spilledChars > 0;
+
+			List<String> streamed = new ArrayList<>();
+			for (String line : Files.readAllLines(dir.resolve("out.jsonl"))) {
+				JsonObject row = JsonParser.parseString(line).getAsJsonObject();
+				streamed.add(row(row.get("path").getAsString(), row.get("change").getAsString(),
+					row.has("left") ? row.get("left").toString() : "", row.has("right") ? row.get("right").toString() : ""));
+			}
+			JsonDiffEngine engine = new JsonDiffEngine(JsonTape.parse(left.toString()), JsonTape.parse(right.toString()),
+				() -> false, paths -> { });
+			engine.run();
+			JsonDiffRows rows = engine.rows();
+			List<String> expected = new ArrayList<>();
+			for (int i = 0; i < rows.size(); i++) {
+				expected.add(row(rows.path(i), JsonDiffRows.changeName(rows.kind(i)), rows.left(i), rows.right(i)));
+			}
+			assertEquals(rows.size(), result.rows);
+
+			// The stream reports members in document order, the engine sorted
+			Collections.sort(streamed);
+			Collections.sort(expected);
+			assertEquals(expected, streamed, "seed " + seed + ": " + left + " vs " + right);
+		}
+		assertTrue(spilled, "the small budget must spill");
+	}
+
+	@Test
+	void equalFilesHaveNoRows() throws IOException {
+		String text = "{\"a\":[1,2,{\"b\":null}],\"c\":\"x\"}";
+		JsonStreamDiff.Result result = diff(text, "{\"c\":\"x\",\"a\":[1,2,{\"b\":null}]}", 8);
+		assertEquals(0, result.rows);
+		assertTrue(Files.readString(dir.resolve("out.jsonl")).isEmpty());
+	}
+
+	@Test
+	void trailingDataIsAnError() {
+		assertThrows(IOException.class, () -> diff("[1]", "[1] 2", 1 << 20));
+	}
+
+	private JsonStreamDiff.Result diff(String left, String right, long budget) throws IOException {
+		Files.writeString(dir.resolve("left.json"), left);
+		Files.writeString(dir.resolve("right.json"), right);
+		return JsonStreamDiff.diff(dir.resolve("left.json"), dir.resolve("right.json"), dir.resolve("out.jsonl"),
+			budget, () -> false, (chars, rows) -> { });
+	}
+
+	// Type rows are compared by path only: the two diffs render the mismatched values differently.
+	// Values are cut where the row store ends its previews.
+	private static String row(String path, String change, String left, String right) {
+		if (change.equals(JsonDiffRows.changeName(JsonDiffRows.TYPE))) return path + " " + change;
+		return path + " " + change + " " + preview(left) + " " + preview(right);
+	}
+
+	private static String preview(String value) {
+		return value.length() > PREVIEW ? value.substring(0, PREVIEW) : value;
+	}
+
+	private static JsonElement generate(Random random, int depth) {
+		int kind = random.nextInt(10);
+		if (depth > 3 || kind < 4) {
+			switch (random.nextInt(5)) {
+				case 0:
+					return new JsonPrimitive(random.nextInt(4));
+				case 1:
+					return new JsonPrimitive("s" + random.nextInt(4));
+				case 2:
+					return new JsonPrimitive(random.nextBoolean());
+				case 3:
+					return new JsonPrimitive(new LazilyParsedNumber(random.nextInt(3) + ".0"));
+				default:
+					return JsonNull.INSTANCE;
+			}
+		}
+		if (kind < 7) {
+			JsonObject object = new JsonObject();
+			int n = random.nextInt(8);
+			for (int i = 0; i < n; i++) object.add("k" + random.nextInt(10), generate(random, depth + 1));
+			return object;
+		}
+		JsonArray array = new JsonArray();
+		int n = random.nextInt(6);
+		for (int i = 0; i < n; i++) array.add(generate(random, depth + 1));
+		return array;
+	}
+
+	// Replaces, drops, reorders and adds members; arrays only change elements and grow
+	private static JsonElement mutate(JsonElement value, Random random) {
+		if (random.nextInt(8) == 0) return generate(random, 2);
+		if (value.isJsonObject()) {
+			List<Map.Entry<String, JsonElement>> members = new ArrayList<>(value.getAsJsonObject().entrySet());
+			if (random.nextBoolean()) Collections.shuffle(members, random);
+			JsonObject object = new JsonObject();
+			for (Map.Entry<String, JsonElement> member : members) {
+				if (random.nextInt(10) > 0) object.add(member.getKey(), mutate(member.getValue(), random));
+			}
+			if (random.nextInt(4) == 0) object.add("k" + random.nextInt(12), generate(random, 2));
+			return object;
+		}
+		if (value.isJsonArray()) {
+			JsonArray array = new JsonArray();
+			for (JsonElement element : value.getAsJsonArray()) array.add(mutate(element, random));
+			if (random.nextInt(4) == 0) array.add(generate(random, 2));
+			return array;
+		}
+		return value;
+	}
+}